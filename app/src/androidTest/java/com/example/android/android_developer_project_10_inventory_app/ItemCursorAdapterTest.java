@@ -0,0 +1,206 @@
+package com.example.android.android_developer_project_10_inventory_app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Binds list rows through {@link ItemCursorAdapter} on the main thread.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemCursorAdapterTest {
+
+    private static final String TAG = "ItemCursorAdapterTest";
+
+    private static final String[] COLUMNS = {ItemEntry._ID, ItemEntry.COLUMN_ITEM_NAME,
+            ItemEntry.COLUMN_ITEM_PRICE, ItemEntry.COLUMN_ITEM_QUANTITY, ItemEntry.COLUMN_ITEM_IMAGE};
+
+    private static final int ROW_COUNT = 100;
+    private static final int VIEW_COUNT = 10;
+    private static final int BIND_COUNT = 10000;
+
+    private static Context themedContext() {
+        return new ContextThemeWrapper(InstrumentationRegistry.getTargetContext(), R.style.AppTheme);
+    }
+
+    // Items with IDs above the boxed Long cache, as in a real inventory
+    private static Cursor items() {
+        return items(-1);
+    }
+
+    // The same items, with one unit of the item at the given position sold
+    private static Cursor items(int soldPosition) {
+        MatrixCursor cursor = new MatrixCursor(COLUMNS);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            cursor.addRow(new Object[]{1000L + i, "Item " + i, 199L + i,
+                    i % 20 - (i == soldPosition ? 1 : 0), ""});
+        }
+        return cursor;
+    }
+
+    // Lays the list out as a frame would, on a screen tall enough for several rows
+    private static void layOut(ListView list) {
+        list.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+        list.layout(0, 0, 1080, 1920);
+    }
+
+    // Adapter that counts the rows it binds
+    private static class CountingAdapter extends ItemCursorAdapter {
+        int bindCount;
+        int lastBoundPosition = -1;
+
+        CountingAdapter(Context context, Cursor cursor) {
+            super(context, cursor);
+        }
+
+        @Override
+        public void bindView(View view, Context context, Cursor cursor) {
+            bindCount++;
+            lastBoundPosition = cursor.getPosition();
+            super.bindView(view, context, cursor);
+        }
+    }
+
+    // Binds the rows into the views the way the list recycles them and returns the objects
+    // allocated on this thread per bind
+    private static long allocationsPerBind(Binder binder, View[] views, Cursor cursor) {
+        // Once without counting, so first-use allocations such as the text layouts don't count
+        for (int bind = 0; bind < ROW_COUNT; bind++) {
+            cursor.moveToPosition(bind);
+            binder.bind(views[bind % views.length], cursor);
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int bind = 0; bind < BIND_COUNT; bind++) {
+            cursor.moveToPosition(bind % ROW_COUNT);
+            binder.bind(views[bind % views.length], cursor);
+        }
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocCount() / BIND_COUNT;
+    }
+
+    private interface Binder {
+        void bind(View view, Cursor cursor);
+    }
+
+    @Test
+    public void bindView_allocatesLessThanBindingWithStrings() throws Exception {
+        final long[] allocations = new long[2];
+        final String[] texts = new String[2];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final Context context = themedContext();
+                final ItemCursorAdapter adapter = new ItemCursorAdapter(context, items());
+                FrameLayout parent = new FrameLayout(context);
+                View[] views = new View[VIEW_COUNT];
+                for (int i = 0; i < views.length; i++) {
+                    views[i] = adapter.newView(context, adapter.getCursor(), parent);
+                }
+                allocations[0] = allocationsPerBind(new Binder() {
+                    @Override
+                    public void bind(View view, Cursor cursor) {
+                        adapter.bindView(view, context, cursor);
+                    }
+                }, views, adapter.getCursor());
+
+                adapter.getCursor().moveToPosition(7);
+                adapter.bindView(views[0], context, adapter.getCursor());
+                texts[0] = ((TextView) views[0].findViewById(R.id.item_name)).getText().toString();
+                texts[1] = ((TextView) views[0].findViewById(R.id.item_quantity)).getText().toString();
+
+                // The same rows bound the way the adapter did before it kept a holder and
+                // buffers: views looked up, texts built as strings and new listeners every time
+                allocations[1] = allocationsPerBind(new Binder() {
+                    @Override
+                    public void bind(View view, Cursor cursor) {
+                        TextView name = (TextView) view.findViewById(R.id.item_name);
+                        TextView price = (TextView) view.findViewById(R.id.item_price);
+                        TextView quantity = (TextView) view.findViewById(R.id.item_quantity);
+                        ImageView image = (ImageView) view.findViewById(R.id.item_image);
+                        name.setText(cursor.getString(cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_NAME)));
+                        price.setText(PriceFormat.format(cursor.getLong(
+                                cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_PRICE))));
+                        quantity.setText(context.getString(R.string.quantity) + cursor.getInt(
+                                cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_QUANTITY)));
+                        image.setImageResource(R.drawable.no_image);
+                        view.findViewById(R.id.item_sell_button).setOnClickListener(new View.OnClickListener() {
+                            @Override
+                            public void onClick(View v) {
+                            }
+                        });
+                        view.findViewById(R.id.item_buy_button).setOnClickListener(new View.OnClickListener() {
+                            @Override
+                            public void onClick(View v) {
+                            }
+                        });
+                    }
+                }, views, items());
+            }
+        });
+
+        assertEquals("Item 7", texts[0]);
+        assertEquals(InstrumentationRegistry.getTargetContext().getString(R.string.quantity) + 7, texts[1]);
+        Log.i(TAG, "Allocations per bind: " + allocations[0] + " with the holder, "
+                + allocations[1] + " with strings");
+        assertTrue("Allocations per bind: " + allocations[0] + " with the holder, "
+                + allocations[1] + " with strings", allocations[0] < allocations[1]);
+    }
+
+    @Test
+    public void swapCursor_afterASaleRebindsOnlyTheSoldRow() throws Exception {
+        final int[] result = new int[5];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Context context = themedContext();
+                ListView list = new ListView(context);
+                CountingAdapter adapter = new CountingAdapter(context, items());
+                list.setAdapter(adapter);
+                layOut(list);
+                result[0] = list.getChildCount();
+
+                // The reload after selling one unit of the fourth item, then the next frame
+                adapter.bindCount = 0;
+                adapter.swapCursor(list, items(3));
+                layOut(list);
+                result[1] = adapter.bindCount;
+                result[2] = adapter.lastBoundPosition;
+
+                // A reload with an item added refreshes every row on screen
+                MatrixCursor added = (MatrixCursor) items(3);
+                added.addRow(new Object[]{2000L, "Item added", 199L, 1, ""});
+                adapter.bindCount = 0;
+                adapter.swapCursor(list, added);
+                layOut(list);
+                result[3] = adapter.bindCount;
+                result[4] = list.getChildCount();
+            }
+        });
+
+        assertTrue("Rows on screen: " + result[0], result[0] > 4);
+        assertEquals(1, result[1]);
+        assertEquals(3, result[2]);
+        assertEquals(result[4], result[3]);
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentResolver;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Imports CSV through {@link ItemProvider} on a separate database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemCsvImporterTest {
+
+    private static final String TAG = "ItemCsvImporterTest";
+
+    private static final String DATABASE_PREFIX = "csv_import_test.";
+    private static final String DATABASE_NAME = "inventory.db";
+
+    private static final String HEADER = "name,price,quantity,image,supplier,email\r\n";
+
+    // Listener that records the resume offsets it is given
+    private static class RecordingListener implements ItemCsvImporter.ProgressListener {
+        final List<Long> offsets = new ArrayList<>();
+
+        @Override
+        public void onChunkCommitted(long resumeOffset, long imported, long rejected) {
+            offsets.add(resumeOffset);
+        }
+    }
+
+    private RenamingDelegatingContext mContext;
+    private MockContentResolver mResolver;
+
+    @Before
+    public void createProvider() throws Exception {
+        mResolver = new MockContentResolver();
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(),
+                DATABASE_PREFIX) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return mResolver;
+            }
+        };
+        mContext.deleteDatabase(DATABASE_NAME);
+
+        ProviderInfo info = new ProviderInfo();
+        info.authority = ItemContract.CONTENT_AUTHORITY;
+        ItemProvider provider = new ItemProvider();
+        provider.attachInfo(mContext, info);
+        mResolver.addProvider(ItemContract.CONTENT_AUTHORITY, provider);
+    }
+
+    @After
+    public void deleteDatabase() throws Exception {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    private static String rows(int first, int count) {
+        StringBuilder csv = new StringBuilder();
+        for (int i = first; i < first + count; i++) {
+            csv.append("Item ").append(i).append(",199,").append(i % 10)
+                    .append(",,Supplier,supplier@example.com\r\n");
+        }
+        return csv.toString();
+    }
+
+    private int countItems() {
+        Cursor cursor = mResolver.query(ItemEntry.CONTENT_URI, new String[]{ItemEntry._ID},
+                null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void importFrom_reportsProgressAfterEveryChunk() throws Exception {
+        RecordingListener listener = new RecordingListener();
+
+        ItemCsvImporter.Result result = new ItemCsvImporter(mResolver, 1000)
+                .importFrom(new StringReader(HEADER + rows(0, 2500)), 0, listener);
+
+        assertEquals(2500, result.imported);
+        assertEquals(0, result.rejected);
+        assertEquals(Arrays.asList(1000L, 2000L, 2500L), listener.offsets);
+        assertEquals(2500, countItems());
+    }
+
+    @Test
+    public void importFrom_importsOneHundredThousandRows() throws Exception {
+        String csv = HEADER + rows(0, 100000);
+
+        long start = System.nanoTime();
+        ItemCsvImporter.Result result = new ItemCsvImporter(mResolver)
+                .importFrom(new StringReader(csv), 0, null);
+        long millis = (System.nanoTime() - start) / 1000000;
+        Log.i(TAG, "Imported 100000 rows in " + millis + " ms");
+
+        assertEquals(100000, result.imported);
+        assertEquals(0, result.rejected);
+        assertEquals(100000, countItems());
+    }
+
+    @Test
+    public void importFrom_skipsInvalidRows() throws Exception {
+        String csv = HEADER + rows(0, 2)
+                + "No price,,1,,Supplier,supplier@example.com\r\n"
+                + "Negative,199,-1,,Supplier,supplier@example.com\r\n"
+                + "Not a price,1.99,1,,Supplier,supplier@example.com\r\n"
+                + "Too few fields,199\r\n"
+                + "\r\n"
+                + rows(2, 1);
+
+        ItemCsvImporter.Result result = new ItemCsvImporter(mResolver)
+                .importFrom(new StringReader(csv), 0, null);
+
+        assertEquals(3, result.imported);
+        assertEquals(4, result.rejected);
+        assertEquals(3, countItems());
+    }
+
+    @Test
+    public void importFrom_resumesAfterOffset() throws Exception {
+        String csv = HEADER + rows(0, 5);
+        RecordingListener listener = new RecordingListener();
+
+        ItemCsvImporter.Result result = new ItemCsvImporter(mResolver, 2)
+                .importFrom(new StringReader(csv), 3, listener);
+
+        assertEquals(2, result.imported);
+        assertEquals(Arrays.asList(5L, 5L), listener.offsets);
+        assertEquals(2, countItems());
+    }
+
+    @Test
+    public void importFrom_readsOptionalReorderThreshold() throws Exception {
+        String csv = "reorder_threshold,name,price,quantity,image,supplier,email\r\n"
+                + "4,Widget,250,3,,Supplier,supplier@example.com\r\n";
+
+        new ItemCsvImporter(mResolver).importFrom(new StringReader(csv), 0, null);
+
+        Cursor cursor = mResolver.query(ItemEntry.CONTENT_URI,
+                new String[]{ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD}, null, null, null);
+        try {
+            cursor.moveToFirst();
+            assertEquals(4, cursor.getInt(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void importFrom_rejectsMissingColumns() throws Exception {
+        new ItemCsvImporter(mResolver).importFrom(new StringReader("name,price\r\n"), 0, null);
+    }
+}
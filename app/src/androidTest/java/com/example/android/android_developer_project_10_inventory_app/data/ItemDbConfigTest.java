@@ -0,0 +1,191 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+import android.util.Log;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.SupplierEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures reads and writes running side by side on databases opened by {@link ItemDbHelper}
+ * with different {@link ItemDbConfig}s.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemDbConfigTest {
+
+    private static final String TAG = "ItemDbConfigTest";
+
+    private static final String DATABASE_PREFIX = "db_config_test.";
+    private static final String DATABASE_NAME = "inventory.db";
+
+    private static final int ITEM_COUNT = 10000;
+    private static final int READER_COUNT = 2;
+    private static final long RUN_MILLIS = 3000;
+
+    // A page of the item list, as the list loader reads it
+    private static final String SQL_READ_PAGE = "SELECT " + ItemEntry._ID + ", "
+            + ItemEntry.COLUMN_ITEM_NAME + ", " + ItemEntry.COLUMN_ITEM_QUANTITY
+            + " FROM " + ItemEntry.VIEW_NAME + " ORDER BY " + ItemEntry.COLUMN_ITEM_NAME
+            + " LIMIT 50 OFFSET ?";
+
+    // A sale tapped in the list, each in its own transaction
+    private static final String SQL_WRITE_SALE = "UPDATE " + ItemEntry.TABLE_NAME
+            + " SET " + ItemEntry.COLUMN_ITEM_QUANTITY + " = " + ItemEntry.COLUMN_ITEM_QUANTITY + " - 1"
+            + " WHERE " + ItemEntry._ID + " = ? AND " + ItemEntry.COLUMN_ITEM_QUANTITY + " > 0";
+
+    private RenamingDelegatingContext mContext;
+
+    @Before
+    public void createContext() throws Exception {
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(),
+                DATABASE_PREFIX);
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void deleteDatabase() throws Exception {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    private static void insertItems(SQLiteDatabase db) {
+        ContentValues supplier = new ContentValues();
+        supplier.put(SupplierEntry.COLUMN_SUPPLIER_NAME, "Acme");
+        supplier.put(SupplierEntry.COLUMN_SUPPLIER_EMAIL, "orders@acme.test");
+        long supplierId = db.insertOrThrow(SupplierEntry.TABLE_NAME, null, supplier);
+
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + ItemEntry.TABLE_NAME + " ("
+                + ItemEntry.COLUMN_ITEM_NAME + ", " + ItemEntry.COLUMN_ITEM_PRICE + ", "
+                + ItemEntry.COLUMN_ITEM_QUANTITY + ", " + ItemEntry.COLUMN_ITEM_IMAGE + ", "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ") VALUES (?, 199, 1000000, '', ?)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < ITEM_COUNT; i++) {
+                insert.bindString(1, "Item " + i);
+                insert.bindLong(2, supplierId);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Runs {@link #READER_COUNT} readers paging through the items while one writer records sales,
+     * both for {@link #RUN_MILLIS}, and returns the number of pages read and sales written.
+     */
+    private long[] measure(ItemDbConfig config) throws Exception {
+        mContext.deleteDatabase(DATABASE_NAME);
+        ItemDbHelper helper = new ItemDbHelper(mContext, DATABASE_NAME, config);
+        final SQLiteDatabase db = helper.getWritableDatabase();
+        try {
+            insertItems(db);
+
+            final AtomicBoolean stop = new AtomicBoolean();
+            final AtomicLong reads = new AtomicLong();
+            final AtomicLong writes = new AtomicLong();
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        SQLiteStatement sale = db.compileStatement(SQL_WRITE_SALE);
+                        for (long n = 0; !stop.get(); n++) {
+                            db.beginTransaction();
+                            try {
+                                sale.bindLong(1, 1 + n % ITEM_COUNT);
+                                sale.executeUpdateDelete();
+                                db.setTransactionSuccessful();
+                            } finally {
+                                db.endTransaction();
+                            }
+                            writes.incrementAndGet();
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            Thread[] readers = new Thread[READER_COUNT];
+            for (int r = 0; r < readers.length; r++) {
+                final int firstPage = r;
+                readers[r] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (long page = firstPage; !stop.get(); page += READER_COUNT) {
+                                Cursor cursor = db.rawQuery(SQL_READ_PAGE,
+                                        new String[]{String.valueOf(page * 50 % ITEM_COUNT)});
+                                try {
+                                    if (cursor.getCount() != 50) {
+                                        throw new AssertionError("Read " + cursor.getCount() + " rows");
+                                    }
+                                } finally {
+                                    cursor.close();
+                                }
+                                reads.incrementAndGet();
+                            }
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                });
+            }
+
+            writer.start();
+            for (Thread reader : readers) {
+                reader.start();
+            }
+            Thread.sleep(RUN_MILLIS);
+            stop.set(true);
+            writer.join();
+            for (Thread reader : readers) {
+                reader.join();
+            }
+
+            assertNull(failure.get());
+            assertEquals(config.writeAheadLogging, db.isWriteAheadLoggingEnabled());
+            Log.i(TAG, config + ": " + reads.get() + " pages read and " + writes.get()
+                    + " sales written in " + RUN_MILLIS + " ms");
+            return new long[]{reads.get(), writes.get()};
+        } finally {
+            helper.close();
+        }
+    }
+
+    @Test
+    public void writeAheadLogging_letsReadersKeepUpWithAWriter() throws Exception {
+        ItemDbConfig withoutWal = new ItemDbConfig(false, ItemDbConfig.DEFAULT.foreignKeys,
+                ItemDbConfig.DEFAULT.cacheSizeKib, false);
+
+        long[] before = measure(ItemDbConfig.SQLITE_DEFAULTS);
+        long[] rollbackJournal = measure(withoutWal);
+        long[] after = measure(ItemDbConfig.DEFAULT);
+
+        assertTrue(before[0] > 0 && before[1] > 0);
+        assertTrue(rollbackJournal[0] > 0 && rollbackJournal[1] > 0);
+        assertTrue(after[1] > 0);
+        assertTrue("Pages read with WAL " + after[0] + ", without " + rollbackJournal[0],
+                after[0] > rollbackJournal[0]);
+    }
+}
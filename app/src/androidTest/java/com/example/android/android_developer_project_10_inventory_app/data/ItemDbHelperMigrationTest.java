@@ -0,0 +1,224 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.CounterEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.LocationEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.StatsEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.StockEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.SupplierEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Upgrades a populated version 1 database with {@link ItemDbHelper} and checks the migrated
+ * data and that the new indexes are used.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemDbHelperMigrationTest {
+
+    private static final String TEST_DATABASE_NAME = "migration_test.db";
+
+    private Context mContext;
+    private ItemDbHelper mHelper;
+
+    @Before
+    public void createVersion1Database() throws Exception {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(TEST_DATABASE_NAME);
+
+        // The items table exactly as version 1 created it
+        SQLiteDatabase db = mContext.openOrCreateDatabase(TEST_DATABASE_NAME,
+                Context.MODE_PRIVATE, null);
+        db.execSQL("CREATE TABLE items (_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "name TEXT NOT NULL, price TEXT, quantity INTEGER NOT NULL, image TEXT, "
+                + "supplier TEXT NOT NULL, email TEXT NOT NULL);");
+        db.execSQL("INSERT INTO items (name, price, quantity, image, supplier, email) VALUES "
+                + "('Pen', '2', 10, 'content://pen', 'Acme', 'orders@acme.test');");
+        db.execSQL("INSERT INTO items (name, price, quantity, image, supplier, email) VALUES "
+                + "('Pencil', '1.25', 0, 'content://pencil', 'Acme', 'orders@acme.test');");
+        db.execSQL("INSERT INTO items (name, price, quantity, image, supplier, email) VALUES "
+                + "('Paper', '4.5', 7, 'content://paper', 'Globex', 'sales@globex.test');");
+        db.setVersion(1);
+        db.close();
+
+        mHelper = new ItemDbHelper(mContext, TEST_DATABASE_NAME);
+    }
+
+    @After
+    public void deleteDatabase() throws Exception {
+        mHelper.close();
+        mContext.deleteDatabase(TEST_DATABASE_NAME);
+    }
+
+    @Test
+    public void upgrade_keepsItemsAndConvertsPrices() throws Exception {
+        SQLiteDatabase db = mHelper.getReadableDatabase();
+        assertEquals(ItemDbHelper.DATABASE_VERSION, db.getVersion());
+
+        Cursor cursor = db.query(ItemEntry.VIEW_NAME, new String[]{ItemEntry._ID,
+                        ItemEntry.COLUMN_ITEM_NAME, ItemEntry.COLUMN_ITEM_PRICE,
+                        ItemEntry.COLUMN_ITEM_QUANTITY, ItemEntry.COLUMN_ITEM_SUPPLIER,
+                        ItemEntry.COLUMN_SUPPLIER_EMAIL},
+                null, null, null, null, ItemEntry._ID);
+        try {
+            assertEquals(3, cursor.getCount());
+            cursor.moveToNext();
+            assertRow(cursor, 1, "Pen", 200, 10, "Acme", "orders@acme.test");
+            cursor.moveToNext();
+            assertRow(cursor, 2, "Pencil", 125, 0, "Acme", "orders@acme.test");
+            cursor.moveToNext();
+            assertRow(cursor, 3, "Paper", 450, 7, "Globex", "sales@globex.test");
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void upgrade_turnsANullPriceIntoZero() throws Exception {
+        // Version 1 accepted an update that cleared the price
+        SQLiteDatabase version1 = mContext.openOrCreateDatabase(TEST_DATABASE_NAME,
+                Context.MODE_PRIVATE, null);
+        version1.execSQL("UPDATE items SET price = NULL WHERE _id = 2;");
+        version1.close();
+
+        SQLiteDatabase db = mHelper.getReadableDatabase();
+        assertEquals(ItemDbHelper.DATABASE_VERSION, db.getVersion());
+        assertEquals(0, DatabaseUtils.longForQuery(db, "SELECT " + ItemEntry.COLUMN_ITEM_PRICE
+                + " FROM " + ItemEntry.TABLE_NAME + " WHERE " + ItemEntry._ID + " = 2", null));
+        assertEquals(3, DatabaseUtils.queryNumEntries(db, ItemEntry.TABLE_NAME));
+    }
+
+    @Test
+    public void upgrade_storesEachSupplierOnce() throws Exception {
+        SQLiteDatabase db = mHelper.getReadableDatabase();
+        Cursor cursor = db.query(SupplierEntry.TABLE_NAME, null, null, null, null, null, null);
+        try {
+            assertEquals(2, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void upgrade_listsOutOfStockItemsAsLowStock() throws Exception {
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, ItemEntry.LOW_STOCK_TABLE_NAME,
+                ItemEntry.COLUMN_LOW_STOCK_ITEM_ID + " = 2", null));
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, ItemEntry.LOW_STOCK_TABLE_NAME));
+
+        // The triggers keep the table up to date from then on
+        db.execSQL("UPDATE items SET reorder_threshold = 7 WHERE _id = 3");
+        db.execSQL("UPDATE items SET quantity = 1 WHERE _id = 2");
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, ItemEntry.LOW_STOCK_TABLE_NAME,
+                ItemEntry.COLUMN_LOW_STOCK_ITEM_ID + " = 3", null));
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, ItemEntry.LOW_STOCK_TABLE_NAME));
+    }
+
+    @Test
+    public void upgrade_computesInventoryAndSupplierTotals() throws Exception {
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+        assertEquals("3|17|5150", totals(db, StatsEntry.TABLE_NAME, null));
+        assertEquals("2|10|2000", totals(db, StatsEntry.SUPPLIER_TABLE_NAME, 1));
+        assertEquals("1|7|3150", totals(db, StatsEntry.SUPPLIER_TABLE_NAME, 2));
+
+        // The triggers keep the totals up to date from then on
+        db.execSQL("UPDATE items SET quantity = 2, supplier_id = 2 WHERE _id = 1");
+        db.execSQL("DELETE FROM items WHERE _id = 2");
+        assertEquals("2|9|3550", totals(db, StatsEntry.TABLE_NAME, null));
+        assertEquals("2|9|3550", totals(db, StatsEntry.SUPPLIER_TABLE_NAME, 2));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, StatsEntry.SUPPLIER_TABLE_NAME,
+                StatsEntry.COLUMN_SUPPLIER_ID + " = 1", null));
+    }
+
+    @Test
+    public void upgrade_keepsAllStockAtTheDefaultLocation() throws Exception {
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+        assertEquals(LocationEntry.DEFAULT_LOCATION_NAME, DatabaseUtils.stringForQuery(db,
+                "SELECT " + LocationEntry.COLUMN_LOCATION_NAME + " FROM " + LocationEntry.TABLE_NAME, null));
+        assertEquals(17, DatabaseUtils.longForQuery(db, "SELECT SUM(" + StockEntry.COLUMN_QUANTITY
+                + ") FROM " + StockEntry.TABLE_NAME + " WHERE " + StockEntry.COLUMN_LOCATION_ID
+                + " = " + LocationEntry.DEFAULT_LOCATION_ID, null));
+
+        // The triggers keep it adding up to the quantity of the items from then on
+        db.execSQL("UPDATE items SET quantity = 4 WHERE _id = 1");
+        db.execSQL("DELETE FROM items WHERE _id = 3");
+        assertEquals(4, DatabaseUtils.longForQuery(db, "SELECT SUM(" + StockEntry.COLUMN_QUANTITY
+                + ") FROM " + StockEntry.TABLE_NAME, null));
+    }
+
+    @Test
+    public void upgrade_countsExistingQuantitiesForTheBaseDevice() throws Exception {
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+        String sum = "SELECT SUM(" + CounterEntry.COLUMN_INCREMENTS + " - " + CounterEntry.COLUMN_DECREMENTS
+                + ") FROM " + CounterEntry.TABLE_NAME;
+        assertEquals(17, DatabaseUtils.longForQuery(db, sum + " WHERE " + CounterEntry.COLUMN_DEVICE
+                + " = '" + CounterEntry.BASE_DEVICE + "'", null));
+
+        // Local writes are counted for this device from then on
+        db.execSQL("UPDATE items SET quantity = 4 WHERE _id = 1");
+        assertEquals(11, DatabaseUtils.longForQuery(db, sum, null));
+        assertEquals(6, DatabaseUtils.longForQuery(db, "SELECT " + CounterEntry.COLUMN_DECREMENTS
+                + " FROM " + CounterEntry.TABLE_NAME + " WHERE " + CounterEntry.COLUMN_DEVICE
+                + " != '" + CounterEntry.BASE_DEVICE + "'", null));
+    }
+
+    @Test
+    public void upgrade_queriesUseTheNewIndexes() throws Exception {
+        SQLiteDatabase db = mHelper.getReadableDatabase();
+        assertQueryPlanUses(db, "SELECT * FROM " + ItemEntry.VIEW_NAME
+                + " ORDER BY " + ItemEntry.COLUMN_ITEM_NAME + ", " + ItemEntry._ID, "items_name_index");
+        assertQueryPlanUses(db, "SELECT * FROM " + ItemEntry.TABLE_NAME
+                + " WHERE " + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " = 1", "items_supplier_id_index");
+        assertQueryPlanUses(db, "SELECT * FROM " + ItemEntry.TABLE_NAME
+                + " WHERE " + ItemEntry.COLUMN_ITEM_QUANTITY + " < 5", "items_quantity_index");
+        assertQueryPlanUses(db, "SELECT * FROM " + ItemEntry.VIEW_NAME
+                + " WHERE " + ItemEntry.COLUMN_ITEM_SKU + " = 'A-1'", "items_sku_index");
+    }
+
+    // Returns "item_count|total_quantity|stock_value" of the totals table, for one supplier if given
+    private static String totals(SQLiteDatabase db, String table, Integer supplierId) {
+        return DatabaseUtils.stringForQuery(db, "SELECT " + StatsEntry.COLUMN_ITEM_COUNT
+                + " || '|' || " + StatsEntry.COLUMN_TOTAL_QUANTITY
+                + " || '|' || " + StatsEntry.COLUMN_STOCK_VALUE + " FROM " + table
+                + (supplierId == null ? "" : " WHERE " + StatsEntry.COLUMN_SUPPLIER_ID + " = " + supplierId),
+                null);
+    }
+
+    private static void assertRow(Cursor cursor, long id, String name, long price, int quantity,
+                                  String supplier, String email) {
+        assertEquals(id, cursor.getLong(0));
+        assertEquals(name, cursor.getString(1));
+        assertEquals(price, cursor.getLong(2));
+        assertEquals(quantity, cursor.getInt(3));
+        assertEquals(supplier, cursor.getString(4));
+        assertEquals(email, cursor.getString(5));
+    }
+
+    private static void assertQueryPlanUses(SQLiteDatabase db, String sql, String index) {
+        Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+        StringBuilder details = new StringBuilder();
+        try {
+            int detailColumn = plan.getColumnIndexOrThrow("detail");
+            while (plan.moveToNext()) {
+                details.append(plan.getString(detailColumn)).append('\n');
+            }
+        } finally {
+            plan.close();
+        }
+        assertTrue("Expected " + index + " in plan:\n" + details,
+                details.toString().contains(index));
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exports items from {@link ItemProvider} on a separate database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemExporterTest {
+
+    private static final String DATABASE_PREFIX = "export_test.";
+    private static final String DATABASE_NAME = "inventory.db";
+
+    // Most the used heap may grow while exporting the large table
+    private static final long MAX_HEAP_GROWTH = 8 * 1024 * 1024;
+
+    // Writer that throws the text away, but samples the used heap after every megabyte of it
+    private static class HeapSamplingWriter extends Writer {
+        private static final long SAMPLE_INTERVAL = 1024 * 1024;
+
+        long written;
+        long peakUsedHeap = usedHeap();
+
+        static long usedHeap() {
+            Runtime runtime = Runtime.getRuntime();
+            runtime.gc();
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int count) {
+            if ((written + count) / SAMPLE_INTERVAL != written / SAMPLE_INTERVAL) {
+                peakUsedHeap = Math.max(peakUsedHeap, usedHeap());
+            }
+            written += count;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private RenamingDelegatingContext mContext;
+    private MockContentResolver mResolver;
+
+    @Before
+    public void createProvider() throws Exception {
+        mResolver = new MockContentResolver();
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(),
+                DATABASE_PREFIX) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return mResolver;
+            }
+        };
+        mContext.deleteDatabase(DATABASE_NAME);
+
+        ProviderInfo info = new ProviderInfo();
+        info.authority = ItemContract.CONTENT_AUTHORITY;
+        ItemProvider provider = new ItemProvider();
+        provider.attachInfo(mContext, info);
+        mResolver.addProvider(ItemContract.CONTENT_AUTHORITY, provider);
+    }
+
+    @After
+    public void deleteDatabase() throws Exception {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    private static ContentValues item(String name, long price, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_NAME, name);
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, price);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(ItemEntry.COLUMN_ITEM_IMAGE, "");
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER, "Supplier");
+        values.put(ItemEntry.COLUMN_SUPPLIER_EMAIL, "supplier@example.com");
+        return values;
+    }
+
+    private void insertItems(int count) {
+        ContentValues[] chunk = new ContentValues[Math.min(count, 10000)];
+        for (int inserted = 0; inserted < count; inserted += chunk.length) {
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = item("Item " + (inserted + i), 199, i % 10);
+            }
+            mResolver.bulkInsert(ItemEntry.CONTENT_URI, chunk);
+        }
+    }
+
+    @Test
+    public void exportCsv_canBeImportedAgain() throws Exception {
+        mResolver.insert(ItemEntry.CONTENT_URI, item("Pen, blue", 150, 3));
+        mResolver.insert(ItemEntry.CONTENT_URI, item("12\" ruler", 300, 0));
+        StringWriter csv = new StringWriter();
+
+        long exported = new ItemExporter(mResolver, 1).exportTo(csv, ItemExporter.Format.CSV, null);
+
+        assertEquals(2, exported);
+        assertTrue(csv.toString().startsWith(
+                "_id,name,price,quantity,reorder_threshold,image,supplier,email,sku\r\n"));
+        ItemCsvImporter.Result result = new ItemCsvImporter(mResolver)
+                .importFrom(new StringReader(csv.toString()), 0, null);
+        assertEquals(2, result.imported);
+        assertEquals(0, result.rejected);
+    }
+
+    @Test
+    public void exportCsv_keepsTheSkusThroughAnImport() throws Exception {
+        ContentValues pen = item("Pen", 150, 3);
+        pen.put(ItemEntry.COLUMN_ITEM_SKU, "4006381333931");
+        mResolver.insert(ItemEntry.CONTENT_URI, pen);
+        mResolver.insert(ItemEntry.CONTENT_URI, item("Paper", 300, 1));
+        StringWriter csv = new StringWriter();
+        new ItemExporter(mResolver).exportTo(csv, ItemExporter.Format.CSV, null);
+
+        // Imported again next to the exported items, the copy can't have the SKU too
+        ItemCsvImporter.Result result = new ItemCsvImporter(mResolver)
+                .importFrom(new StringReader(csv.toString()), 0, null);
+        assertEquals(2, result.imported);
+        assertEquals(1, skuCount("4006381333931"));
+
+        // Imported into an empty table, the item gets its SKU back
+        mResolver.delete(ItemEntry.CONTENT_URI, null, null);
+        result = new ItemCsvImporter(mResolver).importFrom(new StringReader(csv.toString()), 0, null);
+        assertEquals(2, result.imported);
+        Cursor cursor = mResolver.query(ItemEntry.buildSkuUri("4006381333931"),
+                new String[]{ItemEntry.COLUMN_ITEM_NAME}, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("Pen", cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+        assertEquals(1, skuCount("4006381333931"));
+    }
+
+    private int skuCount(String sku) {
+        Cursor cursor = mResolver.query(ItemEntry.CONTENT_URI, new String[]{ItemEntry._ID},
+                ItemEntry.COLUMN_ITEM_SKU + " = ?", new String[]{sku}, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void exportJsonLines_writesOneObjectPerItem() throws Exception {
+        insertItems(5);
+        StringWriter jsonLines = new StringWriter();
+
+        new ItemExporter(mResolver, 2).exportTo(jsonLines, ItemExporter.Format.JSON_LINES, null);
+
+        String[] lines = jsonLines.toString().split("\n");
+        assertEquals(5, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            JSONObject line = new JSONObject(lines[i]);
+            assertEquals("Item " + i, line.getString(ItemEntry.COLUMN_ITEM_NAME));
+            assertEquals(199, line.getLong(ItemEntry.COLUMN_ITEM_PRICE));
+            assertEquals(i % 10, line.getInt(ItemEntry.COLUMN_ITEM_QUANTITY));
+        }
+    }
+
+    @Test(expected = OperationCanceledException.class)
+    public void export_stopsWhenCanceled() throws Exception {
+        insertItems(5);
+        CancellationSignal cancellationSignal = new CancellationSignal();
+        cancellationSignal.cancel();
+
+        new ItemExporter(mResolver).exportTo(new StringWriter(), ItemExporter.Format.CSV,
+                cancellationSignal);
+    }
+
+    @Test
+    public void export_keepsHeapBoundedForLargeTables() throws Exception {
+        insertItems(200000);
+        HeapSamplingWriter writer = new HeapSamplingWriter();
+        long usedHeapBefore = writer.peakUsedHeap;
+
+        long exported = new ItemExporter(mResolver).exportTo(writer, ItemExporter.Format.JSON_LINES, null);
+
+        assertEquals(200000, exported);
+        assertTrue("Heap grew by " + (writer.peakUsedHeap - usedHeapBefore) + " bytes",
+                writer.peakUsedHeap - usedHeapBefore < MAX_HEAP_GROWTH);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.pm.ProviderInfo;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pages through items from {@link ItemProvider} with {@link ItemPagedCursor} on a separate
+ * database. The test thread isn't the main thread, so pages are fetched as they are reached.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemPagedCursorTest {
+
+    private static final String TAG = "ItemPagedCursorTest";
+
+    private static final String DATABASE_PREFIX = "paged_cursor_test.";
+    private static final String DATABASE_NAME = "inventory.db";
+
+    private static final String[] PROJECTION = {ItemEntry._ID, ItemEntry.COLUMN_ITEM_NAME,
+            ItemEntry.COLUMN_ITEM_PRICE, ItemEntry.COLUMN_ITEM_QUANTITY, ItemEntry.COLUMN_ITEM_IMAGE};
+
+    // Most the used heap may grow while walking the large table
+    private static final long MAX_HEAP_GROWTH = 4 * 1024 * 1024;
+
+    // Longest the first page of the large table may take
+    private static final long MAX_FIRST_PAGE_MILLIS = 500;
+
+    private RenamingDelegatingContext mContext;
+    private MockContentResolver mResolver;
+
+    @Before
+    public void createProvider() throws Exception {
+        mResolver = new MockContentResolver();
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(),
+                DATABASE_PREFIX) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return mResolver;
+            }
+        };
+        mContext.deleteDatabase(DATABASE_NAME);
+
+        ProviderInfo info = new ProviderInfo();
+        info.authority = ItemContract.CONTENT_AUTHORITY;
+        ItemProvider provider = new ItemProvider();
+        provider.attachInfo(mContext, info);
+        mResolver.addProvider(ItemContract.CONTENT_AUTHORITY, provider);
+    }
+
+    @After
+    public void deleteDatabase() throws Exception {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    private static ContentValues item(String name, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_NAME, name);
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, 199);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(ItemEntry.COLUMN_ITEM_IMAGE, "");
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER, "Supplier");
+        values.put(ItemEntry.COLUMN_SUPPLIER_EMAIL, "supplier@example.com");
+        return values;
+    }
+
+    // Inserts items named so that their name order is their insertion order
+    private void insertItems(int count) {
+        ContentValues[] chunk = new ContentValues[Math.min(count, 10000)];
+        for (int inserted = 0; inserted < count; inserted += chunk.length) {
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = item(String.format(Locale.US, "Item %06d", inserted + i), i % 10);
+            }
+            mResolver.bulkInsert(ItemEntry.CONTENT_URI, chunk);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    public void largeTable_opensQuicklyAndKeepsHeapBounded() throws Exception {
+        insertItems(200000);
+        long usedHeapBefore = usedHeap();
+
+        long start = System.nanoTime();
+        ItemPagedCursor cursor = new ItemPagedCursor(mResolver, PROJECTION);
+        long firstPageMillis = (System.nanoTime() - start) / 1000000;
+        long peakUsedHeap = usedHeapBefore;
+        try {
+            assertEquals(200000, cursor.getCount());
+            for (int position = 0; position < 200000; position++) {
+                assertTrue(cursor.moveToPosition(position));
+                assertFalse(cursor.isPlaceholder());
+                if (position % 20000 == 0) {
+                    assertEquals(String.format(Locale.US, "Item %06d", position), cursor.getString(1));
+                    peakUsedHeap = Math.max(peakUsedHeap, usedHeap());
+                }
+            }
+            // Jumping back reads a page that was dropped again
+            assertTrue(cursor.moveToPosition(123));
+            assertEquals("Item 000123", cursor.getString(1));
+        } finally {
+            cursor.close();
+        }
+
+        Log.i(TAG, "First page of 200000 items in " + firstPageMillis + " ms, heap grew by "
+                + (peakUsedHeap - usedHeapBefore) + " bytes");
+        assertTrue("First page took " + firstPageMillis + " ms", firstPageMillis < MAX_FIRST_PAGE_MILLIS);
+        assertTrue("Heap grew by " + (peakUsedHeap - usedHeapBefore) + " bytes",
+                peakUsedHeap - usedHeapBefore < MAX_HEAP_GROWTH);
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.MovementEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the stock movements {@link ItemProvider} records for quantity changes, on a separate
+ * database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemProviderHistoryTest {
+
+    private static final String TAG = "ItemProviderHistoryTest";
+
+    private static final String DATABASE_PREFIX = "history_test.";
+    private static final String DATABASE_NAME = "inventory.db";
+
+    private RenamingDelegatingContext mContext;
+    private MockContentResolver mResolver;
+    private ItemProvider mProvider;
+
+    @Before
+    public void createProvider() throws Exception {
+        mResolver = new MockContentResolver();
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(),
+                DATABASE_PREFIX) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return mResolver;
+            }
+        };
+        mContext.deleteDatabase(DATABASE_NAME);
+
+        ProviderInfo info = new ProviderInfo();
+        info.authority = ItemContract.CONTENT_AUTHORITY;
+        mProvider = new ItemProvider();
+        mProvider.attachInfo(mContext, info);
+        mResolver.addProvider(ItemContract.CONTENT_AUTHORITY, mProvider);
+    }
+
+    @After
+    public void deleteDatabase() throws Exception {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    private long insertItem(String name, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_NAME, name);
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, 200);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(ItemEntry.COLUMN_ITEM_IMAGE, "content://" + name);
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER, "Acme");
+        values.put(ItemEntry.COLUMN_SUPPLIER_EMAIL, "orders@acme.test");
+        return ContentUris.parseId(mProvider.insert(ItemEntry.CONTENT_URI, values));
+    }
+
+    private void adjust(long id, int delta) {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_QUANTITY_DELTA, delta);
+        mProvider.update(ItemEntry.buildQuantityDeltaUri(id), values, null, null);
+    }
+
+    // Returns the history of an item oldest first, as "delta reason" joined by commas
+    private String history(long id) {
+        Cursor cursor = mProvider.query(ItemEntry.buildHistoryUri(id),
+                new String[]{MovementEntry.COLUMN_DELTA, MovementEntry.COLUMN_REASON}, null, null,
+                MovementEntry._ID);
+        StringBuilder history = new StringBuilder();
+        try {
+            while (cursor.moveToNext()) {
+                if (history.length() != 0) {
+                    history.append(", ");
+                }
+                history.append(cursor.getInt(0)).append(' ').append(cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return history.toString();
+    }
+
+    @Test
+    public void quantityChanges_areRecordedWithTheirReason() throws Exception {
+        long id = insertItem("Pen", 10);
+        adjust(id, -3);
+        adjust(id, 5);
+        ContentValues stocktake = new ContentValues();
+        stocktake.put(ItemEntry.COLUMN_ITEM_QUANTITY, 11);
+        stocktake.put(MovementEntry.COLUMN_REASON, "stocktake");
+        mProvider.update(ContentUris.withAppendedId(ItemEntry.CONTENT_URI, id), stocktake, null, null);
+
+        assertEquals("10 created, -3 sold, 5 received, -1 stocktake", history(id));
+    }
+
+    @Test
+    public void writesThatDontChangeTheQuantity_recordNothing() throws Exception {
+        long id = insertItem("Pen", 0);
+        adjust(id, -1);
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, 0);
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, 300);
+        mProvider.update(ContentUris.withAppendedId(ItemEntry.CONTENT_URI, id), values, null, null);
+
+        assertEquals("", history(id));
+    }
+
+    @Test
+    public void updateOfSeveralItems_recordsOneMovementPerChangedItem() throws Exception {
+        long pen = insertItem("Pen", 10);
+        long paper = insertItem("Paper", 4);
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, 4);
+        mProvider.update(ItemEntry.CONTENT_URI, values, null, null);
+
+        assertEquals("10 created, -6 edited", history(pen));
+        assertEquals("4 created", history(paper));
+    }
+
+    @Test
+    public void dailyHistory_includesCompactedDays() throws Exception {
+        long id = insertItem("Pen", 10);
+        adjust(id, -3);
+        Bundle extras = new Bundle();
+        extras.putLong(ItemContract.EXTRA_MOVEMENT_CUTOFF, System.currentTimeMillis() + MovementEntry.DAY_MILLIS);
+        Bundle result = mProvider.call(ItemContract.METHOD_COMPACT_MOVEMENTS, null, extras);
+        assertEquals(2, result.getInt(ItemContract.EXTRA_MOVEMENTS_COMPACTED));
+        adjust(id, -1);
+
+        Uri dailyUri = ItemEntry.buildDailyHistoryUri(id);
+        Cursor cursor = mProvider.query(dailyUri, new String[]{MovementEntry.COLUMN_DAY,
+                MovementEntry.COLUMN_QUANTITY_IN, MovementEntry.COLUMN_QUANTITY_OUT,
+                MovementEntry.COLUMN_MOVEMENT_COUNT}, null, null, null);
+        try {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(System.currentTimeMillis() / MovementEntry.DAY_MILLIS, cursor.getLong(0));
+            assertEquals(10, cursor.getInt(1));
+            assertEquals(4, cursor.getInt(2));
+            assertEquals(3, cursor.getInt(3));
+        } finally {
+            cursor.close();
+        }
+        assertEquals("-1 sold", history(id));
+    }
+
+    @Test
+    public void weekOfHistory_isReadThroughTheIndexInAMillionMovements() throws Exception {
+        // 1000 items with 1000 movements each, one every half day, so every week of an item
+        // holds exactly 14 movements
+        ItemDbHelper helper = new ItemDbHelper(mContext);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + MovementEntry.TABLE_NAME
+                + " (" + MovementEntry.COLUMN_ITEM_ID + ", " + MovementEntry.COLUMN_DELTA + ", "
+                + MovementEntry.COLUMN_REASON + ", " + MovementEntry.COLUMN_TIMESTAMP
+                + ") VALUES (?, -1, 'sold', ?)");
+        db.beginTransaction();
+        try {
+            for (long item = 1; item <= 1000; item++) {
+                for (long movement = 0; movement < 1000; movement++) {
+                    insert.bindLong(1, item);
+                    insert.bindLong(2, movement * MovementEntry.DAY_MILLIS / 2);
+                    insert.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        helper.close();
+
+        long week = 7 * MovementEntry.DAY_MILLIS;
+        long start = System.nanoTime();
+        for (int query = 0; query < 1000; query++) {
+            long from = (query % 70) * week;
+            Cursor cursor = mProvider.query(ItemEntry.buildHistoryUri(query + 1),
+                    new String[]{MovementEntry._ID},
+                    MovementEntry.COLUMN_TIMESTAMP + " >= ? AND " + MovementEntry.COLUMN_TIMESTAMP + " < ?",
+                    new String[]{String.valueOf(from), String.valueOf(from + week)}, null);
+            try {
+                assertEquals(14, cursor.getCount());
+            } finally {
+                cursor.close();
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1000000;
+        Log.i(TAG, "Read 1000 weeks of history from 1000000 movements in " + millis + " ms");
+    }
+
+    @Test
+    public void sales_raiseTheVelocityAndSortByDaysOfCover() throws Exception {
+        long slow = insertItem("Slow", 10);
+        long fast = insertItem("Fast", 10);
+        long idle = insertItem("Idle", 1);
+        adjust(slow, -1);
+        adjust(fast, -4);
+        adjust(fast, 2);
+
+        Cursor cursor = mProvider.query(ItemEntry.CONTENT_URI, new String[]{ItemEntry._ID,
+                ItemEntry.COLUMN_ITEM_SALES_VELOCITY}, null, null, ItemEntry.SORT_ORDER_DAYS_OF_COVER);
+        try {
+            assertEquals(3, cursor.getCount());
+            cursor.moveToPosition(0);
+            assertEquals(fast, cursor.getLong(0));
+            assertEquals(4.0 / SalesVelocity.TIME_CONSTANT_DAYS, cursor.getDouble(1), 1e-3);
+            cursor.moveToPosition(1);
+            assertEquals(slow, cursor.getLong(0));
+            assertTrue(cursor.getDouble(1) > 0);
+            cursor.moveToPosition(2);
+            assertEquals(idle, cursor.getLong(0));
+            assertEquals(0, cursor.getDouble(1), 0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
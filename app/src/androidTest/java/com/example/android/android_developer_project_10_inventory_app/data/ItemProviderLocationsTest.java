@@ -0,0 +1,184 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.LocationEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.StockEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks the stock {@link ItemProvider} keeps at every location, on a separate database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemProviderLocationsTest {
+
+    private static final String DATABASE_PREFIX = "locations_test.";
+    private static final String DATABASE_NAME = "inventory.db";
+
+    private RenamingDelegatingContext mContext;
+    private MockContentResolver mResolver;
+    private ItemProvider mProvider;
+
+    @Before
+    public void createProvider() throws Exception {
+        mResolver = new MockContentResolver();
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(),
+                DATABASE_PREFIX) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return mResolver;
+            }
+        };
+        mContext.deleteDatabase(DATABASE_NAME);
+
+        ProviderInfo info = new ProviderInfo();
+        info.authority = ItemContract.CONTENT_AUTHORITY;
+        mProvider = new ItemProvider();
+        mProvider.attachInfo(mContext, info);
+        mResolver.addProvider(ItemContract.CONTENT_AUTHORITY, mProvider);
+    }
+
+    @After
+    public void deleteDatabase() throws Exception {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    private long insertItem(String name, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_NAME, name);
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, 200);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(ItemEntry.COLUMN_ITEM_IMAGE, "content://" + name);
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER, "Acme");
+        values.put(ItemEntry.COLUMN_SUPPLIER_EMAIL, "orders@acme.test");
+        return ContentUris.parseId(mProvider.insert(ItemEntry.CONTENT_URI, values));
+    }
+
+    private long insertLocation(String name) {
+        ContentValues values = new ContentValues();
+        values.put(LocationEntry.COLUMN_LOCATION_NAME, name);
+        return ContentUris.parseId(mProvider.insert(LocationEntry.CONTENT_URI, values));
+    }
+
+    private Bundle transfer(long id, long from, long to, int units) {
+        Bundle extras = new Bundle();
+        extras.putLong(ItemContract.EXTRA_FROM_LOCATION, from);
+        extras.putLong(ItemContract.EXTRA_TO_LOCATION, to);
+        extras.putInt(ItemContract.EXTRA_QUANTITY, units);
+        return mProvider.call(ItemContract.METHOD_TRANSFER_STOCK, String.valueOf(id), extras);
+    }
+
+    // Returns the rows of the given URI as "column column" joined by commas
+    private String rows(Uri uri, String... columns) {
+        Cursor cursor = mProvider.query(uri, columns, null, null, null);
+        StringBuilder rows = new StringBuilder();
+        try {
+            while (cursor.moveToNext()) {
+                if (rows.length() != 0) {
+                    rows.append(", ");
+                }
+                for (int column = 0; column < columns.length; column++) {
+                    rows.append(column == 0 ? "" : " ").append(cursor.getString(column));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows.toString();
+    }
+
+    private int quantity(long id) {
+        return Integer.parseInt(rows(ContentUris.withAppendedId(ItemEntry.CONTENT_URI, id),
+                ItemEntry.COLUMN_ITEM_QUANTITY));
+    }
+
+    @Test
+    public void transfer_movesUnitsAndKeepsTheTotal() throws Exception {
+        long pen = insertItem("Pen", 10);
+        long paper = insertItem("Paper", 3);
+        long stockroom = insertLocation("Stockroom 1");
+
+        assertNotNull(transfer(pen, LocationEntry.DEFAULT_LOCATION_ID, stockroom, 4));
+
+        assertEquals("Front store 6, Stockroom 1 4", rows(ItemEntry.buildStockUri(pen),
+                StockEntry.COLUMN_LOCATION, StockEntry.COLUMN_QUANTITY));
+        assertEquals("Front store 9, Stockroom 1 4", rows(LocationEntry.CONTENT_URI,
+                LocationEntry.COLUMN_LOCATION_NAME, LocationEntry.COLUMN_LOCATION_QUANTITY));
+        assertEquals(10, quantity(pen));
+        assertEquals(3, quantity(paper));
+    }
+
+    @Test
+    public void transfer_isRejectedWithoutEnoughUnitsOrDestination() throws Exception {
+        long pen = insertItem("Pen", 10);
+        long stockroom = insertLocation("Stockroom 1");
+
+        assertNull(transfer(pen, LocationEntry.DEFAULT_LOCATION_ID, stockroom, 11));
+        assertNull(transfer(pen, stockroom, LocationEntry.DEFAULT_LOCATION_ID, 1));
+        assertNull(transfer(pen, LocationEntry.DEFAULT_LOCATION_ID, stockroom + 1, 1));
+
+        assertEquals("Front store 10", rows(ItemEntry.buildStockUri(pen),
+                StockEntry.COLUMN_LOCATION, StockEntry.COLUMN_QUANTITY));
+    }
+
+    @Test
+    public void quantityDelta_drawsFromOtherLocationsAndStopsAtZero() throws Exception {
+        long pen = insertItem("Pen", 10);
+        long stockroom = insertLocation("Stockroom 1");
+        transfer(pen, LocationEntry.DEFAULT_LOCATION_ID, stockroom, 8);
+
+        ContentValues sale = new ContentValues();
+        sale.put(ItemEntry.COLUMN_QUANTITY_DELTA, -3);
+        assertEquals(1, mProvider.update(ItemEntry.buildQuantityDeltaUri(pen), sale, null, null));
+        sale.put(ItemEntry.COLUMN_QUANTITY_DELTA, -8);
+        assertEquals(0, mProvider.update(ItemEntry.buildQuantityDeltaUri(pen), sale, null, null));
+
+        assertEquals("Front store 0, Stockroom 1 7", rows(ItemEntry.buildStockUri(pen),
+                StockEntry.COLUMN_LOCATION, StockEntry.COLUMN_QUANTITY));
+        assertEquals(7, quantity(pen));
+    }
+
+    @Test
+    public void absoluteQuantity_drawsFromOtherLocationsBeforeGoingBelowZero() throws Exception {
+        long pen = insertItem("Pen", 10);
+        long stockroom = insertLocation("Stockroom 1");
+        long backroom = insertLocation("Stockroom 2");
+        transfer(pen, LocationEntry.DEFAULT_LOCATION_ID, stockroom, 5);
+        transfer(pen, LocationEntry.DEFAULT_LOCATION_ID, backroom, 4);
+
+        ContentValues stocktake = new ContentValues();
+        stocktake.put(ItemEntry.COLUMN_ITEM_QUANTITY, 3);
+        assertEquals(1, mProvider.update(ContentUris.withAppendedId(ItemEntry.CONTENT_URI, pen),
+                stocktake, null, null));
+
+        assertEquals("Front store 0, Stockroom 1 0, Stockroom 2 3", rows(ItemEntry.buildStockUri(pen),
+                StockEntry.COLUMN_LOCATION, StockEntry.COLUMN_QUANTITY));
+        assertEquals(3, quantity(pen));
+    }
+
+    @Test
+    public void insertLocation_rejectsDuplicateNames() throws Exception {
+        ContentValues values = new ContentValues();
+        values.put(LocationEntry.COLUMN_LOCATION_NAME, LocationEntry.DEFAULT_LOCATION_NAME);
+        assertNull(mProvider.insert(LocationEntry.CONTENT_URI, values));
+    }
+}
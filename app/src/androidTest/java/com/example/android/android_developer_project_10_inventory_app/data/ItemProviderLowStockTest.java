@@ -0,0 +1,158 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the low-stock set {@link ItemProvider} keeps up to date as quantities change, on a
+ * separate database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemProviderLowStockTest {
+
+    private static final String TAG = "ItemProviderLowStockTest";
+
+    private static final String DATABASE_PREFIX = "low_stock_test.";
+    private static final String DATABASE_NAME = "inventory.db";
+
+    private static final int REORDER_THRESHOLD = 10;
+    private static final int SALE_COUNT = 5000;
+
+    private RenamingDelegatingContext mContext;
+    private MockContentResolver mResolver;
+    private ItemProvider mProvider;
+
+    @Before
+    public void createProvider() throws Exception {
+        mResolver = new MockContentResolver();
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(),
+                DATABASE_PREFIX) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return mResolver;
+            }
+        };
+        mContext.deleteDatabase(DATABASE_NAME);
+
+        ProviderInfo info = new ProviderInfo();
+        info.authority = ItemContract.CONTENT_AUTHORITY;
+        mProvider = new ItemProvider();
+        mProvider.attachInfo(mContext, info);
+        mResolver.addProvider(ItemContract.CONTENT_AUTHORITY, mProvider);
+    }
+
+    @After
+    public void deleteDatabase() throws Exception {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    private static ContentValues item(String name, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_NAME, name);
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, 200);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(ItemEntry.COLUMN_ITEM_IMAGE, "");
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER, "Acme");
+        values.put(ItemEntry.COLUMN_SUPPLIER_EMAIL, "orders@acme.test");
+        values.put(ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD, REORDER_THRESHOLD);
+        return values;
+    }
+
+    // Inserts the items at the given indices of quantities, each with the quantity stored at its
+    // index. Items are inserted in index order, so the ID of an item is its index + 1.
+    private void insertItems(int[] quantities, int first, int count) {
+        for (int inserted = 0; inserted < count; ) {
+            ContentValues[] chunk = new ContentValues[Math.min(count - inserted, 10000)];
+            for (int i = 0; i < chunk.length; i++) {
+                int index = first + inserted + i;
+                chunk[i] = item("Item " + index, quantities[index]);
+            }
+            assertEquals(chunk.length, mProvider.bulkInsert(ItemEntry.CONTENT_URI, chunk));
+            inserted += chunk.length;
+        }
+    }
+
+    // Sells one to three units of random items among the first itemCount, as the list's sell
+    // button would, keeping the expected quantities in step. Returns the microseconds per sale.
+    private long sell(int[] quantities, int itemCount, Random random) {
+        ContentValues values = new ContentValues();
+        long start = System.nanoTime();
+        for (int sale = 0; sale < SALE_COUNT; sale++) {
+            int index = random.nextInt(itemCount);
+            int delta = -1 - random.nextInt(3);
+            values.put(ItemEntry.COLUMN_QUANTITY_DELTA, delta);
+            int updated = mProvider.update(ItemEntry.buildQuantityDeltaUri(index + 1), values, null, null);
+            if (quantities[index] + delta >= 0) {
+                assertEquals(1, updated);
+                quantities[index] += delta;
+            } else {
+                assertEquals(0, updated);
+            }
+        }
+        return (System.nanoTime() - start) / 1000 / SALE_COUNT;
+    }
+
+    // Checks that the low-stock URI lists exactly the items at or below the threshold
+    private void assertLowStock(int[] quantities, int itemCount) {
+        boolean[] expected = new boolean[itemCount];
+        int expectedCount = 0;
+        for (int i = 0; i < itemCount; i++) {
+            expected[i] = quantities[i] <= REORDER_THRESHOLD;
+            if (expected[i]) {
+                expectedCount++;
+            }
+        }
+
+        Cursor cursor = mProvider.query(ItemEntry.CONTENT_LOW_STOCK_URI, new String[]{ItemEntry._ID},
+                null, null, null);
+        try {
+            assertEquals(expectedCount, cursor.getCount());
+            while (cursor.moveToNext()) {
+                assertTrue("Item " + cursor.getLong(0), expected[(int) cursor.getLong(0) - 1]);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void sales_keepTheLowStockSetCurrentInAHundredThousandItems() throws Exception {
+        Random random = new Random(14);
+        int[] quantities = new int[100000];
+        for (int i = 0; i < quantities.length; i++) {
+            quantities[i] = random.nextInt(30);
+        }
+
+        insertItems(quantities, 0, 1000);
+        assertLowStock(quantities, 1000);
+        long smallMicros = sell(quantities, 1000, random);
+        assertLowStock(quantities, 1000);
+
+        insertItems(quantities, 1000, quantities.length - 1000);
+        assertLowStock(quantities, quantities.length);
+        long largeMicros = sell(quantities, quantities.length, random);
+        assertLowStock(quantities, quantities.length);
+
+        Log.i(TAG, SALE_COUNT + " random sales: " + smallMicros + " us each in 1000 items, "
+                + largeMicros + " us each in " + quantities.length + " items");
+    }
+}
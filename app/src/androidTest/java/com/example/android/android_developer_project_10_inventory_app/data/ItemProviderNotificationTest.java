@@ -0,0 +1,268 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.pm.ProviderInfo;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.AdjustmentBatchEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the change notifications {@link ItemProvider} sends for each kind of write, on a
+ * separate database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemProviderNotificationTest {
+
+    private static final String TAG = "ItemProviderNotificationTest";
+
+    private static final String DATABASE_PREFIX = "notification_test.";
+    private static final String DATABASE_NAME = "inventory.db";
+
+    // Resolver that records the URIs it is asked to notify instead of notifying them
+    private static class RecordingResolver extends MockContentResolver {
+        final List<Uri> notifications = Collections.synchronizedList(new ArrayList<Uri>());
+
+        @Override
+        public void notifyChange(Uri uri, ContentObserver observer, boolean syncToNetwork) {
+            notifications.add(uri);
+        }
+    }
+
+    private RenamingDelegatingContext mContext;
+    private RecordingResolver mResolver;
+    private ItemProvider mProvider;
+
+    @Before
+    public void createProvider() throws Exception {
+        mResolver = new RecordingResolver();
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(),
+                DATABASE_PREFIX) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return mResolver;
+            }
+        };
+        mContext.deleteDatabase(DATABASE_NAME);
+
+        ProviderInfo info = new ProviderInfo();
+        info.authority = ItemContract.CONTENT_AUTHORITY;
+        mProvider = new ItemProvider();
+        mProvider.attachInfo(mContext, info);
+        mResolver.addProvider(ItemContract.CONTENT_AUTHORITY, mProvider);
+    }
+
+    @After
+    public void deleteDatabase() throws Exception {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    private static ContentValues item(String name, long price, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_NAME, name);
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, price);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(ItemEntry.COLUMN_ITEM_IMAGE, "content://" + name);
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER, "Acme");
+        values.put(ItemEntry.COLUMN_SUPPLIER_EMAIL, "orders@acme.test");
+        return values;
+    }
+
+    // Inserts an item and forgets the notification of the insert
+    private long insertItem(String name, long price, int quantity) {
+        Uri uri = mProvider.insert(ItemEntry.CONTENT_URI, item(name, price, quantity));
+        mResolver.notifications.clear();
+        return ContentUris.parseId(uri);
+    }
+
+    private void assertNotified(Uri... expected) {
+        assertEquals(Arrays.asList(expected), mResolver.notifications);
+    }
+
+    @Test
+    public void insert_notifiesTheNewItem() throws Exception {
+        Uri uri = mProvider.insert(ItemEntry.CONTENT_URI, item("Pen", 200, 10));
+        assertNotified(uri);
+    }
+
+    @Test
+    public void bulkInsert_notifiesOnce() throws Exception {
+        mProvider.bulkInsert(ItemEntry.CONTENT_URI, new ContentValues[]{
+                item("Pen", 200, 10), item("Pencil", 125, 0), item("Paper", 450, 7)});
+        assertNotified(ItemEntry.CONTENT_URI);
+    }
+
+    @Test
+    public void bulkInsert_ofTenThousandItemsBeatsSingleInserts() throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < 10000; i++) {
+            mProvider.insert(ItemEntry.CONTENT_URI, item("Single " + i, 200, i % 10));
+        }
+        long singleMillis = (System.nanoTime() - start) / 1000000;
+        assertEquals(10000, mResolver.notifications.size());
+        mResolver.notifications.clear();
+
+        ContentValues[] values = new ContentValues[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = item("Bulk " + i, 200, i % 10);
+        }
+        start = System.nanoTime();
+        assertEquals(10000, mProvider.bulkInsert(ItemEntry.CONTENT_URI, values));
+        long bulkMillis = (System.nanoTime() - start) / 1000000;
+
+        Log.i(TAG, "10000 items: single inserts " + singleMillis + " ms, bulkInsert " + bulkMillis + " ms");
+        assertNotified(ItemEntry.CONTENT_URI);
+        assertTrue("bulkInsert took " + bulkMillis + " ms, single inserts " + singleMillis + " ms",
+                bulkMillis < singleMillis);
+    }
+
+    @Test
+    public void update_singleChangedFieldNotifiesTheField() throws Exception {
+        long id = insertItem("Pen", 200, 10);
+        // The editor saves every field, even if only the quantity changed
+        assertEquals(1, mProvider.update(ContentUris.withAppendedId(ItemEntry.CONTENT_URI, id),
+                item("Pen", 200, 9), null, null));
+        assertNotified(ItemEntry.buildFieldUri(id, ItemEntry.COLUMN_ITEM_QUANTITY));
+    }
+
+    @Test
+    public void update_severalChangedFieldsNotifyTheItem() throws Exception {
+        long id = insertItem("Pen", 200, 10);
+        Uri uri = ContentUris.withAppendedId(ItemEntry.CONTENT_URI, id);
+        assertEquals(1, mProvider.update(uri, item("Pen", 250, 9), null, null));
+        assertNotified(uri);
+    }
+
+    @Test
+    public void update_unchangedValuesDontNotify() throws Exception {
+        long id = insertItem("Pen", 200, 10);
+        assertEquals(1, mProvider.update(ContentUris.withAppendedId(ItemEntry.CONTENT_URI, id),
+                item("Pen", 200, 10), null, null));
+        assertNotified();
+    }
+
+    @Test
+    public void update_severalItemsNotifiesOnce() throws Exception {
+        insertItem("Pen", 200, 10);
+        insertItem("Pencil", 125, 0);
+        insertItem("Paper", 450, 7);
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, 7);
+        assertEquals(3, mProvider.update(ItemEntry.CONTENT_URI, values, null, null));
+        assertNotified(ItemEntry.CONTENT_URI);
+    }
+
+    @Test
+    public void quantityDelta_notifiesTheQuantity() throws Exception {
+        long id = insertItem("Pen", 200, 10);
+        ContentValues delta = new ContentValues();
+        delta.put(ItemEntry.COLUMN_QUANTITY_DELTA, -1);
+        assertEquals(1, mProvider.update(ItemEntry.buildQuantityDeltaUri(id), delta, null, null));
+        assertNotified(ItemEntry.buildFieldUri(id, ItemEntry.COLUMN_ITEM_QUANTITY));
+    }
+
+    @Test
+    public void applyBatch_onOneItemNotifiesItOnce() throws Exception {
+        long id = insertItem("Pen", 200, 10);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            operations.add(ContentProviderOperation.newUpdate(ItemEntry.buildQuantityDeltaUri(id))
+                    .withValue(ItemEntry.COLUMN_QUANTITY_DELTA, -1)
+                    .build());
+        }
+        mProvider.applyBatch(operations);
+        assertNotified(ItemEntry.buildFieldUri(id, ItemEntry.COLUMN_ITEM_QUANTITY));
+    }
+
+    @Test
+    public void applyBatch_onSeveralItemsNotifiesOnce() throws Exception {
+        long penId = insertItem("Pen", 200, 10);
+        long paperId = insertItem("Paper", 450, 7);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newUpdate(ItemEntry.buildQuantityDeltaUri(penId))
+                .withValue(ItemEntry.COLUMN_QUANTITY_DELTA, -1)
+                .build());
+        operations.add(ContentProviderOperation.newUpdate(ItemEntry.buildQuantityDeltaUri(paperId))
+                .withValue(ItemEntry.COLUMN_QUANTITY_DELTA, 2)
+                .build());
+        mProvider.applyBatch(operations);
+        assertNotified(ItemEntry.CONTENT_URI);
+    }
+
+    // The batch StockAdjustmentQueue writes: the batch ID, then the deltas
+    private static ArrayList<ContentProviderOperation> adjustmentBatch(String batchId, long id, int delta) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(AdjustmentBatchEntry.CONTENT_URI)
+                .withValue(AdjustmentBatchEntry.COLUMN_BATCH_ID, batchId)
+                .build());
+        operations.add(ContentProviderOperation.newUpdate(ItemEntry.buildQuantityDeltaUri(id))
+                .withValue(ItemEntry.COLUMN_QUANTITY_DELTA, delta)
+                .build());
+        return operations;
+    }
+
+    private int countBatches(String batchId) {
+        Cursor cursor = mProvider.query(AdjustmentBatchEntry.CONTENT_URI, null,
+                AdjustmentBatchEntry.COLUMN_BATCH_ID + "=?", new String[]{batchId}, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void applyBatch_recordsOnlyTheLastBatchIdAndDoesntNotifyIt() throws Exception {
+        long id = insertItem("Pen", 200, 10);
+        mProvider.applyBatch(adjustmentBatch("first", id, -1));
+        mProvider.applyBatch(adjustmentBatch("second", id, -2));
+
+        assertEquals(0, countBatches("first"));
+        assertEquals(1, countBatches("second"));
+        Uri quantityUri = ItemEntry.buildFieldUri(id, ItemEntry.COLUMN_ITEM_QUANTITY);
+        assertNotified(quantityUri, quantityUri);
+    }
+
+    @Test
+    public void applyBatch_reportsADeltaBelowZeroAsUpdatingNoRow() throws Exception {
+        long id = insertItem("Pen", 200, 2);
+        ContentProviderResult[] results = mProvider.applyBatch(adjustmentBatch("sale", id, -3));
+
+        assertEquals(Integer.valueOf(0), results[1].count);
+        // The batch is still recorded, as it was committed
+        assertEquals(1, countBatches("sale"));
+        assertNotified();
+    }
+
+    @Test
+    public void delete_notifiesTheItem() throws Exception {
+        long id = insertItem("Pen", 200, 10);
+        Uri uri = ContentUris.withAppendedId(ItemEntry.CONTENT_URI, id);
+        assertEquals(1, mProvider.delete(uri, null, null));
+        assertNotified(uri);
+    }
+}
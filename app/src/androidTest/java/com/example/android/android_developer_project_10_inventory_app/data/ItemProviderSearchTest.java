@@ -0,0 +1,136 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Searches items through {@link ItemProvider} on a separate database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemProviderSearchTest {
+
+    private static final String TAG = "ItemProviderSearchTest";
+
+    private static final String DATABASE_PREFIX = "search_test.";
+    private static final String DATABASE_NAME = "inventory.db";
+
+    private static final String[] COLOURS = {"Red", "Blue", "Green", "Black", "White",
+            "Yellow", "Orange", "Purple", "Grey", "Brown"};
+    private static final String[] KINDS = {"Pen", "Pencil", "Paper", "Folder", "Stapler",
+            "Marker", "Eraser", "Ruler", "Notebook", "Envelope"};
+
+    // Most search results the list shows at once, as in MainActivity
+    private static final int SEARCH_RESULT_LIMIT = 200;
+
+    // Longest the median search of the large table may take
+    private static final long MAX_SEARCH_MILLIS = 20;
+
+    private RenamingDelegatingContext mContext;
+    private MockContentResolver mResolver;
+
+    @Before
+    public void createProvider() throws Exception {
+        mResolver = new MockContentResolver();
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(),
+                DATABASE_PREFIX) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return mResolver;
+            }
+        };
+        mContext.deleteDatabase(DATABASE_NAME);
+
+        ProviderInfo info = new ProviderInfo();
+        info.authority = ItemContract.CONTENT_AUTHORITY;
+        ItemProvider provider = new ItemProvider();
+        provider.attachInfo(mContext, info);
+        mResolver.addProvider(ItemContract.CONTENT_AUTHORITY, provider);
+    }
+
+    @After
+    public void deleteDatabase() throws Exception {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    // Names the item by its colour, kind and number, so each word matches a known share of items
+    private static ContentValues item(int number) {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_NAME, String.format(Locale.US, "%s %s %06d",
+                COLOURS[number % COLOURS.length], KINDS[number / COLOURS.length % KINDS.length], number));
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, 199);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, number % 10);
+        values.put(ItemEntry.COLUMN_ITEM_IMAGE, "");
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER, "Supplier " + number % 100);
+        values.put(ItemEntry.COLUMN_SUPPLIER_EMAIL, "supplier@example.com");
+        return values;
+    }
+
+    // Returns how many items the search finds, reading every row the list would show
+    private int search(String text) {
+        Uri uri = ItemEntry.buildSearchUri(text).buildUpon()
+                .appendQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT,
+                        String.valueOf(SEARCH_RESULT_LIMIT))
+                .build();
+        Cursor cursor = mResolver.query(uri, new String[]{ItemEntry._ID, ItemEntry.COLUMN_ITEM_NAME},
+                null, null, ItemEntry.COLUMN_ITEM_NAME + ", " + ItemEntry._ID);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void search_findsItemsInAHundredThousandWithinTheLatencyTarget() throws Exception {
+        ContentValues[] chunk = new ContentValues[10000];
+        for (int first = 0; first < 100000; first += chunk.length) {
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = item(first + i);
+            }
+            assertEquals(chunk.length, mResolver.bulkInsert(ItemEntry.CONTENT_URI, chunk));
+        }
+
+        // Warm up the statement cache and the database pages before timing
+        assertEquals(1, search("red pen 000000"));
+
+        String[] queries = {"blue pen", "gre", "00421", "supplier 5 marker", "black notebook 0999",
+                "ora", "white ruler", "042137"};
+        int[] expected = {SEARCH_RESULT_LIMIT, SEARCH_RESULT_LIMIT, 10, SEARCH_RESULT_LIMIT, 1,
+                SEARCH_RESULT_LIMIT, SEARCH_RESULT_LIMIT, 1};
+        long[] micros = new long[queries.length * 10];
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < queries.length; i++) {
+                long start = System.nanoTime();
+                assertEquals(queries[i], expected[i], search(queries[i]));
+                micros[round * queries.length + i] = (System.nanoTime() - start) / 1000;
+            }
+        }
+
+        Arrays.sort(micros);
+        long medianMicros = micros[micros.length / 2];
+        Log.i(TAG, "Search in 100000 items: median " + medianMicros + " us, slowest "
+                + micros[micros.length - 1] + " us");
+        assertTrue("Median search took " + medianMicros + " us", medianMicros < MAX_SEARCH_MILLIS * 1000);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that {@link ItemProvider} addresses items by their SKU, on a separate database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemProviderSkuTest {
+
+    private static final String TAG = "ItemProviderSkuTest";
+
+    private static final String DATABASE_PREFIX = "sku_test.";
+    private static final String DATABASE_NAME = "inventory.db";
+
+    private RenamingDelegatingContext mContext;
+    private MockContentResolver mResolver;
+    private ItemProvider mProvider;
+
+    @Before
+    public void createProvider() throws Exception {
+        mResolver = new MockContentResolver();
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(),
+                DATABASE_PREFIX) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return mResolver;
+            }
+        };
+        mContext.deleteDatabase(DATABASE_NAME);
+
+        ProviderInfo info = new ProviderInfo();
+        info.authority = ItemContract.CONTENT_AUTHORITY;
+        mProvider = new ItemProvider();
+        mProvider.attachInfo(mContext, info);
+        mResolver.addProvider(ItemContract.CONTENT_AUTHORITY, mProvider);
+    }
+
+    @After
+    public void deleteDatabase() throws Exception {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    private static ContentValues item(String name, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_NAME, name);
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, 200);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(ItemEntry.COLUMN_ITEM_IMAGE, "content://" + name);
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER, "Acme");
+        values.put(ItemEntry.COLUMN_SUPPLIER_EMAIL, "orders@acme.test");
+        return values;
+    }
+
+    // Returns "name quantity" of the item with the given SKU, or null if there is none
+    private String itemForSku(String sku) {
+        Cursor cursor = mProvider.query(ItemEntry.buildSkuUri(sku), new String[]{
+                ItemEntry.COLUMN_ITEM_NAME, ItemEntry.COLUMN_ITEM_QUANTITY}, null, null, null);
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            assertEquals(1, cursor.getCount());
+            return cursor.getString(0) + " " + cursor.getInt(1);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void query_findsTheItemWithTheSku() throws Exception {
+        ContentValues pen = item("Pen", 10);
+        pen.put(ItemEntry.COLUMN_ITEM_SKU, "4006381333931");
+        mProvider.insert(ItemEntry.CONTENT_URI, pen);
+        mProvider.insert(ItemEntry.CONTENT_URI, item("Paper", 4));
+
+        assertEquals("Pen 10", itemForSku("4006381333931"));
+        assertEquals(null, itemForSku("4006381333932"));
+    }
+
+    @Test
+    public void insertToSkuUri_createsTheItemThenUpdatesIt() throws Exception {
+        Uri first = mProvider.insert(ItemEntry.buildSkuUri("A/1"), item("Pen", 10));
+        ContentValues restock = new ContentValues();
+        restock.put(ItemEntry.COLUMN_ITEM_QUANTITY, 25);
+        Uri second = mProvider.insert(ItemEntry.buildSkuUri("A/1"), restock);
+
+        assertEquals(first, second);
+        assertEquals("Pen 25", itemForSku("A/1"));
+        assertEquals(ItemEntry.CONTENT_ITEM_TYPE, mProvider.getType(ItemEntry.buildSkuUri("A/1")));
+    }
+
+    @Test
+    public void quantityDeltaBySku_adjustsTheItem() throws Exception {
+        mProvider.insert(ItemEntry.buildSkuUri("A-1"), item("Pen", 10));
+        ContentValues scan = new ContentValues();
+        scan.put(ItemEntry.COLUMN_QUANTITY_DELTA, -1);
+
+        assertEquals(1, mProvider.update(ItemEntry.buildSkuQuantityDeltaUri("A-1"), scan, null, null));
+        assertEquals(0, mProvider.update(ItemEntry.buildSkuQuantityDeltaUri("B-2"), scan, null, null));
+        assertEquals("Pen 9", itemForSku("A-1"));
+    }
+
+    @Test
+    public void skuLookupsAndDeltas_useTheIndexInHalfAMillionItems() throws Exception {
+        for (int first = 0; first < 500000; first += 10000) {
+            ContentValues[] chunk = new ContentValues[10000];
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = withSku(item("Item " + (first + i), 10), "SKU-" + (first + i));
+            }
+            assertEquals(chunk.length, mProvider.bulkInsert(ItemEntry.CONTENT_URI, chunk));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("Item " + (i * 499) + " 10", itemForSku("SKU-" + (i * 499)));
+        }
+        long lookupMicros = (System.nanoTime() - start) / 1000000;
+
+        ContentValues scan = new ContentValues();
+        scan.put(ItemEntry.COLUMN_QUANTITY_DELTA, -1);
+        start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(1, mProvider.update(ItemEntry.buildSkuQuantityDeltaUri("SKU-" + (i * 499)),
+                    scan, null, null));
+        }
+        long deltaMicros = (System.nanoTime() - start) / 1000000;
+
+        // The same lookup by image, which has no index, for comparison
+        start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            Cursor cursor = mProvider.query(ItemEntry.CONTENT_URI, new String[]{ItemEntry._ID},
+                    ItemEntry.COLUMN_ITEM_IMAGE + " = ?", new String[]{"content://Item " + (i * 49999)}, null);
+            try {
+                assertEquals(1, cursor.getCount());
+            } finally {
+                cursor.close();
+            }
+        }
+        long scanMicros = (System.nanoTime() - start) / 10000;
+
+        assertEquals("Item 0 9", itemForSku("SKU-0"));
+        Log.i(TAG, "In 500000 items: SKU lookup " + lookupMicros + " us, quantity delta by SKU "
+                + deltaMicros + " us, unindexed lookup by image " + scanMicros + " us");
+        assertTrue("SKU lookup " + lookupMicros + " us, unindexed lookup " + scanMicros + " us",
+                lookupMicros < scanMicros);
+    }
+
+    @Test
+    public void duplicateSku_isRejected() throws Exception {
+        mProvider.insert(ItemEntry.buildSkuUri("A-1"), item("Pen", 10));
+        Uri paper = mProvider.insert(ItemEntry.buildSkuUri("B-2"), item("Paper", 4));
+        assertEquals(null, mProvider.insert(ItemEntry.CONTENT_URI, withSku(item("Pencil", 1), "A-1")));
+
+        try {
+            mProvider.update(paper, withSku(new ContentValues(), "A-1"), null, null);
+            fail("Expected the SKU of another item to be rejected");
+        } catch (SQLiteConstraintException expected) {
+        }
+        assertEquals("Paper 4", itemForSku("B-2"));
+        assertEquals(2, ContentUris.parseId(paper));
+    }
+
+    private static ContentValues withSku(ContentValues values, String sku) {
+        values.put(ItemEntry.COLUMN_ITEM_SKU, sku);
+        return values;
+    }
+}
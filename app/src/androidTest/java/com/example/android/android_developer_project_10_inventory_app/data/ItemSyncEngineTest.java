@@ -0,0 +1,275 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Syncs two devices, each a provider on its own database, through an {@link InMemorySyncServer}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemSyncEngineTest {
+
+    private static final String DATABASE_NAME = "inventory.db";
+
+    // One device: a provider on a database of its own, and its resolver
+    private static class Device {
+        final RenamingDelegatingContext context;
+        final MockContentResolver resolver = new MockContentResolver();
+
+        Device(String prefix) {
+            context = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(), prefix) {
+                @Override
+                public ContentResolver getContentResolver() {
+                    return resolver;
+                }
+            };
+            context.deleteDatabase(DATABASE_NAME);
+
+            ProviderInfo info = new ProviderInfo();
+            info.authority = ItemContract.CONTENT_AUTHORITY;
+            ItemProvider provider = new ItemProvider();
+            provider.attachInfo(context, info);
+            resolver.addProvider(ItemContract.CONTENT_AUTHORITY, provider);
+        }
+    }
+
+    private Device mPhone;
+    private Device mTablet;
+    private InMemorySyncServer mServer;
+
+    @Before
+    public void createDevices() throws Exception {
+        mPhone = new Device("sync_test_phone.");
+        mTablet = new Device("sync_test_tablet.");
+        mServer = new InMemorySyncServer();
+    }
+
+    @After
+    public void deleteDatabases() throws Exception {
+        mPhone.context.deleteDatabase(DATABASE_NAME);
+        mTablet.context.deleteDatabase(DATABASE_NAME);
+    }
+
+    private ItemSyncEngine.Result sync(Device device) throws Exception {
+        return new ItemSyncEngine(device.resolver, mServer).sync();
+    }
+
+    private static ContentValues item(String name, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_ITEM_NAME, name);
+        values.put(ItemEntry.COLUMN_ITEM_PRICE, 199);
+        values.put(ItemEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(ItemEntry.COLUMN_ITEM_IMAGE, "");
+        values.put(ItemEntry.COLUMN_ITEM_SUPPLIER, "Supplier");
+        values.put(ItemEntry.COLUMN_SUPPLIER_EMAIL, "supplier@example.com");
+        return values;
+    }
+
+    private static void insertItems(Device device, int count) {
+        ContentValues[] chunk = new ContentValues[Math.min(count, 10000)];
+        for (int inserted = 0; inserted < count; inserted += chunk.length) {
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = item("Item " + (inserted + i), i % 10);
+            }
+            device.resolver.bulkInsert(ItemEntry.CONTENT_URI, chunk);
+        }
+    }
+
+    // Returns the _id of the item with the given name on the device
+    private static long findItem(Device device, String name) {
+        Cursor cursor = device.resolver.query(ItemEntry.CONTENT_URI, new String[]{ItemEntry._ID},
+                ItemEntry.COLUMN_ITEM_NAME + "=?", new String[]{name}, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static int quantity(Device device, String name) {
+        Cursor cursor = device.resolver.query(ContentUris.withAppendedId(ItemEntry.CONTENT_URI,
+                findItem(device, name)), new String[]{ItemEntry.COLUMN_ITEM_QUANTITY}, null, null, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static long price(Device device, String name) {
+        Cursor cursor = device.resolver.query(ContentUris.withAppendedId(ItemEntry.CONTENT_URI,
+                findItem(device, name)), new String[]{ItemEntry.COLUMN_ITEM_PRICE}, null, null, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void adjust(Device device, String name, int delta) {
+        ContentValues values = new ContentValues();
+        values.put(ItemEntry.COLUMN_QUANTITY_DELTA, delta);
+        assertEquals(1, device.resolver.update(ItemEntry.buildQuantityDeltaUri(findItem(device, name)),
+                values, null, null));
+    }
+
+    private static int count(Device device) {
+        Cursor cursor = device.resolver.query(ItemEntry.CONTENT_URI, new String[]{ItemEntry._ID},
+                null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void sync_afterFullSyncOnlyMovesChangedRows() throws Exception {
+        insertItems(mPhone, 100000);
+        assertEquals(100000, sync(mPhone).pushed);
+        assertEquals(100000, sync(mTablet).applied);
+        assertEquals(100000, count(mTablet));
+        long rowsPushed = mServer.getRowsPushed();
+        long rowsPulled = mServer.getRowsPulled();
+        long fullBytes = mServer.getBytesPushed() + mServer.getBytesPulled();
+
+        for (int i = 0; i < 100; i++) {
+            adjust(mPhone, "Item " + (i * 1000), 5);
+        }
+        assertEquals(100, sync(mPhone).pushed);
+        assertEquals(100, sync(mTablet).applied);
+
+        assertEquals(100, mServer.getRowsPushed() - rowsPushed);
+        // The phone pulls its own 100 changes back and skips them, the tablet applies them
+        assertEquals(200, mServer.getRowsPulled() - rowsPulled);
+        long deltaBytes = mServer.getBytesPushed() + mServer.getBytesPulled() - fullBytes;
+        assertTrue("Delta sync took " + deltaBytes + " bytes", deltaBytes * 100 < fullBytes);
+        assertEquals(5, quantity(mTablet, "Item 0"));
+        assertEquals(5, quantity(mTablet, "Item 99000"));
+        assertEquals(9, quantity(mTablet, "Item 99009"));
+        assertEquals(0, sync(mPhone).applied);
+    }
+
+    @Test
+    public void sync_countsConcurrentQuantityChangesOfBothDevices() throws Exception {
+        mPhone.resolver.insert(ItemEntry.CONTENT_URI, item("Pen", 10));
+        sync(mPhone);
+        sync(mTablet);
+
+        adjust(mPhone, "Pen", -3);
+        adjust(mTablet, "Pen", 5);
+        adjust(mTablet, "Pen", -1);
+        sync(mPhone);
+        sync(mTablet);
+        sync(mPhone);
+
+        assertEquals(11, quantity(mPhone, "Pen"));
+        assertEquals(11, quantity(mTablet, "Pen"));
+        assertEquals(0, sync(mPhone).pushed + sync(mTablet).pushed);
+    }
+
+    @Test
+    public void sync_resolvesConflictingEditsTheSameWayOnBothDevices() throws Exception {
+        mPhone.resolver.insert(ItemEntry.CONTENT_URI, item("Pen", 10));
+        sync(mPhone);
+        sync(mTablet);
+
+        ContentValues phone = new ContentValues();
+        phone.put(ItemEntry.COLUMN_ITEM_PRICE, 250);
+        mPhone.resolver.update(ContentUris.withAppendedId(ItemEntry.CONTENT_URI, findItem(mPhone, "Pen")),
+                phone, null, null);
+        ContentValues tablet = new ContentValues();
+        tablet.put(ItemEntry.COLUMN_ITEM_PRICE, 300);
+        mTablet.resolver.update(ContentUris.withAppendedId(ItemEntry.CONTENT_URI, findItem(mTablet, "Pen")),
+                tablet, null, null);
+        sync(mPhone);
+        sync(mTablet);
+        sync(mPhone);
+
+        long price = price(mPhone, "Pen");
+        assertEquals(price, price(mTablet, "Pen"));
+        assertTrue("Pen costs " + price, price == 250 || price == 300);
+        assertEquals(10, quantity(mTablet, "Pen"));
+    }
+
+    @Test
+    public void sync_pushesASaleMadeWhileAWinningChangeWasPulled() throws Exception {
+        mPhone.resolver.insert(ItemEntry.CONTENT_URI, item("Pen", 10));
+        sync(mPhone);
+        sync(mTablet);
+
+        // Two edits on the tablet, so its version of the row wins over the phone's sale
+        long tabletPen = findItem(mTablet, "Pen");
+        for (long price : new long[]{250, 300}) {
+            ContentValues values = new ContentValues();
+            values.put(ItemEntry.COLUMN_ITEM_PRICE, price);
+            mTablet.resolver.update(ContentUris.withAppendedId(ItemEntry.CONTENT_URI, tabletPen),
+                    values, null, null);
+        }
+        sync(mTablet);
+
+        // The phone sells one after its push and before its pull
+        SyncTransport transport = new SyncTransport() {
+            private boolean mSold;
+
+            @Override
+            public void push(byte[] batch) throws IOException {
+                mServer.push(batch);
+            }
+
+            @Override
+            public byte[] pull(long token, int limit) throws IOException {
+                if (!mSold) {
+                    mSold = true;
+                    adjust(mPhone, "Pen", -1);
+                }
+                return mServer.pull(token, limit);
+            }
+        };
+        new ItemSyncEngine(mPhone.resolver, transport).sync();
+        assertEquals(1, sync(mPhone).pushed);
+        sync(mTablet);
+
+        assertEquals(300, price(mPhone, "Pen"));
+        assertEquals(9, quantity(mPhone, "Pen"));
+        assertEquals(9, quantity(mTablet, "Pen"));
+    }
+
+    @Test
+    public void sync_deletesItemsDeletedOnTheOtherDevice() throws Exception {
+        mPhone.resolver.insert(ItemEntry.CONTENT_URI, item("Pen", 10));
+        mPhone.resolver.insert(ItemEntry.CONTENT_URI, item("Paper", 3));
+        sync(mPhone);
+        sync(mTablet);
+
+        mTablet.resolver.delete(ContentUris.withAppendedId(ItemEntry.CONTENT_URI,
+                findItem(mTablet, "Pen")), null, null);
+        sync(mTablet);
+        assertEquals(1, sync(mPhone).applied);
+
+        assertEquals(-1, findItem(mPhone, "Pen"));
+        assertEquals(1, count(mPhone));
+        assertEquals(2, mServer.size());
+    }
+}
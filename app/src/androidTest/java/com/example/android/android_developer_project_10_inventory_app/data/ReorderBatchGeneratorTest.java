@@ -0,0 +1,124 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link ReorderBatchGenerator} against an in-memory database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ReorderBatchGeneratorTest {
+
+    private SQLiteDatabase mDb;
+    private File mDirectory;
+
+    @Before
+    public void createDatabase() throws Exception {
+        Context context = InstrumentationRegistry.getTargetContext();
+        mDb = SQLiteDatabase.create(null);
+        new ItemDbHelper(context).onCreate(mDb);
+        mDb.execSQL("INSERT INTO suppliers (_id, name, email) VALUES "
+                + "(1, 'Globex', 'sales@globex.test'), (2, 'Acme', 'orders@acme.test')");
+        mDb.execSQL("INSERT INTO items (name, price, quantity, image, supplier_id, reorder_threshold)"
+                + " VALUES ('Pen', 200, 2, 'content://pen', 2, 5),"
+                + " ('Pencil', 125, 0, 'content://pencil', 2, 0),"
+                + " ('Eraser', 50, 20, 'content://eraser', 2, 5),"
+                + " ('Paper, A4', 450, 10, 'content://paper', 1, 10),"
+                + " ('Stapler', 900, 3, 'content://stapler', 1, 0)");
+        mDirectory = new File(context.getCacheDir(), "reorder_test");
+    }
+
+    @After
+    public void deleteDatabase() throws Exception {
+        mDb.close();
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void write_groupsLowStockItemsBySupplier() throws Exception {
+        List<ReorderBatchGenerator.SupplierOrder> orders =
+                new ReorderBatchGenerator(mDb).write(mDirectory);
+
+        assertEquals(2, orders.size());
+        ReorderBatchGenerator.SupplierOrder acme = orders.get(0);
+        assertEquals("Acme", acme.supplierName);
+        assertEquals(2, acme.lineCount);
+        assertEquals(5, acme.unitCount);
+        assertEquals("item_id,name,quantity,reorder_threshold,order_quantity\r\n"
+                + "1,Pen,2,5,4\r\n"
+                + "2,Pencil,0,0,1\r\n", read(acme.csvFile));
+        assertTrue(read(acme.textFile).contains("2 items (5 units in total)"));
+
+        ReorderBatchGenerator.SupplierOrder globex = orders.get(1);
+        assertEquals("Globex", globex.supplierName);
+        assertEquals(1, globex.lineCount);
+        assertEquals("item_id,name,quantity,reorder_threshold,order_quantity\r\n"
+                + "4,\"Paper, A4\",10,10,1\r\n", read(globex.csvFile));
+        assertTrue(read(globex.textFile).contains("- 1 x Paper, A4\n"));
+    }
+
+    @Test
+    public void write_nothingToReorder() throws Exception {
+        mDb.execSQL("UPDATE items SET quantity = 100");
+        assertEquals(0, new ReorderBatchGenerator(mDb).write(mDirectory).size());
+    }
+
+    @Test
+    public void write_deletesTheDocumentsOfAnEarlierBatch() throws Exception {
+        new ReorderBatchGenerator(mDb).write(mDirectory);
+        File notes = new File(mDirectory, "notes.txt");
+        assertTrue(notes.createNewFile());
+
+        // Globex has nothing left to reorder, so its documents must not stay next to Acme's
+        mDb.execSQL("UPDATE items SET quantity = 100 WHERE supplier_id = 1");
+        List<ReorderBatchGenerator.SupplierOrder> orders =
+                new ReorderBatchGenerator(mDb).write(mDirectory);
+
+        assertEquals(1, orders.size());
+        assertEquals("Acme", orders.get(0).supplierName);
+        assertFalse(new File(mDirectory, "supplier_1.csv").exists());
+        assertFalse(new File(mDirectory, "supplier_1.txt").exists());
+        assertTrue(orders.get(0).csvFile.exists());
+        assertTrue(orders.get(0).textFile.exists());
+        assertTrue(notes.exists());
+    }
+
+    private static String read(File file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[1024];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, count);
+            }
+            return text.toString();
+        } finally {
+            reader.close();
+        }
+    }
+}
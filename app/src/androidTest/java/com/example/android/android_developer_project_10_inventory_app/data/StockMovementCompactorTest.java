@@ -0,0 +1,88 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.MovementEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs {@link StockMovementCompactor} against an in-memory database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StockMovementCompactorTest {
+
+    private static final long DAY = MovementEntry.DAY_MILLIS;
+
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void createDatabase() throws Exception {
+        mDb = SQLiteDatabase.create(null);
+        new ItemDbHelper(InstrumentationRegistry.getTargetContext()).onCreate(mDb);
+    }
+
+    @After
+    public void deleteDatabase() throws Exception {
+        mDb.close();
+    }
+
+    private void insertMovement(long itemId, int delta, long timestamp) {
+        mDb.execSQL("INSERT INTO stock_movements (item_id, delta, reason, timestamp) VALUES (?, ?, 'test', ?)",
+                new Object[]{itemId, delta, timestamp});
+    }
+
+    // Returns "quantity_in|quantity_out|movement_count" of the daily totals of an item and day
+    private String day(long itemId, long day) {
+        return DatabaseUtils.stringForQuery(mDb, "SELECT quantity_in || '|' || quantity_out || '|' || movement_count"
+                + " FROM stock_movement_days WHERE item_id = " + itemId + " AND day = " + day, null);
+    }
+
+    @Test
+    public void compact_addsUpMovementsBeforeTheCutoffDay() throws Exception {
+        insertMovement(1, 10, 3 * DAY);
+        insertMovement(1, -2, 3 * DAY + 1000);
+        insertMovement(1, -3, 4 * DAY);
+        insertMovement(2, 5, 3 * DAY + 5);
+        insertMovement(1, -1, 5 * DAY + 10);
+
+        // The cutoff is rounded down to the start of day 5, which stays in the ledger
+        int compacted = new StockMovementCompactor(mDb).compact(5 * DAY + 500);
+
+        assertEquals(4, compacted);
+        assertEquals("10|2|2", day(1, 3));
+        assertEquals("0|3|1", day(1, 4));
+        assertEquals("5|0|1", day(2, 3));
+        assertEquals(1, DatabaseUtils.queryNumEntries(mDb, MovementEntry.TABLE_NAME));
+        assertEquals(3, DatabaseUtils.queryNumEntries(mDb, MovementEntry.DAILY_TABLE_NAME));
+    }
+
+    @Test
+    public void compact_addsToExistingDays() throws Exception {
+        insertMovement(1, 4, 3 * DAY);
+        new StockMovementCompactor(mDb).compact(4 * DAY);
+        insertMovement(1, -1, 3 * DAY + 1000);
+
+        int compacted = new StockMovementCompactor(mDb).compact(4 * DAY);
+
+        assertEquals(1, compacted);
+        assertEquals("4|1|2", day(1, 3));
+    }
+
+    @Test
+    public void compact_withNothingOldEnoughChangesNothing() throws Exception {
+        insertMovement(1, 4, 10 * DAY);
+
+        assertEquals(0, new StockMovementCompactor(mDb).compact(10 * DAY + 1000));
+        assertEquals(1, DatabaseUtils.queryNumEntries(mDb, MovementEntry.TABLE_NAME));
+        assertEquals(0, DatabaseUtils.queryNumEntries(mDb, MovementEntry.DAILY_TABLE_NAME));
+    }
+}
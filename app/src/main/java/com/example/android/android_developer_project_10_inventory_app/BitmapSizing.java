@@ -0,0 +1,39 @@
+package com.example.android.android_developer_project_10_inventory_app;
+
+/**
+ * Sizing math for decoding images no larger than the view that shows them.
+ */
+public final class BitmapSizing {
+
+    private BitmapSizing() {}
+
+    // Returns the largest power of two sample size that keeps a decoded image of the given size
+    // at least as large as the target in both dimensions, which is what BitmapFactory expects
+    // in inSampleSize. Returns 1 (no subsampling) if any of the sizes is unknown, for instance
+    // when the target view hasn't been laid out yet.
+    public static int calculateInSampleSize(int imageWidth, int imageHeight,
+                                            int targetWidth, int targetHeight) {
+        if (imageWidth <= 0 || imageHeight <= 0 || targetWidth <= 0 || targetHeight <= 0) {
+            return 1;
+        }
+        int inSampleSize = 1;
+        while (imageWidth / (inSampleSize * 2) >= targetWidth
+                && imageHeight / (inSampleSize * 2) >= targetHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    // Returns the number of bytes of an image of the given size decoded with the given sample
+    // size, which decides whether an existing bitmap can be reused through inBitmap. BitmapFactory
+    // rounds the sampled dimensions up.
+    public static long sampledByteCount(int imageWidth, int imageHeight, int inSampleSize,
+                                        int bytesPerPixel) {
+        if (imageWidth <= 0 || imageHeight <= 0 || inSampleSize <= 0) {
+            return 0;
+        }
+        long width = (imageWidth + inSampleSize - 1) / inSampleSize;
+        long height = (imageHeight + inSampleSize - 1) / inSampleSize;
+        return width * height * bytesPerPixel;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.android.android_developer_project_10_inventory_app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.SQLException;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemCsvImporter;
+
+import java.io.IOException;
+
+/**
+ * Imports the items of a CSV file in the background. If an earlier import of the same file was
+ * interrupted, this one continues after the rows that were already committed.
+ */
+class CsvImportLoader extends MessageLoader {
+
+    private static final String LOG_TAG = CsvImportLoader.class.getSimpleName();
+
+    // Preferences holding how far every interrupted CSV import got, keyed by file URI
+    private static final String PREFS_CSV_IMPORT_OFFSETS = "csv_import_offsets";
+
+    /**
+     * Told on the main thread how many items were imported so far.
+     */
+    interface ProgressListener {
+        void onProgress(long imported);
+    }
+
+    private final Uri mSource;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Items imported so far, and who to tell, which is only touched on the main thread
+    private volatile long mImported;
+    private ProgressListener mProgressListener;
+
+    CsvImportLoader(Context context, Uri source) {
+        super(context);
+        mSource = source;
+    }
+
+    // Report the progress to the given listener, or to nobody if null, starting with the
+    // progress so far
+    public void setProgressListener(ProgressListener listener) {
+        mProgressListener = listener;
+        if (listener != null) {
+            listener.onProgress(mImported);
+        }
+    }
+
+    @Override
+    public String loadInBackground() {
+        final SharedPreferences offsets = getContext().getSharedPreferences(PREFS_CSV_IMPORT_OFFSETS,
+                Context.MODE_PRIVATE);
+        final String key = mSource.toString();
+        try {
+            ItemCsvImporter.Result result = new ItemCsvImporter(getContext().getContentResolver())
+                    .importFrom(mSource, offsets.getLong(key, 0), new ItemCsvImporter.ProgressListener() {
+                        @Override
+                        public void onChunkCommitted(long resumeOffset, long imported, long rejected) {
+                            offsets.edit().putLong(key, resumeOffset).apply();
+                            mImported = imported;
+                            mMainHandler.post(mReportProgress);
+                        }
+                    });
+            offsets.edit().remove(key).apply();
+            return getContext().getString(R.string.csv_import_done, result.imported, result.rejected);
+        } catch (IOException | SQLException | IllegalArgumentException | SecurityException e) {
+            Log.e(LOG_TAG, "Failed to import " + mSource, e);
+            return getContext().getString(R.string.csv_import_failed);
+        }
+    }
+
+    private final Runnable mReportProgress = new Runnable() {
+        @Override
+        public void run() {
+            if (mProgressListener != null) {
+                mProgressListener.onProgress(mImported);
+            }
+        }
+    };
+}
@@ -3,7 +3,6 @@ package com.example.android.android_developer_project_10_inventory_app;
 import android.app.Activity;
 import android.app.LoaderManager;
 import android.content.ContentValues;
-import android.content.Context;
 import android.content.CursorLoader;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -35,9 +34,10 @@ import android.widget.Toast;
 import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static java.lang.Integer.parseInt;
 
@@ -51,6 +51,9 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     // EditText field to enter the item's quantity
     private EditText mQuantityEditText;
 
+    // EditText field to enter the quantity at or below which the item needs reordering
+    private EditText mReorderThresholdEditText;
+
     // EditText field to enter the item's price
     private EditText mPriceEditText;
 
@@ -67,7 +70,17 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
 
     // pictur path
     private String picturePath;
-    private Bitmap picture;
+
+    // Bitmap shown in the image view, and a bitmap no longer shown whose memory the next decode
+    // may reuse. Both are only touched on the main thread.
+    private Bitmap mShownBitmap;
+    private Bitmap mReusableBitmap;
+
+    // Increased for every picture load, so that only the latest result is shown
+    private int mPictureGeneration;
+
+    // Background thread decoding the picture
+    private final ExecutorService mImageExecutor = Executors.newSingleThreadExecutor();
 
     // increment and decrement buttons
     private Button mIncreaseButton;
@@ -76,8 +89,6 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     // order button
     private Button mOrderButton;
 
-    final Context mContext = this;
-
     private static final int EXISTING_ITEM_LOADER = 0;
     private static final int PICTURE_GALLERY_REQUEST = 5;
 
@@ -107,6 +118,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         // Find all relevant views that we will need to read user input from
         mNameEditText = (EditText) findViewById(R.id.item_name_field);
         mQuantityEditText = (EditText) findViewById(R.id.quantity_field);
+        mReorderThresholdEditText = (EditText) findViewById(R.id.reorder_threshold_field);
         mPriceEditText = (EditText) findViewById(R.id.item_price_field);
         mAddImage = (ImageView) findViewById(R.id.item_image);
         mSupplierEditText = (EditText) findViewById(R.id.supplier_field);
@@ -117,6 +129,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
 
         mNameEditText.setOnTouchListener(mTouchListener);
         mQuantityEditText.setOnTouchListener(mTouchListener);
+        mReorderThresholdEditText.setOnTouchListener(mTouchListener);
         mPriceEditText.setOnTouchListener(mTouchListener);
         mAddImage.setOnTouchListener(mTouchListener);
         mSupplierEditText.setOnTouchListener(mTouchListener);
@@ -220,90 +233,140 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         // checking if the request code and result code match our request
         if (requestCode == PICTURE_GALLERY_REQUEST && resultCode == Activity.RESULT_OK) {
             if (resultData != null) {
+                //this is the address of the image on the sd cards
+                pictureUri = resultData.getData();
+                int takeFlags = resultData.getFlags();
+                takeFlags &= (Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+                picturePath = pictureUri.toString();
                 try {
-                    //this is the address of the image on the sd cards
-                    pictureUri = resultData.getData();
-                    int takeFlags = resultData.getFlags();
-                    takeFlags &= (Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
-                    picturePath = pictureUri.toString();
-                    //Declare a stream to read the data from the card
-                    InputStream inputStream;
-                    //We are getting an input stream based on the Uri of the image
-                    inputStream = getContentResolver().openInputStream(pictureUri);
-                    //Get a bitmap from the stream
-                    picture = BitmapFactory.decodeStream(inputStream);
-                    //Show the image to the user
-                    mAddImage.setImageBitmap(picture);
-                    picturePath = pictureUri.toString();
-                    try {
-                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-                            getContentResolver().takePersistableUriPermission(pictureUri, takeFlags);
-                        }
-                    } catch (SecurityException e) {
-                        e.printStackTrace();
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                        getContentResolver().takePersistableUriPermission(pictureUri, takeFlags);
                     }
-                    mAddImage.setImageBitmap(getBitmapFromUri(pictureUri, mContext, mAddImage));
-
-                } catch (Exception e) {
+                } catch (SecurityException e) {
                     e.printStackTrace();
-                    //Show the user a Toast mewssage that the Image is not available
-                    Toast.makeText(EditorActivity.this, "Can not open image", Toast.LENGTH_LONG).show();
                 }
+                //Show the image to the user
+                loadPicture(pictureUri);
             }
         }
     }
 
-    public Bitmap getBitmapFromUri(Uri uri, Context mContext, ImageView imageView) {
-
+    // Show the picture at the given URI in the image view. The picture is decoded on a background
+    // thread at the size of the view, so the full-size image is never held in memory.
+    private void loadPicture(final Uri uri) {
         if (uri == null || uri.toString().isEmpty())
-            return null;
+            return;
 
-        // Get the dimensions of the View
-        int targetW = imageView.getWidth();
-        int targetH = imageView.getHeight();
+        final int targetW = mAddImage.getWidth();
+        final int targetH = mAddImage.getHeight();
+        if (targetW == 0 || targetH == 0) {
+            // The view isn't laid out yet, so wait until its size is known
+            mAddImage.getViewTreeObserver().addOnGlobalLayoutListener(
+                    new ViewTreeObserver.OnGlobalLayoutListener() {
+                        @Override
+                        public void onGlobalLayout() {
+                            mAddImage.getViewTreeObserver().removeOnGlobalLayoutListener(this);
+                            loadPicture(uri);
+                        }
+                    });
+            return;
+        }
 
+        final int generation = ++mPictureGeneration;
+        // Hand the reusable bitmap over to the decode, it must not be used for anything else
+        final Bitmap reusable = mReusableBitmap;
+        mReusableBitmap = null;
+        mImageExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = decodePicture(uri, targetW, targetH, reusable);
+                mAddImage.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        showPicture(generation, bitmap);
+                    }
+                });
+            }
+        });
+    }
+
+    // Runs on the main thread with the result of a picture decode
+    private void showPicture(int generation, Bitmap bitmap) {
+        if (generation != mPictureGeneration) {
+            // A newer picture was requested meanwhile; keep the memory for that one
+            if (bitmap != null && mReusableBitmap == null)
+                mReusableBitmap = bitmap;
+            return;
+        }
+        if (bitmap == null) {
+            //Show the user a Toast mewssage that the Image is not available
+            Toast.makeText(EditorActivity.this, "Can not open image", Toast.LENGTH_LONG).show();
+            return;
+        }
+        Bitmap previous = mShownBitmap;
+        mAddImage.setImageBitmap(bitmap);
+        mShownBitmap = bitmap;
+        if (previous != null && previous != bitmap)
+            mReusableBitmap = previous;
+    }
+
+    // Runs on the background thread. Reads the bounds of the picture once, then decodes it
+    // subsampled to the target size, into the reusable bitmap if it is large enough.
+    private Bitmap decodePicture(Uri uri, int targetW, int targetH, Bitmap reusable) {
+        BitmapFactory.Options bmOptions = new BitmapFactory.Options();
         InputStream input = null;
         try {
-            input = this.getContentResolver().openInputStream(uri);
-
             // Get the dimensions of the bitmap
-            BitmapFactory.Options bmOptions = new BitmapFactory.Options();
             bmOptions.inJustDecodeBounds = true;
+            input = getContentResolver().openInputStream(uri);
             BitmapFactory.decodeStream(input, null, bmOptions);
-            if (input != null)
-                input.close();
-
-            int photoW = bmOptions.outWidth;
-            int photoH = bmOptions.outHeight;
+            input.close();
+            input = null;
+            if (bmOptions.outWidth <= 0 || bmOptions.outHeight <= 0)
+                return null;
 
             // Determine how much to scale down the image
-            int scaleFactor = Math.min(photoW / targetW, photoH / targetH);
-
-            // Decode the image file into a Bitmap sized to fill the View
             bmOptions.inJustDecodeBounds = false;
-            bmOptions.inSampleSize = scaleFactor;
-
-            input = this.getContentResolver().openInputStream(uri);
-            Bitmap bitmap = BitmapFactory.decodeStream(input, null, bmOptions);
-            Bitmap.createScaledBitmap(bitmap, 88, 88, false);
-            input.close();
-            return bitmap;
+            bmOptions.inSampleSize = BitmapSizing.calculateInSampleSize(
+                    bmOptions.outWidth, bmOptions.outHeight, targetW, targetH);
+            bmOptions.inMutable = true;
+            long byteCount = BitmapSizing.sampledByteCount(
+                    bmOptions.outWidth, bmOptions.outHeight, bmOptions.inSampleSize, 4);
+            if (reusable != null && reusable.isMutable() && !reusable.isRecycled()
+                    && byteCount <= reusable.getAllocationByteCount()) {
+                bmOptions.inBitmap = reusable;
+            }
 
-        } catch (FileNotFoundException fne) {
-            Log.e(LOG_TAG, "Failed to load image.", fne);
-            return null;
-        } catch (Exception e) {
+            input = getContentResolver().openInputStream(uri);
+            try {
+                return BitmapFactory.decodeStream(input, null, bmOptions);
+            } catch (IllegalArgumentException e) {
+                // The reusable bitmap didn't fit after all, decode into a new one
+                input.close();
+                bmOptions.inBitmap = null;
+                input = getContentResolver().openInputStream(uri);
+                return BitmapFactory.decodeStream(input, null, bmOptions);
+            }
+        } catch (IOException | SecurityException e) {
             Log.e(LOG_TAG, "Failed to load image.", e);
             return null;
         } finally {
-            try {
-                input.close();
-            } catch (IOException ioe) {
-
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException ioe) {
+                    Log.e(LOG_TAG, "Failed to close image.", ioe);
+                }
             }
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mImageExecutor.shutdownNow();
+    }
+
     // This method is called when the back button is pressed.
     @Override
     public void onBackPressed() {
@@ -416,6 +479,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         if (savedInstanceState.containsKey(STATE_PICTURE_URI) &&
                 !savedInstanceState.getString(STATE_PICTURE_URI).equals("")) {
             pictureUri = Uri.parse(savedInstanceState.getString(STATE_PICTURE_URI));
+            loadPicture(pictureUri);
         }
     }
 
@@ -438,7 +502,10 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
                 String nameString = mNameEditText.getText().toString().trim();
                 String quantityString = mQuantityEditText.getText().toString().trim();
                 int quantity = parseInt(quantityString);
-                String priceString = mPriceEditText.getText().toString().trim();
+                // The threshold is optional; an item without one is reordered once it runs out
+                String thresholdString = mReorderThresholdEditText.getText().toString().trim();
+                int threshold = TextUtils.isEmpty(thresholdString) ? 0 : parseInt(thresholdString);
+                long price = PriceFormat.toCents(mPriceEditText.getText().toString());
                 String supplierString = mSupplierEditText.getText().toString().trim();
                 String supplierEmailString = mSupplierEmailEditText.getText().toString().trim();
 
@@ -446,8 +513,9 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
 
                 ContentValues values = new ContentValues();
                 values.put(ItemEntry.COLUMN_ITEM_NAME, nameString);
-                values.put(ItemEntry.COLUMN_ITEM_PRICE, priceString);
+                values.put(ItemEntry.COLUMN_ITEM_PRICE, price);
                 values.put(ItemEntry.COLUMN_ITEM_QUANTITY, quantity);
+                values.put(ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD, threshold);
                 values.put(ItemEntry.COLUMN_ITEM_IMAGE, picturePath);
                 values.put(ItemEntry.COLUMN_ITEM_SUPPLIER, supplierString);
                 values.put(ItemEntry.COLUMN_SUPPLIER_EMAIL, supplierEmailString);
@@ -524,6 +592,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
                 ItemEntry._ID,
                 ItemEntry.COLUMN_ITEM_NAME,
                 ItemEntry.COLUMN_ITEM_QUANTITY,
+                ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD,
                 ItemEntry.COLUMN_ITEM_PRICE,
                 ItemEntry.COLUMN_ITEM_IMAGE,
                 ItemEntry.COLUMN_ITEM_SUPPLIER,
@@ -541,28 +610,20 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         if (cursor == null || cursor.getCount() < 1)
             return;
 
-        ViewTreeObserver viewTreeObserver = mAddImage.getViewTreeObserver();
-        viewTreeObserver.addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
-            @Override
-            public void onGlobalLayout() {
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                    mAddImage.getViewTreeObserver().removeOnGlobalLayoutListener(this);
-                    mAddImage.setImageBitmap(getBitmapFromUri(pictureUri, mContext, mAddImage));
-                }
-            }
-        });
         if (cursor.moveToFirst()) {
             int nameColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_NAME);
             int priceColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_PRICE);
             int quantityColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_QUANTITY);
+            int thresholdColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD);
             int pictureColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_IMAGE);
             int supplierColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_SUPPLIER);
             int supplierEmailColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_SUPPLIER_EMAIL);
 
             // Extract out the value from the Cursor for the given column index
             String name = cursor.getString(nameColumnIndex);
-            String price = cursor.getString(priceColumnIndex);
+            long price = cursor.getLong(priceColumnIndex);
             int quantity = cursor.getInt(quantityColumnIndex);
+            int threshold = cursor.getInt(thresholdColumnIndex);
             String stringUri = cursor.getString(pictureColumnIndex);
             String stringSupplier = cursor.getString(supplierColumnIndex);
             String stringEmailSupplier = cursor.getString(supplierEmailColumnIndex);
@@ -570,17 +631,13 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
 
             // Update the vies on the screen with the values from the database
             mNameEditText.setText(name);
-            mPriceEditText.setText(price);
+            mPriceEditText.setText(PriceFormat.format(price));
             mQuantityEditText.setText(Integer.toString(quantity));
+            mReorderThresholdEditText.setText(Integer.toString(threshold));
             mSupplierEmailEditText.setText(stringEmailSupplier);
             mSupplierEditText.setText(stringSupplier);
             pictureUri = uriData;
-            if (pictureUri.toString().contains("drawable"))
-                mAddImage.setImageURI(uriData);
-            else {
-                Bitmap bM = getBitmapFromUri(pictureUri, mContext, mAddImage);
-                mAddImage.setImageBitmap(bM);
-            }
+            loadPicture(pictureUri);
         }
     }
 
@@ -589,7 +646,9 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         mNameEditText.setText("");
         mPriceEditText.setText("");
         mQuantityEditText.setText("");
+        mReorderThresholdEditText.setText("");
         mAddImage.setImageResource(R.drawable.no_image);
+        mShownBitmap = null;
         mSupplierEditText.setText("");
         mSupplierEmailEditText.setText("");
     }
@@ -623,6 +682,11 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             mPriceEditText.setError("Price is required");
             return false;
         }
+        if (PriceFormat.toCents(priceString) == -1) {
+            mPriceEditText.requestFocus();
+            mPriceEditText.setError("Price must be an amount with at most two decimals");
+            return false;
+        }
 
         // check supplier name
         if (TextUtils.isEmpty(supplierString)) {
@@ -1,95 +1,278 @@
 package com.example.android.android_developer_project_10_inventory_app;
 
-import android.content.ContentUris;
-import android.content.ContentValues;
 import android.content.Context;
+import android.database.CharArrayBuffer;
 import android.database.Cursor;
-import android.net.Uri;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.CursorAdapter;
+import android.widget.ImageView;
+import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
-
-import static com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry.CONTENT_URI;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemPagedCursor;
+import com.example.android.android_developer_project_10_inventory_app.data.StockAdjustmentQueue;
 
 public class ItemCursorAdapter extends CursorAdapter {
 
+    // Room for the quantity label followed by the longest int
+    private static final int QUANTITY_BUFFER_EXTRA = 12;
+
+    // Room for the longest formatted price
+    private static final int PRICE_BUFFER_SIZE = 24;
+
+    // Queue that writes the sell/buy taps out in coalesced batches
+    private final StockAdjustmentQueue mAdjustmentQueue;
+
+    // Loader of the row thumbnails and their size in pixels
+    private final ThumbnailLoader mThumbnailLoader;
+    private final int mThumbnailSize;
+
+    // Label shown before the quantity of every row
+    private final char[] mQuantityLabel;
+
+    // Column indices of the cursor they were looked up for
+    private Cursor mIndexedCursor;
+    private int mIdColumnIndex;
+    private int mNameColumnIndex;
+    private int mImageColumnIndex;
+    private int mPriceColumnIndex;
+    private int mQuantityColumnIndex;
+
+    // Whether swapping the cursor should leave the list alone because the caller rebinds the
+    // changed rows itself
+    private boolean mSuppressNotify;
+
+    // Views of one row, plus buffers the row's texts are formatted into, so binding a row
+    // neither looks views up nor allocates strings for the numbers
+    private static class ViewHolder {
+        final TextView name;
+        final TextView price;
+        final TextView quantity;
+        final ImageView image;
+        final Button sell;
+        final Button buy;
+        final CharArrayBuffer nameBuffer = new CharArrayBuffer(64);
+        final char[] priceBuffer = new char[PRICE_BUFFER_SIZE];
+        final char[] quantityBuffer;
+        long itemId;
+        int itemQuantity;
+
+        ViewHolder(View view, char[] quantityLabel) {
+            name = (TextView) view.findViewById(R.id.item_name);
+            price = (TextView) view.findViewById(R.id.item_price);
+            quantity = (TextView) view.findViewById(R.id.item_quantity);
+            image = (ImageView) view.findViewById(R.id.item_image);
+            sell = (Button) view.findViewById(R.id.item_sell_button);
+            buy = (Button) view.findViewById(R.id.item_buy_button);
+            quantityBuffer = new char[quantityLabel.length + QUANTITY_BUFFER_EXTRA];
+            System.arraycopy(quantityLabel, 0, quantityBuffer, 0, quantityLabel.length);
+        }
+    }
+
+    // Single listener for the sell and buy buttons of all rows. The buttons are tagged with the
+    // holder of their row, which knows the item the row currently shows.
+    private final View.OnClickListener mStockButtonListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            ViewHolder holder = (ViewHolder) v.getTag();
+            if (v.getId() == R.id.item_buy_button) {
+                mAdjustmentQueue.adjust(holder.itemId, 1);
+            } else if (holder.itemQuantity > 0) {
+                mAdjustmentQueue.adjust(holder.itemId, -1);
+            } else {
+                Toast.makeText(v.getContext(), "You try to reach quantity below 0", Toast.LENGTH_LONG).show();
+            }
+        }
+    };
+
     public ItemCursorAdapter(Context context, Cursor c) {
         super(context, c, 0);
+        mAdjustmentQueue = StockAdjustmentQueue.getInstance(context);
+        mThumbnailLoader = ThumbnailLoader.getInstance(context);
+        mThumbnailSize = context.getResources().getDimensionPixelSize(R.dimen.list_thumbnail_size);
+        mQuantityLabel = context.getString(R.string.quantity).toCharArray();
     }
 
+    // Rows are identified by the item _id, so the list can keep its state across cursor swaps.
+    // Placeholder rows of a paged cursor all read as _id 0, so not while the list shows any.
     @Override
-    public View newView(Context context, Cursor cursor, ViewGroup parent) {
-        return LayoutInflater.from(context).inflate(R.layout.list_item, parent, false);
+    public boolean hasStableIds() {
+        Cursor cursor = getCursor();
+        return !(cursor instanceof ItemPagedCursor) || !((ItemPagedCursor) cursor).hasPlaceholders();
     }
 
+    // Placeholder rows have no item to open, so they can't be clicked
     @Override
-    public void bindView(View view, final Context context, Cursor cursor) {
+    public boolean areAllItemsEnabled() {
+        return !(getCursor() instanceof ItemPagedCursor);
+    }
 
+    @Override
+    public boolean isEnabled(int position) {
+        Cursor cursor = getCursor();
+        return !(cursor instanceof ItemPagedCursor) || !cursor.moveToPosition(position)
+                || !((ItemPagedCursor) cursor).isPlaceholder();
+    }
 
-        TextView tvName = (TextView) view.findViewById(R.id.item_name);
-        TextView tvPrice = (TextView) view.findViewById(R.id.item_price);
-        TextView tvQuantity = (TextView) view.findViewById(R.id.item_quantity);
-        Button saleBtn = (Button) view.findViewById(R.id.item_sell_button);
-        Button buyBtn = (Button) view.findViewById(R.id.item_buy_button);
+    @Override
+    public View newView(Context context, Cursor cursor, ViewGroup parent) {
+        View view = LayoutInflater.from(context).inflate(R.layout.list_item, parent, false);
+        ViewHolder holder = new ViewHolder(view, mQuantityLabel);
+        view.setTag(holder);
 
-        int idColumnIndex = cursor.getColumnIndex(ItemEntry._ID);
-        int nameColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_NAME);
-        int imageColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_IMAGE);
-        int priceColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_PRICE);
-        int quantityColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_QUANTITY);
+        holder.sell.setTag(holder);
+        holder.buy.setTag(holder);
+        holder.sell.setOnClickListener(mStockButtonListener);
+        holder.buy.setOnClickListener(mStockButtonListener);
+        return view;
+    }
+
+    @Override
+    public void bindView(View view, Context context, Cursor cursor) {
+        ViewHolder holder = (ViewHolder) view.getTag();
+
+        // Look the columns up once per cursor instead of once per row
+        if (cursor != mIndexedCursor) {
+            mIdColumnIndex = cursor.getColumnIndex(ItemEntry._ID);
+            mNameColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_NAME);
+            mImageColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_IMAGE);
+            mPriceColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_PRICE);
+            mQuantityColumnIndex = cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_QUANTITY);
+            mIndexedCursor = cursor;
+        }
+
+        // A placeholder row of a paged cursor has no item yet, so its buttons stay off until the
+        // page arrives and the row is bound again
+        boolean placeholder = cursor instanceof ItemPagedCursor && ((ItemPagedCursor) cursor).isPlaceholder();
+        holder.sell.setEnabled(!placeholder);
+        holder.buy.setEnabled(!placeholder);
 
         // Extract properties from cursor
-        String itemName = cursor.getString(nameColumnIndex);
-        String itemPrice = cursor.getString(priceColumnIndex);
-        final int itemQuantity = cursor.getInt(quantityColumnIndex);
-        final int itemId = cursor.getInt(idColumnIndex);
-
-        tvName.setText(itemName);
-        tvPrice.setText(itemPrice);
-        tvQuantity.setText(context.getString(R.string.quantity) + itemQuantity);
-
-        saleBtn.setOnClickListener(new View.OnClickListener()
-
-        {
-            @Override
-            public void onClick(View v) {
-                if (itemQuantity > 0) {
-                    int tempQuantity = itemQuantity;
-                    tempQuantity--;
-
-                    ContentValues values = new ContentValues();
-                    values.put(ItemEntry.COLUMN_ITEM_QUANTITY, tempQuantity);
-                    Uri currentItemUri = ContentUris.withAppendedId(CONTENT_URI, itemId);
-
-                    // create the Uri of the current product
-                    context.getContentResolver().update(currentItemUri, values, null, null);
-                } else {
-                    Toast.makeText(context, "You try to reach quantity below 0", Toast.LENGTH_LONG).show();
-                }
-            }
-        });
-        buyBtn.setOnClickListener(new View.OnClickListener()
+        holder.itemId = cursor.getLong(mIdColumnIndex);
+        // Show the quantity including the adjustments that haven't been written out yet
+        holder.itemQuantity = cursor.getInt(mQuantityColumnIndex)
+                + mAdjustmentQueue.getPendingDelta(holder.itemId);
 
-        {
-            @Override
-            public void onClick(View v) {
-                int tempQuantity = itemQuantity;
-                tempQuantity++;
+        cursor.copyStringToBuffer(mNameColumnIndex, holder.nameBuffer);
+        holder.name.setText(holder.nameBuffer.data, 0, holder.nameBuffer.sizeCopied);
 
-                ContentValues values = new ContentValues();
-                values.put(ItemEntry.COLUMN_ITEM_QUANTITY, tempQuantity);
-                Uri currentItemUri = ContentUris.withAppendedId(CONTENT_URI, itemId);
+        int priceLength = PriceFormat.format(cursor.getLong(mPriceColumnIndex), holder.priceBuffer, 0);
+        holder.price.setText(holder.priceBuffer, 0, priceLength);
 
-                // create the Uri of the current product
-                context.getContentResolver().update(currentItemUri, values, null, null);
+        int quantityLength = mQuantityLabel.length;
+        if (holder.itemQuantity < 0) {
+            holder.quantityBuffer[quantityLength++] = '-';
+        }
+        quantityLength = PriceFormat.writeDigits(Math.abs((long) holder.itemQuantity),
+                holder.quantityBuffer, quantityLength);
+        holder.quantity.setText(holder.quantityBuffer, 0, quantityLength);
 
+        mThumbnailLoader.load(holder.image, cursor.getString(mImageColumnIndex),
+                mThumbnailSize, mThumbnailSize, R.drawable.no_image);
+    }
+
+    @Override
+    public Cursor swapCursor(Cursor newCursor) {
+        mIndexedCursor = null;
+        return super.swapCursor(newCursor);
+    }
+
+    /**
+     * Swaps in a new cursor without telling the list, which keeps every row it shows. Only for
+     * cursors holding the same items at the same positions as the current one; the caller is
+     * responsible for rebinding the rows whose contents changed.
+     */
+    public Cursor swapCursorQuietly(Cursor newCursor) {
+        mSuppressNotify = true;
+        try {
+            return swapCursor(newCursor);
+        } finally {
+            mSuppressNotify = false;
+        }
+    }
+
+    @Override
+    public void notifyDataSetChanged() {
+        if (!mSuppressNotify) {
+            super.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Swaps in a new cursor for the given list. If the rows on screen still show the same items
+     * at the same positions, the list is left alone and only the rows whose contents changed are
+     * bound again; otherwise rows moved, appeared or disappeared and the whole list refreshes.
+     */
+    public Cursor swapCursor(ListView list, Cursor newCursor) {
+        int[] changedPositions = diffVisibleRows(list, getCursor(), newCursor);
+        if (changedPositions == null) {
+            return swapCursor(newCursor);
+        }
+        Cursor oldCursor = swapCursorQuietly(newCursor);
+        for (int position : changedPositions) {
+            rebindRow(list, position);
+        }
+        return oldCursor;
+    }
+
+    // Binds the row the list shows at the given position again from the current cursor. Does
+    // nothing if the position is off screen.
+    public void rebindRow(ListView list, int position) {
+        View row = list.getChildAt(position - list.getFirstVisiblePosition());
+        if (row != null) {
+            getView(position, row, list);
+        }
+    }
+
+    // Returns the positions of the rows on screen whose contents differ between the cursors, or
+    // null if the list has to be refreshed as a whole
+    private static int[] diffVisibleRows(ListView list, Cursor oldCursor, Cursor newCursor) {
+        if (oldCursor == null || newCursor == null || oldCursor.isClosed()
+                || oldCursor.getCount() != newCursor.getCount()
+                || list.getChildCount() == 0) {
+            return null;
+        }
+        int first = list.getFirstVisiblePosition();
+        int last = Math.min(list.getLastVisiblePosition(), newCursor.getCount() - 1);
+        ItemListDiff.Window oldWindow = readWindow(oldCursor, first, last);
+        ItemListDiff.Window newWindow = readWindow(newCursor, first, last);
+        if (oldWindow == null || newWindow == null) {
+            return null;
+        }
+        return ItemListDiff.changedPositions(oldWindow, newWindow);
+    }
+
+    /**
+     * Reads the IDs and displayed values of the rows at the given positions of a cursor, for
+     * {@link ItemListDiff}. Returns null if the cursor doesn't have all of those rows.
+     */
+    public static ItemListDiff.Window readWindow(Cursor cursor, int firstPosition, int lastPosition) {
+        int idColumn = cursor.getColumnIndex(ItemEntry._ID);
+        int[] contentColumns = {
+                cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_NAME),
+                cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_PRICE),
+                cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_QUANTITY),
+                cursor.getColumnIndex(ItemEntry.COLUMN_ITEM_IMAGE)};
+
+        int rowCount = lastPosition - firstPosition + 1;
+        long[] ids = new long[rowCount];
+        Object[][] contents = new Object[rowCount][];
+        for (int row = 0; row < rowCount; row++) {
+            if (!cursor.moveToPosition(firstPosition + row)) {
+                return null;
+            }
+            ids[row] = cursor.getLong(idColumn);
+            Object[] values = new Object[contentColumns.length];
+            for (int column = 0; column < contentColumns.length; column++) {
+                values[column] = cursor.getString(contentColumns[column]);
             }
-        });
+            contents[row] = values;
+        }
+        return new ItemListDiff.Window(firstPosition, ids, contents);
     }
 }
@@ -0,0 +1,71 @@
+package com.example.android.android_developer_project_10_inventory_app;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.SQLException;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemExporter;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Exports all items to a document in the background. The export can be canceled through
+ * {@link #cancelExport()}, in which case the partly written document is deleted.
+ */
+class ItemExportLoader extends MessageLoader {
+
+    private static final String LOG_TAG = ItemExportLoader.class.getSimpleName();
+
+    private final Uri mTarget;
+    private final ItemExporter.Format mFormat;
+    private final CancellationSignal mCancellationSignal = new CancellationSignal();
+
+    ItemExportLoader(Context context, Uri target, ItemExporter.Format format) {
+        super(context);
+        mTarget = target;
+        mFormat = format;
+    }
+
+    @Override
+    public String loadInBackground() {
+        ContentResolver resolver = getContext().getContentResolver();
+        try {
+            long count = new ItemExporter(resolver).exportTo(mTarget, mFormat, mCancellationSignal);
+            return getContext().getString(R.string.export_done, count);
+        } catch (OperationCanceledException e) {
+            deleteDocument(resolver, mTarget);
+            return getContext().getString(R.string.export_canceled);
+        } catch (IOException | SQLException | IllegalArgumentException | SecurityException e) {
+            Log.e(LOG_TAG, "Failed to export to " + mTarget, e);
+            deleteDocument(resolver, mTarget);
+            return getContext().getString(R.string.export_failed);
+        }
+    }
+
+    // Stop the export, which then ends with the canceled message
+    public void cancelExport() {
+        mCancellationSignal.cancel();
+    }
+
+    // Stop the export when the loader is dropped, such as when the activity finishes
+    @Override
+    public void cancelLoadInBackground() {
+        super.cancelLoadInBackground();
+        mCancellationSignal.cancel();
+    }
+
+    // Delete a document that was left incomplete, if its provider allows it
+    private static void deleteDocument(ContentResolver resolver, Uri document) {
+        try {
+            DocumentsContract.deleteDocument(resolver, document);
+        } catch (FileNotFoundException | RuntimeException e) {
+            Log.w(LOG_TAG, "Could not delete " + document, e);
+        }
+    }
+}
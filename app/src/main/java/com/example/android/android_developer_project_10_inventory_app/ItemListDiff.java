@@ -0,0 +1,49 @@
+package com.example.android.android_developer_project_10_inventory_app;
+
+import java.util.Arrays;
+
+/**
+ * Compares the rows a list shows before and after a reload, to redraw only the rows that changed.
+ * <p>
+ * Only the window of rows on screen is compared. If it still holds the same items in the same
+ * places, the reload changed at most the contents of some rows and only those are rebound;
+ * otherwise rows moved, appeared or disappeared and the caller falls back to a full refresh.
+ */
+public final class ItemListDiff {
+
+    private ItemListDiff() {}
+
+    // The rows of a consecutive range of list positions: the item IDs, and for every row the
+    // values it displays
+    public static final class Window {
+        final int firstPosition;
+        final long[] ids;
+        final Object[][] contents;
+
+        public Window(int firstPosition, long[] ids, Object[][] contents) {
+            if (ids.length != contents.length) {
+                throw new IllegalArgumentException("One content row per ID required");
+            }
+            this.firstPosition = firstPosition;
+            this.ids = ids;
+            this.contents = contents;
+        }
+    }
+
+    // Returns the list positions whose contents differ between the two windows, or null if the
+    // windows don't hold the same items at the same positions.
+    public static int[] changedPositions(Window oldWindow, Window newWindow) {
+        if (oldWindow.firstPosition != newWindow.firstPosition
+                || !Arrays.equals(oldWindow.ids, newWindow.ids)) {
+            return null;
+        }
+        int[] changed = new int[oldWindow.ids.length];
+        int changedCount = 0;
+        for (int row = 0; row < oldWindow.ids.length; row++) {
+            if (!Arrays.equals(oldWindow.contents[row], newWindow.contents[row])) {
+                changed[changedCount++] = oldWindow.firstPosition + row;
+            }
+        }
+        return Arrays.copyOf(changed, changedCount);
+    }
+}
@@ -2,6 +2,7 @@ package com.example.android.android_developer_project_10_inventory_app;
 
 import android.app.AlertDialog;
 import android.app.LoaderManager;
+import android.app.ProgressDialog;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
@@ -9,33 +10,190 @@ import android.content.CursorLoader;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.Loader;
+import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Trace;
+import android.os.Handler;
 import android.support.v7.app.AppCompatActivity;
+import android.text.Editable;
+import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
+import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.ListView;
+import android.widget.TextView;
 import android.widget.Toast;
 
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract;
 import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.MovementEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.StatsEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemExporter;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemPageLoader;
+import com.example.android.android_developer_project_10_inventory_app.data.StartupTimeline;
+import com.example.android.android_developer_project_10_inventory_app.data.StockAdjustmentQueue;
 
-public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor> {
+public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor>,
+        StockAdjustmentQueue.Listener {
 
     // Identifier for the pet data loader
     private static final int ITEM_LOADER = 0;
 
+    // Identifier for the loader of the inventory totals shown above the list
+    private static final int STATS_LOADER = 1;
+
+    // Identifiers for the loaders of the export and the CSV import, which outlive a rotation
+    private static final int EXPORT_LOADER = 2;
+    private static final int CSV_IMPORT_LOADER = 3;
+
+    // Time to wait after the last keystroke before searching
+    private static final long SEARCH_DEBOUNCE_MILLIS = 300;
+
+    // Most search results shown at once
+    private static final int SEARCH_RESULT_LIMIT = 200;
+
+    // Most items shown at once when sorted by days of cover, which can't be paged in like the
+    // list sorted by name
+    private static final int DAYS_OF_COVER_LIMIT = 200;
+
+    // Loader arguments holding the search text and whether to sort by days of cover
+    private static final String ARG_SEARCH_TEXT = "search_text";
+    private static final String ARG_SORT_BY_DAYS_OF_COVER = "sort_by_days_of_cover";
+
+    // Loader arguments holding the document to export to or import from, and the export format
+    private static final String ARG_DOCUMENT = "document";
+    private static final String ARG_EXPORT_FORMAT = "export_format";
+
+    // Instance state key of the sort order
+    private static final String STATE_SORT_BY_DAYS_OF_COVER = "sort_by_days_of_cover";
+
+    // Request code of the file picker for the CSV import
+    private static final int CSV_IMPORT_REQUEST = 1;
+
+    // Request codes of the document creators for the CSV and JSON Lines exports
+    private static final int CSV_EXPORT_REQUEST = 2;
+    private static final int JSON_LINES_EXPORT_REQUEST = 3;
+
+    // Preferences holding the day the stock movements were last compacted on
+    private static final String PREFS_MOVEMENT_COMPACTION = "movement_compaction";
+    private static final String KEY_LAST_COMPACTION_DAY = "last_compaction_day";
+
     // Adapter for the ListView
     ItemCursorAdapter mCursorAdapter;
 
+    // The list of items
+    private ListView mItemListView;
+
+    // Header showing the inventory totals
+    private TextView mStatsHeaderView;
+
+    // Callbacks of the totals loader, which reads the single row of totals the database keeps
+    // up to date instead of adding up the items
+    private final LoaderManager.LoaderCallbacks<Cursor> mStatsLoaderCallbacks =
+            new LoaderManager.LoaderCallbacks<Cursor>() {
+                @Override
+                public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+                    String[] projection = {
+                            StatsEntry.COLUMN_ITEM_COUNT,
+                            StatsEntry.COLUMN_TOTAL_QUANTITY,
+                            StatsEntry.COLUMN_STOCK_VALUE};
+                    return new CursorLoader(MainActivity.this, StatsEntry.CONTENT_URI, projection,
+                            null, null, null);
+                }
+
+                @Override
+                public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+                    if (data == null || !data.moveToFirst()) {
+                        mStatsHeaderView.setText(null);
+                        return;
+                    }
+                    mStatsHeaderView.setText(getString(R.string.stats_header, data.getLong(0),
+                            data.getLong(1), PriceFormat.format(data.getLong(2))));
+                }
+
+                @Override
+                public void onLoaderReset(Loader<Cursor> loader) {
+                    mStatsHeaderView.setText(null);
+                }
+            };
+
+    // Progress dialogs of a running export or CSV import, shown again by a recreated activity
+    private ProgressDialog mExportProgress;
+    private ProgressDialog mImportProgress;
+
+    // Handler dropping the loaders of finished exports and imports once their results are shown
+    private final Handler mLoaderHandler = new Handler();
+
+    // Callbacks of the export loader, which show its progress dialog until it ends
+    private final LoaderManager.LoaderCallbacks<String> mExportLoaderCallbacks =
+            new LoaderManager.LoaderCallbacks<String>() {
+                @Override
+                public Loader<String> onCreateLoader(int id, Bundle args) {
+                    return new ItemExportLoader(MainActivity.this, (Uri) args.getParcelable(ARG_DOCUMENT),
+                            (ItemExporter.Format) args.getSerializable(ARG_EXPORT_FORMAT));
+                }
+
+                @Override
+                public void onLoadFinished(Loader<String> loader, String message) {
+                    finishLoader(EXPORT_LOADER, mExportProgress, message);
+                }
+
+                @Override
+                public void onLoaderReset(Loader<String> loader) {
+                    mExportProgress.dismiss();
+                }
+            };
+
+    // Callbacks of the CSV import loader, which show its progress dialog until it ends
+    private final LoaderManager.LoaderCallbacks<String> mImportLoaderCallbacks =
+            new LoaderManager.LoaderCallbacks<String>() {
+                @Override
+                public Loader<String> onCreateLoader(int id, Bundle args) {
+                    return new CsvImportLoader(MainActivity.this, (Uri) args.getParcelable(ARG_DOCUMENT));
+                }
+
+                @Override
+                public void onLoadFinished(Loader<String> loader, String message) {
+                    finishLoader(CSV_IMPORT_LOADER, mImportProgress, message);
+                }
+
+                @Override
+                public void onLoaderReset(Loader<String> loader) {
+                    ((CsvImportLoader) loader).setProgressListener(null);
+                    mImportProgress.dismiss();
+                }
+            };
+
+    // Search box and the pending search it schedules
+    private EditText mSearchEditText;
+    private final Handler mSearchHandler = new Handler();
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            restartItemLoader();
+        }
+    };
+
+    // Whether the list is sorted by days of cover rather than by name
+    private boolean mSortByDaysOfCover;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        long start = System.nanoTime();
+        Trace.beginSection("MainActivity.onCreate");
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        mSortByDaysOfCover = savedInstanceState != null
+                && savedInstanceState.getBoolean(STATE_SORT_BY_DAYS_OF_COVER);
 
         // Setup Image to open Editor Activity
         ImageView image = (ImageView) findViewById(R.id.add_item_image);
@@ -49,9 +207,15 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         mCursorAdapter = new ItemCursorAdapter(this, null);
         ListView itemListView = (ListView) findViewById(R.id.list_view);
         itemListView.setAdapter(mCursorAdapter);
+        mItemListView = itemListView;
 
-        //Kick off the loader
-        getLoaderManager().initLoader(ITEM_LOADER, null, this);
+        //Kick off the loader, in the sort order the activity was left in
+        Bundle itemLoaderArgs = new Bundle();
+        itemLoaderArgs.putBoolean(ARG_SORT_BY_DAYS_OF_COVER, mSortByDaysOfCover);
+        getLoaderManager().initLoader(ITEM_LOADER, itemLoaderArgs, this);
+        mStatsHeaderView = (TextView) findViewById(R.id.stats_header);
+        getLoaderManager().initLoader(STATS_LOADER, null, mStatsLoaderCallbacks);
+        attachTransferLoaders();
         View emptyView = findViewById(R.id.empty_view);
         itemListView.setEmptyView(emptyView);
 
@@ -65,6 +229,150 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
                 startActivity(editIntent);
             }
         });
+
+        // Search as the user types, once typing pauses
+        mSearchEditText = (EditText) findViewById(R.id.search_field);
+        mSearchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                mSearchHandler.removeCallbacks(mSearchRunnable);
+                mSearchHandler.postDelayed(mSearchRunnable, SEARCH_DEBOUNCE_MILLIS);
+            }
+        });
+
+        // Tell the loader which rows are on screen once scrolling settles
+        itemListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+                if (scrollState == SCROLL_STATE_IDLE) {
+                    updateVisibleRange();
+                }
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                                 int totalItemCount) {
+            }
+        });
+
+        compactMovementsIfDue();
+        recordFirstFrame();
+        Trace.endSection();
+        StartupTimeline.getInstance().mark(StartupTimeline.ACTIVITY_CREATED, start);
+    }
+
+    // Record the first frame drawn after onCreate in the startup timeline
+    private void recordFirstFrame() {
+        final long start = System.nanoTime();
+        final View content = findViewById(android.R.id.content);
+        content.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                content.getViewTreeObserver().removeOnPreDrawListener(this);
+                StartupTimeline.getInstance().mark(StartupTimeline.FIRST_FRAME, start);
+                return true;
+            }
+        });
+    }
+
+    // Compact the old stock movements into daily totals off the main thread, at most once a day
+    private void compactMovementsIfDue() {
+        final SharedPreferences prefs = getSharedPreferences(PREFS_MOVEMENT_COMPACTION, MODE_PRIVATE);
+        final long today = System.currentTimeMillis() / MovementEntry.DAY_MILLIS;
+        if (prefs.getLong(KEY_LAST_COMPACTION_DAY, -1) == today) {
+            return;
+        }
+        final ContentResolver resolver = getContentResolver();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                resolver.call(ItemEntry.CONTENT_URI, ItemContract.METHOD_COMPACT_MOVEMENTS, null, null);
+                prefs.edit().putLong(KEY_LAST_COMPACTION_DAY, today).apply();
+            }
+        }, "MovementCompactor").start();
+    }
+
+    // Pass the rows on screen to the paging loader, which pages them in with the next reload
+    private void updateVisibleRange() {
+        Loader<Cursor> loader = getLoaderManager().getLoader(ITEM_LOADER);
+        if (loader instanceof ItemPageLoader) {
+            ((ItemPageLoader) loader).setVisibleRange(mItemListView.getFirstVisiblePosition(),
+                    mItemListView.getLastVisiblePosition());
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        mLoaderHandler.removeCallbacksAndMessages(null);
+        // The dialogs belong to this activity; a recreated one shows its own
+        mExportProgress.dismiss();
+        mImportProgress.dismiss();
+        Loader<String> importLoader = getLoaderManager().getLoader(CSV_IMPORT_LOADER);
+        if (importLoader != null) {
+            ((CsvImportLoader) importLoader).setProgressListener(null);
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putBoolean(STATE_SORT_BY_DAYS_OF_COVER, mSortByDaysOfCover);
+    }
+
+    // Reload the list for the current search text and sort order
+    private void restartItemLoader() {
+        Bundle args = new Bundle();
+        args.putString(ARG_SEARCH_TEXT, mSearchEditText.getText().toString().trim());
+        args.putBoolean(ARG_SORT_BY_DAYS_OF_COVER, mSortByDaysOfCover);
+        getLoaderManager().restartLoader(ITEM_LOADER, args, this);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        StockAdjustmentQueue.getInstance(this).addListener(this);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // Don't keep taps waiting for the coalescing window once the list is gone
+        StockAdjustmentQueue queue = StockAdjustmentQueue.getInstance(this);
+        queue.removeListener(this);
+        queue.flushNow();
+    }
+
+    // Redraw the row of the item with its optimistic quantity while adjustments are queued
+    @Override
+    public void onPendingAdjustmentsChanged(long itemId) {
+        int first = mItemListView.getFirstVisiblePosition();
+        for (int i = 0; i < mItemListView.getChildCount(); i++) {
+            if (mCursorAdapter.getItemId(first + i) == itemId) {
+                rebindRow(first + i);
+            }
+        }
+    }
+
+    // Show the quantity without the adjustment the provider rejected, and say why it's gone
+    @Override
+    public void onAdjustmentRejected(long itemId, int delta) {
+        onPendingAdjustmentsChanged(itemId);
+        Toast.makeText(this, getString(R.string.adjustment_rejected, delta), Toast.LENGTH_LONG).show();
+    }
+
+    // Bind the row on screen at the given list position again from the adapter's cursor
+    private void rebindRow(int position) {
+        mCursorAdapter.rebindRow(mItemListView, position);
     }
 
     @Override
@@ -74,21 +382,45 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
                 ItemEntry._ID,
                 ItemEntry.COLUMN_ITEM_NAME,
                 ItemEntry.COLUMN_ITEM_PRICE,
-                ItemEntry.COLUMN_ITEM_QUANTITY};
+                ItemEntry.COLUMN_ITEM_QUANTITY,
+                ItemEntry.COLUMN_ITEM_IMAGE};
+
+        // With search text, this loader will query the items matching it through the
+        // ContentProvider's search URI on a background thread
+        String searchText = bundle == null ? null : bundle.getString(ARG_SEARCH_TEXT);
+        boolean sortByDaysOfCover = bundle != null && bundle.getBoolean(ARG_SORT_BY_DAYS_OF_COVER);
+        if (!TextUtils.isEmpty(searchText)) {
+            Uri searchUri = ItemEntry.buildSearchUri(searchText).buildUpon()
+                    .appendQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT,
+                            String.valueOf(SEARCH_RESULT_LIMIT))
+                    .build();
+            return new CursorLoader(this, searchUri, projection, null, null, sortByDaysOfCover
+                    ? ItemEntry.SORT_ORDER_DAYS_OF_COVER
+                    : ItemEntry.COLUMN_ITEM_NAME + ", " + ItemEntry._ID);
+        }
+
+        // Sorted by days of cover, this loader will query the items that run out first, since
+        // the order changes with time and can't be paged through like names
+        if (sortByDaysOfCover) {
+            Uri coverUri = ItemEntry.CONTENT_URI.buildUpon()
+                    .appendQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT,
+                            String.valueOf(DAYS_OF_COVER_LIMIT))
+                    .build();
+            return new CursorLoader(this, coverUri, projection, null, null,
+                    ItemEntry.SORT_ORDER_DAYS_OF_COVER);
+        }
 
-        // This loader will execute the ContentProvider's query method on a background thread
-        return new CursorLoader(this,   // Parent activity context
-                ItemEntry.CONTENT_URI,   // Provider content URI to query
-                projection,             // Columns to include in the resulting Cursor
-                null,                   // No selection clause
-                null,                   // No selection arguments
-                null);                  // Default sort order
+        // Otherwise this loader will page the items in, sorted by name, through the
+        // ContentProvider's query method. Only the first page is fetched up front.
+        return new ItemPageLoader(this, projection);
     }
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        // Update {@link ItemCursorAdapter} with this new cursor containing updated item data
-        mCursorAdapter.swapCursor(data);
+        // Update {@link ItemCursorAdapter} with this new cursor containing updated item data.
+        // After a sale only the rows that changed are redrawn.
+        mCursorAdapter.swapCursor(mItemListView, data);
+        updateVisibleRange();
     }
 
     @Override
@@ -102,6 +434,8 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         // Inflate the menu options from the res/menu/menu_catalog.xml file.
         // This adds menu items to the app bar.
         getMenuInflater().inflate(R.menu.menu_main, menu);
+        menu.findItem(R.id.action_sort_by_days_of_cover).setChecked(mSortByDaysOfCover);
+        menu.findItem(R.id.action_startup_timeline).setVisible(BuildConfig.DEBUG);
         return true;
     }
 
@@ -113,6 +447,35 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
             case R.id.action_insert_dummy_data:
                 insertItems();
                 return true;
+            // Respond to a click on the "Sort by days of cover" menu option
+            case R.id.action_sort_by_days_of_cover:
+                mSortByDaysOfCover = !mSortByDaysOfCover;
+                item.setChecked(mSortByDaysOfCover);
+                restartItemLoader();
+                return true;
+            // Respond to a click on the "Import CSV" menu option
+            case R.id.action_import_csv:
+                Intent pickCsv = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                pickCsv.addCategory(Intent.CATEGORY_OPENABLE);
+                pickCsv.setType("text/*");
+                startActivityForResult(pickCsv, CSV_IMPORT_REQUEST);
+                return true;
+            // Respond to a click on the "Export CSV" and "Export JSON Lines" menu options
+            case R.id.action_export_csv:
+                createExportDocument(ItemExporter.Format.CSV, "inventory.csv", CSV_EXPORT_REQUEST);
+                return true;
+            case R.id.action_export_json_lines:
+                createExportDocument(ItemExporter.Format.JSON_LINES, "inventory.jsonl",
+                        JSON_LINES_EXPORT_REQUEST);
+                return true;
+            // Respond to a click on the "Write reorder documents" menu option
+            case R.id.action_write_reorders:
+                writeReorders();
+                return true;
+            // Respond to a click on the "Startup timeline" menu option of debug builds
+            case R.id.action_startup_timeline:
+                startActivity(new Intent(this, StartupTimelineActivity.class));
+                return true;
             // Respond to a click on the "Delete all entries" menu option
             case R.id.action_delete_all_entries:
                 showDeleteAllConfirmationDialog();
@@ -121,13 +484,144 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         return super.onOptionsItemSelected(item);
     }
 
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (resultCode != RESULT_OK || data == null || data.getData() == null) {
+            return;
+        }
+        switch (requestCode) {
+            case CSV_IMPORT_REQUEST:
+                importCsv(data.getData());
+                break;
+            case CSV_EXPORT_REQUEST:
+                exportItems(data.getData(), ItemExporter.Format.CSV);
+                break;
+            case JSON_LINES_EXPORT_REQUEST:
+                exportItems(data.getData(), ItemExporter.Format.JSON_LINES);
+                break;
+        }
+    }
+
+    // Let the user choose where to create the document an export is written to
+    private void createExportDocument(ItemExporter.Format format, String title, int requestCode) {
+        Intent createDocument = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        createDocument.addCategory(Intent.CATEGORY_OPENABLE);
+        createDocument.setType(format.mimeType);
+        createDocument.putExtra(Intent.EXTRA_TITLE, title);
+        startActivityForResult(createDocument, requestCode);
+    }
+
+    // Create the progress dialogs and reattach to an export or CSV import that was still running
+    // when the previous activity was destroyed, such as on a rotation
+    private void attachTransferLoaders() {
+        mExportProgress = new ProgressDialog(this);
+        mExportProgress.setMessage(getString(R.string.export_running));
+        mExportProgress.setCancelable(false);
+        mExportProgress.setButton(DialogInterface.BUTTON_NEGATIVE, getString(R.string.cancel),
+                new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        Loader<String> loader = getLoaderManager().getLoader(EXPORT_LOADER);
+                        if (loader != null) {
+                            ((ItemExportLoader) loader).cancelExport();
+                        }
+                    }
+                });
+        mImportProgress = new ProgressDialog(this);
+        mImportProgress.setMessage(getString(R.string.csv_import_progress, 0L));
+        mImportProgress.setCancelable(false);
+
+        if (getLoaderManager().getLoader(EXPORT_LOADER) != null) {
+            mExportProgress.show();
+            getLoaderManager().initLoader(EXPORT_LOADER, null, mExportLoaderCallbacks);
+        }
+        if (getLoaderManager().getLoader(CSV_IMPORT_LOADER) != null) {
+            mImportProgress.show();
+            trackImportProgress(getLoaderManager().initLoader(CSV_IMPORT_LOADER, null,
+                    mImportLoaderCallbacks));
+        }
+    }
+
+    // Keep the progress dialog up to date with the given CSV import
+    private void trackImportProgress(Loader<String> loader) {
+        ((CsvImportLoader) loader).setProgressListener(new CsvImportLoader.ProgressListener() {
+            @Override
+            public void onProgress(long imported) {
+                mImportProgress.setMessage(getString(R.string.csv_import_progress, imported));
+            }
+        });
+    }
+
+    // Hide the progress of a finished export or import and show how it ended. The loader is
+    // dropped afterwards, so a recreated activity doesn't show the message again.
+    private void finishLoader(final int id, ProgressDialog progress, String message) {
+        progress.dismiss();
+        Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+        mLoaderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                getLoaderManager().destroyLoader(id);
+            }
+        });
+    }
+
+    // Export all items to the given document in a loader, which keeps running when the activity
+    // is recreated. The export can be canceled from its progress dialog, in which case the
+    // partly written document is deleted.
+    private void exportItems(Uri target, ItemExporter.Format format) {
+        Bundle args = new Bundle();
+        args.putParcelable(ARG_DOCUMENT, target);
+        args.putSerializable(ARG_EXPORT_FORMAT, format);
+        mExportProgress.show();
+        getLoaderManager().restartLoader(EXPORT_LOADER, args, mExportLoaderCallbacks);
+    }
+
+    // Import the items of a CSV file in a loader, which keeps running when the activity is
+    // recreated. If an earlier import of the same file was interrupted, this one continues
+    // after the rows that were already committed.
+    private void importCsv(Uri source) {
+        Bundle args = new Bundle();
+        args.putParcelable(ARG_DOCUMENT, source);
+        mImportProgress.setMessage(getString(R.string.csv_import_progress, 0L));
+        mImportProgress.show();
+        trackImportProgress(getLoaderManager().restartLoader(CSV_IMPORT_LOADER, args,
+                mImportLoaderCallbacks));
+    }
+
+    // Write one reorder document per supplier for all low stock items, off the main thread
+    private void writeReorders() {
+        final ContentResolver resolver = getContentResolver();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final Bundle result = resolver.call(ItemEntry.CONTENT_URI,
+                        ItemContract.METHOD_WRITE_REORDER_BATCH, null, null);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (result == null) {
+                            Toast.makeText(MainActivity.this, R.string.reorders_failed,
+                                    Toast.LENGTH_SHORT).show();
+                        } else {
+                            Toast.makeText(MainActivity.this, getString(R.string.reorders_written,
+                                    result.getInt(ItemContract.EXTRA_REORDER_SUPPLIER_COUNT),
+                                    result.getString(ItemContract.EXTRA_REORDER_DIRECTORY)),
+                                    Toast.LENGTH_LONG).show();
+                        }
+                    }
+                });
+            }
+        }, "ReorderWriter").start();
+    }
+
     // Helper method to insert hardcoded items data into the database.
     private void insertItems() {
-        insertItem("Test", "10", 3, R.drawable.test, "menelaostest@gmail.com", "Menelaos");
+        insertItem("Test", 1000, 3, R.drawable.test, "menelaostest@gmail.com", "Menelaos");
     }
 
 
-    private void insertItem(String name, String price, int quantity, int imageId, String email, String supplier) {
+    private void insertItem(String name, long price, int quantity, int imageId, String email, String supplier) {
         // Create a ContentValues object where column names are the keys,
         // and item's attributes are the values.
         ContentValues values = new ContentValues();
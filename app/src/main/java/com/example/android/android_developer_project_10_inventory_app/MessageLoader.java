@@ -0,0 +1,47 @@
+package com.example.android.android_developer_project_10_inventory_app;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+
+/**
+ * {@link AsyncTaskLoader} for a one-off job, such as an export or import, that ends with a message
+ * for the user. The job runs once: it keeps running while the activity is stopped or recreated
+ * after a rotation, and the new activity gets the message when it reattaches.
+ */
+abstract class MessageLoader extends AsyncTaskLoader<String> {
+
+    // Message the job ended with, or null while it is running
+    private String mMessage;
+
+    // Whether the job was started
+    private boolean mStarted;
+
+    MessageLoader(Context context) {
+        super(context);
+    }
+
+    @Override
+    public void deliverResult(String message) {
+        mMessage = message;
+        if (isStarted()) {
+            super.deliverResult(message);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mMessage != null) {
+            deliverResult(mMessage);
+        } else if (!mStarted) {
+            // Started only once, since loading again would cancel the running job
+            mStarted = true;
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        mMessage = null;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.android.android_developer_project_10_inventory_app;
+
+import java.math.BigDecimal;
+
+/**
+ * Conversion between the prices typed and shown in the app, like "10.50", and the whole number
+ * of cents the database stores.
+ */
+public final class PriceFormat {
+
+    private PriceFormat() {}
+
+    // Parse a price entered by the user into cents. Returns -1 if the text is not a valid,
+    // non-negative price with at most two decimals.
+    public static long toCents(String price) {
+        if (price == null) {
+            return -1;
+        }
+        try {
+            BigDecimal cents = new BigDecimal(price.trim()).movePointRight(2);
+            if (cents.signum() < 0 || cents.stripTrailingZeros().scale() > 0) {
+                return -1;
+            }
+            return cents.longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            return -1;
+        }
+    }
+
+    // Format a price in cents for display, for instance 1050 as "10.50"
+    public static String format(long cents) {
+        return BigDecimal.valueOf(cents, 2).toPlainString();
+    }
+
+    // Write the price in cents into the buffer starting at the offset, formatted like
+    // format(long), without allocating. Returns the offset after the last char written.
+    // The buffer needs room for up to 22 chars.
+    public static int format(long cents, char[] buffer, int offset) {
+        int position = offset;
+        if (cents < 0) {
+            buffer[position++] = '-';
+            cents = -cents;
+        }
+        position = writeDigits(cents / 100, buffer, position);
+        int fraction = (int) (cents % 100);
+        buffer[position++] = '.';
+        buffer[position++] = (char) ('0' + fraction / 10);
+        buffer[position++] = (char) ('0' + fraction % 10);
+        return position;
+    }
+
+    // Write the decimal digits of a non-negative number into the buffer starting at the offset,
+    // without allocating. Returns the offset after the last digit.
+    public static int writeDigits(long value, char[] buffer, int offset) {
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int position = offset + digits;
+        do {
+            buffer[--position] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        return offset + digits;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.android.android_developer_project_10_inventory_app;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.widget.TextView;
+
+import com.example.android.android_developer_project_10_inventory_app.data.StartupTimeline;
+
+/**
+ * Debug screen showing the {@link StartupTimeline} of the cold start of this process.
+ */
+public class StartupTimelineActivity extends AppCompatActivity {
+
+    private TextView mTimelineTextView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_startup_timeline);
+        mTimelineTextView = (TextView) findViewById(R.id.startup_timeline_text);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Events may have been recorded since the screen was created, so show them all again
+        String timeline = StartupTimeline.getInstance().format();
+        if (timeline.isEmpty()) {
+            mTimelineTextView.setText(R.string.startup_timeline_empty);
+        } else {
+            mTimelineTextView.setText(timeline);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.android.android_developer_project_10_inventory_app;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the item thumbnails of the list off the main thread.
+ * <p>
+ * Images are decoded with inSampleSize and then cropped to the exact size of the row's image
+ * view. Thumbnails are kept in a memory cache bounded by a fraction of the app's memory class
+ * and written to a disk cache bounded by total size, so scrolling back or reopening the app
+ * doesn't decode the full-size photos again. Loading a new image into a recycled view cancels
+ * its previous load, and a queued load doesn't keep the view or its activity alive.
+ */
+public class ThumbnailLoader {
+
+    // Tag for log messages
+    private static final String LOG_TAG = ThumbnailLoader.class.getSimpleName();
+
+    // Fraction of the memory class the memory cache may use
+    private static final int MEMORY_CACHE_DIVIDER = 8;
+
+    // Directory of the disk cache, inside the app's cache directory
+    private static final String DISK_CACHE_DIRECTORY = "thumbnails";
+
+    // Most bytes the disk cache may use; the least recently used thumbnails are deleted beyond it
+    private static final long DISK_CACHE_MAX_BYTES = 20 * 1024 * 1024;
+
+    // Number of images decoded at the same time
+    private static final int DECODE_THREADS = 2;
+
+    private static ThumbnailLoader sInstance;
+
+    private final Context mContext;
+    private final LruCache<String, Bitmap> mMemoryCache;
+    private final File mDiskCacheDirectory;
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(DECODE_THREADS);
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Bytes used by the disk cache, or -1 until the directory is first measured. Guarded by this.
+    private long mDiskCacheBytes = -1;
+
+    // The load in progress for every view. Only touched on the main thread.
+    private final Map<ImageView, Future<?>> mLoads = new WeakHashMap<>();
+
+    // Returns the loader shared by the whole process
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ThumbnailLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ThumbnailLoader(Context context) {
+        mContext = context;
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int maxBytes = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CACHE_DIVIDER;
+        mMemoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+        mDiskCacheDirectory = new File(context.getCacheDir(), DISK_CACHE_DIRECTORY);
+    }
+
+    /**
+     * Shows the thumbnail of the image at the given URI in the view, cropped to the given size.
+     * Must be called on the main thread. The view shows the placeholder until the thumbnail is
+     * ready.
+     */
+    public void load(ImageView imageView, String imageUri, int width, int height, int placeholder) {
+        Future<?> previous = mLoads.remove(imageView);
+        if (previous != null) {
+            previous.cancel(true);
+        }
+
+        if (imageUri == null || imageUri.isEmpty()) {
+            imageView.setTag(null);
+            imageView.setImageResource(placeholder);
+            return;
+        }
+
+        final String key = imageUri + '@' + width + 'x' + height;
+        imageView.setTag(key);
+        Bitmap cached = mMemoryCache.get(key);
+        if (cached != null) {
+            imageView.setImageBitmap(cached);
+            return;
+        }
+
+        imageView.setImageResource(placeholder);
+        mLoads.put(imageView, mExecutor.submit(
+                new LoadTask(imageView, key, Uri.parse(imageUri), width, height)));
+    }
+
+    // Decodes one thumbnail in the background and hands it to the view if it still wants it
+    private class LoadTask implements Runnable {
+        private final WeakReference<ImageView> mImageView;
+        private final String mKey;
+        private final Uri mUri;
+        private final int mWidth;
+        private final int mHeight;
+
+        LoadTask(ImageView imageView, String key, Uri uri, int width, int height) {
+            mImageView = new WeakReference<>(imageView);
+            mKey = key;
+            mUri = uri;
+            mWidth = width;
+            mHeight = height;
+        }
+
+        @Override
+        public void run() {
+            // Nobody to show the thumbnail to if the view is gone
+            if (mImageView.get() == null) {
+                return;
+            }
+            File cacheFile = new File(mDiskCacheDirectory, hash(mKey));
+            Bitmap bitmap = BitmapFactory.decodeFile(cacheFile.getPath());
+            if (bitmap != null) {
+                // Keep the thumbnail when the disk cache is trimmed, as it is still used
+                cacheFile.setLastModified(System.currentTimeMillis());
+            } else if (!Thread.currentThread().isInterrupted()) {
+                bitmap = decodeThumbnail(mUri, mWidth, mHeight);
+                if (bitmap != null) {
+                    writeToDisk(bitmap, cacheFile);
+                }
+            }
+            if (bitmap == null) {
+                return;
+            }
+            mMemoryCache.put(mKey, bitmap);
+
+            final Bitmap result = bitmap;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    // The view may have been recycled for another row, or dropped, in the meantime
+                    ImageView imageView = mImageView.get();
+                    if (imageView != null && mKey.equals(imageView.getTag())) {
+                        imageView.setImageBitmap(result);
+                        mLoads.remove(imageView);
+                    }
+                }
+            });
+        }
+    }
+
+    // Decode the image subsampled close to the target size, then crop it to exactly that size
+    private Bitmap decodeThumbnail(Uri uri, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        if (!decodeBounds(uri, options)) {
+            return null;
+        }
+        options.inSampleSize = BitmapSizing.calculateInSampleSize(
+                options.outWidth, options.outHeight, width, height);
+        options.inJustDecodeBounds = false;
+
+        InputStream input = null;
+        Bitmap sampled;
+        try {
+            input = mContext.getContentResolver().openInputStream(uri);
+            sampled = BitmapFactory.decodeStream(input, null, options);
+        } catch (IOException | SecurityException e) {
+            Log.e(LOG_TAG, "Failed to load image " + uri, e);
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+        if (sampled == null) {
+            return null;
+        }
+
+        // Scale so that the image covers the target, then keep the middle of it
+        float scale = Math.max(width / (float) sampled.getWidth(), height / (float) sampled.getHeight());
+        int cropWidth = Math.min(sampled.getWidth(), Math.round(width / scale));
+        int cropHeight = Math.min(sampled.getHeight(), Math.round(height / scale));
+        Matrix matrix = new Matrix();
+        matrix.setScale(width / (float) cropWidth, height / (float) cropHeight);
+        Bitmap thumbnail = Bitmap.createBitmap(sampled, (sampled.getWidth() - cropWidth) / 2,
+                (sampled.getHeight() - cropHeight) / 2, cropWidth, cropHeight, matrix, true);
+        if (thumbnail != sampled) {
+            sampled.recycle();
+        }
+        return thumbnail;
+    }
+
+    // Read the image bounds into the options. Returns false if the image can't be read.
+    private boolean decodeBounds(Uri uri, BitmapFactory.Options options) {
+        InputStream input = null;
+        try {
+            input = mContext.getContentResolver().openInputStream(uri);
+            BitmapFactory.decodeStream(input, null, options);
+            return options.outWidth > 0 && options.outHeight > 0;
+        } catch (IOException | SecurityException e) {
+            Log.e(LOG_TAG, "Failed to load image " + uri, e);
+            return false;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    private void writeToDisk(Bitmap bitmap, File file) {
+        if (!mDiskCacheDirectory.isDirectory() && !mDiskCacheDirectory.mkdirs()) {
+            return;
+        }
+        // Write to a temporary file first so a half-written thumbnail is never read back
+        File temp = new File(file.getPath() + ".tmp");
+        OutputStream output = null;
+        try {
+            output = new FileOutputStream(temp);
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, output);
+            output.close();
+            output = null;
+            if (temp.renameTo(file)) {
+                trimDiskCache(file.length());
+            } else {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to cache thumbnail", e);
+            temp.delete();
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    // Count the bytes of a thumbnail just written, and delete the least recently used thumbnails
+    // once the disk cache is larger than its limit
+    private synchronized void trimDiskCache(long bytesAdded) {
+        if (mDiskCacheBytes >= 0) {
+            mDiskCacheBytes += bytesAdded;
+            if (mDiskCacheBytes <= DISK_CACHE_MAX_BYTES) {
+                return;
+            }
+        }
+
+        File[] files = mDiskCacheDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        // Sort by the time each file was last written or read, oldest first
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        long bytes = 0;
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+            bytes += files[i].length();
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(lastModified[a], lastModified[b]);
+            }
+        });
+        for (int i = 0; i < order.length && bytes > DISK_CACHE_MAX_BYTES; i++) {
+            File file = files[order[i]];
+            long length = file.length();
+            if (file.delete()) {
+                bytes -= length;
+            }
+        }
+        mDiskCacheBytes = bytes;
+    }
+
+    // Returns a file name for the given cache key
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return String.valueOf(key.hashCode());
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
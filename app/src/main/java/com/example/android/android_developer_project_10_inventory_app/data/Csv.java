@@ -0,0 +1,37 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Comma separated values as described by RFC 4180: fields that contain a comma, a quote or a line
+ * break are quoted, quotes inside them are doubled, and records end with CRLF.
+ */
+public final class Csv {
+
+    private Csv() {}
+
+    // Write one record made of the given fields
+    public static void writeRecord(Writer writer, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escape(fields[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    // Returns the field as it has to appear in a record. Null is written as an empty field.
+    static String escape(String field) {
+        if (field == null) {
+            return "";
+        }
+        boolean quote = false;
+        for (int i = 0; i < field.length() && !quote; i++) {
+            char c = field.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        return quote ? '"' + field.replace("\"", "\"\"") + '"' : field;
+    }
+}
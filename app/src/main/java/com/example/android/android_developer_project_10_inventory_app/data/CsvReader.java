@@ -0,0 +1,167 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming reader of comma separated values in the format written by {@link Csv}.
+ * <p>
+ * Records are read one at a time through a fixed buffer. The unescaped fields of the current
+ * record are kept in one reusable char array, so reading a record allocates nothing; strings
+ * are only created for the fields asked for with {@link #getString(int)}, and numbers are parsed
+ * straight from the chars. Quoted fields may contain commas, doubled quotes and line breaks.
+ */
+public class CsvReader implements Closeable {
+
+    private final Reader mReader;
+    private final char[] mBuffer = new char[8192];
+    private int mPosition;
+    private int mLimit;
+
+    // The unescaped fields of the current record, one after another
+    private char[] mRecord = new char[256];
+    private int mRecordLength;
+
+    // Start and end of every field of the current record in mRecord
+    private int[] mFieldStarts = new int[16];
+    private int[] mFieldEnds = new int[16];
+    private int mFieldCount;
+
+    public CsvReader(Reader reader) {
+        mReader = reader;
+    }
+
+    // Returns the next char of the input, or -1 at its end
+    private int read() throws IOException {
+        if (mPosition == mLimit) {
+            mLimit = mReader.read(mBuffer, 0, mBuffer.length);
+            mPosition = 0;
+            if (mLimit <= 0) {
+                mLimit = 0;
+                return -1;
+            }
+        }
+        return mBuffer[mPosition++];
+    }
+
+    // Returns the next char of the input without consuming it, or -1 at its end
+    private int peek() throws IOException {
+        int c = read();
+        if (c != -1) {
+            mPosition--;
+        }
+        return c;
+    }
+
+    private void append(char c) {
+        if (mRecordLength == mRecord.length) {
+            char[] record = new char[mRecord.length * 2];
+            System.arraycopy(mRecord, 0, record, 0, mRecordLength);
+            mRecord = record;
+        }
+        mRecord[mRecordLength++] = c;
+    }
+
+    private void endField(int start) {
+        if (mFieldCount == mFieldStarts.length) {
+            int[] starts = new int[mFieldCount * 2];
+            int[] ends = new int[mFieldCount * 2];
+            System.arraycopy(mFieldStarts, 0, starts, 0, mFieldCount);
+            System.arraycopy(mFieldEnds, 0, ends, 0, mFieldCount);
+            mFieldStarts = starts;
+            mFieldEnds = ends;
+        }
+        mFieldStarts[mFieldCount] = start;
+        mFieldEnds[mFieldCount] = mRecordLength;
+        mFieldCount++;
+    }
+
+    /**
+     * Reads the next record. Returns false at the end of the input. Records end with CRLF, LF
+     * or CR; an empty line is a record with one empty field.
+     */
+    public boolean readRecord() throws IOException {
+        mRecordLength = 0;
+        mFieldCount = 0;
+        int c = read();
+        if (c == -1) {
+            return false;
+        }
+        int fieldStart = 0;
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field");
+                }
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    append((char) c);
+                }
+            } else if (c == ',') {
+                endField(fieldStart);
+                fieldStart = mRecordLength;
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r' && peek() == '\n') {
+                    read();
+                }
+                endField(fieldStart);
+                return true;
+            } else if (c == '"' && mRecordLength == fieldStart) {
+                quoted = true;
+            } else {
+                append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    // Returns the number of fields of the current record
+    public int getFieldCount() {
+        return mFieldCount;
+    }
+
+    // Returns whether the given field of the current record is empty
+    public boolean isEmpty(int field) {
+        return mFieldStarts[field] == mFieldEnds[field];
+    }
+
+    // Returns the given field of the current record
+    public String getString(int field) {
+        return new String(mRecord, mFieldStarts[field], mFieldEnds[field] - mFieldStarts[field]);
+    }
+
+    // Returns the given field of the current record as a whole number
+    public long getLong(int field) {
+        int position = mFieldStarts[field];
+        int end = mFieldEnds[field];
+        boolean negative = position < end && mRecord[position] == '-';
+        if (negative) {
+            position++;
+        }
+        if (position == end || end - position > 18) {
+            throw new NumberFormatException("Not a number: " + getString(field));
+        }
+        long value = 0;
+        for (; position < end; position++) {
+            char c = mRecord[position];
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Not a number: " + getString(field));
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+}
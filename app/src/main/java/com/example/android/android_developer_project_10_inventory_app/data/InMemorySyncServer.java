@@ -0,0 +1,121 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Sync server kept in memory, standing in for a real backend in tests and offline builds.
+ * <p>
+ * It keeps the winning change of every item, with the quantity counters of all changes pushed for
+ * it merged, under the server version at which it last changed, so a pull after a token only
+ * walks the changes kept since then. It counts the rows and bytes that go in and out, which shows
+ * what a sync costs.
+ */
+public class InMemorySyncServer implements SyncTransport {
+
+    // Winning change of every item, by sync ID, and the server version it was kept at
+    private final Map<String, SyncBatch.Change> mChanges = new HashMap<>();
+    private final Map<String, Long> mVersions = new HashMap<>();
+
+    // Sync IDs of the kept changes by server version
+    private final NavigableMap<Long, String> mLog = new TreeMap<>();
+
+    private long mVersion;
+
+    private long mRowsPushed;
+    private long mRowsPulled;
+    private long mBytesPushed;
+    private long mBytesPulled;
+
+    @Override
+    public synchronized void push(byte[] batch) throws IOException {
+        mBytesPushed += batch.length;
+        for (SyncBatch.Change change : SyncBatch.decode(batch).changes) {
+            mRowsPushed++;
+            SyncBatch.Change kept = mChanges.get(change.syncId);
+            if (kept == null) {
+                keep(change);
+            } else if (change.winsOver(kept.version, kept.device)) {
+                keep(merge(change, kept));
+            } else {
+                SyncBatch.Change merged = merge(kept, change);
+                if (merged != kept) {
+                    keep(merged);
+                }
+            }
+        }
+    }
+
+    // Returns the winning change with the quantity counters of both merged, or the winning change
+    // itself if the loser adds nothing to its counter. Tombstones keep no counter.
+    private static SyncBatch.Change merge(SyncBatch.Change winner, SyncBatch.Change loser) {
+        if (winner.deleted || loser.deleted) {
+            return winner;
+        }
+        QuantityCounter merged = winner.quantity.merge(loser.quantity);
+        return merged.equals(winner.quantity) ? winner : winner.withQuantity(merged);
+    }
+
+    // Keep the change under the next server version, in place of the change kept for its item
+    private void keep(SyncBatch.Change change) {
+        Long oldVersion = mVersions.get(change.syncId);
+        if (oldVersion != null) {
+            mLog.remove(oldVersion);
+        }
+        mVersion++;
+        mChanges.put(change.syncId, change);
+        mVersions.put(change.syncId, mVersion);
+        mLog.put(mVersion, change.syncId);
+    }
+
+    @Override
+    public synchronized byte[] pull(long token, int limit) throws IOException {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        List<SyncBatch.Change> changes = new ArrayList<>();
+        long nextToken = token;
+        Iterator<Map.Entry<Long, String>> entries = mLog.tailMap(token, false).entrySet().iterator();
+        while (entries.hasNext() && changes.size() < limit) {
+            Map.Entry<Long, String> entry = entries.next();
+            changes.add(mChanges.get(entry.getValue()));
+            nextToken = entry.getKey();
+        }
+        byte[] batch = new SyncBatch(nextToken, entries.hasNext(), changes).encode();
+        mRowsPulled += changes.size();
+        mBytesPulled += batch.length;
+        return batch;
+    }
+
+    // Returns the change the server kept for the item with the given sync ID, or null
+    public synchronized SyncBatch.Change getChange(String syncId) {
+        return mChanges.get(syncId);
+    }
+
+    // Returns the number of items the server has changes for, tombstones included
+    public synchronized int size() {
+        return mChanges.size();
+    }
+
+    public synchronized long getRowsPushed() {
+        return mRowsPushed;
+    }
+
+    public synchronized long getRowsPulled() {
+        return mRowsPulled;
+    }
+
+    public synchronized long getBytesPushed() {
+        return mBytesPushed;
+    }
+
+    public synchronized long getBytesPulled() {
+        return mBytesPulled;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded in-memory cache of item rows, keyed by item _id, used by {@link ItemProvider} to answer
+ * single item queries without SQLite.
+ * <p>
+ * Rows are evicted least recently used first. Writers invalidate rows after their transaction
+ * commits; a reader that looked a row up in the database only caches it if no invalidation
+ * happened since it started, so a row read before a commit never outlives it. Hits, misses and
+ * evictions are counted to judge the cache size on a real catalog.
+ */
+public class ItemCache {
+
+    // The cached rows, least recently used first. Guarded by "this".
+    private final LinkedHashMap<Long, Object[]> mRows;
+
+    // Number of invalidations so far. Guarded by "this".
+    private long mGeneration;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    public ItemCache(final int maxRows) {
+        if (maxRows < 1) {
+            throw new IllegalArgumentException("Cache must hold at least one row");
+        }
+        mRows = new LinkedHashMap<Long, Object[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Object[]> eldest) {
+                if (size() > maxRows) {
+                    mEvictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Returns the cached row of the given item, or null if it isn't cached
+    public synchronized Object[] get(long id) {
+        Object[] row = mRows.get(id);
+        if (row == null) {
+            mMissCount++;
+        } else {
+            mHitCount++;
+        }
+        return row;
+    }
+
+    // Returns the value to pass to put() for a row about to be read from the database
+    public synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    // Cache the row of the given item, read from the database after getGeneration() returned
+    // the given generation. Ignored if rows were invalidated since, as the row may be stale.
+    public synchronized void put(long id, Object[] row, long generation) {
+        if (generation == mGeneration) {
+            mRows.put(id, row);
+        }
+    }
+
+    // Drop the row of the given item after it was written
+    public synchronized void invalidate(long id) {
+        mGeneration++;
+        mRows.remove(id);
+    }
+
+    // Drop all rows after a write to several items
+    public synchronized void invalidateAll() {
+        mGeneration++;
+        mRows.clear();
+    }
+
+    public synchronized int size() {
+        return mRows.size();
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+}
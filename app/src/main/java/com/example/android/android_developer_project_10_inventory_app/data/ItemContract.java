@@ -1,6 +1,7 @@
 package com.example.android.android_developer_project_10_inventory_app.data;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
@@ -26,6 +27,127 @@ public final class ItemContract {
      // is a valid path for looking at items data.
     public static final String PATH_ITEMS = "items";
 
+    // Path appended to the items URI to search items by name and supplier, with the words to
+    // look for in the {@link #QUERY_PARAMETER_SEARCH} query parameter, for instance
+    // content://com.example.android.android_developer_project_10_inventory_app/items/search?q=pen
+    public static final String PATH_SEARCH = "search";
+
+    // Path appended to the items URI to list the items whose quantity has fallen to their
+    // reorder threshold, for instance
+    // content://com.example.android.android_developer_project_10_inventory_app/items/low_stock
+    public static final String PATH_LOW_STOCK = "low_stock";
+
+    // Path appended to the items URI to read the inventory totals, for instance
+    // content://com.example.android.android_developer_project_10_inventory_app/items/stats
+    public static final String PATH_STATS = "stats";
+
+    // Path appended to the stats URI to read the totals of every supplier, for instance
+    // content://com.example.android.android_developer_project_10_inventory_app/items/stats/suppliers
+    public static final String PATH_STATS_SUPPLIERS = "suppliers";
+
+    // Path for looking at the locations stock is kept at, for instance
+    // content://com.example.android.android_developer_project_10_inventory_app/locations
+    public static final String PATH_LOCATIONS = "locations";
+
+    // Path for recording and looking up the batches of stock adjustments written through
+    // applyBatch(), for instance
+    // content://com.example.android.android_developer_project_10_inventory_app/adjustment_batches
+    public static final String PATH_ADJUSTMENT_BATCHES = "adjustment_batches";
+
+    // Path appended to a single item URI to read the quantity of the item at every location,
+    // for instance content://com.example.android.android_developer_project_10_inventory_app/items/3/stock
+    public static final String PATH_STOCK = "stock";
+
+    // Path appended to the items URI to address one item by its SKU, followed by the SKU, for
+    // instance content://com.example.android.android_developer_project_10_inventory_app/items/sku/4006381333931
+    public static final String PATH_SKU = "sku";
+
+    // Path appended to a single item URI to read the stock movements of the item, newest first,
+    // for instance content://com.example.android.android_developer_project_10_inventory_app/items/3/history
+    public static final String PATH_HISTORY = "history";
+
+    // Path appended to the history URI to read the movements of the item added up per day,
+    // for instance content://com.example.android.android_developer_project_10_inventory_app/items/3/history/daily
+    public static final String PATH_HISTORY_DAILY = "daily";
+
+    // Query parameter holding the text to search for. Every word matches as a prefix.
+    public static final String QUERY_PARAMETER_SEARCH = "q";
+
+    // Path appended to a single item URI to adjust its quantity by a relative amount,
+    // for instance content://com.example.android.android_developer_project_10_inventory_app/items/3/quantity_delta
+    public static final String PATH_QUANTITY_DELTA = "quantity_delta";
+
+    // Query parameter that limits the number of rows returned by a query on the items URI,
+    // for instance content://com.example.android.android_developer_project_10_inventory_app/items?limit=50
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+    // Name of the provider call() method that adjusts the quantity of one item by a delta
+    // and returns the new quantity.
+    public static final String METHOD_ADJUST_QUANTITY = "adjust_quantity";
+
+    // Keys of the call() extras and result for {@link #METHOD_ADJUST_QUANTITY}
+    public static final String EXTRA_QUANTITY_DELTA = "quantity_delta";
+    public static final String EXTRA_QUANTITY = "quantity";
+    // Optional reason recorded with the stock movement, see {@link MovementEntry#COLUMN_REASON}
+    public static final String EXTRA_MOVEMENT_REASON = "reason";
+
+    // Name of the provider call() method that adds up the stock movements older than a cutoff
+    // into daily totals and deletes them, and returns how many movements it compacted
+    public static final String METHOD_COMPACT_MOVEMENTS = "compact_movements";
+
+    // Keys of the call() extras and result for {@link #METHOD_COMPACT_MOVEMENTS}. The cutoff, in
+    // milliseconds since the epoch, is optional and rounded down to the start of its day.
+    public static final String EXTRA_MOVEMENT_CUTOFF = "cutoff";
+    public static final String EXTRA_MOVEMENTS_COMPACTED = "compacted";
+
+    // Name of the provider call() method that moves units of one item from one location to
+    // another in one transaction. It takes the item ID as arg, the locations and the number of
+    // units, in {@link #EXTRA_QUANTITY}, in the extras, and returns null if the source location
+    // doesn't hold that many units or either location doesn't exist.
+    public static final String METHOD_TRANSFER_STOCK = "transfer_stock";
+
+    // Keys of the call() extras for {@link #METHOD_TRANSFER_STOCK}
+    public static final String EXTRA_FROM_LOCATION = "from_location";
+    public static final String EXTRA_TO_LOCATION = "to_location";
+
+    // Names of the provider call() methods {@link ItemSyncEngine} syncs through. The first returns
+    // a batch of the local changes not pushed yet, in the wire format of {@link SyncBatch}, with
+    // the local sequence number of its last change; the second marks the changes up to that
+    // number as pushed. The third applies a batch pulled from the server and keeps its sync
+    // token, which the fourth returns.
+    public static final String METHOD_SYNC_READ_CHANGES = "sync_read_changes";
+    public static final String METHOD_SYNC_MARK_PUSHED = "sync_mark_pushed";
+    public static final String METHOD_SYNC_APPLY_CHANGES = "sync_apply_changes";
+    public static final String METHOD_SYNC_GET_TOKEN = "sync_get_token";
+
+    // Keys of the call() extras and results of the sync methods
+    public static final String EXTRA_SYNC_BATCH = "batch";
+    public static final String EXTRA_SYNC_LIMIT = "limit";
+    public static final String EXTRA_SYNC_COUNT = "count";
+    public static final String EXTRA_SYNC_SEQUENCE = "sequence";
+    public static final String EXTRA_SYNC_TOKEN = "token";
+    public static final String EXTRA_SYNC_MORE = "more";
+
+    // Name of the provider call() method that returns the counters of the provider's in-memory
+    // cache of single items, for instance with
+    // adb shell content call --uri content://<authority> --method get_cache_stats
+    public static final String METHOD_GET_CACHE_STATS = "get_cache_stats";
+
+    // Name of the provider call() method that writes the reorder documents of every supplier with
+    // items at or below their reorder threshold into the app's files, and returns the number of
+    // suppliers and the directory of the documents.
+    public static final String METHOD_WRITE_REORDER_BATCH = "write_reorder_batch";
+
+    // Keys of the call() result for {@link #METHOD_WRITE_REORDER_BATCH}
+    public static final String EXTRA_REORDER_SUPPLIER_COUNT = "supplier_count";
+    public static final String EXTRA_REORDER_DIRECTORY = "directory";
+
+    // Keys of the call() result for {@link #METHOD_GET_CACHE_STATS}
+    public static final String EXTRA_CACHE_SIZE = "size";
+    public static final String EXTRA_CACHE_HITS = "hits";
+    public static final String EXTRA_CACHE_MISSES = "misses";
+    public static final String EXTRA_CACHE_EVICTIONS = "evictions";
+
     // Inner class that defines the table contents
     public static class ItemEntry implements BaseColumns {
 
@@ -48,9 +170,312 @@ public final class ItemContract {
         public static final String _ID = BaseColumns._ID;
         public static final String COLUMN_ITEM_NAME = "name";
         public static final String COLUMN_ITEM_QUANTITY = "quantity";
+        // Price in minor currency units (cents), stored as an integer
         public static final String COLUMN_ITEM_PRICE = "price";
         public static final String COLUMN_ITEM_IMAGE = "image";
+        // Foreign key to the {@link SupplierEntry} row of the item's supplier
+        public static final String COLUMN_ITEM_SUPPLIER_ID = "supplier_id";
+        // Quantity at or below which the item needs to be reordered. Optional, 0 by default, so
+        // that items are reported once they are out of stock.
+        public static final String COLUMN_ITEM_REORDER_THRESHOLD = "reorder_threshold";
+        // ID of the item on every device it is synced to, see {@link SyncEntry}. Assigned by the
+        // database when the item is inserted.
+        public static final String COLUMN_ITEM_SYNC_ID = "sync_id";
+        // Stock keeping unit or barcode of the item. Optional; no two items can have the same one,
+        // and writes that would give an item the SKU of another fail.
+        public static final String COLUMN_ITEM_SKU = "sku";
+        // Units sold per day, exponentially weighted as described in {@link SalesVelocity}, as of
+        // the time in {@link #COLUMN_ITEM_VELOCITY_TIME}. Maintained by the provider from the
+        // sales that go through quantity deltas; 0 until the item first sells.
+        public static final String COLUMN_ITEM_SALES_VELOCITY = "sales_velocity";
+        public static final String COLUMN_ITEM_VELOCITY_TIME = "velocity_time";
+        // The sales velocity projected to a fixed time, see {@link SalesVelocity#rebased}.
+        // Maintained by the provider along with the sales velocity.
+        public static final String COLUMN_ITEM_REBASED_VELOCITY = "rebased_velocity";
+
+        // Sort order of items by days of cover, the days their quantity lasts at their current
+        // sales velocity, fewest first, with the items that don't sell last. The current velocity
+        // of every item is its rebased velocity times the same factor, so dividing by the rebased
+        // velocity orders the items exactly. Use {@link SalesVelocity#daysOfCover} to show the
+        // value.
+        public static final String SORT_ORDER_DAYS_OF_COVER = COLUMN_ITEM_REBASED_VELOCITY + " <= 0, "
+                + "MAX(" + COLUMN_ITEM_QUANTITY + ", 0) / " + COLUMN_ITEM_REBASED_VELOCITY + ", "
+                + COLUMN_ITEM_NAME + ", " + _ID;
+
+        // View joining every item to its supplier. Queries on the items URIs read from it, so the
+        // supplier name and email below can be read as if they were columns of the item.
+        public static final String VIEW_NAME = "items_with_supplier";
         public static final String COLUMN_ITEM_SUPPLIER = "supplier";
         public static final String COLUMN_SUPPLIER_EMAIL = "email";
+
+        // Full-text index over the item and supplier names, kept up to date by triggers.
+        // The docid of every row is the _id of its item.
+        public static final String FTS_TABLE_NAME = "items_fts";
+
+        // The content URI to search items
+        public static final Uri CONTENT_SEARCH_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SEARCH);
+
+        // Table holding the _id of every item whose quantity is at or below its reorder
+        // threshold, kept up to date by triggers as items are written
+        public static final String LOW_STOCK_TABLE_NAME = "low_stock";
+        public static final String COLUMN_LOW_STOCK_ITEM_ID = "item_id";
+
+        // The content URI to list the items that need to be reordered
+        public static final Uri CONTENT_LOW_STOCK_URI = Uri.withAppendedPath(CONTENT_URI, PATH_LOW_STOCK);
+
+        // Returns the URI that searches items for the given text
+        public static Uri buildSearchUri(String text) {
+            return CONTENT_SEARCH_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_SEARCH, text)
+                    .build();
+        }
+
+        // Key of the relative change in ContentValues sent to a quantity delta URI
+        public static final String COLUMN_QUANTITY_DELTA = "quantity_delta";
+
+        // Returns the URI that adjusts the quantity of the item with the given ID by a delta
+        public static Uri buildQuantityDeltaUri(long id) {
+            return Uri.withAppendedPath(ContentUris.withAppendedId(CONTENT_URI, id),
+                    PATH_QUANTITY_DELTA);
+        }
+
+        // Returns the URI the provider notifies when a write changes only the given column of the
+        // item with the given ID, for instance .../items/3/quantity. The column is named as in the
+        // items table. Observers of this URI are not woken by writes to the item's other columns
+        // or to other items; observers of the item or of all items still are. It can't be queried.
+        public static Uri buildFieldUri(long id, String column) {
+            return Uri.withAppendedPath(ContentUris.withAppendedId(CONTENT_URI, id), column);
+        }
+
+        // Returns the URI of the item with the given SKU. It can be queried and updated like a
+        // single item URI, and inserting to it creates the item or, if it exists, updates it.
+        public static Uri buildSkuUri(String sku) {
+            return CONTENT_URI.buildUpon().appendPath(PATH_SKU).appendPath(sku).build();
+        }
+
+        // Returns the URI that adjusts the quantity of the item with the given SKU by a delta
+        public static Uri buildSkuQuantityDeltaUri(String sku) {
+            return Uri.withAppendedPath(buildSkuUri(sku), PATH_QUANTITY_DELTA);
+        }
+
+        // Returns the URI of the quantities of the item with the given ID at every location
+        public static Uri buildStockUri(long id) {
+            return Uri.withAppendedPath(ContentUris.withAppendedId(CONTENT_URI, id), PATH_STOCK);
+        }
+
+        // Returns the URI of the stock movements of the item with the given ID
+        public static Uri buildHistoryUri(long id) {
+            return Uri.withAppendedPath(ContentUris.withAppendedId(CONTENT_URI, id), PATH_HISTORY);
+        }
+
+        // Returns the URI of the daily movement totals of the item with the given ID
+        public static Uri buildDailyHistoryUri(long id) {
+            return Uri.withAppendedPath(buildHistoryUri(id), PATH_HISTORY_DAILY);
+        }
+    }
+
+    // Inner class that defines the suppliers table. Suppliers are not exposed through their own
+    // URI; the provider creates and looks them up from the supplier and email of item writes.
+    public static class SupplierEntry implements BaseColumns {
+
+        // constants for the Database
+        public static final String TABLE_NAME = "suppliers";
+        public static final String _ID = BaseColumns._ID;
+        public static final String COLUMN_SUPPLIER_NAME = "name";
+        public static final String COLUMN_SUPPLIER_EMAIL = "email";
+    }
+
+    // Inner class that defines the stock movement ledger. The provider appends a movement in the
+    // same transaction as every write that changes the quantity of an item, so the movements of
+    // an item add up to its quantity. Old movements are compacted into one row per item and day.
+    public static class MovementEntry implements BaseColumns {
+
+        // The MIME types of the history URIs of an item
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" +
+                        CONTENT_AUTHORITY + "/" + PATH_ITEMS + "." + PATH_HISTORY;
+        public static final String CONTENT_DAILY_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" +
+                        CONTENT_AUTHORITY + "/" + PATH_ITEMS + "." + PATH_HISTORY + "." + PATH_HISTORY_DAILY;
+
+        // constants for the Database
+        public static final String TABLE_NAME = "stock_movements";
+        public static final String _ID = BaseColumns._ID;
+        public static final String COLUMN_ITEM_ID = "item_id";
+        // Change of the quantity, negative when stock went out
+        public static final String COLUMN_DELTA = "delta";
+        // Why the quantity changed, one of the REASON_ constants unless the writer gave its own.
+        // Writers can pass it along with the quantity in update() values and in the extras of
+        // {@link ItemContract#METHOD_ADJUST_QUANTITY}.
+        public static final String COLUMN_REASON = "reason";
+        // Time of the change in milliseconds since the epoch
+        public static final String COLUMN_TIMESTAMP = "timestamp";
+
+        // Table of the compacted daily totals
+        public static final String DAILY_TABLE_NAME = "stock_movement_days";
+        // Day of the movements as the number of days since the epoch, in UTC
+        public static final String COLUMN_DAY = "day";
+        public static final String COLUMN_QUANTITY_IN = "quantity_in";
+        public static final String COLUMN_QUANTITY_OUT = "quantity_out";
+        public static final String COLUMN_MOVEMENT_COUNT = "movement_count";
+
+        // Length of the days of {@link #COLUMN_DAY}
+        public static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+        // Reasons the provider records when the writer gave none
+        public static final String REASON_CREATED = "created";
+        public static final String REASON_EDITED = "edited";
+        public static final String REASON_SOLD = "sold";
+        public static final String REASON_RECEIVED = "received";
+        public static final String REASON_SYNCED = "synced";
+    }
+
+    // Inner class that defines the sync bookkeeping. Triggers record every local write to an item
+    // as a row version of its sync ID, numbered with a local sequence number, and a deletion as a
+    // tombstone, so a sync pushes only the rows changed since the last push. Changes pulled from
+    // the server are applied without being recorded as local ones.
+    public static class SyncEntry {
+
+        // Table of the latest version of every item that was ever written, tombstones included
+        public static final String TABLE_NAME = "sync_rows";
+        public static final String COLUMN_SYNC_ID = "sync_id";
+        // _id of the item, NULL for tombstones
+        public static final String COLUMN_ITEM_ID = "item_id";
+        // Row version and device of the change, as in {@link SyncBatch.Change}
+        public static final String COLUMN_VERSION = "version";
+        public static final String COLUMN_DEVICE = "device";
+        public static final String COLUMN_DELETED = "deleted";
+        // Local sequence number of the change, 0 for changes pulled from the server
+        public static final String COLUMN_SEQUENCE = "sequence";
+
+        // Table of the sync state, with exactly one row
+        public static final String STATE_TABLE_NAME = "sync_state";
+        // Random ID of this database, decides conflicts between equal row versions
+        public static final String COLUMN_DEVICE_ID = "device_id";
+        // Last local sequence number handed out, and the last one pushed to the server
+        public static final String COLUMN_LAST_SEQUENCE = "last_sequence";
+        public static final String COLUMN_PUSHED_SEQUENCE = "pushed_sequence";
+        // Sync token of the last batch pulled from the server
+        public static final String COLUMN_SERVER_TOKEN = "server_token";
+        // 1 while pulled changes are applied, which the triggers don't record
+        public static final String COLUMN_APPLYING = "applying";
+    }
+
+    // Inner class that defines the quantity counters, the units every device added to and
+    // removed from every item, as in {@link QuantityCounter}. Triggers count a local write of the
+    // quantity for this device; the quantity of the item is kept equal to the sum of its counters.
+    public static class CounterEntry {
+
+        // constants for the Database. The primary key is (item_id, device).
+        public static final String TABLE_NAME = "quantity_counters";
+        public static final String COLUMN_ITEM_ID = "item_id";
+        public static final String COLUMN_DEVICE = "device";
+        public static final String COLUMN_INCREMENTS = "increments";
+        public static final String COLUMN_DECREMENTS = "decrements";
+
+        // Device the quantities items had before they were counted per device are counted for.
+        // Every device that had the item counts the same quantity for it, so it is counted once.
+        public static final String BASE_DEVICE = "";
+    }
+
+    // Inner class that defines the record of the last batch of stock adjustments committed. A
+    // batch inserts its ID into {@link #CONTENT_URI} as one of its operations, so the ID is
+    // committed in the same transaction as the adjustments, and a writer that lost track of a
+    // batch can look it up to tell whether it went through. Inserting an ID replaces the one
+    // recorded before, as {@link StockAdjustmentQueue} only ever has one batch in flight.
+    public static class AdjustmentBatchEntry {
+
+        // The content URI to record and look up batches in the provider
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_ADJUSTMENT_BATCHES);
+
+        // The MIME type of the {@link #CONTENT_URI}
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_ADJUSTMENT_BATCHES;
+
+        // constants for the Database
+        public static final String TABLE_NAME = "adjustment_batches";
+        public static final String COLUMN_BATCH_ID = "batch_id";
+    }
+
+    // Inner class that defines the locations stock is kept at, such as the front store and the
+    // stockrooms. Queries on the locations URIs return the total units at every location.
+    public static class LocationEntry implements BaseColumns {
+
+        // The content URI to access the locations in the provider
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_LOCATIONS);
+
+        // The MIME types of the {@link #CONTENT_URI} for a list of locations and a single location
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_LOCATIONS;
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_LOCATIONS;
+
+        // constants for the Database
+        public static final String TABLE_NAME = "locations";
+        public static final String _ID = BaseColumns._ID;
+        public static final String COLUMN_LOCATION_NAME = "name";
+        // Total units of all items at the location, in queries
+        public static final String COLUMN_LOCATION_QUANTITY = "quantity";
+
+        // The location every database starts with. Quantity changes made through the items URIs
+        // and the quantity delta URIs apply to it, drawing units from the other locations first
+        // when it doesn't hold enough for a drop; units get to other locations by transfers.
+        public static final long DEFAULT_LOCATION_ID = 1;
+        public static final String DEFAULT_LOCATION_NAME = "Front store";
+    }
+
+    // Inner class that defines the quantity of every item at every location. The quantity of
+    // the item in {@link ItemEntry#COLUMN_ITEM_QUANTITY} is the total over its locations, kept
+    // equal to it by triggers, so lists of items never need to add the locations up.
+    public static class StockEntry {
+
+        // The MIME type of the stock URI of an item
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" +
+                        CONTENT_AUTHORITY + "/" + PATH_ITEMS + "." + PATH_STOCK;
+
+        // constants for the Database. The primary key is (item_id, location_id).
+        public static final String TABLE_NAME = "stock";
+        public static final String COLUMN_ITEM_ID = "item_id";
+        public static final String COLUMN_LOCATION_ID = "location_id";
+        public static final String COLUMN_QUANTITY = "quantity";
+        // Name of the location, in queries on the stock URI of an item
+        public static final String COLUMN_LOCATION = "location";
+    }
+
+    // Inner class that defines the inventory totals. They are kept up to date by triggers as
+    // items are written, so reading them costs one row per total instead of a scan of all items.
+    public static class StatsEntry {
+
+        // The content URI to read the totals of the whole inventory, as a single row
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(ItemEntry.CONTENT_URI, PATH_STATS);
+
+        // The content URI to read the totals of every supplier with items, one row each
+        public static final Uri CONTENT_SUPPLIERS_URI = Uri.withAppendedPath(CONTENT_URI, PATH_STATS_SUPPLIERS);
+
+        // The MIME type of the {@link #CONTENT_URI}
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" +
+                        CONTENT_AUTHORITY + "/" + PATH_ITEMS + "." + PATH_STATS;
+
+        // The MIME type of the {@link #CONTENT_SUPPLIERS_URI}
+        public static final String CONTENT_SUPPLIERS_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" +
+                        CONTENT_AUTHORITY + "/" + PATH_ITEMS + "." + PATH_STATS;
+
+        // constants for the Database. The inventory table has exactly one row; the supplier
+        // table has one row per supplier that has items.
+        public static final String TABLE_NAME = "inventory_stats";
+        public static final String SUPPLIER_TABLE_NAME = "supplier_stats";
+        public static final String COLUMN_SUPPLIER_ID = "supplier_id";
+
+        // Columns of both tables. The stock value is the sum of quantity times price, in cents.
+        public static final String COLUMN_ITEM_COUNT = "item_count";
+        public static final String COLUMN_TOTAL_QUANTITY = "total_quantity";
+        public static final String COLUMN_STOCK_VALUE = "stock_value";
+
+        // Columns of the supplier rows, besides the totals and the supplier_id
+        public static final String COLUMN_SUPPLIER = ItemEntry.COLUMN_ITEM_SUPPLIER;
+        public static final String COLUMN_SUPPLIER_EMAIL = ItemEntry.COLUMN_SUPPLIER_EMAIL;
     }
 }
@@ -0,0 +1,211 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.util.Log;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Imports items from CSV through {@link ItemProvider}.
+ * <p>
+ * The first record names the columns, using the column names of {@link ItemEntry}: name, price
+ * (in cents), quantity, image, supplier and email are required, reorder_threshold and sku are
+ * optional. Rows are checked with the same rules as single inserts; rows that fail are skipped
+ * and counted. An item whose SKU another item already has is imported without it.
+ * Valid rows are inserted in chunks, each with one bulkInsert() and so one transaction. After
+ * every chunk the number of data rows consumed so far is reported, and an interrupted import
+ * can be continued from the last reported number.
+ */
+public class ItemCsvImporter {
+
+    // Tag for log messages
+    private static final String LOG_TAG = ItemCsvImporter.class.getSimpleName();
+
+    // Default number of rows inserted per transaction
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    // Columns every file must have
+    private static final String[] REQUIRED_COLUMNS = {ItemEntry.COLUMN_ITEM_NAME,
+            ItemEntry.COLUMN_ITEM_PRICE, ItemEntry.COLUMN_ITEM_QUANTITY, ItemEntry.COLUMN_ITEM_IMAGE,
+            ItemEntry.COLUMN_ITEM_SUPPLIER, ItemEntry.COLUMN_SUPPLIER_EMAIL};
+
+    // Notified on the importing thread after every committed chunk
+    public interface ProgressListener {
+        /**
+         * @param resumeOffset number of data rows consumed so far, imported or rejected. Passing
+         *                     it to a later import of the same file continues after them.
+         * @param imported     number of rows imported so far by this import
+         * @param rejected     number of rows skipped as invalid so far by this import
+         */
+        void onChunkCommitted(long resumeOffset, long imported, long rejected);
+    }
+
+    // Outcome of an import
+    public static class Result {
+        public final long imported;
+        public final long rejected;
+
+        Result(long imported, long rejected) {
+            this.imported = imported;
+            this.rejected = rejected;
+        }
+    }
+
+    private final ContentResolver mResolver;
+    private final int mChunkSize;
+
+    public ItemCsvImporter(ContentResolver resolver) {
+        this(resolver, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ItemCsvImporter(ContentResolver resolver, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        mResolver = resolver;
+        mChunkSize = chunkSize;
+    }
+
+    // Import the CSV file at the given content URI, skipping the first resumeOffset data rows
+    public Result importFrom(Uri source, long resumeOffset, ProgressListener listener)
+            throws IOException {
+        InputStream input = mResolver.openInputStream(source);
+        if (input == null) {
+            throw new IOException("Cannot open " + source);
+        }
+        return importFrom(new InputStreamReader(input, "UTF-8"), resumeOffset, listener);
+    }
+
+    // Import the CSV read from the given reader, skipping the first resumeOffset data rows. The
+    // reader is closed afterwards.
+    public Result importFrom(Reader source, long resumeOffset, ProgressListener listener)
+            throws IOException {
+        CsvReader reader = new CsvReader(source);
+        try {
+            if (!reader.readRecord()) {
+                throw new IOException("Empty file");
+            }
+            int[] columns = readHeader(reader);
+            int thresholdColumn = findColumn(reader, ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD);
+            int skuColumn = findColumn(reader, ItemEntry.COLUMN_ITEM_SKU);
+
+            long offset = 0;
+            while (offset < resumeOffset && reader.readRecord()) {
+                offset++;
+            }
+
+            ContentValues[] chunk = new ContentValues[mChunkSize];
+            int chunkLength = 0;
+            long imported = 0;
+            long rejected = 0;
+            while (reader.readRecord()) {
+                offset++;
+                if (reader.getFieldCount() == 1 && reader.isEmpty(0)) {
+                    // Blank line
+                    continue;
+                }
+                ContentValues values = toValues(reader, columns, thresholdColumn, skuColumn);
+                if (values == null) {
+                    rejected++;
+                } else {
+                    chunk[chunkLength++] = values;
+                }
+                if (chunkLength == mChunkSize) {
+                    imported += mResolver.bulkInsert(ItemEntry.CONTENT_URI, chunk);
+                    chunkLength = 0;
+                    if (listener != null) {
+                        listener.onChunkCommitted(offset, imported, rejected);
+                    }
+                }
+            }
+            if (chunkLength > 0) {
+                imported += mResolver.bulkInsert(ItemEntry.CONTENT_URI,
+                        Arrays.copyOf(chunk, chunkLength));
+            }
+            if (listener != null) {
+                listener.onChunkCommitted(offset, imported, rejected);
+            }
+            return new Result(imported, rejected);
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Returns the field index of every required column, in the order of REQUIRED_COLUMNS
+    private static int[] readHeader(CsvReader reader) {
+        int[] columns = new int[REQUIRED_COLUMNS.length];
+        for (int i = 0; i < REQUIRED_COLUMNS.length; i++) {
+            columns[i] = findColumn(reader, REQUIRED_COLUMNS[i]);
+            if (columns[i] == -1) {
+                throw new IllegalArgumentException("Column " + REQUIRED_COLUMNS[i] + " missing");
+            }
+        }
+        return columns;
+    }
+
+    // Returns the field index of the given column in the header record, or -1
+    private static int findColumn(CsvReader header, String column) {
+        for (int field = 0; field < header.getFieldCount(); field++) {
+            if (column.equals(header.getString(field).trim())) {
+                return field;
+            }
+        }
+        return -1;
+    }
+
+    // Returns the values of the current row, or null if it isn't a valid item
+    private static ContentValues toValues(CsvReader reader, int[] columns, int thresholdColumn,
+                                          int skuColumn) {
+        if (reader.getFieldCount() <= max(columns)
+                || (thresholdColumn != -1 && reader.getFieldCount() <= thresholdColumn)
+                || (skuColumn != -1 && reader.getFieldCount() <= skuColumn)) {
+            return null;
+        }
+        ContentValues values = new ContentValues(REQUIRED_COLUMNS.length + 2);
+        try {
+            values.put(ItemEntry.COLUMN_ITEM_NAME, reader.getString(columns[0]));
+            values.put(ItemEntry.COLUMN_ITEM_PRICE, reader.getLong(columns[1]));
+            long quantity = reader.getLong(columns[2]);
+            if (quantity > Integer.MAX_VALUE) {
+                return null;
+            }
+            values.put(ItemEntry.COLUMN_ITEM_QUANTITY, (int) quantity);
+            values.put(ItemEntry.COLUMN_ITEM_IMAGE, reader.getString(columns[3]));
+            values.put(ItemEntry.COLUMN_ITEM_SUPPLIER, reader.getString(columns[4]));
+            values.put(ItemEntry.COLUMN_SUPPLIER_EMAIL, reader.getString(columns[5]));
+            if (thresholdColumn != -1 && !reader.isEmpty(thresholdColumn)) {
+                long threshold = reader.getLong(thresholdColumn);
+                if (threshold > Integer.MAX_VALUE) {
+                    return null;
+                }
+                values.put(ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD, (int) threshold);
+            }
+            // An empty field is an item without a SKU, as the exporter writes it
+            if (skuColumn != -1 && !reader.isEmpty(skuColumn)) {
+                values.put(ItemEntry.COLUMN_ITEM_SKU, reader.getString(skuColumn));
+            }
+            ItemProvider.validateItem(values);
+        } catch (IllegalArgumentException e) {
+            // Includes NumberFormatException
+            Log.w(LOG_TAG, "Skipping invalid row: " + e.getMessage());
+            return null;
+        }
+        return values;
+    }
+
+    private static int max(int[] values) {
+        int max = values[0];
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+/**
+ * Connection settings applied by {@link ItemDbHelper} every time it opens the database.
+ * <p>
+ * The defaults favour the app's access pattern: short writes from the editor and the list's
+ * sell button happening while a loader reads. Pass a different configuration to the helper to
+ * compare the settings against each other.
+ */
+public final class ItemDbConfig {
+
+    // The settings the app runs with
+    public static final ItemDbConfig DEFAULT = new ItemDbConfig(true, true, 2048, true);
+
+    // The plain SQLite settings: rollback journal, no foreign keys and the default cache
+    public static final ItemDbConfig SQLITE_DEFAULTS = new ItemDbConfig(false, false, 0, false);
+
+    /**
+     * Whether to use write-ahead logging. With WAL, readers keep reading the last committed state
+     * while a writer runs instead of waiting for it, and commits only append to the log.
+     */
+    public final boolean writeAheadLogging;
+
+    /**
+     * Whether SQLite enforces the REFERENCES constraints, such as items.supplier_id.
+     */
+    public final boolean foreignKeys;
+
+    /**
+     * Size of the page cache of the connection in KiB, or 0 to keep SQLite's default.
+     */
+    public final int cacheSizeKib;
+
+    /**
+     * Whether to sync to disk with synchronous=NORMAL instead of FULL. In WAL mode NORMAL is still
+     * safe against corruption; a power loss can only roll back the most recent commits.
+     */
+    public final boolean synchronousNormal;
+
+    public ItemDbConfig(boolean writeAheadLogging, boolean foreignKeys, int cacheSizeKib,
+                        boolean synchronousNormal) {
+        if (cacheSizeKib < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative");
+        }
+        this.writeAheadLogging = writeAheadLogging;
+        this.foreignKeys = foreignKeys;
+        this.cacheSizeKib = cacheSizeKib;
+        this.synchronousNormal = synchronousNormal;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemDbConfig{writeAheadLogging=" + writeAheadLogging
+                + ", foreignKeys=" + foreignKeys
+                + ", cacheSizeKib=" + cacheSizeKib
+                + ", synchronousNormal=" + synchronousNormal + "}";
+    }
+}
@@ -1,10 +1,20 @@
 package com.example.android.android_developer_project_10_inventory_app.data;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.AdjustmentBatchEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.CounterEntry;
 import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.LocationEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.MovementEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.StatsEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.StockEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.SupplierEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.SyncEntry;
 
 /**
  * Database helper for Inventory app. Manages database creation and version management.
@@ -15,7 +25,406 @@ public class ItemDbHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "inventory.db";
 
     // Database version. If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 1;
+    // Version 2 stores prices as integer minor units, moves suppliers into their own table and
+    // adds the secondary indexes. Version 3 adds the full-text search table. Version 4 adds the
+    // reorder thresholds and the low stock table. Version 5 adds the inventory and supplier totals.
+    // Version 6 adds the stock movement ledger. Version 7 adds the sales velocities. Version 8
+    // adds the SKUs. Version 9 adds the locations and the stock at every location. Version 10 adds
+    // the sync IDs and the sync bookkeeping. Version 11 adds the quantity counters of every
+    // device and the triggers that count local quantity changes in them. Version 12 adds the
+    // record of the last batch of stock adjustments. Version 13 gives every item a stock row at
+    // the default location and adds the trigger that keeps stock from going below zero. Version 14
+    // adds the rebased sales velocities the items are sorted by days of cover with.
+    static final int DATABASE_VERSION = 14;
+
+    // Connection settings applied in onConfigure()
+    private final ItemDbConfig mConfig;
+
+    // SQL statement to create the suppliers table
+    private static final String SQL_CREATE_SUPPLIERS_TABLE = "CREATE TABLE " + SupplierEntry.TABLE_NAME + " ("
+            + SupplierEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + SupplierEntry.COLUMN_SUPPLIER_NAME + " TEXT NOT NULL, "
+            + SupplierEntry.COLUMN_SUPPLIER_EMAIL + " TEXT NOT NULL, "
+            + "UNIQUE (" + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_EMAIL + "));";
+
+    // Columns of the items table as version 2 created it
+    private static final String SQL_ITEMS_COLUMNS_V2 = ItemEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + ItemEntry.COLUMN_ITEM_NAME + " TEXT NOT NULL, "
+            + ItemEntry.COLUMN_ITEM_PRICE + " INTEGER NOT NULL, "
+            + ItemEntry.COLUMN_ITEM_QUANTITY + " INTEGER NOT NULL, "
+            + ItemEntry.COLUMN_ITEM_IMAGE + " TEXT, "
+            + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " INTEGER NOT NULL REFERENCES "
+            + SupplierEntry.TABLE_NAME + " (" + SupplierEntry._ID + ")";
+
+    // Column added to the items table in version 4
+    private static final String SQL_REORDER_THRESHOLD_COLUMN = ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD
+            + " INTEGER NOT NULL DEFAULT 0";
+
+    // Columns added to the items table in version 7
+    private static final String SQL_SALES_VELOCITY_COLUMN = ItemEntry.COLUMN_ITEM_SALES_VELOCITY
+            + " REAL NOT NULL DEFAULT 0";
+    private static final String SQL_VELOCITY_TIME_COLUMN = ItemEntry.COLUMN_ITEM_VELOCITY_TIME
+            + " INTEGER NOT NULL DEFAULT 0";
+
+    // Column added to the items table in version 8. ALTER TABLE can't add a UNIQUE column, so
+    // the SKUs are kept unique by SQL_CREATE_SKU_INDEX in both new and upgraded databases.
+    private static final String SQL_SKU_COLUMN = ItemEntry.COLUMN_ITEM_SKU + " TEXT";
+
+    // Column added to the items table in version 10, kept unique by SQL_CREATE_SYNC_ID_INDEX
+    private static final String SQL_SYNC_ID_COLUMN = ItemEntry.COLUMN_ITEM_SYNC_ID + " TEXT";
+
+    // Column added to the items table in version 14
+    private static final String SQL_REBASED_VELOCITY_COLUMN = ItemEntry.COLUMN_ITEM_REBASED_VELOCITY
+            + " REAL NOT NULL DEFAULT 0";
+
+    // SQL statement to create the items table
+    private static final String SQL_CREATE_ITEMS_TABLE = "CREATE TABLE " + ItemEntry.TABLE_NAME + " ("
+            + SQL_ITEMS_COLUMNS_V2 + ", " + SQL_REORDER_THRESHOLD_COLUMN + ", "
+            + SQL_SALES_VELOCITY_COLUMN + ", " + SQL_VELOCITY_TIME_COLUMN + ", " + SQL_SKU_COLUMN + ", "
+            + SQL_SYNC_ID_COLUMN + ", " + SQL_REBASED_VELOCITY_COLUMN + ");";
+
+    // SQL statements to create the secondary indexes of the items table. The name index also
+    // serves the (name, _id) order of the item list, since index entries end with the rowid.
+    private static final String[] SQL_CREATE_ITEMS_INDEXES = {
+            "CREATE INDEX items_name_index ON " + ItemEntry.TABLE_NAME
+                    + " (" + ItemEntry.COLUMN_ITEM_NAME + ");",
+            "CREATE INDEX items_supplier_id_index ON " + ItemEntry.TABLE_NAME
+                    + " (" + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ");",
+            "CREATE INDEX items_quantity_index ON " + ItemEntry.TABLE_NAME
+                    + " (" + ItemEntry.COLUMN_ITEM_QUANTITY + ");"
+    };
+
+    // SQL statement to create the unique index of the SKUs, which also serves the lookup of an
+    // item by its SKU. Items without a SKU hold NULL, which doesn't count as a duplicate.
+    private static final String SQL_CREATE_SKU_INDEX = "CREATE UNIQUE INDEX items_sku_index ON "
+            + ItemEntry.TABLE_NAME + " (" + ItemEntry.COLUMN_ITEM_SKU + ");";
+
+    // SQL statement to create the unique index of the sync IDs, which serves the lookup of the
+    // item a pulled change applies to
+    private static final String SQL_CREATE_SYNC_ID_INDEX = "CREATE UNIQUE INDEX items_sync_id_index ON "
+            + ItemEntry.TABLE_NAME + " (" + ItemEntry.COLUMN_ITEM_SYNC_ID + ");";
+
+    // Expression of a new random sync ID, 32 hex digits
+    private static final String SQL_NEW_SYNC_ID = "lower(hex(randomblob(16)))";
+
+    // SQL statement to create the view the provider queries items from
+    private static final String SQL_CREATE_ITEMS_VIEW = "CREATE VIEW " + ItemEntry.VIEW_NAME + " AS SELECT "
+            + "i." + ItemEntry._ID + " AS " + ItemEntry._ID + ", "
+            + "i." + ItemEntry.COLUMN_ITEM_NAME + " AS " + ItemEntry.COLUMN_ITEM_NAME + ", "
+            + "i." + ItemEntry.COLUMN_ITEM_PRICE + " AS " + ItemEntry.COLUMN_ITEM_PRICE + ", "
+            + "i." + ItemEntry.COLUMN_ITEM_QUANTITY + " AS " + ItemEntry.COLUMN_ITEM_QUANTITY + ", "
+            + "i." + ItemEntry.COLUMN_ITEM_IMAGE + " AS " + ItemEntry.COLUMN_ITEM_IMAGE + ", "
+            + "i." + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " AS " + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ", "
+            + "i." + ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD + " AS " + ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD + ", "
+            + "i." + ItemEntry.COLUMN_ITEM_SALES_VELOCITY + " AS " + ItemEntry.COLUMN_ITEM_SALES_VELOCITY + ", "
+            + "i." + ItemEntry.COLUMN_ITEM_VELOCITY_TIME + " AS " + ItemEntry.COLUMN_ITEM_VELOCITY_TIME + ", "
+            + "i." + ItemEntry.COLUMN_ITEM_REBASED_VELOCITY + " AS " + ItemEntry.COLUMN_ITEM_REBASED_VELOCITY + ", "
+            + "i." + ItemEntry.COLUMN_ITEM_SKU + " AS " + ItemEntry.COLUMN_ITEM_SKU + ", "
+            + "s." + SupplierEntry.COLUMN_SUPPLIER_NAME + " AS " + ItemEntry.COLUMN_ITEM_SUPPLIER + ", "
+            + "s." + SupplierEntry.COLUMN_SUPPLIER_EMAIL + " AS " + ItemEntry.COLUMN_SUPPLIER_EMAIL
+            + " FROM " + ItemEntry.TABLE_NAME + " i LEFT JOIN " + SupplierEntry.TABLE_NAME + " s"
+            + " ON i." + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " = s." + SupplierEntry._ID + ";";
+
+    // SQL statement to create the full-text search table. FTS4 is available from API level 11.
+    private static final String SQL_CREATE_ITEMS_FTS_TABLE = "CREATE VIRTUAL TABLE "
+            + ItemEntry.FTS_TABLE_NAME + " USING fts4("
+            + ItemEntry.COLUMN_ITEM_NAME + ", " + ItemEntry.COLUMN_ITEM_SUPPLIER + ");";
+
+    // Selects the supplier name of the item written by a trigger
+    private static final String SQL_NEW_SUPPLIER_NAME = "(SELECT " + SupplierEntry.COLUMN_SUPPLIER_NAME
+            + " FROM " + SupplierEntry.TABLE_NAME
+            + " WHERE " + SupplierEntry._ID + " = new." + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ")";
+
+    private static final String SQL_INSERT_NEW_ITEM_FTS = "INSERT INTO " + ItemEntry.FTS_TABLE_NAME
+            + " (docid, " + ItemEntry.COLUMN_ITEM_NAME + ", " + ItemEntry.COLUMN_ITEM_SUPPLIER + ")"
+            + " VALUES (new." + ItemEntry._ID + ", new." + ItemEntry.COLUMN_ITEM_NAME + ", "
+            + SQL_NEW_SUPPLIER_NAME + ");";
+
+    private static final String SQL_DELETE_OLD_ITEM_FTS = "DELETE FROM " + ItemEntry.FTS_TABLE_NAME
+            + " WHERE docid = old." + ItemEntry._ID + ";";
+
+    // SQL statements to create the triggers that keep the full-text search table in step with
+    // the items and suppliers tables
+    private static final String[] SQL_CREATE_ITEMS_FTS_TRIGGERS = {
+            "CREATE TRIGGER items_fts_insert AFTER INSERT ON " + ItemEntry.TABLE_NAME
+                    + " BEGIN " + SQL_INSERT_NEW_ITEM_FTS + " END;",
+            "CREATE TRIGGER items_fts_update AFTER UPDATE OF " + ItemEntry.COLUMN_ITEM_NAME + ", "
+                    + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " ON " + ItemEntry.TABLE_NAME
+                    + " BEGIN " + SQL_DELETE_OLD_ITEM_FTS + " " + SQL_INSERT_NEW_ITEM_FTS + " END;",
+            "CREATE TRIGGER items_fts_delete AFTER DELETE ON " + ItemEntry.TABLE_NAME
+                    + " BEGIN " + SQL_DELETE_OLD_ITEM_FTS + " END;",
+            "CREATE TRIGGER items_fts_supplier_update AFTER UPDATE OF "
+                    + SupplierEntry.COLUMN_SUPPLIER_NAME + " ON " + SupplierEntry.TABLE_NAME
+                    + " BEGIN UPDATE " + ItemEntry.FTS_TABLE_NAME
+                    + " SET " + ItemEntry.COLUMN_ITEM_SUPPLIER + " = new." + SupplierEntry.COLUMN_SUPPLIER_NAME
+                    + " WHERE docid IN (SELECT " + ItemEntry._ID + " FROM " + ItemEntry.TABLE_NAME
+                    + " WHERE " + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " = new." + SupplierEntry._ID + ");"
+                    + " END;"
+    };
+
+    // SQL statement to create the low stock table
+    private static final String SQL_CREATE_LOW_STOCK_TABLE = "CREATE TABLE " + ItemEntry.LOW_STOCK_TABLE_NAME
+            + " (" + ItemEntry.COLUMN_LOW_STOCK_ITEM_ID + " INTEGER PRIMARY KEY);";
+
+    // Adds the item written by a trigger to the low stock table if it needs to be reordered
+    private static final String SQL_INSERT_NEW_LOW_STOCK = "INSERT INTO " + ItemEntry.LOW_STOCK_TABLE_NAME
+            + " (" + ItemEntry.COLUMN_LOW_STOCK_ITEM_ID + ") SELECT new." + ItemEntry._ID
+            + " WHERE new." + ItemEntry.COLUMN_ITEM_QUANTITY
+            + " <= new." + ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD + ";";
+
+    private static final String SQL_DELETE_OLD_LOW_STOCK = "DELETE FROM " + ItemEntry.LOW_STOCK_TABLE_NAME
+            + " WHERE " + ItemEntry.COLUMN_LOW_STOCK_ITEM_ID + " = old." + ItemEntry._ID + ";";
+
+    // SQL statements to create the triggers that keep the low stock table up to date. They only
+    // look at the rows a statement writes, so no write costs more than the rows it changes.
+    private static final String[] SQL_CREATE_LOW_STOCK_TRIGGERS = {
+            "CREATE TRIGGER low_stock_insert AFTER INSERT ON " + ItemEntry.TABLE_NAME
+                    + " BEGIN " + SQL_INSERT_NEW_LOW_STOCK + " END;",
+            "CREATE TRIGGER low_stock_update AFTER UPDATE OF " + ItemEntry.COLUMN_ITEM_QUANTITY + ", "
+                    + ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD + " ON " + ItemEntry.TABLE_NAME
+                    + " BEGIN " + SQL_DELETE_OLD_LOW_STOCK + " " + SQL_INSERT_NEW_LOW_STOCK + " END;",
+            "CREATE TRIGGER low_stock_delete AFTER DELETE ON " + ItemEntry.TABLE_NAME
+                    + " BEGIN " + SQL_DELETE_OLD_LOW_STOCK + " END;"
+    };
+
+    // SQL statements to create the tables of the inventory and supplier totals
+    private static final String SQL_CREATE_INVENTORY_STATS_TABLE = "CREATE TABLE " + StatsEntry.TABLE_NAME + " ("
+            + StatsEntry.COLUMN_ITEM_COUNT + " INTEGER NOT NULL, "
+            + StatsEntry.COLUMN_TOTAL_QUANTITY + " INTEGER NOT NULL, "
+            + StatsEntry.COLUMN_STOCK_VALUE + " INTEGER NOT NULL);";
+
+    private static final String SQL_CREATE_SUPPLIER_STATS_TABLE = "CREATE TABLE " + StatsEntry.SUPPLIER_TABLE_NAME + " ("
+            + StatsEntry.COLUMN_SUPPLIER_ID + " INTEGER PRIMARY KEY, "
+            + StatsEntry.COLUMN_ITEM_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+            + StatsEntry.COLUMN_TOTAL_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+            + StatsEntry.COLUMN_STOCK_VALUE + " INTEGER NOT NULL DEFAULT 0);";
+
+    // SQL statements to compute the totals from the items table, when the tables are created
+    private static final String SQL_TOTALS = "COUNT(*), IFNULL(SUM(" + ItemEntry.COLUMN_ITEM_QUANTITY
+            + "), 0), IFNULL(SUM(" + ItemEntry.COLUMN_ITEM_QUANTITY + " * " + ItemEntry.COLUMN_ITEM_PRICE + "), 0)";
+
+    private static final String SQL_FILL_INVENTORY_STATS = "INSERT INTO " + StatsEntry.TABLE_NAME
+            + " SELECT " + SQL_TOTALS + " FROM " + ItemEntry.TABLE_NAME + ";";
+
+    private static final String SQL_FILL_SUPPLIER_STATS = "INSERT INTO " + StatsEntry.SUPPLIER_TABLE_NAME
+            + " SELECT " + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ", " + SQL_TOTALS
+            + " FROM " + ItemEntry.TABLE_NAME + " GROUP BY " + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ";";
+
+    // Returns the statements a trigger runs to add (sign "+") or remove (sign "-") the item in
+    // the given row, "new" or "old", to or from the totals
+    private static String sqlApplyToStats(String row, String sign) {
+        String totals = " SET " + StatsEntry.COLUMN_ITEM_COUNT + " = " + StatsEntry.COLUMN_ITEM_COUNT + " " + sign + " 1, "
+                + StatsEntry.COLUMN_TOTAL_QUANTITY + " = " + StatsEntry.COLUMN_TOTAL_QUANTITY
+                + " " + sign + " " + row + "." + ItemEntry.COLUMN_ITEM_QUANTITY + ", "
+                + StatsEntry.COLUMN_STOCK_VALUE + " = " + StatsEntry.COLUMN_STOCK_VALUE
+                + " " + sign + " " + row + "." + ItemEntry.COLUMN_ITEM_QUANTITY
+                + " * " + row + "." + ItemEntry.COLUMN_ITEM_PRICE;
+        String supplier = StatsEntry.COLUMN_SUPPLIER_ID + " = " + row + "." + ItemEntry.COLUMN_ITEM_SUPPLIER_ID;
+        String sql = "UPDATE " + StatsEntry.TABLE_NAME + totals + "; ";
+        if (sign.equals("+")) {
+            sql += "INSERT OR IGNORE INTO " + StatsEntry.SUPPLIER_TABLE_NAME
+                    + " (" + StatsEntry.COLUMN_SUPPLIER_ID + ") VALUES (" + row + "." + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + "); "
+                    + "UPDATE " + StatsEntry.SUPPLIER_TABLE_NAME + totals + " WHERE " + supplier + ";";
+        } else {
+            sql += "UPDATE " + StatsEntry.SUPPLIER_TABLE_NAME + totals + " WHERE " + supplier + "; "
+                    + "DELETE FROM " + StatsEntry.SUPPLIER_TABLE_NAME + " WHERE " + supplier
+                    + " AND " + StatsEntry.COLUMN_ITEM_COUNT + " = 0;";
+        }
+        return sql;
+    }
+
+    // SQL statements to create the triggers that keep the totals up to date. Like the low stock
+    // triggers, they only look at the rows a statement writes.
+    private static final String[] SQL_CREATE_STATS_TRIGGERS = {
+            "CREATE TRIGGER stats_insert AFTER INSERT ON " + ItemEntry.TABLE_NAME
+                    + " BEGIN " + sqlApplyToStats("new", "+") + " END;",
+            "CREATE TRIGGER stats_update AFTER UPDATE OF " + ItemEntry.COLUMN_ITEM_QUANTITY + ", "
+                    + ItemEntry.COLUMN_ITEM_PRICE + ", " + ItemEntry.COLUMN_ITEM_SUPPLIER_ID
+                    + " ON " + ItemEntry.TABLE_NAME
+                    + " BEGIN " + sqlApplyToStats("old", "-") + " " + sqlApplyToStats("new", "+") + " END;",
+            "CREATE TRIGGER stats_delete AFTER DELETE ON " + ItemEntry.TABLE_NAME
+                    + " BEGIN " + sqlApplyToStats("old", "-") + " END;"
+    };
+
+    // SQL statements to create the stock movement ledger, its index for the history of one item
+    // over a time range, and the table of compacted daily totals
+    private static final String SQL_CREATE_MOVEMENTS_TABLE = "CREATE TABLE " + MovementEntry.TABLE_NAME + " ("
+            + MovementEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + MovementEntry.COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+            + MovementEntry.COLUMN_DELTA + " INTEGER NOT NULL, "
+            + MovementEntry.COLUMN_REASON + " TEXT NOT NULL, "
+            + MovementEntry.COLUMN_TIMESTAMP + " INTEGER NOT NULL);";
+
+    private static final String SQL_CREATE_MOVEMENTS_INDEX = "CREATE INDEX stock_movements_item_index ON "
+            + MovementEntry.TABLE_NAME + " (" + MovementEntry.COLUMN_ITEM_ID + ", " + MovementEntry.COLUMN_TIMESTAMP + ");";
+
+    private static final String SQL_CREATE_MOVEMENT_DAYS_TABLE = "CREATE TABLE " + MovementEntry.DAILY_TABLE_NAME + " ("
+            + MovementEntry.COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+            + MovementEntry.COLUMN_DAY + " INTEGER NOT NULL, "
+            + MovementEntry.COLUMN_QUANTITY_IN + " INTEGER NOT NULL, "
+            + MovementEntry.COLUMN_QUANTITY_OUT + " INTEGER NOT NULL, "
+            + MovementEntry.COLUMN_MOVEMENT_COUNT + " INTEGER NOT NULL, "
+            + "PRIMARY KEY (" + MovementEntry.COLUMN_ITEM_ID + ", " + MovementEntry.COLUMN_DAY + "));";
+
+    // SQL statements to create the locations table with the default location, and the table of
+    // the stock at every location. The index on the location serves the totals of every location
+    // without reading the stock table itself.
+    private static final String SQL_CREATE_LOCATIONS_TABLE = "CREATE TABLE " + LocationEntry.TABLE_NAME + " ("
+            + LocationEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + LocationEntry.COLUMN_LOCATION_NAME + " TEXT NOT NULL UNIQUE);";
+
+    private static final String SQL_INSERT_DEFAULT_LOCATION = "INSERT INTO " + LocationEntry.TABLE_NAME
+            + " (" + LocationEntry._ID + ", " + LocationEntry.COLUMN_LOCATION_NAME + ") VALUES ("
+            + LocationEntry.DEFAULT_LOCATION_ID + ", '" + LocationEntry.DEFAULT_LOCATION_NAME + "');";
+
+    private static final String SQL_CREATE_STOCK_TABLE = "CREATE TABLE " + StockEntry.TABLE_NAME + " ("
+            + StockEntry.COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+            + StockEntry.COLUMN_LOCATION_ID + " INTEGER NOT NULL REFERENCES "
+            + LocationEntry.TABLE_NAME + " (" + LocationEntry._ID + "), "
+            + StockEntry.COLUMN_QUANTITY + " INTEGER NOT NULL, "
+            + "PRIMARY KEY (" + StockEntry.COLUMN_ITEM_ID + ", " + StockEntry.COLUMN_LOCATION_ID + "));";
+
+    private static final String SQL_CREATE_STOCK_INDEX = "CREATE INDEX stock_location_index ON "
+            + StockEntry.TABLE_NAME + " (" + StockEntry.COLUMN_LOCATION_ID + ", " + StockEntry.COLUMN_QUANTITY + ");";
+
+    // SQL statements to create the triggers that keep the stock at every location adding up to
+    // the quantity of the item. A change of the quantity of the item applies to the default
+    // location, creating its row if needed; transfers between locations leave the quantity of
+    // the item as it is. Writers move units to the default location before a drop, so the guard
+    // aborts any write that takes a location below zero, except the default location of an item
+    // a sync has oversold.
+    private static final String[] SQL_CREATE_STOCK_TRIGGERS = {
+            "CREATE TRIGGER stock_insert AFTER INSERT ON " + ItemEntry.TABLE_NAME
+                    + " BEGIN INSERT INTO " + StockEntry.TABLE_NAME + " (" + StockEntry.COLUMN_ITEM_ID + ", "
+                    + StockEntry.COLUMN_LOCATION_ID + ", " + StockEntry.COLUMN_QUANTITY + ") VALUES (new."
+                    + ItemEntry._ID + ", " + LocationEntry.DEFAULT_LOCATION_ID + ", new." + ItemEntry.COLUMN_ITEM_QUANTITY
+                    + "); END;",
+            "CREATE TRIGGER stock_update AFTER UPDATE OF " + ItemEntry.COLUMN_ITEM_QUANTITY + " ON " + ItemEntry.TABLE_NAME
+                    + " WHEN new." + ItemEntry.COLUMN_ITEM_QUANTITY + " IS NOT old." + ItemEntry.COLUMN_ITEM_QUANTITY
+                    + " BEGIN INSERT OR IGNORE INTO " + StockEntry.TABLE_NAME + " (" + StockEntry.COLUMN_ITEM_ID + ", "
+                    + StockEntry.COLUMN_LOCATION_ID + ", " + StockEntry.COLUMN_QUANTITY + ") VALUES (new."
+                    + ItemEntry._ID + ", " + LocationEntry.DEFAULT_LOCATION_ID + ", 0);"
+                    + " UPDATE " + StockEntry.TABLE_NAME + " SET " + StockEntry.COLUMN_QUANTITY + " = "
+                    + StockEntry.COLUMN_QUANTITY + " + new." + ItemEntry.COLUMN_ITEM_QUANTITY
+                    + " - old." + ItemEntry.COLUMN_ITEM_QUANTITY
+                    + " WHERE " + StockEntry.COLUMN_ITEM_ID + " = new." + ItemEntry._ID
+                    + " AND " + StockEntry.COLUMN_LOCATION_ID + " = " + LocationEntry.DEFAULT_LOCATION_ID + "; END;",
+            "CREATE TRIGGER stock_delete AFTER DELETE ON " + ItemEntry.TABLE_NAME
+                    + " BEGIN DELETE FROM " + StockEntry.TABLE_NAME
+                    + " WHERE " + StockEntry.COLUMN_ITEM_ID + " = old." + ItemEntry._ID + "; END;",
+            "CREATE TRIGGER stock_guard BEFORE UPDATE OF " + StockEntry.COLUMN_QUANTITY + " ON " + StockEntry.TABLE_NAME
+                    + " WHEN new." + StockEntry.COLUMN_QUANTITY + " < 0 AND (new." + StockEntry.COLUMN_LOCATION_ID
+                    + " != " + LocationEntry.DEFAULT_LOCATION_ID + " OR (SELECT " + ItemEntry.COLUMN_ITEM_QUANTITY
+                    + " FROM " + ItemEntry.TABLE_NAME + " WHERE " + ItemEntry._ID + " = new."
+                    + StockEntry.COLUMN_ITEM_ID + ") >= 0)"
+                    + " BEGIN SELECT RAISE(ABORT, 'Stock can''t go below zero'); END;"
+    };
+
+    // SQL statement to create the table of the last batch of stock adjustments
+    private static final String SQL_CREATE_ADJUSTMENT_BATCHES_TABLE = "CREATE TABLE "
+            + AdjustmentBatchEntry.TABLE_NAME + " (" + AdjustmentBatchEntry.COLUMN_BATCH_ID + " TEXT PRIMARY KEY);";
+
+    // SQL statements to create the sync tables, the index that finds the changes after the last
+    // push, and the sync state of a new database, which gets a random device ID
+    private static final String SQL_CREATE_SYNC_ROWS_TABLE = "CREATE TABLE " + SyncEntry.TABLE_NAME + " ("
+            + SyncEntry.COLUMN_SYNC_ID + " TEXT PRIMARY KEY, "
+            + SyncEntry.COLUMN_ITEM_ID + " INTEGER, "
+            + SyncEntry.COLUMN_VERSION + " INTEGER NOT NULL, "
+            + SyncEntry.COLUMN_DEVICE + " TEXT NOT NULL, "
+            + SyncEntry.COLUMN_DELETED + " INTEGER NOT NULL, "
+            + SyncEntry.COLUMN_SEQUENCE + " INTEGER NOT NULL);";
+
+    private static final String SQL_CREATE_SYNC_ROWS_INDEX = "CREATE INDEX sync_rows_sequence_index ON "
+            + SyncEntry.TABLE_NAME + " (" + SyncEntry.COLUMN_SEQUENCE + ");";
+
+    private static final String SQL_CREATE_SYNC_STATE_TABLE = "CREATE TABLE " + SyncEntry.STATE_TABLE_NAME + " ("
+            + SyncEntry.COLUMN_DEVICE_ID + " TEXT NOT NULL, "
+            + SyncEntry.COLUMN_LAST_SEQUENCE + " INTEGER NOT NULL, "
+            + SyncEntry.COLUMN_PUSHED_SEQUENCE + " INTEGER NOT NULL, "
+            + SyncEntry.COLUMN_SERVER_TOKEN + " INTEGER NOT NULL, "
+            + SyncEntry.COLUMN_APPLYING + " INTEGER NOT NULL);";
+
+    private static final String SQL_INSERT_SYNC_STATE = "INSERT INTO " + SyncEntry.STATE_TABLE_NAME
+            + " VALUES (lower(hex(randomblob(8))), 0, 0, 0, 0);";
+
+    // Returns the statements a trigger runs to record a local change of the item with the given
+    // sync ID and _id expressions as the next version of its row, with the next local sequence
+    // number
+    private static String sqlRecordSyncChange(String syncId, String itemId, int deleted) {
+        return "UPDATE " + SyncEntry.STATE_TABLE_NAME + " SET " + SyncEntry.COLUMN_LAST_SEQUENCE
+                + " = " + SyncEntry.COLUMN_LAST_SEQUENCE + " + 1; "
+                + "INSERT OR REPLACE INTO " + SyncEntry.TABLE_NAME + " (" + SyncEntry.COLUMN_SYNC_ID + ", "
+                + SyncEntry.COLUMN_ITEM_ID + ", " + SyncEntry.COLUMN_VERSION + ", " + SyncEntry.COLUMN_DEVICE + ", "
+                + SyncEntry.COLUMN_DELETED + ", " + SyncEntry.COLUMN_SEQUENCE + ")"
+                + " SELECT " + syncId + ", " + itemId + ", IFNULL((SELECT " + SyncEntry.COLUMN_VERSION
+                + " FROM " + SyncEntry.TABLE_NAME + " WHERE " + SyncEntry.COLUMN_SYNC_ID + " = " + syncId
+                + "), 0) + 1, " + SyncEntry.COLUMN_DEVICE_ID + ", " + deleted + ", " + SyncEntry.COLUMN_LAST_SEQUENCE
+                + " FROM " + SyncEntry.STATE_TABLE_NAME + ";";
+    }
+
+    // Condition of the sync triggers: the write is a local one, not a pulled change being applied
+    private static final String SQL_WHEN_LOCAL_WRITE = " WHEN (SELECT " + SyncEntry.COLUMN_APPLYING
+            + " FROM " + SyncEntry.STATE_TABLE_NAME + ") = 0";
+
+    // SQL statements to create the triggers that record local changes. A new item gets its sync
+    // ID here, so every insert path gets one. Writes to columns that aren't synced, such as the
+    // sales velocity, aren't recorded.
+    private static final String[] SQL_CREATE_SYNC_TRIGGERS = {
+            "CREATE TRIGGER sync_insert AFTER INSERT ON " + ItemEntry.TABLE_NAME + SQL_WHEN_LOCAL_WRITE
+                    + " BEGIN UPDATE " + ItemEntry.TABLE_NAME + " SET " + ItemEntry.COLUMN_ITEM_SYNC_ID
+                    + " = " + SQL_NEW_SYNC_ID + " WHERE " + ItemEntry._ID + " = new." + ItemEntry._ID
+                    + " AND " + ItemEntry.COLUMN_ITEM_SYNC_ID + " IS NULL; "
+                    + sqlRecordSyncChange("(SELECT " + ItemEntry.COLUMN_ITEM_SYNC_ID + " FROM " + ItemEntry.TABLE_NAME
+                    + " WHERE " + ItemEntry._ID + " = new." + ItemEntry._ID + ")", "new." + ItemEntry._ID, 0)
+                    + " END;",
+            "CREATE TRIGGER sync_update AFTER UPDATE OF " + ItemEntry.COLUMN_ITEM_NAME + ", "
+                    + ItemEntry.COLUMN_ITEM_PRICE + ", " + ItemEntry.COLUMN_ITEM_QUANTITY + ", "
+                    + ItemEntry.COLUMN_ITEM_IMAGE + ", " + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ", "
+                    + ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD + ", " + ItemEntry.COLUMN_ITEM_SKU
+                    + " ON " + ItemEntry.TABLE_NAME + SQL_WHEN_LOCAL_WRITE
+                    + " BEGIN " + sqlRecordSyncChange("new." + ItemEntry.COLUMN_ITEM_SYNC_ID, "new." + ItemEntry._ID, 0)
+                    + " END;",
+            "CREATE TRIGGER sync_delete AFTER DELETE ON " + ItemEntry.TABLE_NAME + SQL_WHEN_LOCAL_WRITE
+                    + " BEGIN " + sqlRecordSyncChange("old." + ItemEntry.COLUMN_ITEM_SYNC_ID, "NULL", 1)
+                    + " END;"
+    };
+
+    // SQL statement to create the quantity counters of the items
+    private static final String SQL_CREATE_COUNTERS_TABLE = "CREATE TABLE " + CounterEntry.TABLE_NAME + " ("
+            + CounterEntry.COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+            + CounterEntry.COLUMN_DEVICE + " TEXT NOT NULL, "
+            + CounterEntry.COLUMN_INCREMENTS + " INTEGER NOT NULL, "
+            + CounterEntry.COLUMN_DECREMENTS + " INTEGER NOT NULL, "
+            + "PRIMARY KEY (" + CounterEntry.COLUMN_ITEM_ID + ", " + CounterEntry.COLUMN_DEVICE + "));";
+
+    // The ID of this device, in triggers
+    private static final String SQL_THIS_DEVICE = "(SELECT " + SyncEntry.COLUMN_DEVICE_ID
+            + " FROM " + SyncEntry.STATE_TABLE_NAME + ")";
+
+    // SQL statements to create the triggers that count a local write of the quantity of an item,
+    // as the units this device added or removed. Pulled counters are merged in by
+    // {@link ItemSyncStore}, which keeps the quantity of the item equal to their sum itself.
+    private static final String[] SQL_CREATE_COUNTER_TRIGGERS = {
+            "CREATE TRIGGER counter_insert AFTER INSERT ON " + ItemEntry.TABLE_NAME + SQL_WHEN_LOCAL_WRITE
+                    + " AND new." + ItemEntry.COLUMN_ITEM_QUANTITY + " != 0"
+                    + " BEGIN INSERT INTO " + CounterEntry.TABLE_NAME + " VALUES (new." + ItemEntry._ID + ", "
+                    + SQL_THIS_DEVICE + ", MAX(new." + ItemEntry.COLUMN_ITEM_QUANTITY + ", 0), MAX(-new."
+                    + ItemEntry.COLUMN_ITEM_QUANTITY + ", 0)); END;",
+            "CREATE TRIGGER counter_update AFTER UPDATE OF " + ItemEntry.COLUMN_ITEM_QUANTITY + " ON "
+                    + ItemEntry.TABLE_NAME + SQL_WHEN_LOCAL_WRITE + " AND new." + ItemEntry.COLUMN_ITEM_QUANTITY
+                    + " IS NOT old." + ItemEntry.COLUMN_ITEM_QUANTITY
+                    + " BEGIN INSERT OR IGNORE INTO " + CounterEntry.TABLE_NAME + " VALUES (new." + ItemEntry._ID
+                    + ", " + SQL_THIS_DEVICE + ", 0, 0); "
+                    + "UPDATE " + CounterEntry.TABLE_NAME + " SET " + CounterEntry.COLUMN_INCREMENTS + " = "
+                    + CounterEntry.COLUMN_INCREMENTS + " + MAX(new." + ItemEntry.COLUMN_ITEM_QUANTITY + " - old."
+                    + ItemEntry.COLUMN_ITEM_QUANTITY + ", 0), " + CounterEntry.COLUMN_DECREMENTS + " = "
+                    + CounterEntry.COLUMN_DECREMENTS + " + MAX(old." + ItemEntry.COLUMN_ITEM_QUANTITY + " - new."
+                    + ItemEntry.COLUMN_ITEM_QUANTITY + ", 0) WHERE " + CounterEntry.COLUMN_ITEM_ID + " = new."
+                    + ItemEntry._ID + " AND " + CounterEntry.COLUMN_DEVICE + " = " + SQL_THIS_DEVICE + "; END;",
+            "CREATE TRIGGER counter_delete AFTER DELETE ON " + ItemEntry.TABLE_NAME
+                    + " BEGIN DELETE FROM " + CounterEntry.TABLE_NAME
+                    + " WHERE " + CounterEntry.COLUMN_ITEM_ID + " = old." + ItemEntry._ID + "; END;"
+    };
 
     /**
      * Constructs a new instance of {@link ItemDbHelper}.
@@ -23,30 +432,316 @@ public class ItemDbHelper extends SQLiteOpenHelper {
      * @param context of the app
      */
     public ItemDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME, ItemDbConfig.DEFAULT);
+    }
+
+    // Constructs a helper for a database file other than the app's, for instance in tests
+    ItemDbHelper(Context context, String name) {
+        this(context, name, ItemDbConfig.DEFAULT);
+    }
+
+    // Constructs a helper that opens the database with the given connection settings
+    ItemDbHelper(Context context, String name, ItemDbConfig config) {
+        super(context, name, null, DATABASE_VERSION);
+        mConfig = config;
+        // Must be set before the database is opened, as it decides how the file is opened
+        setWriteAheadLoggingEnabled(config.writeAheadLogging);
+    }
+
+    // Returns the connection settings of this helper
+    public ItemDbConfig getConfig() {
+        return mConfig;
+    }
+
+    // This is called when the connection is being configured, before the schema is created or
+    // upgraded. The pragmas apply to the primary connection, which does all the writing.
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(mConfig.foreignKeys);
+        if (mConfig.cacheSizeKib > 0) {
+            // A negative cache_size is a size in KiB rather than a number of pages
+            db.execSQL("PRAGMA cache_size = -" + mConfig.cacheSizeKib);
+        }
+        if (mConfig.synchronousNormal) {
+            db.execSQL("PRAGMA synchronous = NORMAL");
+        }
     }
 
     // This is called when the database is created for the first time.
     @Override
     public void onCreate(SQLiteDatabase db) {
-        // Create a String that contains the SQL statement to create the items table
-        String SQL_CREATE_ITEMS_TABLE = "CREATE TABLE " + ItemEntry.TABLE_NAME + " ("
-                + ItemEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
-                + ItemEntry.COLUMN_ITEM_NAME + " TEXT NOT NULL, "
-                + ItemEntry.COLUMN_ITEM_PRICE + " TEXT, "
-                + ItemEntry.COLUMN_ITEM_QUANTITY + " INTEGER NOT NULL, "
-                + ItemEntry.COLUMN_ITEM_IMAGE + " TEXT, "
-                + ItemEntry.COLUMN_ITEM_SUPPLIER + " TEXT NOT NULL, "
-                + ItemEntry.COLUMN_SUPPLIER_EMAIL + " TEXT NOT NULL);";
-
-        // Execute the SQL statement
+        // Execute the SQL statements
+        db.execSQL(SQL_CREATE_SUPPLIERS_TABLE);
         db.execSQL(SQL_CREATE_ITEMS_TABLE);
+        for (String sql : SQL_CREATE_ITEMS_INDEXES) {
+            db.execSQL(sql);
+        }
+        db.execSQL(SQL_CREATE_SKU_INDEX);
+        db.execSQL(SQL_CREATE_SYNC_ID_INDEX);
+        db.execSQL(SQL_CREATE_ITEMS_VIEW);
+        createItemsFts(db);
+        createLowStock(db);
+        createStats(db);
+        createMovements(db);
+        createLocations(db);
+        createSync(db);
+        createCounters(db);
+        db.execSQL(SQL_CREATE_ADJUSTMENT_BATCHES_TABLE);
+    }
+
+    // Create the full-text search table and its triggers
+    private void createItemsFts(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_ITEMS_FTS_TABLE);
+        for (String sql : SQL_CREATE_ITEMS_FTS_TRIGGERS) {
+            db.execSQL(sql);
+        }
+    }
+
+    // Create the low stock table and its triggers
+    private void createLowStock(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_LOW_STOCK_TABLE);
+        for (String sql : SQL_CREATE_LOW_STOCK_TRIGGERS) {
+            db.execSQL(sql);
+        }
+    }
+
+    // Create the tables of the totals, filled from the existing items, and their triggers
+    private void createStats(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_INVENTORY_STATS_TABLE);
+        db.execSQL(SQL_CREATE_SUPPLIER_STATS_TABLE);
+        db.execSQL(SQL_FILL_INVENTORY_STATS);
+        db.execSQL(SQL_FILL_SUPPLIER_STATS);
+        for (String sql : SQL_CREATE_STATS_TRIGGERS) {
+            db.execSQL(sql);
+        }
+    }
+
+    // Create the stock movement ledger and the table of its daily totals
+    private void createMovements(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_MOVEMENTS_TABLE);
+        db.execSQL(SQL_CREATE_MOVEMENTS_INDEX);
+        db.execSQL(SQL_CREATE_MOVEMENT_DAYS_TABLE);
+    }
+
+    // Create the locations with the default location, and the stock table, holding every
+    // existing item at the default location, and its triggers
+    private void createLocations(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_LOCATIONS_TABLE);
+        db.execSQL(SQL_INSERT_DEFAULT_LOCATION);
+        db.execSQL(SQL_CREATE_STOCK_TABLE);
+        db.execSQL(SQL_CREATE_STOCK_INDEX);
+        db.execSQL("INSERT INTO " + StockEntry.TABLE_NAME + " (" + StockEntry.COLUMN_ITEM_ID + ", "
+                + StockEntry.COLUMN_LOCATION_ID + ", " + StockEntry.COLUMN_QUANTITY + ")"
+                + " SELECT " + ItemEntry._ID + ", " + LocationEntry.DEFAULT_LOCATION_ID + ", "
+                + ItemEntry.COLUMN_ITEM_QUANTITY + " FROM " + ItemEntry.TABLE_NAME + ";");
+        for (String sql : SQL_CREATE_STOCK_TRIGGERS) {
+            db.execSQL(sql);
+        }
+    }
+
+    // Create the sync tables and the sync state, record every existing item as a local change to
+    // push, numbered by _id, and create the triggers
+    private void createSync(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_SYNC_ROWS_TABLE);
+        db.execSQL(SQL_CREATE_SYNC_ROWS_INDEX);
+        db.execSQL(SQL_CREATE_SYNC_STATE_TABLE);
+        db.execSQL(SQL_INSERT_SYNC_STATE);
+        db.execSQL("INSERT INTO " + SyncEntry.TABLE_NAME + " SELECT " + ItemEntry.COLUMN_ITEM_SYNC_ID + ", "
+                + ItemEntry._ID + ", 1, (SELECT " + SyncEntry.COLUMN_DEVICE_ID + " FROM " + SyncEntry.STATE_TABLE_NAME
+                + "), 0, " + ItemEntry._ID + " FROM " + ItemEntry.TABLE_NAME + ";");
+        db.execSQL("UPDATE " + SyncEntry.STATE_TABLE_NAME + " SET " + SyncEntry.COLUMN_LAST_SEQUENCE
+                + " = IFNULL((SELECT MAX(" + ItemEntry._ID + ") FROM " + ItemEntry.TABLE_NAME + "), 0);");
+        for (String sql : SQL_CREATE_SYNC_TRIGGERS) {
+            db.execSQL(sql);
+        }
+    }
+
+    // Create the quantity counters, counting the quantity of every existing item for the base
+    // device, and their triggers
+    private void createCounters(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_COUNTERS_TABLE);
+        db.execSQL("INSERT INTO " + CounterEntry.TABLE_NAME + " SELECT " + ItemEntry._ID + ", '"
+                + CounterEntry.BASE_DEVICE + "', MAX(" + ItemEntry.COLUMN_ITEM_QUANTITY + ", 0), MAX(-"
+                + ItemEntry.COLUMN_ITEM_QUANTITY + ", 0) FROM " + ItemEntry.TABLE_NAME
+                + " WHERE " + ItemEntry.COLUMN_ITEM_QUANTITY + " != 0;");
+        for (String sql : SQL_CREATE_COUNTER_TRIGGERS) {
+            db.execSQL(sql);
+        }
     }
 
     /**
-     * This is called when the database needs to be upgraded.
+     * This is called when the database needs to be upgraded. Runs the upgrade step of every
+     * version between the old and the new one, inside the transaction opened by the framework.
+     * The steps only touch tables; the items view is created again for the final schema at the
+     * end, so no step depends on columns a later version adds.
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP VIEW IF EXISTS " + ItemEntry.VIEW_NAME + ";");
+        if (oldVersion < 2) {
+            upgradeToVersion2(db);
+        }
+        if (oldVersion < 3) {
+            upgradeToVersion3(db);
+        }
+        if (oldVersion < 4) {
+            upgradeToVersion4(db);
+        }
+        if (oldVersion < 5) {
+            createStats(db);
+        }
+        if (oldVersion < 6) {
+            upgradeToVersion6(db);
+        }
+        if (oldVersion < 7) {
+            upgradeToVersion7(db);
+        }
+        if (oldVersion < 8) {
+            upgradeToVersion8(db);
+        }
+        if (oldVersion < 9) {
+            createLocations(db);
+        }
+        if (oldVersion < 10) {
+            upgradeToVersion10(db);
+        }
+        if (oldVersion < 11) {
+            createCounters(db);
+        }
+        if (oldVersion < 12) {
+            db.execSQL(SQL_CREATE_ADJUSTMENT_BATCHES_TABLE);
+        }
+        if (oldVersion < 13) {
+            upgradeToVersion13(db);
+        }
+        if (oldVersion < 14) {
+            upgradeToVersion14(db);
+        }
+        db.execSQL(SQL_CREATE_ITEMS_VIEW);
+    }
+
+    // Version 1 kept the price as TEXT and the supplier name and email on every item row.
+    // Copy the distinct suppliers out, then rebuild the items table around supplier_id with the
+    // price converted to cents. Version 1 could store a null price, which becomes 0.
+    private void upgradeToVersion2(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_SUPPLIERS_TABLE);
+        db.execSQL("INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_EMAIL + ")"
+                + " SELECT DISTINCT supplier, email FROM " + ItemEntry.TABLE_NAME + ";");
+
+        db.execSQL("ALTER TABLE " + ItemEntry.TABLE_NAME + " RENAME TO items_v1;");
+        db.execSQL("CREATE TABLE " + ItemEntry.TABLE_NAME + " (" + SQL_ITEMS_COLUMNS_V2 + ");");
+        db.execSQL("INSERT INTO " + ItemEntry.TABLE_NAME + " ("
+                + ItemEntry._ID + ", "
+                + ItemEntry.COLUMN_ITEM_NAME + ", "
+                + ItemEntry.COLUMN_ITEM_PRICE + ", "
+                + ItemEntry.COLUMN_ITEM_QUANTITY + ", "
+                + ItemEntry.COLUMN_ITEM_IMAGE + ", "
+                + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ")"
+                + " SELECT i._id, i.name, IFNULL(CAST(ROUND(CAST(i.price AS REAL) * 100) AS INTEGER), 0),"
+                + " i.quantity, i.image, s." + SupplierEntry._ID
+                + " FROM items_v1 i JOIN " + SupplierEntry.TABLE_NAME + " s"
+                + " ON s." + SupplierEntry.COLUMN_SUPPLIER_NAME + " = i.supplier"
+                + " AND s." + SupplierEntry.COLUMN_SUPPLIER_EMAIL + " = i.email;");
+        db.execSQL("DROP TABLE items_v1;");
+
+        for (String sql : SQL_CREATE_ITEMS_INDEXES) {
+            db.execSQL(sql);
+        }
+    }
+
+    // Add the full-text search table and index the existing items
+    private void upgradeToVersion3(SQLiteDatabase db) {
+        createItemsFts(db);
+        db.execSQL("INSERT INTO " + ItemEntry.FTS_TABLE_NAME
+                + " (docid, " + ItemEntry.COLUMN_ITEM_NAME + ", " + ItemEntry.COLUMN_ITEM_SUPPLIER + ")"
+                + " SELECT i." + ItemEntry._ID + ", i." + ItemEntry.COLUMN_ITEM_NAME
+                + ", s." + SupplierEntry.COLUMN_SUPPLIER_NAME
+                + " FROM " + ItemEntry.TABLE_NAME + " i LEFT JOIN " + SupplierEntry.TABLE_NAME + " s"
+                + " ON i." + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " = s." + SupplierEntry._ID + ";");
+    }
+
+    // Add the reorder thresholds and the low stock table, filled with the items that are out of
+    // stock, as every existing item starts with a threshold of 0
+    private void upgradeToVersion4(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + ItemEntry.TABLE_NAME + " ADD COLUMN " + SQL_REORDER_THRESHOLD_COLUMN + ";");
+        createLowStock(db);
+        db.execSQL("INSERT INTO " + ItemEntry.LOW_STOCK_TABLE_NAME + " (" + ItemEntry.COLUMN_LOW_STOCK_ITEM_ID + ")"
+                + " SELECT " + ItemEntry._ID + " FROM " + ItemEntry.TABLE_NAME
+                + " WHERE " + ItemEntry.COLUMN_ITEM_QUANTITY + " <= " + ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD + ";");
+    }
+
+    // Add the stock movement ledger, opened with the current quantity of every item in stock so
+    // that the movements of every item add up to its quantity
+    private void upgradeToVersion6(SQLiteDatabase db) {
+        createMovements(db);
+        db.execSQL("INSERT INTO " + MovementEntry.TABLE_NAME + " ("
+                + MovementEntry.COLUMN_ITEM_ID + ", " + MovementEntry.COLUMN_DELTA + ", "
+                + MovementEntry.COLUMN_REASON + ", " + MovementEntry.COLUMN_TIMESTAMP + ")"
+                + " SELECT " + ItemEntry._ID + ", " + ItemEntry.COLUMN_ITEM_QUANTITY + ", '"
+                + MovementEntry.REASON_CREATED + "', CAST(strftime('%s', 'now') AS INTEGER) * 1000"
+                + " FROM " + ItemEntry.TABLE_NAME + " WHERE " + ItemEntry.COLUMN_ITEM_QUANTITY + " != 0;");
+    }
+
+    // Add the sales velocities. Every item starts as not selling; the ledger can't be replayed
+    // into the exponential weighting in SQL, and it only holds 30 days one by one anyway.
+    private void upgradeToVersion7(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + ItemEntry.TABLE_NAME + " ADD COLUMN " + SQL_SALES_VELOCITY_COLUMN + ";");
+        db.execSQL("ALTER TABLE " + ItemEntry.TABLE_NAME + " ADD COLUMN " + SQL_VELOCITY_TIME_COLUMN + ";");
+    }
+
+    // Add the SKUs and their unique index. Existing items have no SKU until one is written.
+    private void upgradeToVersion8(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + ItemEntry.TABLE_NAME + " ADD COLUMN " + SQL_SKU_COLUMN + ";");
+        db.execSQL(SQL_CREATE_SKU_INDEX);
+    }
+
+    // Add the sync IDs, a random one for every existing item, and the sync bookkeeping
+    private void upgradeToVersion10(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + ItemEntry.TABLE_NAME + " ADD COLUMN " + SQL_SYNC_ID_COLUMN + ";");
+        db.execSQL("UPDATE " + ItemEntry.TABLE_NAME + " SET " + ItemEntry.COLUMN_ITEM_SYNC_ID + " = " + SQL_NEW_SYNC_ID + ";");
+        db.execSQL(SQL_CREATE_SYNC_ID_INDEX);
+        createSync(db);
+    }
+
+    // Give every item without a stock row at the default location one holding the units the
+    // other locations don't, and create the stock triggers again with the guard
+    private void upgradeToVersion13(SQLiteDatabase db) {
+        db.execSQL("INSERT INTO " + StockEntry.TABLE_NAME + " (" + StockEntry.COLUMN_ITEM_ID + ", "
+                + StockEntry.COLUMN_LOCATION_ID + ", " + StockEntry.COLUMN_QUANTITY + ")"
+                + " SELECT i." + ItemEntry._ID + ", " + LocationEntry.DEFAULT_LOCATION_ID + ", i."
+                + ItemEntry.COLUMN_ITEM_QUANTITY + " - IFNULL((SELECT SUM(s." + StockEntry.COLUMN_QUANTITY + ")"
+                + " FROM " + StockEntry.TABLE_NAME + " s WHERE s." + StockEntry.COLUMN_ITEM_ID + " = i." + ItemEntry._ID
+                + "), 0) FROM " + ItemEntry.TABLE_NAME + " i WHERE NOT EXISTS (SELECT 1 FROM " + StockEntry.TABLE_NAME
+                + " s WHERE s." + StockEntry.COLUMN_ITEM_ID + " = i." + ItemEntry._ID
+                + " AND s." + StockEntry.COLUMN_LOCATION_ID + " = " + LocationEntry.DEFAULT_LOCATION_ID + ");");
+        db.execSQL("DROP TRIGGER IF EXISTS stock_insert;");
+        db.execSQL("DROP TRIGGER IF EXISTS stock_update;");
+        db.execSQL("DROP TRIGGER IF EXISTS stock_delete;");
+        db.execSQL("DROP TRIGGER IF EXISTS stock_guard;");
+        for (String sql : SQL_CREATE_STOCK_TRIGGERS) {
+            db.execSQL(sql);
+        }
+    }
+
+    // Add the rebased sales velocities, computed from the stored velocities in Java, as SQLite
+    // has no exp(). Only items that ever sold have a velocity to rebase.
+    private void upgradeToVersion14(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + ItemEntry.TABLE_NAME + " ADD COLUMN " + SQL_REBASED_VELOCITY_COLUMN + ";");
+        SQLiteStatement update = db.compileStatement("UPDATE " + ItemEntry.TABLE_NAME
+                + " SET " + ItemEntry.COLUMN_ITEM_REBASED_VELOCITY + " = ? WHERE " + ItemEntry._ID + " = ?");
+        Cursor cursor = db.rawQuery("SELECT " + ItemEntry._ID + ", " + ItemEntry.COLUMN_ITEM_SALES_VELOCITY
+                + ", " + ItemEntry.COLUMN_ITEM_VELOCITY_TIME + " FROM " + ItemEntry.TABLE_NAME
+                + " WHERE " + ItemEntry.COLUMN_ITEM_SALES_VELOCITY + " != 0", null);
+        try {
+            while (cursor.moveToNext()) {
+                update.bindDouble(1, SalesVelocity.rebased(cursor.getDouble(1), cursor.getLong(2)));
+                update.bindLong(2, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+            update.close();
+        }
     }
-}
\ No newline at end of file
+}
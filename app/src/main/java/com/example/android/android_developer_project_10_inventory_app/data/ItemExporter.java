@@ -0,0 +1,150 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Exports all items from {@link ItemProvider} as CSV or JSON Lines.
+ * <p>
+ * The items are read in windows of a fixed number of rows with keyset queries that continue after
+ * the last _id of the previous window, and every row is written out before the next window is
+ * read, so memory use doesn't grow with the size of the table. The CSV header uses the column
+ * names {@link ItemCsvImporter} reads, so an export can be imported again.
+ */
+public class ItemExporter {
+
+    // Default number of rows read per query
+    public static final int DEFAULT_WINDOW_SIZE = 500;
+
+    // Supported output formats
+    public enum Format {
+        CSV("text/csv"),
+        JSON_LINES("application/x-ndjson");
+
+        public final String mimeType;
+
+        Format(String mimeType) {
+            this.mimeType = mimeType;
+        }
+    }
+
+    // Exported columns, in output order
+    private static final String[] COLUMNS = {ItemEntry._ID, ItemEntry.COLUMN_ITEM_NAME,
+            ItemEntry.COLUMN_ITEM_PRICE, ItemEntry.COLUMN_ITEM_QUANTITY,
+            ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD, ItemEntry.COLUMN_ITEM_IMAGE,
+            ItemEntry.COLUMN_ITEM_SUPPLIER, ItemEntry.COLUMN_SUPPLIER_EMAIL, ItemEntry.COLUMN_ITEM_SKU};
+
+    // Whether each of the COLUMNS holds a number rather than text
+    private static final boolean[] NUMERIC = {true, false, true, true, true, false, false, false, false};
+
+    // Selection of the rows after the last _id of the previous window
+    private static final String SELECTION_AFTER_ID = ItemEntry._ID + " > ?";
+
+    private final ContentResolver mResolver;
+    private final int mWindowSize;
+
+    public ItemExporter(ContentResolver resolver) {
+        this(resolver, DEFAULT_WINDOW_SIZE);
+    }
+
+    public ItemExporter(ContentResolver resolver, int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be at least 1");
+        }
+        mResolver = resolver;
+        mWindowSize = windowSize;
+    }
+
+    // Export all items to the document at the given URI, replacing its contents. Returns the
+    // number of items written.
+    public long exportTo(Uri target, Format format, CancellationSignal cancellationSignal)
+            throws IOException {
+        OutputStream output = mResolver.openOutputStream(target, "w");
+        if (output == null) {
+            throw new IOException("Cannot open " + target);
+        }
+        return exportTo(new OutputStreamWriter(output, "UTF-8"), format, cancellationSignal);
+    }
+
+    // Export all items to the given writer, which is closed afterwards. Returns the number of
+    // items written. Throws OperationCanceledException if the signal is canceled before the end.
+    public long exportTo(Writer target, Format format, CancellationSignal cancellationSignal)
+            throws IOException {
+        Writer writer = new BufferedWriter(target);
+        try {
+            if (format == Format.CSV) {
+                Csv.writeRecord(writer, COLUMNS);
+            }
+
+            Uri windowUri = ItemEntry.CONTENT_URI.buildUpon()
+                    .appendQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT, String.valueOf(mWindowSize))
+                    .build();
+            String[] fields = new String[COLUMNS.length];
+            long lastId = -1;
+            long count = 0;
+            int windowCount;
+            do {
+                Cursor cursor = mResolver.query(windowUri, COLUMNS, SELECTION_AFTER_ID,
+                        new String[]{String.valueOf(lastId)}, ItemEntry._ID, cancellationSignal);
+                if (cursor == null) {
+                    throw new IOException("Cannot query " + windowUri);
+                }
+                try {
+                    windowCount = cursor.getCount();
+                    while (cursor.moveToNext()) {
+                        if (cancellationSignal != null) {
+                            cancellationSignal.throwIfCanceled();
+                        }
+                        if (format == Format.CSV) {
+                            for (int column = 0; column < COLUMNS.length; column++) {
+                                fields[column] = cursor.getString(column);
+                            }
+                            Csv.writeRecord(writer, fields);
+                        } else {
+                            writeJsonLine(writer, cursor);
+                        }
+                        lastId = cursor.getLong(0);
+                        count++;
+                    }
+                } finally {
+                    cursor.close();
+                }
+            } while (windowCount == mWindowSize);
+            return count;
+        } finally {
+            writer.close();
+        }
+    }
+
+    // Write the current row as one JSON object on its own line
+    private static void writeJsonLine(Writer writer, Cursor cursor) throws IOException {
+        writer.write('{');
+        for (int column = 0; column < COLUMNS.length; column++) {
+            if (column > 0) {
+                writer.write(',');
+            }
+            writer.write(JSONObject.quote(COLUMNS[column]));
+            writer.write(':');
+            if (cursor.isNull(column)) {
+                writer.write("null");
+            } else if (NUMERIC[column]) {
+                writer.write(Long.toString(cursor.getLong(column)));
+            } else {
+                writer.write(JSONObject.quote(cursor.getString(column)));
+            }
+        }
+        writer.write("}\n");
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.Context;
+import android.content.CursorLoader;
+import android.database.Cursor;
+import android.os.Trace;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+
+/**
+ * {@link CursorLoader} for the item list that delivers an {@link ItemPagedCursor} instead of the
+ * whole table. Loading only fetches the row count and the first page; the rest is paged in as
+ * the list scrolls. Like any CursorLoader it reloads when the items data changes.
+ * <p>
+ * The list reports which rows it shows through {@link #setVisibleRange(int, int)}, so a reload
+ * also fetches the pages holding them in the background and comparing them with the previous
+ * snapshot doesn't query on the main thread.
+ */
+public class ItemPageLoader extends CursorLoader {
+
+    // Reloads this loader when the items data changes
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+
+    // Positions of the first and last rows on screen, or -1 if unknown
+    private volatile int mFirstVisiblePosition = -1;
+    private volatile int mLastVisiblePosition = -1;
+
+    public ItemPageLoader(Context context, String[] projection) {
+        super(context, ItemEntry.CONTENT_URI, projection, null, null, null);
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        long start = System.nanoTime();
+        Trace.beginSection("ItemPageLoader.loadInBackground");
+        ItemPagedCursor cursor;
+        try {
+            cursor = new ItemPagedCursor(getContext().getContentResolver(), getProjection());
+            cursor.setNotificationUri(getContext().getContentResolver(), ItemEntry.CONTENT_URI);
+            cursor.registerContentObserver(mObserver);
+
+            // Page in the rows on screen now rather than when the list compares them
+            int first = mFirstVisiblePosition;
+            int last = mLastVisiblePosition;
+            if (first >= 0 && last >= first) {
+                cursor.moveToPosition(first);
+                cursor.moveToPosition(Math.min(last, cursor.getCount() - 1));
+                cursor.moveToPosition(-1);
+            }
+        } finally {
+            Trace.endSection();
+        }
+        StartupTimeline.getInstance().mark(StartupTimeline.FIRST_CURSOR_FILLED, start);
+        return cursor;
+    }
+
+    // Remember which rows the list shows, for the next reload
+    public void setVisibleRange(int firstPosition, int lastPosition) {
+        mFirstVisiblePosition = firstPosition;
+        mLastVisiblePosition = lastPosition;
+    }
+}
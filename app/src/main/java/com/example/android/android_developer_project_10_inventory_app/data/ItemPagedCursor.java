@@ -0,0 +1,468 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentResolver;
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Read-only cursor over the items table, sorted by name, that loads its rows a page at a time.
+ * <p>
+ * Pages are fetched from {@link ItemProvider} with keyset queries that continue after the last
+ * (name, _id) of the previous page instead of using OFFSET, so each page costs the same no matter
+ * how deep into the list it is. The page after the one being read is prefetched on a background
+ * thread, and only a bounded number of pages are kept in memory; pages that were dropped are
+ * fetched again from their remembered start key.
+ * <p>
+ * The main thread never queries. A position whose page isn't in memory reads as a placeholder
+ * row with every column null while the page is fetched in the background, and the list is told
+ * to bind its rows again once it is there. Placeholder rows have no item, so the list shouldn't
+ * act on them; {@link #isPlaceholder()} tells them apart. Other threads, such as the loader's,
+ * fetch the page right away. Every position below {@link #getCount()} can be moved to: if rows
+ * were deleted since the cursor counted them, the positions past the end read as the last row,
+ * and the cursor's content observers are told so the loader reloads.
+ */
+public class ItemPagedCursor extends AbstractCursor {
+
+    // Tag for log messages
+    private static final String LOG_TAG = ItemPagedCursor.class.getSimpleName();
+
+    // Default number of rows per page
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    // Default number of pages kept in memory
+    public static final int DEFAULT_MAX_RESIDENT_PAGES = 5;
+
+    // Order of the rows. The _id breaks ties between items with the same name.
+    private static final String SORT_ORDER = ItemEntry.COLUMN_ITEM_NAME + ", " + ItemEntry._ID;
+
+    // Selection of the rows after a given (name, _id) key. The row value form
+    // "(name, _id) > (?, ?)" needs SQLite 3.15, which older devices don't ship.
+    private static final String SELECTION_AFTER_KEY = ItemEntry.COLUMN_ITEM_NAME + " > ? OR ("
+            + ItemEntry.COLUMN_ITEM_NAME + " = ? AND " + ItemEntry._ID + " > ?)";
+
+    // Single background thread shared by all paged cursors for prefetching
+    private static final ExecutorService sPrefetchExecutor = Executors.newSingleThreadExecutor();
+
+    // Handler of the main thread, which tells the list when a page it waits for is there
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final ContentResolver mResolver;
+    private final String[] mProjection;
+    private final int mPageSize;
+    private final int mCount;
+    private final int mNameColumnIndex;
+    private final int mIdColumnIndex;
+
+    // The resident pages by page index, least recently used first. Guarded by "this".
+    private final LinkedHashMap<Integer, Object[][]> mPages;
+
+    // The last row of every page seen so far, whose (name, _id) is where the next page starts.
+    // Guarded by "this".
+    private final ArrayList<Object[]> mPageLastRows = new ArrayList<>();
+
+    // Pages that are being fetched in the background, and those of them the main thread read
+    // placeholders for. Guarded by "this".
+    private final Set<Integer> mFetching = new HashSet<>();
+    private final Set<Integer> mAwaited = new HashSet<>();
+
+    // Number of rows the table turned out to have, if fewer than mCount, or -1, and the last of
+    // them, or null if there are none. Guarded by "this".
+    private int mEnd = -1;
+    private Object[] mEndRow;
+
+    // Row read at positions whose page is on its way, and whether it was read since the list was
+    // last told to bind its rows again
+    private final Object[] mPlaceholderRow;
+    private boolean mPlaceholderRead;
+
+    // The rows of the page holding the current position, and the current row
+    private Object[][] mCurrentPage;
+    private int mCurrentPageIndex = -1;
+    private Object[] mCurrentRow;
+
+    private volatile boolean mClosed;
+
+    public ItemPagedCursor(ContentResolver resolver, String[] projection) {
+        this(resolver, projection, DEFAULT_PAGE_SIZE, DEFAULT_MAX_RESIDENT_PAGES);
+    }
+
+    /**
+     * Creates the cursor and loads its first page on the calling thread.
+     *
+     * @param projection       the columns to return, which must include _id and name
+     * @param pageSize         number of rows fetched per query
+     * @param maxResidentPages number of pages kept in memory at most
+     */
+    public ItemPagedCursor(ContentResolver resolver, String[] projection, int pageSize,
+                           final int maxResidentPages) {
+        if (pageSize < 1 || maxResidentPages < 2) {
+            throw new IllegalArgumentException("Invalid page size or number of resident pages");
+        }
+        mResolver = resolver;
+        mProjection = projection;
+        mPageSize = pageSize;
+        mNameColumnIndex = Arrays.asList(projection).indexOf(ItemEntry.COLUMN_ITEM_NAME);
+        mIdColumnIndex = Arrays.asList(projection).indexOf(ItemEntry._ID);
+        if (mNameColumnIndex == -1 || mIdColumnIndex == -1) {
+            throw new IllegalArgumentException("Projection must include _id and name");
+        }
+        mPlaceholderRow = new Object[projection.length];
+        mPages = new LinkedHashMap<Integer, Object[][]>(maxResidentPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+                return size() > maxResidentPages;
+            }
+        };
+        mCount = queryCount();
+        if (mCount > 0) {
+            getPage(0);
+        }
+    }
+
+    private int queryCount() {
+        Cursor cursor = mResolver.query(ItemEntry.CONTENT_URI, new String[]{"COUNT(*)"},
+                null, null, null);
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Returns the rows of the given page, fetching it and any unknown pages before it if needed.
+    // Returns null if the table shrank and the page no longer exists.
+    private Object[][] getPage(int pageIndex) {
+        synchronized (this) {
+            Object[][] page = mPages.get(pageIndex);
+            if (page != null) {
+                return page;
+            }
+        }
+        // Walk forward from the last page whose end key we know. This is only more than one
+        // fetch when the list jumps ahead, e.g. with the fast scroller.
+        int known;
+        synchronized (this) {
+            known = mPageLastRows.size();
+        }
+        Object[][] page = null;
+        for (int index = Math.min(known, pageIndex); index <= pageIndex; index++) {
+            page = fetchPage(index);
+            if (page == null) {
+                return null;
+            }
+        }
+        return page;
+    }
+
+    // Runs one keyset query for the given page. The end key of the previous page must be known.
+    // Returns null if the page has no rows or the query failed.
+    private Object[][] fetchPage(int pageIndex) {
+        String selection = null;
+        String[] selectionArgs = null;
+        Object[] previousRow = null;
+        if (pageIndex > 0) {
+            synchronized (this) {
+                previousRow = mPageLastRows.get(pageIndex - 1);
+            }
+            String name = String.valueOf(previousRow[mNameColumnIndex]);
+            selection = SELECTION_AFTER_KEY;
+            selectionArgs = new String[]{name, name, String.valueOf(previousRow[mIdColumnIndex])};
+        }
+
+        Uri uri = ItemEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT, String.valueOf(mPageSize))
+                .build();
+        Cursor cursor = mResolver.query(uri, mProjection, selection, selectionArgs, SORT_ORDER);
+        if (cursor == null) {
+            return null;
+        }
+
+        Object[][] rows;
+        try {
+            if (cursor.getCount() == 0) {
+                foundEnd(pageIndex * mPageSize, previousRow);
+                return null;
+            }
+            rows = new Object[cursor.getCount()][];
+            int columnCount = mProjection.length;
+            while (cursor.moveToNext()) {
+                Object[] row = new Object[columnCount];
+                for (int column = 0; column < columnCount; column++) {
+                    switch (cursor.getType(column)) {
+                        case FIELD_TYPE_NULL:
+                            break;
+                        case FIELD_TYPE_INTEGER:
+                            row[column] = cursor.getLong(column);
+                            break;
+                        case FIELD_TYPE_FLOAT:
+                            row[column] = cursor.getDouble(column);
+                            break;
+                        case FIELD_TYPE_BLOB:
+                            row[column] = cursor.getBlob(column);
+                            break;
+                        default:
+                            row[column] = cursor.getString(column);
+                            break;
+                    }
+                }
+                rows[cursor.getPosition()] = row;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        Object[] lastRow = rows[rows.length - 1];
+        synchronized (this) {
+            if (mPageLastRows.size() == pageIndex) {
+                mPageLastRows.add(lastRow);
+            }
+            mPages.put(pageIndex, rows);
+        }
+        if (rows.length < mPageSize) {
+            foundEnd(pageIndex * mPageSize + rows.length, lastRow);
+        }
+        return rows;
+    }
+
+    // Remember that the table ends after the given number of rows, with the given last row, and
+    // have the loader reload if that is fewer rows than counted
+    private void foundEnd(int end, Object[] lastRow) {
+        synchronized (this) {
+            if (end >= mCount || mEnd != -1) {
+                return;
+            }
+            mEnd = end;
+            mEndRow = lastRow;
+        }
+        onChange(false);
+    }
+
+    // Fetch the given page, and the unknown pages before it, in the background unless it's
+    // already resident or on its way. If the list waits for it, tell the list once it's there.
+    private void fetchInBackground(final int pageIndex, boolean listWaits) {
+        boolean resident;
+        boolean start;
+        synchronized (this) {
+            resident = mPages.containsKey(pageIndex);
+            if (!resident && listWaits) {
+                mAwaited.add(pageIndex);
+            }
+            start = !resident && mFetching.add(pageIndex);
+        }
+        if (resident && listWaits) {
+            notifyPageArrived();
+        }
+        if (!start) {
+            return;
+        }
+        sPrefetchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean arrived;
+                try {
+                    if (!mClosed) {
+                        getPage(pageIndex);
+                    }
+                } catch (RuntimeException e) {
+                    Log.e(LOG_TAG, "Failed to fetch page " + pageIndex, e);
+                } finally {
+                    synchronized (ItemPagedCursor.this) {
+                        mFetching.remove(pageIndex);
+                        // After a failed query the list keeps its placeholders rather than
+                        // asking for the page again right away
+                        arrived = mAwaited.remove(pageIndex)
+                                && (mPages.containsKey(pageIndex) || mEnd != -1);
+                    }
+                }
+                if (arrived) {
+                    notifyPageArrived();
+                }
+            }
+        });
+    }
+
+    // Have the list bind its rows again, now reading the rows of a page that arrived
+    private void notifyPageArrived() {
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isClosed()) {
+                    mCurrentPageIndex = -1;
+                    mPlaceholderRead = false;
+                    mDataSetObservable.notifyChanged();
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        int pageIndex = newPosition / mPageSize;
+        if (pageIndex != mCurrentPageIndex) {
+            boolean pastEnd;
+            synchronized (this) {
+                mCurrentPage = mPages.get(pageIndex);
+                pastEnd = mEnd != -1 && pageIndex * mPageSize >= mEnd;
+            }
+            if (mCurrentPage == null && !pastEnd) {
+                if (Looper.myLooper() == Looper.getMainLooper()) {
+                    fetchInBackground(pageIndex, true);
+                } else {
+                    mCurrentPage = getPage(pageIndex);
+                }
+            }
+            // A page that isn't there isn't current, so the next move looks for it again
+            mCurrentPageIndex = mCurrentPage == null ? -1 : pageIndex;
+        }
+
+        int offset = newPosition % mPageSize;
+        if (mCurrentPage != null && offset < mCurrentPage.length) {
+            mCurrentRow = mCurrentPage[offset];
+            // Start on the next page once the last quarter of this one is reached
+            if (offset >= mPageSize - mPageSize / 4 && (pageIndex + 1) * mPageSize < mCount) {
+                fetchInBackground(pageIndex + 1, false);
+            }
+        } else {
+            // Past the end of a table that shrank since it was counted, or on a page on its way
+            synchronized (this) {
+                mCurrentRow = mEnd != -1 && newPosition >= mEnd && mEndRow != null
+                        ? mEndRow : mPlaceholderRow;
+            }
+            if (mCurrentRow == mPlaceholderRow) {
+                mPlaceholderRead = true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the current row is a placeholder for a row whose page is on its way. Its
+     * columns are all null, so its _id reads as 0.
+     */
+    public boolean isPlaceholder() {
+        return mCurrentRow == mPlaceholderRow;
+    }
+
+    /**
+     * Returns whether a placeholder row was read since the list was last told to bind its rows
+     * again, meaning the list may be showing rows that share the _id 0.
+     */
+    public boolean hasPlaceholders() {
+        return mPlaceholderRead;
+    }
+
+    // Returns the value of the given column in the current row
+    private Object getValue(int column) {
+        return mCurrentRow[column];
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mProjection;
+    }
+
+    @Override
+    public int getType(int column) {
+        Object value = getValue(column);
+        if (value == null) {
+            return FIELD_TYPE_NULL;
+        } else if (value instanceof Long) {
+            return FIELD_TYPE_INTEGER;
+        } else if (value instanceof Double) {
+            return FIELD_TYPE_FLOAT;
+        } else if (value instanceof byte[]) {
+            return FIELD_TYPE_BLOB;
+        }
+        return FIELD_TYPE_STRING;
+    }
+
+    @Override
+    public String getString(int column) {
+        Object value = getValue(column);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        Object value = getValue(column);
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return Long.parseLong(value.toString());
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return (float) getDouble(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        Object value = getValue(column);
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.parseDouble(value.toString());
+    }
+
+    @Override
+    public byte[] getBlob(int column) {
+        Object value = getValue(column);
+        return value instanceof byte[] ? (byte[]) value : null;
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return getValue(column) == null;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        mClosed = true;
+        synchronized (this) {
+            mPages.clear();
+            mAwaited.clear();
+        }
+        mCurrentPage = null;
+        mCurrentPageIndex = -1;
+        mCurrentRow = null;
+    }
+}
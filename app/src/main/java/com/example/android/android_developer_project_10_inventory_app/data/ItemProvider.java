@@ -1,15 +1,44 @@
 package com.example.android.android_developer_project_10_inventory_app.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.Trace;
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
 import android.util.Log;
 
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.AdjustmentBatchEntry;
 import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.LocationEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.MovementEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.StatsEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.StockEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.SupplierEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ItemProvider extends ContentProvider {
 
@@ -18,12 +47,206 @@ public class ItemProvider extends ContentProvider {
 
     private ItemDbHelper mDbHelper;
 
+    // Directory inside the app's files where the reorder documents are written
+    private static final String REORDER_DIRECTORY = "reorders";
+
+    // Number of items whose rows are kept in memory for single item queries
+    private static final int ITEM_CACHE_SIZE = 500;
+
+    // Rows of recently queried items, served to single item queries without SQLite
+    private final ItemCache mItemCache = new ItemCache(ITEM_CACHE_SIZE);
+
+    // Columns of the items view, in the order of the cached rows, and the index of every column
+    // among them, so a cache hit finds the projected columns without searching. Set by the first
+    // cache miss.
+    private volatile String[] mItemColumns;
+    private volatile Map<String, Integer> mItemColumnIndexes;
+
+    // Statement used by bulkInsert() to write every row of a batch with the same compiled SQL
+    private static final String SQL_INSERT_ITEM = "INSERT INTO " + ItemEntry.TABLE_NAME + " ("
+            + ItemEntry.COLUMN_ITEM_NAME + ", "
+            + ItemEntry.COLUMN_ITEM_PRICE + ", "
+            + ItemEntry.COLUMN_ITEM_QUANTITY + ", "
+            + ItemEntry.COLUMN_ITEM_IMAGE + ", "
+            + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ", "
+            + ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD + ", "
+            + ItemEntry.COLUMN_ITEM_SKU + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    // Statement appending one movement to the stock ledger
+    private static final String SQL_INSERT_MOVEMENT = "INSERT INTO " + MovementEntry.TABLE_NAME + " ("
+            + MovementEntry.COLUMN_ITEM_ID + ", "
+            + MovementEntry.COLUMN_DELTA + ", "
+            + MovementEntry.COLUMN_REASON + ", "
+            + MovementEntry.COLUMN_TIMESTAMP + ") VALUES (?, ?, ?, ?)";
+
+    // Statement appending a movement for every item an update sets to a new absolute quantity,
+    // run right before the update: quantity, reason and time, then the selection arguments
+    private static final String SQL_INSERT_MOVEMENTS_FOR_QUANTITY = "INSERT INTO " + MovementEntry.TABLE_NAME + " ("
+            + MovementEntry.COLUMN_ITEM_ID + ", "
+            + MovementEntry.COLUMN_DELTA + ", "
+            + MovementEntry.COLUMN_REASON + ", "
+            + MovementEntry.COLUMN_TIMESTAMP + ")"
+            + " SELECT " + ItemEntry._ID + ", ?1 - " + ItemEntry.COLUMN_ITEM_QUANTITY + ", ?2, ?3"
+            + " FROM " + ItemEntry.TABLE_NAME + " WHERE " + ItemEntry.COLUMN_ITEM_QUANTITY + " IS NOT ?1";
+
+    // Table expression of the daily movement totals of one item (?1): the compacted days plus
+    // the movements still in the ledger, added up per day
+    private static final String SQL_DAILY_HISTORY = "(SELECT "
+            + MovementEntry.COLUMN_DAY + " AS " + MovementEntry._ID + ", "
+            + MovementEntry.COLUMN_DAY + ", "
+            + "SUM(" + MovementEntry.COLUMN_QUANTITY_IN + ") AS " + MovementEntry.COLUMN_QUANTITY_IN + ", "
+            + "SUM(" + MovementEntry.COLUMN_QUANTITY_OUT + ") AS " + MovementEntry.COLUMN_QUANTITY_OUT + ", "
+            + "SUM(" + MovementEntry.COLUMN_MOVEMENT_COUNT + ") AS " + MovementEntry.COLUMN_MOVEMENT_COUNT
+            + " FROM (SELECT " + MovementEntry.COLUMN_DAY + ", " + MovementEntry.COLUMN_QUANTITY_IN + ", "
+            + MovementEntry.COLUMN_QUANTITY_OUT + ", " + MovementEntry.COLUMN_MOVEMENT_COUNT
+            + " FROM " + MovementEntry.DAILY_TABLE_NAME + " WHERE " + MovementEntry.COLUMN_ITEM_ID + " = ?1"
+            + " UNION ALL SELECT " + MovementEntry.COLUMN_TIMESTAMP + " / " + MovementEntry.DAY_MILLIS + ", "
+            + "MAX(" + MovementEntry.COLUMN_DELTA + ", 0), MAX(-" + MovementEntry.COLUMN_DELTA + ", 0), 1"
+            + " FROM " + MovementEntry.TABLE_NAME + " WHERE " + MovementEntry.COLUMN_ITEM_ID + " = ?1)"
+            + " GROUP BY " + MovementEntry.COLUMN_DAY + ")";
+
+    // Lookup of the supplier row for a supplier name and email
+    private static final String SQL_SELECT_SUPPLIER_ID = "SELECT " + SupplierEntry._ID
+            + " FROM " + SupplierEntry.TABLE_NAME
+            + " WHERE " + SupplierEntry.COLUMN_SUPPLIER_NAME + " = ?"
+            + " AND " + SupplierEntry.COLUMN_SUPPLIER_EMAIL + " = ?";
+
+    // Relative quantity change (?1) of an item (?2) that refuses to take its quantity below zero.
+    // The change applies to the default location, which a drop first draws the units to.
+    private static final String SQL_ADJUST_QUANTITY = "UPDATE " + ItemEntry.TABLE_NAME
+            + " SET " + ItemEntry.COLUMN_ITEM_QUANTITY + " = " + ItemEntry.COLUMN_ITEM_QUANTITY + " + ?1"
+            + " WHERE " + ItemEntry._ID + " = ?2"
+            + " AND " + ItemEntry.COLUMN_ITEM_QUANTITY + " + ?1 >= 0";
+
+    // The same change for the item with a SKU (?2), which the UPDATE finds through the SKU index
+    private static final String SQL_ADJUST_QUANTITY_FOR_SKU = "UPDATE " + ItemEntry.TABLE_NAME
+            + " SET " + ItemEntry.COLUMN_ITEM_QUANTITY + " = " + ItemEntry.COLUMN_ITEM_QUANTITY + " + ?1"
+            + " WHERE " + ItemEntry._ID + " = (SELECT " + ItemEntry._ID + " FROM " + ItemEntry.TABLE_NAME
+            + " WHERE " + ItemEntry.COLUMN_ITEM_SKU + " = ?2)"
+            + " AND " + ItemEntry.COLUMN_ITEM_QUANTITY + " + ?1 >= 0";
+
+    // Table expression of the locations with the total units at each of them
+    private static final String SQL_LOCATIONS = "(SELECT "
+            + "l." + LocationEntry._ID + " AS " + LocationEntry._ID + ", "
+            + "l." + LocationEntry.COLUMN_LOCATION_NAME + " AS " + LocationEntry.COLUMN_LOCATION_NAME + ", "
+            + "IFNULL(SUM(s." + StockEntry.COLUMN_QUANTITY + "), 0) AS " + LocationEntry.COLUMN_LOCATION_QUANTITY
+            + " FROM " + LocationEntry.TABLE_NAME + " l LEFT JOIN " + StockEntry.TABLE_NAME + " s"
+            + " ON s." + StockEntry.COLUMN_LOCATION_ID + " = l." + LocationEntry._ID
+            + " GROUP BY l." + LocationEntry._ID + ")";
+
+    // Table expression of the quantities of one item (?1) at every location it has stock rows at
+    private static final String SQL_ITEM_STOCK = "(SELECT "
+            + "s." + StockEntry.COLUMN_LOCATION_ID + " AS " + LocationEntry._ID + ", "
+            + "s." + StockEntry.COLUMN_LOCATION_ID + " AS " + StockEntry.COLUMN_LOCATION_ID + ", "
+            + "l." + LocationEntry.COLUMN_LOCATION_NAME + " AS " + StockEntry.COLUMN_LOCATION + ", "
+            + "s." + StockEntry.COLUMN_QUANTITY + " AS " + StockEntry.COLUMN_QUANTITY
+            + " FROM " + StockEntry.TABLE_NAME + " s JOIN " + LocationEntry.TABLE_NAME + " l"
+            + " ON l." + LocationEntry._ID + " = s." + StockEntry.COLUMN_LOCATION_ID
+            + " WHERE s." + StockEntry.COLUMN_ITEM_ID + " = ?1)";
+
+    // Statements of a transfer of units (?1) of an item (?2): taking them from the source location
+    // (?3) if it holds enough, creating the stock row at the destination if the location exists,
+    // and adding them to it
+    private static final String SQL_TAKE_STOCK = "UPDATE " + StockEntry.TABLE_NAME
+            + " SET " + StockEntry.COLUMN_QUANTITY + " = " + StockEntry.COLUMN_QUANTITY + " - ?1"
+            + " WHERE " + StockEntry.COLUMN_ITEM_ID + " = ?2 AND " + StockEntry.COLUMN_LOCATION_ID + " = ?3"
+            + " AND " + StockEntry.COLUMN_QUANTITY + " >= ?1";
+
+    private static final String SQL_INSERT_STOCK_ROW = "INSERT OR IGNORE INTO " + StockEntry.TABLE_NAME
+            + " (" + StockEntry.COLUMN_ITEM_ID + ", " + StockEntry.COLUMN_LOCATION_ID + ", "
+            + StockEntry.COLUMN_QUANTITY + ") SELECT ?2, " + LocationEntry._ID + ", 0"
+            + " FROM " + LocationEntry.TABLE_NAME + " WHERE " + LocationEntry._ID + " = ?3";
+
+    private static final String SQL_PUT_STOCK = "UPDATE " + StockEntry.TABLE_NAME
+            + " SET " + StockEntry.COLUMN_QUANTITY + " = " + StockEntry.COLUMN_QUANTITY + " + ?1"
+            + " WHERE " + StockEntry.COLUMN_ITEM_ID + " = ?2 AND " + StockEntry.COLUMN_LOCATION_ID + " = ?3";
+
+    // Stock of an item (?1) at the locations other than the default one that hold any, in
+    // location order
+    private static final String SQL_SELECT_OTHER_STOCK = "SELECT " + StockEntry.COLUMN_LOCATION_ID + ", "
+            + StockEntry.COLUMN_QUANTITY + " FROM " + StockEntry.TABLE_NAME
+            + " WHERE " + StockEntry.COLUMN_ITEM_ID + " = ?1"
+            + " AND " + StockEntry.COLUMN_LOCATION_ID + " != " + LocationEntry.DEFAULT_LOCATION_ID
+            + " AND " + StockEntry.COLUMN_QUANTITY + " > 0"
+            + " ORDER BY " + StockEntry.COLUMN_LOCATION_ID;
+
+    private static final String SQL_SELECT_DEFAULT_STOCK = "SELECT " + StockEntry.COLUMN_QUANTITY
+            + " FROM " + StockEntry.TABLE_NAME + " WHERE " + StockEntry.COLUMN_ITEM_ID + " = ?"
+            + " AND " + StockEntry.COLUMN_LOCATION_ID + " = " + LocationEntry.DEFAULT_LOCATION_ID;
+
+    // Table expression of the supplier totals joined to their supplier's name and email
+    private static final String SQL_SUPPLIER_STATS = "(SELECT "
+            + "st." + StatsEntry.COLUMN_SUPPLIER_ID + " AS " + StatsEntry.COLUMN_SUPPLIER_ID + ", "
+            + "s." + SupplierEntry.COLUMN_SUPPLIER_NAME + " AS " + StatsEntry.COLUMN_SUPPLIER + ", "
+            + "s." + SupplierEntry.COLUMN_SUPPLIER_EMAIL + " AS " + StatsEntry.COLUMN_SUPPLIER_EMAIL + ", "
+            + "st." + StatsEntry.COLUMN_ITEM_COUNT + " AS " + StatsEntry.COLUMN_ITEM_COUNT + ", "
+            + "st." + StatsEntry.COLUMN_TOTAL_QUANTITY + " AS " + StatsEntry.COLUMN_TOTAL_QUANTITY + ", "
+            + "st." + StatsEntry.COLUMN_STOCK_VALUE + " AS " + StatsEntry.COLUMN_STOCK_VALUE
+            + " FROM " + StatsEntry.SUPPLIER_TABLE_NAME + " st JOIN " + SupplierEntry.TABLE_NAME + " s"
+            + " ON s." + SupplierEntry._ID + " = st." + StatsEntry.COLUMN_SUPPLIER_ID + ")";
+
+    private static final String SQL_SELECT_QUANTITY = "SELECT " + ItemEntry.COLUMN_ITEM_QUANTITY
+            + " FROM " + ItemEntry.TABLE_NAME + " WHERE " + ItemEntry._ID + " = ?";
+
+    // Lookup of the item with a SKU, through the unique SKU index
+    private static final String SQL_SELECT_ID_FOR_SKU = "SELECT " + ItemEntry._ID
+            + " FROM " + ItemEntry.TABLE_NAME + " WHERE " + ItemEntry.COLUMN_ITEM_SKU + " = ?";
+
+    // Selection of the item with a SKU, in the items table and view
+    private static final String SELECTION_SKU = ItemEntry.COLUMN_ITEM_SKU + " = ?";
+
+    // Lookup and update of the sales velocity of one item
+    private static final String SQL_SELECT_VELOCITY = "SELECT " + ItemEntry.COLUMN_ITEM_SALES_VELOCITY
+            + ", " + ItemEntry.COLUMN_ITEM_VELOCITY_TIME
+            + " FROM " + ItemEntry.TABLE_NAME + " WHERE " + ItemEntry._ID + " = ?";
+
+    private static final String SQL_UPDATE_VELOCITY = "UPDATE " + ItemEntry.TABLE_NAME
+            + " SET " + ItemEntry.COLUMN_ITEM_SALES_VELOCITY + " = ?, "
+            + ItemEntry.COLUMN_ITEM_VELOCITY_TIME + " = ?, "
+            + ItemEntry.COLUMN_ITEM_REBASED_VELOCITY + " = ?"
+            + " WHERE " + ItemEntry._ID + " = ?";
+
+    // Set while applyBatch() runs on the calling thread. Collects the URIs the single operations
+    // it dispatches would notify, so that the batch notifies once when it is committed.
+    private final ThreadLocal<Set<Uri>> mBatchChanges = new ThreadLocal<>();
+
     // URI matcher code for the content URI for the items table
     public static final int ITEMS = 100;
 
     // URI matcher code for the content URI for a single item in the items table
     public static final int ITEM_ID = 101;
 
+    // URI matcher code for the content URI that adjusts the quantity of a single item
+    public static final int ITEM_QUANTITY_DELTA = 102;
+
+    // URI matcher code for the content URI that searches items
+    public static final int ITEM_SEARCH = 103;
+
+    // URI matcher code for the content URI that lists the items to reorder
+    public static final int ITEM_LOW_STOCK = 104;
+
+    // URI matcher codes for the content URIs of the inventory and supplier totals
+    public static final int ITEM_STATS = 105;
+    public static final int ITEM_STATS_SUPPLIERS = 106;
+
+    // URI matcher codes for the content URIs of the stock movements of a single item
+    public static final int ITEM_HISTORY = 107;
+    public static final int ITEM_HISTORY_DAILY = 108;
+
+    // URI matcher codes for the content URIs of a single item addressed by its SKU
+    public static final int ITEM_SKU = 109;
+    public static final int ITEM_SKU_QUANTITY_DELTA = 110;
+
+    // URI matcher codes for the content URIs of the locations and of a single location
+    public static final int LOCATIONS = 111;
+    public static final int LOCATION_ID = 112;
+
+    // URI matcher code for the content URI of the quantities of a single item at every location
+    public static final int ITEM_STOCK = 113;
+
+    // URI matcher code for the content URI of the last batch of stock adjustments
+    public static final int ADJUSTMENT_BATCHES = 114;
+
     // URI matcher object to match a context URI to a corresponding code.
     // The input passed into the constructor represents the code to return for the root URI.
     // It's common to use NO_MATCH as the input for this case.
@@ -45,15 +268,102 @@ public class ItemProvider extends ContentProvider {
         //
         // In this case, the "#" wildcard is used where "#" can be substituted for an integer.
         sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_ITEMS + "/#", ITEM_ID);
+
+        // The content URI of the form will map to the integer code {@link #ITEM_QUANTITY_DELTA}.
+        // It only supports update(), with the relative change in
+        // {@link ItemEntry#COLUMN_QUANTITY_DELTA}.
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_ITEMS + "/#/"
+                + ItemContract.PATH_QUANTITY_DELTA, ITEM_QUANTITY_DELTA);
+
+        // The content URI of the form will map to the integer code {@link #ITEM_SEARCH}. This URI
+        // is used to query the items whose name or supplier match the search text.
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_ITEMS + "/"
+                + ItemContract.PATH_SEARCH, ITEM_SEARCH);
+
+        // The content URI of the form will map to the integer code {@link #ITEM_LOW_STOCK}. This
+        // URI is used to query the items whose quantity is at or below their reorder threshold.
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_ITEMS + "/"
+                + ItemContract.PATH_LOW_STOCK, ITEM_LOW_STOCK);
+
+        // The content URIs of the form will map to the integer codes {@link #ITEM_STATS} and
+        // {@link #ITEM_STATS_SUPPLIERS}. These URIs are used to read the totals of the inventory
+        // and of every supplier.
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_ITEMS + "/"
+                + ItemContract.PATH_STATS, ITEM_STATS);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_ITEMS + "/"
+                + ItemContract.PATH_STATS + "/" + ItemContract.PATH_STATS_SUPPLIERS, ITEM_STATS_SUPPLIERS);
+
+        // The content URIs of the form will map to the integer codes {@link #ITEM_HISTORY} and
+        // {@link #ITEM_HISTORY_DAILY}. These URIs are used to read the stock movements of one
+        // item, one by one or added up per day.
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_ITEMS + "/#/"
+                + ItemContract.PATH_HISTORY, ITEM_HISTORY);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_ITEMS + "/#/"
+                + ItemContract.PATH_HISTORY + "/" + ItemContract.PATH_HISTORY_DAILY, ITEM_HISTORY_DAILY);
+
+        // The content URIs of the form will map to the integer codes {@link #ITEM_SKU} and
+        // {@link #ITEM_SKU_QUANTITY_DELTA}. These URIs are used to access ONE single item by its
+        // SKU, with the "*" wildcard standing for the SKU.
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_ITEMS + "/"
+                + ItemContract.PATH_SKU + "/*", ITEM_SKU);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_ITEMS + "/"
+                + ItemContract.PATH_SKU + "/*/" + ItemContract.PATH_QUANTITY_DELTA, ITEM_SKU_QUANTITY_DELTA);
+
+        // The content URIs of the form will map to the integer codes {@link #LOCATIONS} and
+        // {@link #LOCATION_ID}. These URIs are used to access the locations with their totals.
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_LOCATIONS, LOCATIONS);
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_LOCATIONS + "/#", LOCATION_ID);
+
+        // The content URI of the form will map to the integer code {@link #ITEM_STOCK}. This URI
+        // is used to read the quantity of one item at every location.
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_ITEMS + "/#/"
+                + ItemContract.PATH_STOCK, ITEM_STOCK);
+
+        // The content URI of the form will map to the integer code {@link #ADJUSTMENT_BATCHES}.
+        // This URI is used to record a batch of stock adjustments and to look it up again.
+        sUriMatcher.addURI(ItemContract.CONTENT_AUTHORITY, ItemContract.PATH_ADJUSTMENT_BATCHES,
+                ADJUSTMENT_BATCHES);
     }
 
-    // Initialize the provider and the database helper object.
+    // Initialize the provider and the database helper object. This runs on the main thread before
+    // any activity of a cold start is created, so it only starts opening the database.
     @Override
     public boolean onCreate() {
-        mDbHelper = new ItemDbHelper(getContext());
+        long start = System.nanoTime();
+        Trace.beginSection("ItemProvider.onCreate");
+        try {
+            mDbHelper = new ItemDbHelper(getContext());
+            openDatabaseInBackground();
+        } finally {
+            Trace.endSection();
+        }
+        StartupTimeline.getInstance().mark(StartupTimeline.PROVIDER_CREATED, start);
         return true;
     }
 
+    // Open the database, creating or upgrading its schema if needed, off the main thread while
+    // the first activity inflates, so the first query finds it open. A query that comes first
+    // waits for the open under the helper's lock rather than opening it a second time.
+    private void openDatabaseInBackground() {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                Trace.beginSection("ItemDbHelper.open");
+                try {
+                    mDbHelper.getWritableDatabase();
+                } catch (SQLiteException e) {
+                    // The first query opens it again and reports the failure to its caller
+                    Log.e(LOG_TAG, "Failed to open the database", e);
+                    return;
+                } finally {
+                    Trace.endSection();
+                }
+                StartupTimeline.getInstance().mark(StartupTimeline.DATABASE_OPENED, start);
+            }
+        }, "ItemDbOpen").start();
+    }
+
     // Perform the query for the given URI. Use the given projection, selection, selection arguments
     // and sort order.
     @Override
@@ -65,28 +375,163 @@ public class ItemProvider extends ContentProvider {
         // This  cursor will hold the result of the query
         Cursor cursor;
 
+        // The URI whose change notifications invalidate the cursor
+        Uri notificationUri = uri;
+
         // Figure out if the URI matcher can match the URI to a specific code
         int match = sUriMatcher.match(uri);
         switch (match) {
             case ITEMS:
-                // For the ITEMS code, query the items table directly with the given
-                // projection, selection, selection arguments, and sort order. The cursor
-                // could contain multiple rows of the items table.
-                cursor = database.query(ItemEntry.TABLE_NAME, projection, selection,
-                        selectionArgs, null, null, sortOrder);
+                // For the ITEMS code, query the items view (items joined to their supplier)
+                // with the given projection, selection, selection arguments, and sort order. The
+                // cursor could contain multiple rows of the items table, up to the optional limit.
+                String limit = uri.getQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT);
+                if (limit != null && !TextUtils.isDigitsOnly(limit)) {
+                    throw new IllegalArgumentException("Invalid limit " + limit);
+                }
+                cursor = database.query(ItemEntry.VIEW_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder, limit);
                 break;
             case ITEM_ID:
-                // For the ITEM_ID code, extract out the ID from the URI.
-                // For every "?" in the selection, we need to have an element in the selection
-                // arguments that will fill in the "?". Since we have 1 question mark in the
-                // selection, we have 1 String in the selection arguments' String array.
-                selection = ItemEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                // For the ITEM_ID code, extract out the ID from the URI and answer from the
+                // item cache, which reads the row from the database if it isn't cached yet.
+                cursor = queryItem(database, ContentUris.parseId(uri), projection);
+                if (cursor == null) {
+                    // For every "?" in the selection, we need to have an element in the selection
+                    // arguments that will fill in the "?". Since we have 1 question mark in the
+                    // selection, we have 1 String in the selection arguments' String array.
+                    selection = ItemEntry._ID + "=?";
+                    selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
 
-                // This will perform a query on the items table where the _id equals the parsedId to
-                // return a Cursor containing that row of the table.
-                cursor = database.query(ItemEntry.TABLE_NAME, projection, selection, selectionArgs,
+                    // This will perform a query on the items view where the _id equals the
+                    // parsedId to return a Cursor containing that row of the table.
+                    cursor = database.query(ItemEntry.VIEW_NAME, projection, selection,
+                            selectionArgs, null, null, sortOrder);
+                }
+                break;
+            case ITEM_SKU:
+                // For the ITEM_SKU code, look the item up in the items view through the unique
+                // SKU index, which finds the single row without scanning the table
+                cursor = database.query(ItemEntry.VIEW_NAME, projection, SELECTION_SKU,
+                        new String[]{uri.getLastPathSegment()}, null, null, sortOrder);
+                // The SKU can be given to another item, so watch all of them
+                notificationUri = ItemEntry.CONTENT_URI;
+                break;
+            case ITEM_SEARCH:
+                // For the ITEM_SEARCH code, restrict the items view to the IDs the full-text
+                // table finds for the search text, on top of the caller's selection.
+                String ftsMatch = toPrefixMatch(uri.getQueryParameter(ItemContract.QUERY_PARAMETER_SEARCH));
+                if (ftsMatch == null) {
+                    throw new IllegalArgumentException("Search text required for " + uri);
+                }
+                String searchSelection = ItemEntry._ID + " IN (SELECT docid FROM "
+                        + ItemEntry.FTS_TABLE_NAME + " WHERE " + ItemEntry.FTS_TABLE_NAME + " MATCH ?)";
+                if (!TextUtils.isEmpty(selection)) {
+                    searchSelection += " AND (" + selection + ")";
+                }
+                String[] searchArgs = new String[1 + (selectionArgs == null ? 0 : selectionArgs.length)];
+                searchArgs[0] = ftsMatch;
+                if (selectionArgs != null) {
+                    System.arraycopy(selectionArgs, 0, searchArgs, 1, selectionArgs.length);
+                }
+                cursor = database.query(ItemEntry.VIEW_NAME, projection, searchSelection, searchArgs,
+                        null, null, sortOrder, uri.getQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT));
+                // Any item can start or stop matching, so watch all of them
+                notificationUri = ItemEntry.CONTENT_URI;
+                break;
+            case ITEM_LOW_STOCK:
+                // For the ITEM_LOW_STOCK code, restrict the items view to the low stock table,
+                // which the database keeps up to date, on top of the caller's selection.
+                String lowStockSelection = ItemEntry._ID + " IN (SELECT "
+                        + ItemEntry.COLUMN_LOW_STOCK_ITEM_ID + " FROM " + ItemEntry.LOW_STOCK_TABLE_NAME + ")";
+                if (!TextUtils.isEmpty(selection)) {
+                    lowStockSelection += " AND (" + selection + ")";
+                }
+                cursor = database.query(ItemEntry.VIEW_NAME, projection, lowStockSelection,
+                        selectionArgs, null, null, sortOrder);
+                // Any write to an item can add it to or remove it from the list
+                notificationUri = ItemEntry.CONTENT_URI;
+                break;
+            case ITEM_STATS:
+                // For the ITEM_STATS code, read the single row of inventory totals the database
+                // keeps up to date, instead of adding up all items
+                cursor = database.query(StatsEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                // Any write to an item can change the totals
+                notificationUri = ItemEntry.CONTENT_URI;
+                break;
+            case ITEM_STATS_SUPPLIERS:
+                // For the ITEM_STATS_SUPPLIERS code, read the kept totals of every supplier,
+                // sorted by supplier name unless the caller asks for another order
+                if (TextUtils.isEmpty(sortOrder)) {
+                    sortOrder = StatsEntry.COLUMN_SUPPLIER + ", " + StatsEntry.COLUMN_SUPPLIER_ID;
+                }
+                cursor = database.query(SQL_SUPPLIER_STATS, projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                notificationUri = ItemEntry.CONTENT_URI;
+                break;
+            case ITEM_HISTORY:
+                // For the ITEM_HISTORY code, read the movements of the item in the ledger, newest
+                // first unless the caller asks for another order. Selections on the timestamp
+                // use the (item_id, timestamp) index.
+                long historyItemId = Long.parseLong(uri.getPathSegments().get(1));
+                String historySelection = MovementEntry.COLUMN_ITEM_ID + " = " + historyItemId;
+                if (!TextUtils.isEmpty(selection)) {
+                    historySelection += " AND (" + selection + ")";
+                }
+                if (TextUtils.isEmpty(sortOrder)) {
+                    sortOrder = MovementEntry.COLUMN_TIMESTAMP + " DESC, " + MovementEntry._ID + " DESC";
+                }
+                cursor = database.query(MovementEntry.TABLE_NAME, projection, historySelection,
+                        selectionArgs, null, null, sortOrder, uri.getQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT));
+                // Movements are written along with the quantity, which notifies below the item URI
+                notificationUri = ContentUris.withAppendedId(ItemEntry.CONTENT_URI, historyItemId);
+                break;
+            case ITEM_HISTORY_DAILY:
+                // For the ITEM_HISTORY_DAILY code, read the movements of the item added up per
+                // day, newest day first unless the caller asks for another order
+                long dailyItemId = Long.parseLong(uri.getPathSegments().get(1));
+                if (TextUtils.isEmpty(sortOrder)) {
+                    sortOrder = MovementEntry.COLUMN_DAY + " DESC";
+                }
+                cursor = database.query(SQL_DAILY_HISTORY.replace("?1", String.valueOf(dailyItemId)),
+                        projection, selection, selectionArgs, null, null, sortOrder,
+                        uri.getQueryParameter(ItemContract.QUERY_PARAMETER_LIMIT));
+                notificationUri = ContentUris.withAppendedId(ItemEntry.CONTENT_URI, dailyItemId);
+                break;
+            case ITEM_STOCK:
+                // For the ITEM_STOCK code, read the quantity of the item at every location, in the
+                // order the locations were added unless the caller asks for another order
+                long stockItemId = Long.parseLong(uri.getPathSegments().get(1));
+                if (TextUtils.isEmpty(sortOrder)) {
+                    sortOrder = StockEntry.COLUMN_LOCATION_ID;
+                }
+                cursor = database.query(SQL_ITEM_STOCK.replace("?1", String.valueOf(stockItemId)),
+                        projection, selection, selectionArgs, null, null, sortOrder);
+                // Quantity changes notify below the item URI, and so do transfers
+                notificationUri = ContentUris.withAppendedId(ItemEntry.CONTENT_URI, stockItemId);
+                break;
+            case LOCATIONS:
+                // For the LOCATIONS code, read the locations with their totals, in the order they
+                // were added unless the caller asks for another order
+                if (TextUtils.isEmpty(sortOrder)) {
+                    sortOrder = LocationEntry._ID;
+                }
+                cursor = database.query(SQL_LOCATIONS, projection, selection, selectionArgs,
                         null, null, sortOrder);
+                // Item writes change the totals as well as location writes, so watch both
+                notificationUri = ItemContract.BASE_CONTENT_URI;
+                break;
+            case LOCATION_ID:
+                // For the LOCATION_ID code, read the one location with its totals
+                cursor = database.query(SQL_LOCATIONS, projection, LocationEntry._ID + "=?",
+                        new String[]{String.valueOf(ContentUris.parseId(uri))}, null, null, sortOrder);
+                notificationUri = ItemContract.BASE_CONTENT_URI;
+                break;
+            case ADJUSTMENT_BATCHES:
+                // For the ADJUSTMENT_BATCHES code, read the record of the last batch
+                cursor = database.query(AdjustmentBatchEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder);
                 break;
             default:
                 throw new IllegalArgumentException("Cannot query unknown URI " + uri);
@@ -95,10 +540,95 @@ public class ItemProvider extends ContentProvider {
         // Set notification URI on the Cursor,
         // so we know what content URI the Cursor was created for.
         // If the data at this URI changes, then we know we need to update the Cursor.
-        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        cursor.setNotificationUri(getContext().getContentResolver(), notificationUri);
         return cursor;
     }
 
+    // Returns a cursor over the given columns of one item, served from the item cache and read
+    // through into it on a miss. Returns null if the projection asks for something that isn't a
+    // plain column of the items view, which the caller then queries from the database.
+    private Cursor queryItem(SQLiteDatabase database, long id, String[] projection) {
+        Object[] row = mItemCache.get(id);
+        if (row == null) {
+            long generation = mItemCache.getGeneration();
+            Cursor cursor = database.query(ItemEntry.VIEW_NAME, null, ItemEntry._ID + "=?",
+                    new String[]{String.valueOf(id)}, null, null, null);
+            try {
+                if (mItemColumns == null) {
+                    String[] columns = cursor.getColumnNames();
+                    Map<String, Integer> indexes = new HashMap<>();
+                    for (int i = 0; i < columns.length; i++) {
+                        indexes.put(columns[i], i);
+                    }
+                    mItemColumnIndexes = indexes;
+                    mItemColumns = columns;
+                }
+                if (!cursor.moveToFirst()) {
+                    return new MatrixCursor(projection == null ? mItemColumns : projection, 0);
+                }
+                row = new Object[cursor.getColumnCount()];
+                for (int column = 0; column < row.length; column++) {
+                    switch (cursor.getType(column)) {
+                        case Cursor.FIELD_TYPE_NULL:
+                            break;
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            row[column] = cursor.getLong(column);
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            row[column] = cursor.getDouble(column);
+                            break;
+                        case Cursor.FIELD_TYPE_BLOB:
+                            row[column] = cursor.getBlob(column);
+                            break;
+                        default:
+                            row[column] = cursor.getString(column);
+                            break;
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            mItemCache.put(id, row, generation);
+        }
+
+        if (projection == null) {
+            MatrixCursor cursor = new MatrixCursor(mItemColumns, 1);
+            cursor.addRow(row);
+            return cursor;
+        }
+        Map<String, Integer> indexes = mItemColumnIndexes;
+        Object[] values = new Object[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            Integer index = indexes.get(projection[i]);
+            if (index == null) {
+                return null;
+            }
+            values[i] = row[index];
+        }
+        MatrixCursor cursor = new MatrixCursor(projection, 1);
+        cursor.addRow(values);
+        return cursor;
+    }
+
+    // Turn the text typed by the user into an FTS MATCH expression in which every word matches
+    // as a prefix, for instance "blue pe" into "blue* pe*". Returns null if there are no words.
+    private static String toPrefixMatch(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        // Anything but letters and digits would be FTS query syntax or a token separator
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() != 0) {
+                if (match.length() != 0) {
+                    match.append(' ');
+                }
+                match.append(word).append('*');
+            }
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
     // Insert new data into the provider with the given ContentValues.
     @Override
     public Uri insert(Uri uri, ContentValues contentValues) {
@@ -106,26 +636,170 @@ public class ItemProvider extends ContentProvider {
         switch (match) {
             case ITEMS:
                 return insertItem(uri, contentValues);
+            case ITEM_SKU:
+                return upsertItem(uri.getLastPathSegment(), contentValues);
+            case LOCATIONS:
+                return insertLocation(uri, contentValues);
+            case ADJUSTMENT_BATCHES:
+                return insertAdjustmentBatch(uri, contentValues);
             default:
                 throw new IllegalArgumentException("Insertion is not supported for " + uri);
         }
     }
 
+    // Insert a location with the name in the given content values. Returns its content URI, or
+    // null if there already is a location with that name.
+    private Uri insertLocation(Uri uri, ContentValues values) {
+        String name = values.getAsString(LocationEntry.COLUMN_LOCATION_NAME);
+        if (TextUtils.isEmpty(name)) {
+            throw new IllegalArgumentException("Location name required");
+        }
+        ContentValues row = new ContentValues();
+        row.put(LocationEntry.COLUMN_LOCATION_NAME, name);
+        long id = mDbHelper.getWritableDatabase().insert(LocationEntry.TABLE_NAME, null, row);
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+        Uri locationUri = ContentUris.withAppendedId(uri, id);
+        notifyChange(locationUri);
+        return locationUri;
+    }
+
+    // Record the batch ID in the given content values in place of the last one. Meant as an
+    // operation of the batch itself, so the ID is committed along with the adjustments. Nobody
+    // watches this URI, so nothing is notified.
+    private Uri insertAdjustmentBatch(Uri uri, ContentValues values) {
+        String batchId = values.getAsString(AdjustmentBatchEntry.COLUMN_BATCH_ID);
+        if (TextUtils.isEmpty(batchId)) {
+            throw new IllegalArgumentException("Batch ID required");
+        }
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            database.delete(AdjustmentBatchEntry.TABLE_NAME, null, null);
+            ContentValues row = new ContentValues();
+            row.put(AdjustmentBatchEntry.COLUMN_BATCH_ID, batchId);
+            database.insertOrThrow(AdjustmentBatchEntry.TABLE_NAME, null, row);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        return Uri.withAppendedPath(uri, batchId);
+    }
+
     // Insert a item into the database with the given content values. Return the new content URI
     //for that specific row in the database.
     private Uri insertItem(Uri uri, ContentValues values) {
 
+        // check the validation of each item
+        validateItem(values);
+
+        // Get writable database
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+
+        // insert the new item with the given values, pointing it at its supplier's row
+        long id;
+        db.beginTransaction();
+        try {
+            id = db.insert(ItemEntry.TABLE_NAME, null, toItemRow(db, values));
+            int quantity = values.getAsInteger(ItemEntry.COLUMN_ITEM_QUANTITY);
+            if (id != -1 && quantity != 0) {
+                SQLiteStatement movement = db.compileStatement(SQL_INSERT_MOVEMENT);
+                insertMovement(movement, id, quantity, MovementEntry.REASON_CREATED,
+                        System.currentTimeMillis());
+                movement.close();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // If the ID is -1, then the insertion failed. Log an error and return null.
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+
+        // Return the new URI with the ID (of the newly inserted row) appended at the end, and
+        // notify it, which reaches the listeners of the items content URI as well
+        Uri itemUri = ContentUris.withAppendedId(uri, id);
+        notifyChange(itemUri);
+        return itemUri;
+    }
+
+    // Insert the item with the given SKU, or update it with the given values if it exists, in one
+    // transaction. The SQLite of older Android versions has no INSERT ... ON CONFLICT DO UPDATE,
+    // so the SKU index is looked up first and the item then inserted or updated like through
+    // the items and single item URIs. Returns the URI of the item.
+    private Uri upsertItem(String sku, ContentValues values) {
+        String valuesSku = values.getAsString(ItemEntry.COLUMN_ITEM_SKU);
+        if (values.containsKey(ItemEntry.COLUMN_ITEM_SKU) && !sku.equals(valuesSku)) {
+            throw new IllegalArgumentException("SKU " + valuesSku + " doesn't match " + sku);
+        }
+
+        // Hold back the notifications of the insert or update until the transaction is
+        // committed, unless applyBatch() already does
+        Set<Uri> batchChanges = mBatchChanges.get();
+        Set<Uri> changes = batchChanges == null ? new HashSet<Uri>() : batchChanges;
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        Uri itemUri;
+        mBatchChanges.set(changes);
+        db.beginTransaction();
+        try {
+            long id = findItemForSku(db, sku);
+            if (id == -1) {
+                ContentValues itemValues = new ContentValues(values);
+                itemValues.put(ItemEntry.COLUMN_ITEM_SKU, sku);
+                itemUri = insertItem(ItemEntry.CONTENT_URI, itemValues);
+            } else {
+                itemUri = ContentUris.withAppendedId(ItemEntry.CONTENT_URI, id);
+                updateItem(itemUri, values, ItemEntry._ID + "=?", new String[]{String.valueOf(id)});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mBatchChanges.set(batchChanges);
+        }
+
+        if (batchChanges == null) {
+            for (Uri change : changes) {
+                notifyChange(change);
+            }
+        }
+        return itemUri;
+    }
+
+    // Returns the ID of the item with the given SKU, or -1 if there is none
+    private static long findItemForSku(SQLiteDatabase db, String sku) {
+        SQLiteStatement select = db.compileStatement(SQL_SELECT_ID_FOR_SKU);
+        try {
+            select.bindString(1, sku);
+            return select.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            // No item has the SKU
+            return -1;
+        } finally {
+            select.close();
+        }
+    }
+
+    // Check that the given content values describe a complete, valid item. Shared by the single
+    // row and the bulk insert paths and by {@link ItemCsvImporter}, so all of them reject exactly
+    // the same input.
+    static void validateItem(ContentValues values) {
+
         // initialize all the variables needed
         String name = values.getAsString(ItemEntry.COLUMN_ITEM_NAME);
-        String price = values.getAsString(ItemEntry.COLUMN_ITEM_PRICE);
+        Long price = values.getAsLong(ItemEntry.COLUMN_ITEM_PRICE);
         String quantity = values.getAsString(ItemEntry.COLUMN_ITEM_QUANTITY);
         String image = values.getAsString(ItemEntry.COLUMN_ITEM_IMAGE);
         String supplier = values.getAsString(ItemEntry.COLUMN_ITEM_SUPPLIER);
         String email = values.getAsString(ItemEntry.COLUMN_SUPPLIER_EMAIL);
 
         // check the validation of each item
-        if (price == null) {
-            throw new IllegalArgumentException("Price required");
+        if (price == null || price < 0) {
+            throw new IllegalArgumentException("Price required, in cents and not lower than 0");
         }
         if (quantity == null || Integer.parseInt(quantity) < 0) {
             throw new IllegalArgumentException("Quantity required or value lower than 0");
@@ -142,24 +816,206 @@ public class ItemProvider extends ContentProvider {
         if (email == null) {
             throw new IllegalArgumentException("Supplier's email required");
         }
+        validateReorderThreshold(values);
+        validateSku(values);
+    }
+
+    // Check the optional reorder threshold of the given values
+    private static void validateReorderThreshold(ContentValues values) {
+        if (values.containsKey(ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD)) {
+            Integer threshold = values.getAsInteger(ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD);
+            if (threshold == null || threshold < 0) {
+                throw new IllegalArgumentException("Reorder threshold must not be lower than 0");
+            }
+        }
+    }
+
+    // Check the optional SKU of the given values. It can be null, for no SKU, but not empty.
+    private static void validateSku(ContentValues values) {
+        if (values.containsKey(ItemEntry.COLUMN_ITEM_SKU)) {
+            String sku = values.getAsString(ItemEntry.COLUMN_ITEM_SKU);
+            if (sku != null && sku.isEmpty()) {
+                throw new IllegalArgumentException("SKU must not be empty");
+            }
+        }
+    }
+
+    // Returns a copy of the given item values for the items table, with the supplier name and
+    // email replaced by the ID of the matching supplier row. The values must contain both or
+    // neither of them. Must be called inside a transaction.
+    private static ContentValues toItemRow(SQLiteDatabase db, ContentValues values) {
+        boolean hasSupplier = values.containsKey(ItemEntry.COLUMN_ITEM_SUPPLIER);
+        boolean hasEmail = values.containsKey(ItemEntry.COLUMN_SUPPLIER_EMAIL);
+        if (hasSupplier != hasEmail) {
+            throw new IllegalArgumentException("Supplier and supplier's email must be given together");
+        }
+        if (!hasSupplier) {
+            return values;
+        }
+
+        ContentValues row = new ContentValues(values);
+        row.remove(ItemEntry.COLUMN_ITEM_SUPPLIER);
+        row.remove(ItemEntry.COLUMN_SUPPLIER_EMAIL);
+        row.put(ItemEntry.COLUMN_ITEM_SUPPLIER_ID, getOrInsertSupplier(db,
+                values.getAsString(ItemEntry.COLUMN_ITEM_SUPPLIER),
+                values.getAsString(ItemEntry.COLUMN_SUPPLIER_EMAIL)));
+        return row;
+    }
+
+    // Returns the ID of the supplier with the given name and email, creating the supplier if
+    // it doesn't exist yet. Must be called inside a transaction.
+    static long getOrInsertSupplier(SQLiteDatabase db, String supplier, String email) {
+        if (supplier == null || email == null) {
+            throw new IllegalArgumentException("Supplier and supplier's email required");
+        }
+        SQLiteStatement select = db.compileStatement(SQL_SELECT_SUPPLIER_ID);
+        try {
+            select.bindString(1, supplier);
+            select.bindString(2, email);
+            return select.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            // No such supplier yet
+            ContentValues supplierValues = new ContentValues();
+            supplierValues.put(SupplierEntry.COLUMN_SUPPLIER_NAME, supplier);
+            supplierValues.put(SupplierEntry.COLUMN_SUPPLIER_EMAIL, email);
+            return db.insertOrThrow(SupplierEntry.TABLE_NAME, null, supplierValues);
+        } finally {
+            select.close();
+        }
+    }
+
+    // Insert a whole batch of items in one transaction. Every row is validated with the same rules
+    // as insertItem() before anything is written, the rows go through one compiled statement and
+    // listeners are notified once for the batch instead of once per row.
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        final int match = sUriMatcher.match(uri);
+        if (match != ITEMS) {
+            throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+
+        for (ContentValues itemValues : values) {
+            validateItem(itemValues);
+        }
 
-        // Get writable database
         SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement(SQL_INSERT_ITEM);
+        SQLiteStatement movement = db.compileStatement(SQL_INSERT_MOVEMENT);
+        long now = System.currentTimeMillis();
+        int rowsInserted = 0;
+        // Supplier IDs already resolved in this batch, keyed by name and email
+        Map<String, Long> supplierIds = new HashMap<>();
+        db.beginTransaction();
+        try {
+            for (ContentValues itemValues : values) {
+                String supplier = itemValues.getAsString(ItemEntry.COLUMN_ITEM_SUPPLIER);
+                String email = itemValues.getAsString(ItemEntry.COLUMN_SUPPLIER_EMAIL);
+                String supplierKey = supplier + '\n' + email;
+                Long supplierId = supplierIds.get(supplierKey);
+                if (supplierId == null) {
+                    supplierId = getOrInsertSupplier(db, supplier, email);
+                    supplierIds.put(supplierKey, supplierId);
+                }
 
-        // insert the new item with the given values
-        long id = db.insert(ItemEntry.TABLE_NAME, null, values);
+                statement.clearBindings();
+                statement.bindString(1, itemValues.getAsString(ItemEntry.COLUMN_ITEM_NAME));
+                statement.bindLong(2, itemValues.getAsLong(ItemEntry.COLUMN_ITEM_PRICE));
+                int quantity = Integer.parseInt(itemValues.getAsString(ItemEntry.COLUMN_ITEM_QUANTITY));
+                statement.bindLong(3, quantity);
+                statement.bindString(4, itemValues.getAsString(ItemEntry.COLUMN_ITEM_IMAGE));
+                statement.bindLong(5, supplierId);
+                Integer threshold = itemValues.getAsInteger(ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD);
+                statement.bindLong(6, threshold == null ? 0 : threshold);
+                String sku = itemValues.getAsString(ItemEntry.COLUMN_ITEM_SKU);
+                if (sku == null) {
+                    statement.bindNull(7);
+                } else {
+                    statement.bindString(7, sku);
+                }
+                long id;
+                try {
+                    id = statement.executeInsert();
+                } catch (SQLiteConstraintException e) {
+                    if (sku == null) {
+                        throw e;
+                    }
+                    // Another item already has the SKU, for instance when an export is imported
+                    // again. Keep the item without it rather than failing the whole batch, as a
+                    // sync does; only this statement was rolled back.
+                    Log.w(LOG_TAG, "SKU " + sku + " already in use", e);
+                    statement.bindNull(7);
+                    id = statement.executeInsert();
+                }
+                if (id == -1) {
+                    Log.e(LOG_TAG, "Failed to insert row for " + uri);
+                } else {
+                    rowsInserted++;
+                    if (quantity != 0) {
+                        insertMovement(movement, id, quantity, MovementEntry.REASON_CREATED, now);
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+            movement.close();
+        }
 
-        // If the ID is -1, then the insertion failed. Log an error and return null.
-        if (id == -1) {
-            Log.e(LOG_TAG, "Failed to insert row for " + uri);
-            return null;
+        if (rowsInserted != 0)
+            notifyChange(ItemEntry.CONTENT_URI);
+        return rowsInserted;
+    }
+
+    // Apply a list of operations atomically. The operations run inside one transaction and their
+    // own notifications are held back; a single notification follows the commit.
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        ContentProviderResult[] results;
+        Set<Uri> changes = new HashSet<>();
+        mBatchChanges.set(changes);
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mBatchChanges.set(null);
         }
 
-        // Notify all listeners that the data has changed for the item content URI
-        getContext().getContentResolver().notifyChange(uri, null);
+        // A batch that only changed one item (or one field of it) notifies just that,
+        // anything wider notifies the items URI
+        if (changes.size() == 1)
+            notifyChange(changes.iterator().next());
+        else if (changes.size() > 1)
+            notifyChange(ItemEntry.CONTENT_URI);
+        return results;
+    }
 
-        // Return the new URI with the ID (of the newly inserted row) appended at the end
-        return ContentUris.withAppendedId(uri, id);
+    // Notify listeners that the data at the given URI has changed, unless we are in the middle
+    // of applyBatch(), which notifies once when the whole batch is committed. Every write calls
+    // this once it is committed, so the item cache drops the rows it changed here as well.
+    private void notifyChange(Uri uri) {
+        Set<Uri> batchChanges = mBatchChanges.get();
+        if (batchChanges != null) {
+            batchChanges.add(uri);
+            return;
+        }
+        // items/<id> and items/<id>/<column> change one item, the items URI any number of them.
+        // Other URIs, such as the locations, don't change any item.
+        if (!ItemContract.PATH_ITEMS.equals(uri.getPathSegments().get(0))) {
+            getContext().getContentResolver().notifyChange(uri, null);
+            return;
+        }
+        if (uri.getPathSegments().size() > 1) {
+            mItemCache.invalidate(Long.parseLong(uri.getPathSegments().get(1)));
+        } else {
+            mItemCache.invalidateAll();
+        }
+        getContext().getContentResolver().notifyChange(uri, null);
     }
 
     // Updates the data at the given selection and selection arguments, with the new ContentValues.
@@ -176,10 +1032,30 @@ public class ItemProvider extends ContentProvider {
                     // arguments will be a String array containing the actual ID.
                     selection = ItemEntry._ID + "=?";
                     selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                    int rowsUpdated = updateItem(uri, contentValues, selection, selectionArgs);
-                    if (rowsUpdated != 0)
-                        getContext().getContentResolver().notifyChange(uri, null);
-                    return rowsUpdated;
+                    return updateItem(uri, contentValues, selection, selectionArgs);
+                case ITEM_QUANTITY_DELTA:
+                    // The ID is the second to last path segment, before "quantity_delta"
+                    long id = Long.parseLong(uri.getPathSegments().get(1));
+                    Integer delta = contentValues.getAsInteger(ItemEntry.COLUMN_QUANTITY_DELTA);
+                    if (delta == null) {
+                        throw new IllegalArgumentException("Quantity delta required");
+                    }
+                    return adjustQuantity(id, delta,
+                            contentValues.getAsString(MovementEntry.COLUMN_REASON)) == -1 ? 0 : 1;
+                case ITEM_SKU:
+                    // For the ITEM_SKU code, update the item whose SKU is the last path segment
+                    selection = SELECTION_SKU;
+                    selectionArgs = new String[]{uri.getLastPathSegment()};
+                    return updateItem(uri, contentValues, selection, selectionArgs);
+                case ITEM_SKU_QUANTITY_DELTA:
+                    // The SKU is the third path segment, before "quantity_delta". A scan adjusts
+                    // the item like the quantity delta URI, with the SKU bound into the UPDATE.
+                    Integer skuDelta = contentValues.getAsInteger(ItemEntry.COLUMN_QUANTITY_DELTA);
+                    if (skuDelta == null) {
+                        throw new IllegalArgumentException("Quantity delta required");
+                    }
+                    return adjustQuantityForSku(uri.getPathSegments().get(2), skuDelta,
+                            contentValues.getAsString(MovementEntry.COLUMN_REASON)) == -1 ? 0 : 1;
                 default:
                     throw new IllegalArgumentException("Update is not supported for " + uri);
             }
@@ -188,8 +1064,16 @@ public class ItemProvider extends ContentProvider {
 
     // Update items in the database with the given content values. Apply the changes to the rows
     //specified in the selection and selection arguments (which could be 0 or 1 or more items).
-    //Return the number of rows that were successfully updated.
+    //Return the number of rows that were successfully updated. Listeners are only notified if
+    //a value actually changed, and as narrowly as the change allows.
     private int updateItem(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        // The reason of a quantity change goes to the stock ledger, not to the items table
+        String reason = values.getAsString(MovementEntry.COLUMN_REASON);
+        if (values.containsKey(MovementEntry.COLUMN_REASON)) {
+            values = new ContentValues(values);
+            values.remove(MovementEntry.COLUMN_REASON);
+        }
+
         // If the {@link ItemEntry#COLUMN_ITEM_NAME} key is present,
         // check that the name value is not null.
         if (values.containsKey(ItemEntry.COLUMN_ITEM_NAME)) {
@@ -209,14 +1093,17 @@ public class ItemProvider extends ContentProvider {
         }
 
         // If the {@link ItemEntry#COLUMN_ITEM_PRICE} key is present,
-        // check that the weight value is valid.
+        // check that the price value is valid.
         if (values.containsKey(ItemEntry.COLUMN_ITEM_PRICE)) {
-            // Check that the weight is greater than or equal to 0 kg
-            Integer price = values.getAsInteger(ItemEntry.COLUMN_ITEM_PRICE);
-            if (price != null && price < 0) {
+            // Check that the price is a whole number of cents, greater than or equal to 0
+            Long price = values.getAsLong(ItemEntry.COLUMN_ITEM_PRICE);
+            if (price == null || price < 0) {
                 throw new IllegalArgumentException("Valid price required");
             }
         }
+        validateReorderThreshold(values);
+        validateSku(values);
+
         // If there are no values to update, then don't try to update the database
         if (values.size() == 0) {
             return 0;
@@ -225,7 +1112,446 @@ public class ItemProvider extends ContentProvider {
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
         // Returns the number of database rows affected by the update statement
-        return database.update(ItemEntry.TABLE_NAME, values, selection, selectionArgs);
+        int rowsUpdated;
+        Uri changedUri;
+        database.beginTransaction();
+        try {
+            ContentValues row = toItemRow(database, values);
+            changedUri = findChange(database, row, selection, selectionArgs);
+            if (changedUri == null) {
+                // The rows already hold these values, so skip the write but still report the
+                // matching rows as updated, as an UPDATE would
+                rowsUpdated = (int) DatabaseUtils.queryNumEntries(database, ItemEntry.TABLE_NAME,
+                        selection, selectionArgs);
+            } else {
+                if (row.containsKey(ItemEntry.COLUMN_ITEM_QUANTITY)) {
+                    int quantity = row.getAsInteger(ItemEntry.COLUMN_ITEM_QUANTITY);
+                    insertMovementsForQuantity(database, quantity,
+                            reason == null ? MovementEntry.REASON_EDITED : reason, selection, selectionArgs);
+                    drawStockForQuantity(database, quantity, selection, selectionArgs);
+                }
+                rowsUpdated = database.update(ItemEntry.TABLE_NAME, row, selection, selectionArgs);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        if (changedUri != null)
+            notifyChange(changedUri);
+        return rowsUpdated;
+    }
+
+    // Returns the URI to notify for writing the given items table values to the rows of the
+    // selection: null if no row would change, the field URI if only one column of one item
+    // would, the item URI if several columns of one item would, and the items URI otherwise.
+    // Must be called inside a transaction.
+    private static Uri findChange(SQLiteDatabase db, ContentValues row, String selection,
+                                  String[] selectionArgs) {
+        // SELECT _id, a IS NOT ?, b IS NOT ? FROM items WHERE (selection) AND (a IS NOT ? OR
+        // b IS NOT ?) LIMIT 2, since two changed rows are enough to know it's not a single item
+        String[] columns = row.keySet().toArray(new String[row.size()]);
+        StringBuilder flags = new StringBuilder();
+        StringBuilder anyChanged = new StringBuilder();
+        ArrayList<String> valueArgs = new ArrayList<>();
+        for (int i = 0; i < columns.length; i++) {
+            Object value = row.get(columns[i]);
+            String comparison = columns[i] + (value == null ? " IS NOT NULL" : " IS NOT ?");
+            if (value != null) {
+                valueArgs.add(value.toString());
+            }
+            flags.append(", ").append(comparison);
+            anyChanged.append(i == 0 ? "" : " OR ").append(comparison);
+        }
+        String sql = "SELECT " + ItemEntry._ID + flags
+                + " FROM " + ItemEntry.TABLE_NAME
+                + " WHERE " + (TextUtils.isEmpty(selection) ? "" : "(" + selection + ") AND ")
+                + "(" + anyChanged + ") LIMIT 2";
+
+        ArrayList<String> args = new ArrayList<>(valueArgs);
+        if (selectionArgs != null) {
+            args.addAll(Arrays.asList(selectionArgs));
+        }
+        args.addAll(valueArgs);
+
+        Cursor cursor = db.rawQuery(sql, args.toArray(new String[args.size()]));
+        try {
+            if (cursor.getCount() == 0) {
+                return null;
+            }
+            if (cursor.getCount() > 1) {
+                return ItemEntry.CONTENT_URI;
+            }
+            cursor.moveToFirst();
+            long id = cursor.getLong(0);
+            String changedColumn = null;
+            for (int i = 0; i < columns.length; i++) {
+                if (cursor.getInt(i + 1) != 0) {
+                    if (changedColumn != null) {
+                        return ContentUris.withAppendedId(ItemEntry.CONTENT_URI, id);
+                    }
+                    changedColumn = columns[i];
+                }
+            }
+            return ItemEntry.buildFieldUri(id, changedColumn);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Append a movement to the stock ledger with the given compiled SQL_INSERT_MOVEMENT statement
+    private static void insertMovement(SQLiteStatement statement, long itemId, int delta, String reason,
+                                       long timestamp) {
+        statement.bindLong(1, itemId);
+        statement.bindLong(2, delta);
+        statement.bindString(3, reason);
+        statement.bindLong(4, timestamp);
+        statement.executeInsert();
+    }
+
+    // Append a movement to the stock ledger for every item of the selection whose quantity
+    // differs from the given one, with one INSERT ... SELECT. Must be called inside the
+    // transaction of the update, right before it.
+    private static void insertMovementsForQuantity(SQLiteDatabase db, int quantity, String reason,
+                                                   String selection, String[] selectionArgs) {
+        String sql = SQL_INSERT_MOVEMENTS_FOR_QUANTITY;
+        if (!TextUtils.isEmpty(selection)) {
+            sql += " AND (" + selection + ")";
+        }
+        int argCount = 3 + (selectionArgs == null ? 0 : selectionArgs.length);
+        Object[] args = new Object[argCount];
+        args[0] = quantity;
+        args[1] = reason;
+        args[2] = System.currentTimeMillis();
+        if (selectionArgs != null) {
+            System.arraycopy(selectionArgs, 0, args, 3, selectionArgs.length);
+        }
+        db.execSQL(sql, args);
+    }
+
+    // Before an update sets the items of the selection to the given absolute quantity, move the
+    // units each of them drops by to its default location, where the drop applies
+    private static void drawStockForQuantity(SQLiteDatabase db, int quantity, String selection,
+                                             String[] selectionArgs) {
+        String sql = "SELECT " + ItemEntry._ID + ", " + ItemEntry.COLUMN_ITEM_QUANTITY + " - ?1"
+                + " FROM " + ItemEntry.TABLE_NAME + " WHERE " + ItemEntry.COLUMN_ITEM_QUANTITY + " > ?1";
+        if (!TextUtils.isEmpty(selection)) {
+            sql += " AND (" + selection + ")";
+        }
+        int argCount = 1 + (selectionArgs == null ? 0 : selectionArgs.length);
+        String[] args = new String[argCount];
+        args[0] = String.valueOf(quantity);
+        if (selectionArgs != null) {
+            System.arraycopy(selectionArgs, 0, args, 1, selectionArgs.length);
+        }
+
+        // Read the drops first, as drawing writes to the stock while the cursor would be open
+        ArrayList<long[]> drops = new ArrayList<>();
+        Cursor cursor = db.rawQuery(sql, args);
+        try {
+            while (cursor.moveToNext()) {
+                drops.add(new long[]{cursor.getLong(0), cursor.getLong(1)});
+            }
+        } finally {
+            cursor.close();
+        }
+        for (long[] drop : drops) {
+            drawToDefaultLocation(db, drop[0], drop[1]);
+        }
+    }
+
+    // Before the quantity of an item drops by the given units, which applies to the default
+    // location, move units there from the other locations, in location order, until it holds
+    // them. The drop then takes no location below zero. Only a drop past the total stock, which
+    // a sync can merge in for an item sold out on two devices, takes the default location below
+    // zero. Must be called inside the transaction of the drop.
+    static void drawToDefaultLocation(SQLiteDatabase db, long id, long units) {
+        db.execSQL(SQL_INSERT_STOCK_ROW, new Object[]{0, id, LocationEntry.DEFAULT_LOCATION_ID});
+        long shortfall = units - DatabaseUtils.longForQuery(db, SQL_SELECT_DEFAULT_STOCK,
+                new String[]{String.valueOf(id)});
+        if (shortfall <= 0) {
+            return;
+        }
+
+        ArrayList<long[]> stock = new ArrayList<>();
+        Cursor cursor = db.rawQuery(SQL_SELECT_OTHER_STOCK, new String[]{String.valueOf(id)});
+        try {
+            while (cursor.moveToNext()) {
+                stock.add(new long[]{cursor.getLong(0), cursor.getLong(1)});
+            }
+        } finally {
+            cursor.close();
+        }
+        for (int i = 0; i < stock.size() && shortfall > 0; i++) {
+            long moved = Math.min(shortfall, stock.get(i)[1]);
+            executeStockUpdate(db, SQL_TAKE_STOCK, moved, id, stock.get(i)[0]);
+            executeStockUpdate(db, SQL_PUT_STOCK, moved, id, LocationEntry.DEFAULT_LOCATION_ID);
+            shortfall -= moved;
+        }
+    }
+
+    // Fold a sale of the given units into the sales velocity of an item. Reads and writes one
+    // row whatever the item's history. Must be called inside the transaction of the sale.
+    private static void recordSale(SQLiteDatabase db, long id, int units, long now) {
+        String[] idArgs = {String.valueOf(id)};
+        Cursor cursor = db.rawQuery(SQL_SELECT_VELOCITY, idArgs);
+        double velocity;
+        try {
+            if (!cursor.moveToFirst()) {
+                return;
+            }
+            velocity = SalesVelocity.afterSale(cursor.getDouble(0), cursor.getLong(1), units, now);
+        } finally {
+            cursor.close();
+        }
+        db.execSQL(SQL_UPDATE_VELOCITY, new Object[]{velocity, now, SalesVelocity.rebased(velocity, now), id});
+    }
+
+    // Add the given delta to the quantity of one item with a single UPDATE statement, so concurrent
+    // writers can't lose each other's changes, and record it in the stock ledger with the given
+    // reason, or as sold or received if there is none. Sales also update the item's sales
+    // velocity. A drop draws the units to the default location first, like an absolute write.
+    // Returns the new quantity, or -1 if the item doesn't exist or the change would take its
+    // quantity below zero.
+    private long adjustQuantity(long id, int delta, String reason) {
+        return adjustQuantity(id, null, delta, reason);
+    }
+
+    // Like adjustQuantity(), for the item with the given SKU
+    private long adjustQuantityForSku(String sku, int delta, String reason) {
+        return adjustQuantity(-1, sku, delta, reason);
+    }
+
+    // Adjusts the item with the given ID, or the one with the given SKU if that isn't null. The
+    // quantity changes in the one UPDATE either way. The ledger and the draw to the default
+    // location need the item's ID; for a SKU it is read in the same transaction, so it is
+    // the row the UPDATE changes.
+    private long adjustQuantity(long id, String sku, int delta, String reason) {
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        long quantity = -1;
+        database.beginTransaction();
+        try {
+            if (sku != null) {
+                id = findItemForSku(database, sku);
+            }
+            // Only draw for a drop the UPDATE below will accept, so a rejected one moves nothing
+            if (delta < 0 && id != -1 && readQuantity(database, id) + delta >= 0) {
+                drawToDefaultLocation(database, id, -delta);
+            }
+            SQLiteStatement update;
+            if (sku == null) {
+                update = database.compileStatement(SQL_ADJUST_QUANTITY);
+                update.bindLong(2, id);
+            } else {
+                update = database.compileStatement(SQL_ADJUST_QUANTITY_FOR_SKU);
+                update.bindString(2, sku);
+            }
+            update.bindLong(1, delta);
+            int rowsUpdated = update.executeUpdateDelete();
+            update.close();
+
+            if (rowsUpdated != 0 && delta != 0) {
+                if (reason == null) {
+                    reason = delta < 0 ? MovementEntry.REASON_SOLD : MovementEntry.REASON_RECEIVED;
+                }
+                long now = System.currentTimeMillis();
+                SQLiteStatement movement = database.compileStatement(SQL_INSERT_MOVEMENT);
+                insertMovement(movement, id, delta, reason, now);
+                movement.close();
+                if (delta < 0 && MovementEntry.REASON_SOLD.equals(reason)) {
+                    recordSale(database, id, -delta, now);
+                }
+            }
+            if (rowsUpdated != 0) {
+                SQLiteStatement select = database.compileStatement(SQL_SELECT_QUANTITY);
+                select.bindLong(1, id);
+                quantity = select.simpleQueryForLong();
+                select.close();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        // The sales velocity only ever changes along with the quantity, so it counts as part of it
+        if (quantity != -1 && delta != 0)
+            notifyChange(ItemEntry.buildFieldUri(id, ItemEntry.COLUMN_ITEM_QUANTITY));
+        return quantity;
+    }
+
+    // Returns the quantity of an item, or -1 if it doesn't exist
+    private static long readQuantity(SQLiteDatabase db, long id) {
+        SQLiteStatement select = db.compileStatement(SQL_SELECT_QUANTITY);
+        try {
+            select.bindLong(1, id);
+            return select.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            return -1;
+        } finally {
+            select.close();
+        }
+    }
+
+    // Move the given units of one item from one location to another in one transaction. The
+    // quantity of the item stays the same, so the item's row isn't written. Returns false if the
+    // source location doesn't hold that many units or the destination doesn't exist.
+    private boolean transferStock(long id, long fromLocation, long toLocation, int units) {
+        if (units <= 0) {
+            throw new IllegalArgumentException("Units to transfer must be greater than 0");
+        }
+        if (fromLocation == toLocation) {
+            throw new IllegalArgumentException("Source and destination must be different locations");
+        }
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        boolean transferred = false;
+        database.beginTransaction();
+        try {
+            if (executeStockUpdate(database, SQL_TAKE_STOCK, units, id, fromLocation) != 0) {
+                database.execSQL(SQL_INSERT_STOCK_ROW, new Object[]{units, id, toLocation});
+                transferred = executeStockUpdate(database, SQL_PUT_STOCK, units, id, toLocation) != 0;
+            }
+            if (transferred) {
+                database.setTransactionSuccessful();
+            }
+        } finally {
+            database.endTransaction();
+        }
+
+        if (transferred)
+            notifyChange(ItemEntry.buildStockUri(id));
+        return transferred;
+    }
+
+    // Run one of the stock UPDATE statements of a transfer and return the number of rows changed
+    private static int executeStockUpdate(SQLiteDatabase db, String sql, long units, long id, long location) {
+        SQLiteStatement statement = db.compileStatement(sql);
+        try {
+            statement.bindLong(1, units);
+            statement.bindLong(2, id);
+            statement.bindLong(3, location);
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    // Entry point for provider methods that don't map onto a content URI.
+    // {@link ItemContract#METHOD_ADJUST_QUANTITY} takes the item ID as arg and the delta in the
+    // extras, and returns the new quantity, or null if the change was rejected.
+    // {@link ItemContract#METHOD_GET_CACHE_STATS} returns the counters of the item cache.
+    // {@link ItemContract#METHOD_WRITE_REORDER_BATCH} writes the reorder documents of all
+    // suppliers, and returns null if they couldn't be written.
+    // {@link ItemContract#METHOD_COMPACT_MOVEMENTS} compacts the stock movements before the
+    // cutoff in the extras, or older than the default retention, into daily totals.
+    // {@link ItemContract#METHOD_TRANSFER_STOCK} moves units of the item given as arg between the
+    // locations in the extras, and returns null if the transfer was rejected.
+    // The sync methods read the local changes to push and apply the changes pulled, for
+    // {@link ItemSyncEngine}; see {@link ItemContract#METHOD_SYNC_READ_CHANGES}.
+    @Override
+    public Bundle call(@NonNull String method, String arg, Bundle extras) {
+        if (ItemContract.METHOD_ADJUST_QUANTITY.equals(method)) {
+            if (arg == null || extras == null || !extras.containsKey(ItemContract.EXTRA_QUANTITY_DELTA)) {
+                throw new IllegalArgumentException("Item ID and quantity delta required");
+            }
+            long quantity = adjustQuantity(Long.parseLong(arg),
+                    extras.getInt(ItemContract.EXTRA_QUANTITY_DELTA),
+                    extras.getString(ItemContract.EXTRA_MOVEMENT_REASON));
+            if (quantity == -1)
+                return null;
+            Bundle result = new Bundle();
+            result.putInt(ItemContract.EXTRA_QUANTITY, (int) quantity);
+            return result;
+        }
+        if (ItemContract.METHOD_TRANSFER_STOCK.equals(method)) {
+            if (arg == null || extras == null || !extras.containsKey(ItemContract.EXTRA_FROM_LOCATION)
+                    || !extras.containsKey(ItemContract.EXTRA_TO_LOCATION)
+                    || !extras.containsKey(ItemContract.EXTRA_QUANTITY)) {
+                throw new IllegalArgumentException("Item ID, locations and quantity required");
+            }
+            boolean transferred = transferStock(Long.parseLong(arg),
+                    extras.getLong(ItemContract.EXTRA_FROM_LOCATION),
+                    extras.getLong(ItemContract.EXTRA_TO_LOCATION),
+                    extras.getInt(ItemContract.EXTRA_QUANTITY));
+            return transferred ? new Bundle() : null;
+        }
+        if (ItemContract.METHOD_WRITE_REORDER_BATCH.equals(method)) {
+            File directory = new File(getContext().getFilesDir(), REORDER_DIRECTORY);
+            List<ReorderBatchGenerator.SupplierOrder> orders;
+            try {
+                orders = new ReorderBatchGenerator(mDbHelper.getReadableDatabase()).write(directory);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Failed to write reorder documents", e);
+                return null;
+            }
+            Bundle result = new Bundle();
+            result.putInt(ItemContract.EXTRA_REORDER_SUPPLIER_COUNT, orders.size());
+            result.putString(ItemContract.EXTRA_REORDER_DIRECTORY, directory.getPath());
+            return result;
+        }
+        if (ItemContract.METHOD_COMPACT_MOVEMENTS.equals(method)) {
+            long cutoff = extras != null && extras.containsKey(ItemContract.EXTRA_MOVEMENT_CUTOFF)
+                    ? extras.getLong(ItemContract.EXTRA_MOVEMENT_CUTOFF)
+                    : StockMovementCompactor.defaultCutoff(System.currentTimeMillis());
+            int compacted = new StockMovementCompactor(mDbHelper.getWritableDatabase()).compact(cutoff);
+            if (compacted != 0)
+                notifyChange(ItemEntry.CONTENT_URI);
+            Bundle result = new Bundle();
+            result.putInt(ItemContract.EXTRA_MOVEMENTS_COMPACTED, compacted);
+            return result;
+        }
+        if (ItemContract.METHOD_SYNC_READ_CHANGES.equals(method)) {
+            int limit = extras != null && extras.containsKey(ItemContract.EXTRA_SYNC_LIMIT)
+                    ? extras.getInt(ItemContract.EXTRA_SYNC_LIMIT)
+                    : ItemSyncEngine.DEFAULT_BATCH_SIZE;
+            SyncBatch changes = new ItemSyncStore(mDbHelper.getReadableDatabase()).readChanges(limit);
+            Bundle result = new Bundle();
+            result.putByteArray(ItemContract.EXTRA_SYNC_BATCH, changes.encode());
+            result.putInt(ItemContract.EXTRA_SYNC_COUNT, changes.changes.size());
+            result.putLong(ItemContract.EXTRA_SYNC_SEQUENCE, changes.token);
+            return result;
+        }
+        if (ItemContract.METHOD_SYNC_MARK_PUSHED.equals(method)) {
+            if (extras == null || !extras.containsKey(ItemContract.EXTRA_SYNC_SEQUENCE)) {
+                throw new IllegalArgumentException("Sequence number required");
+            }
+            new ItemSyncStore(mDbHelper.getWritableDatabase())
+                    .markPushed(extras.getLong(ItemContract.EXTRA_SYNC_SEQUENCE));
+            return new Bundle();
+        }
+        if (ItemContract.METHOD_SYNC_APPLY_CHANGES.equals(method)) {
+            if (extras == null || extras.getByteArray(ItemContract.EXTRA_SYNC_BATCH) == null) {
+                throw new IllegalArgumentException("Sync batch required");
+            }
+            SyncBatch batch;
+            try {
+                batch = SyncBatch.decode(extras.getByteArray(ItemContract.EXTRA_SYNC_BATCH));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid sync batch", e);
+            }
+            int applied = new ItemSyncStore(mDbHelper.getWritableDatabase()).apply(batch);
+            if (applied != 0)
+                notifyChange(ItemEntry.CONTENT_URI);
+            Bundle result = new Bundle();
+            result.putInt(ItemContract.EXTRA_SYNC_COUNT, applied);
+            result.putLong(ItemContract.EXTRA_SYNC_TOKEN, batch.token);
+            result.putBoolean(ItemContract.EXTRA_SYNC_MORE, batch.more);
+            return result;
+        }
+        if (ItemContract.METHOD_SYNC_GET_TOKEN.equals(method)) {
+            Bundle result = new Bundle();
+            result.putLong(ItemContract.EXTRA_SYNC_TOKEN,
+                    new ItemSyncStore(mDbHelper.getReadableDatabase()).getServerToken());
+            return result;
+        }
+        if (ItemContract.METHOD_GET_CACHE_STATS.equals(method)) {
+            Bundle result = new Bundle();
+            result.putInt(ItemContract.EXTRA_CACHE_SIZE, mItemCache.size());
+            result.putLong(ItemContract.EXTRA_CACHE_HITS, mItemCache.getHitCount());
+            result.putLong(ItemContract.EXTRA_CACHE_MISSES, mItemCache.getMissCount());
+            result.putLong(ItemContract.EXTRA_CACHE_EVICTIONS, mItemCache.getEvictionCount());
+            return result;
+        }
+        return super.call(method, arg, extras);
     }
 
     // Delete the data at the given selection and selection arguments.
@@ -241,7 +1567,7 @@ public class ItemProvider extends ContentProvider {
                 // Delete all rows that match the selection and selection args
                 rowsDeleted = database.delete(ItemEntry.TABLE_NAME, selection, selectionArgs);
                 if (rowsDeleted != 0)
-                    getContext().getContentResolver().notifyChange(uri, null);
+                    notifyChange(uri);
                 return rowsDeleted;
             case ITEM_ID:
                 // Delete a single row given by the ID in the URI
@@ -249,7 +1575,7 @@ public class ItemProvider extends ContentProvider {
                 selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
                 rowsDeleted = database.delete(ItemEntry.TABLE_NAME, selection, selectionArgs);
                 if (rowsDeleted != 0)
-                    getContext().getContentResolver().notifyChange(uri, null);
+                    notifyChange(uri);
                 return rowsDeleted;
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
@@ -262,9 +1588,30 @@ public class ItemProvider extends ContentProvider {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case ITEMS:
+            case ITEM_SEARCH:
+            case ITEM_LOW_STOCK:
                 return ItemEntry.CONTENT_LIST_TYPE;
             case ITEM_ID:
+            case ITEM_QUANTITY_DELTA:
+            case ITEM_SKU:
+            case ITEM_SKU_QUANTITY_DELTA:
                 return ItemEntry.CONTENT_ITEM_TYPE;
+            case ITEM_STATS:
+                return StatsEntry.CONTENT_ITEM_TYPE;
+            case ITEM_STATS_SUPPLIERS:
+                return StatsEntry.CONTENT_SUPPLIERS_TYPE;
+            case ITEM_HISTORY:
+                return MovementEntry.CONTENT_LIST_TYPE;
+            case ITEM_HISTORY_DAILY:
+                return MovementEntry.CONTENT_DAILY_LIST_TYPE;
+            case ITEM_STOCK:
+                return StockEntry.CONTENT_LIST_TYPE;
+            case LOCATIONS:
+                return LocationEntry.CONTENT_LIST_TYPE;
+            case LOCATION_ID:
+                return LocationEntry.CONTENT_ITEM_TYPE;
+            case ADJUSTMENT_BATCHES:
+                return AdjustmentBatchEntry.CONTENT_LIST_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
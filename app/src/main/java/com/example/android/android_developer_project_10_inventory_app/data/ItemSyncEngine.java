@@ -0,0 +1,97 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentResolver;
+import android.os.Bundle;
+
+import java.io.IOException;
+
+/**
+ * Syncs the items of {@link ItemProvider} with other devices through a {@link SyncTransport}.
+ * <p>
+ * The provider records every local change of an item with a new row version. A sync first pushes
+ * the changes made since the last push, then pulls the changes the server kept since the last
+ * pull, so both directions only carry the rows that changed, in compressed batches. Conflicting
+ * edits are resolved per item by {@link SyncBatch.Change#winsOver}, while quantities are merged as
+ * {@link QuantityCounter}s. A sync that fails part way can be run again: batches are only marked
+ * as pushed or pulled once they have gone through.
+ */
+public class ItemSyncEngine {
+
+    // Default number of changes per batch, which keeps a batch of typical items well below the
+    // size a binder transaction to the provider can carry
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    // Outcome of a sync
+    public static class Result {
+        // Number of local changes pushed
+        public final long pushed;
+        // Number of pulled changes applied locally
+        public final long applied;
+
+        Result(long pushed, long applied) {
+            this.pushed = pushed;
+            this.applied = applied;
+        }
+    }
+
+    private final ContentResolver mResolver;
+    private final SyncTransport mTransport;
+    private final int mBatchSize;
+
+    public ItemSyncEngine(ContentResolver resolver, SyncTransport transport) {
+        this(resolver, transport, DEFAULT_BATCH_SIZE);
+    }
+
+    public ItemSyncEngine(ContentResolver resolver, SyncTransport transport, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        mResolver = resolver;
+        mTransport = transport;
+        mBatchSize = batchSize;
+    }
+
+    // Push the local changes, then pull and apply the changes of other devices. Not meant for
+    // the main thread.
+    public Result sync() throws IOException {
+        long pushed = 0;
+        while (true) {
+            Bundle extras = new Bundle();
+            extras.putInt(ItemContract.EXTRA_SYNC_LIMIT, mBatchSize);
+            Bundle changes = call(ItemContract.METHOD_SYNC_READ_CHANGES, extras);
+            int count = changes.getInt(ItemContract.EXTRA_SYNC_COUNT);
+            if (count == 0) {
+                break;
+            }
+            mTransport.push(changes.getByteArray(ItemContract.EXTRA_SYNC_BATCH));
+            Bundle sequence = new Bundle();
+            sequence.putLong(ItemContract.EXTRA_SYNC_SEQUENCE, changes.getLong(ItemContract.EXTRA_SYNC_SEQUENCE));
+            call(ItemContract.METHOD_SYNC_MARK_PUSHED, sequence);
+            pushed += count;
+            if (count < mBatchSize) {
+                break;
+            }
+        }
+
+        long applied = 0;
+        long token = call(ItemContract.METHOD_SYNC_GET_TOKEN, null).getLong(ItemContract.EXTRA_SYNC_TOKEN);
+        boolean more;
+        do {
+            Bundle extras = new Bundle();
+            extras.putByteArray(ItemContract.EXTRA_SYNC_BATCH, mTransport.pull(token, mBatchSize));
+            Bundle result = call(ItemContract.METHOD_SYNC_APPLY_CHANGES, extras);
+            applied += result.getInt(ItemContract.EXTRA_SYNC_COUNT);
+            token = result.getLong(ItemContract.EXTRA_SYNC_TOKEN);
+            more = result.getBoolean(ItemContract.EXTRA_SYNC_MORE);
+        } while (more);
+        return new Result(pushed, applied);
+    }
+
+    private Bundle call(String method, Bundle extras) {
+        Bundle result = mResolver.call(ItemContract.BASE_CONTENT_URI, method, null, extras);
+        if (result == null) {
+            throw new IllegalStateException("Item provider doesn't support " + method);
+        }
+        return result;
+    }
+}
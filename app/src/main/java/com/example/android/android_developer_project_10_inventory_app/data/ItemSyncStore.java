@@ -0,0 +1,314 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.CounterEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.MovementEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.SyncEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Database side of the sync, used by {@link ItemProvider} for the sync call() methods. Reads the
+ * local changes recorded since the last push, in order of their local sequence number through
+ * its index, and applies pulled changes that win over the local version of their item. The
+ * quantity counters of pulled changes are merged in whether the change wins or not.
+ */
+public class ItemSyncStore {
+
+    // Tag for log messages
+    private static final String LOG_TAG = ItemSyncStore.class.getSimpleName();
+
+    // The local changes after the last push, with their items as they are now
+    private static final String SQL_SELECT_CHANGES = "SELECT r." + SyncEntry.COLUMN_SYNC_ID + ", "
+            + "r." + SyncEntry.COLUMN_VERSION + ", r." + SyncEntry.COLUMN_DEVICE + ", "
+            + "r." + SyncEntry.COLUMN_DELETED + ", r." + SyncEntry.COLUMN_SEQUENCE + ", "
+            + "v." + ItemEntry.COLUMN_ITEM_NAME + ", v." + ItemEntry.COLUMN_ITEM_PRICE + ", "
+            + "v." + ItemEntry._ID + ", v." + ItemEntry.COLUMN_ITEM_IMAGE + ", "
+            + "v." + ItemEntry.COLUMN_ITEM_SUPPLIER + ", v." + ItemEntry.COLUMN_SUPPLIER_EMAIL + ", "
+            + "v." + ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD + ", v." + ItemEntry.COLUMN_ITEM_SKU
+            + " FROM " + SyncEntry.TABLE_NAME + " r LEFT JOIN " + ItemEntry.VIEW_NAME + " v"
+            + " ON v." + ItemEntry._ID + " = r." + SyncEntry.COLUMN_ITEM_ID
+            + " WHERE r." + SyncEntry.COLUMN_SEQUENCE + " > (SELECT " + SyncEntry.COLUMN_PUSHED_SEQUENCE
+            + " FROM " + SyncEntry.STATE_TABLE_NAME + ")"
+            + " ORDER BY r." + SyncEntry.COLUMN_SEQUENCE + " LIMIT ?";
+
+    private static final String SQL_SELECT_ROW_VERSION = "SELECT " + SyncEntry.COLUMN_VERSION + ", "
+            + SyncEntry.COLUMN_DEVICE + " FROM " + SyncEntry.TABLE_NAME + " WHERE " + SyncEntry.COLUMN_SYNC_ID + " = ?";
+
+    private static final String SQL_SELECT_ITEM = "SELECT " + ItemEntry._ID + " FROM " + ItemEntry.TABLE_NAME
+            + " WHERE " + ItemEntry.COLUMN_ITEM_SYNC_ID + " = ?";
+
+    private static final String SQL_SELECT_COUNTER = "SELECT " + CounterEntry.COLUMN_DEVICE + ", "
+            + CounterEntry.COLUMN_INCREMENTS + ", " + CounterEntry.COLUMN_DECREMENTS + " FROM "
+            + CounterEntry.TABLE_NAME + " WHERE " + CounterEntry.COLUMN_ITEM_ID + " = ?";
+
+    private static final String SQL_REPLACE_COUNTER = "INSERT OR REPLACE INTO " + CounterEntry.TABLE_NAME + " ("
+            + CounterEntry.COLUMN_ITEM_ID + ", " + CounterEntry.COLUMN_DEVICE + ", "
+            + CounterEntry.COLUMN_INCREMENTS + ", " + CounterEntry.COLUMN_DECREMENTS + ") VALUES (?, ?, ?, ?)";
+
+    private static final String SQL_ADD_QUANTITY = "UPDATE " + ItemEntry.TABLE_NAME + " SET "
+            + ItemEntry.COLUMN_ITEM_QUANTITY + " = " + ItemEntry.COLUMN_ITEM_QUANTITY + " + ?1"
+            + " WHERE " + ItemEntry._ID + " = ?2";
+
+    // Keeps the version of a pulled change, with sequence number 0 so it isn't pushed back unless
+    // the local counter adds to it
+    private static final String SQL_REPLACE_ROW = "INSERT OR REPLACE INTO " + SyncEntry.TABLE_NAME + " ("
+            + SyncEntry.COLUMN_SYNC_ID + ", " + SyncEntry.COLUMN_ITEM_ID + ", " + SyncEntry.COLUMN_VERSION + ", "
+            + SyncEntry.COLUMN_DEVICE + ", " + SyncEntry.COLUMN_DELETED + ", " + SyncEntry.COLUMN_SEQUENCE
+            + ") VALUES (?, ?, ?, ?, ?, 0)";
+
+    // Gives the row of a pulled change (?) the next local sequence number, so it is pushed again
+    private static final String SQL_NEXT_SEQUENCE = "UPDATE " + SyncEntry.STATE_TABLE_NAME + " SET "
+            + SyncEntry.COLUMN_LAST_SEQUENCE + " = " + SyncEntry.COLUMN_LAST_SEQUENCE + " + 1";
+
+    private static final String SQL_RESEQUENCE_ROW = "UPDATE " + SyncEntry.TABLE_NAME + " SET "
+            + SyncEntry.COLUMN_SEQUENCE + " = (SELECT " + SyncEntry.COLUMN_LAST_SEQUENCE + " FROM "
+            + SyncEntry.STATE_TABLE_NAME + ") WHERE " + SyncEntry.COLUMN_SYNC_ID + " = ?";
+
+    private static final String SQL_INSERT_MOVEMENT = "INSERT INTO " + MovementEntry.TABLE_NAME + " ("
+            + MovementEntry.COLUMN_ITEM_ID + ", " + MovementEntry.COLUMN_DELTA + ", "
+            + MovementEntry.COLUMN_REASON + ", " + MovementEntry.COLUMN_TIMESTAMP + ") VALUES (?, ?, '"
+            + MovementEntry.REASON_SYNCED + "', ?)";
+
+    private final SQLiteDatabase mDb;
+
+    public ItemSyncStore(SQLiteDatabase db) {
+        mDb = db;
+    }
+
+    // Returns the local changes after the last push, at most limit of them. The token of the
+    // batch is the local sequence number of its last change, to pass to markPushed() once the
+    // server has them.
+    public SyncBatch readChanges(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        List<SyncBatch.Change> changes = new ArrayList<>();
+        long sequence = getState(SyncEntry.COLUMN_PUSHED_SEQUENCE);
+        Cursor cursor = mDb.rawQuery(SQL_SELECT_CHANGES, new String[]{String.valueOf(limit)});
+        try {
+            while (cursor.moveToNext()) {
+                String syncId = cursor.getString(0);
+                long version = cursor.getLong(1);
+                String device = cursor.getString(2);
+                if (cursor.getInt(3) != 0) {
+                    changes.add(SyncBatch.Change.tombstone(syncId, version, device));
+                } else {
+                    changes.add(new SyncBatch.Change(syncId, version, device, false,
+                            cursor.getString(5), cursor.getLong(6), readCounter(cursor.getLong(7)), cursor.getString(8),
+                            cursor.getString(9), cursor.getString(10), cursor.getInt(11), cursor.getString(12)));
+                }
+                sequence = cursor.getLong(4);
+            }
+        } finally {
+            cursor.close();
+        }
+        return new SyncBatch(sequence, changes.size() == limit, changes);
+    }
+
+    // Mark the local changes up to the given sequence number as pushed
+    public void markPushed(long sequence) {
+        mDb.execSQL("UPDATE " + SyncEntry.STATE_TABLE_NAME + " SET " + SyncEntry.COLUMN_PUSHED_SEQUENCE
+                + " = MAX(" + SyncEntry.COLUMN_PUSHED_SEQUENCE + ", ?)", new Object[]{sequence});
+    }
+
+    // Returns the sync token of the last batch pulled from the server
+    public long getServerToken() {
+        return getState(SyncEntry.COLUMN_SERVER_TOKEN);
+    }
+
+    private long getState(String column) {
+        return DatabaseUtils.longForQuery(mDb, "SELECT " + column + " FROM " + SyncEntry.STATE_TABLE_NAME, null);
+    }
+
+    // Apply the changes of a pulled batch that win over the local version of their item, merge
+    // the quantity counters of all of them, and keep the token of the batch, in one transaction.
+    // Local changes that lose are dropped, except for their counts of the quantity: a winning
+    // change whose merged counter holds counts the pulled one lacks, such as a sale made since
+    // the last push, is pushed again with the merged counter. Returns the number of changes that
+    // changed anything.
+    public int apply(SyncBatch batch) {
+        long now = System.currentTimeMillis();
+        int applied = 0;
+        mDb.beginTransaction();
+        try {
+            setApplying(1);
+            SQLiteStatement replaceRow = mDb.compileStatement(SQL_REPLACE_ROW);
+            SQLiteStatement replaceCounter = mDb.compileStatement(SQL_REPLACE_COUNTER);
+            SQLiteStatement addQuantity = mDb.compileStatement(SQL_ADD_QUANTITY);
+            SQLiteStatement movement = mDb.compileStatement(SQL_INSERT_MOVEMENT);
+            try {
+                for (SyncBatch.Change change : batch.changes) {
+                    boolean changed = false;
+                    long itemId = findItem(change.syncId);
+                    boolean won = winsOverLocal(change);
+                    if (won) {
+                        itemId = applyToItem(change, itemId);
+                        replaceRow.bindString(1, change.syncId);
+                        if (itemId == -1) {
+                            replaceRow.bindNull(2);
+                        } else {
+                            replaceRow.bindLong(2, itemId);
+                        }
+                        replaceRow.bindLong(3, change.version);
+                        replaceRow.bindString(4, change.device);
+                        replaceRow.bindLong(5, change.deleted ? 1 : 0);
+                        replaceRow.executeInsert();
+                        changed = true;
+                    }
+                    if (itemId != -1 && !change.deleted) {
+                        QuantityCounter local = readCounter(itemId);
+                        QuantityCounter merged = mergeCounter(itemId, local, change.quantity, replaceCounter);
+                        if (won && !merged.equals(change.quantity)) {
+                            mDb.execSQL(SQL_NEXT_SEQUENCE);
+                            mDb.execSQL(SQL_RESEQUENCE_ROW, new Object[]{change.syncId});
+                        }
+                        long delta = merged.value() - local.value();
+                        if (delta != 0) {
+                            if (delta < 0) {
+                                ItemProvider.drawToDefaultLocation(mDb, itemId, -delta);
+                            }
+                            addQuantity.bindLong(1, delta);
+                            addQuantity.bindLong(2, itemId);
+                            addQuantity.executeUpdateDelete();
+                            movement.bindLong(1, itemId);
+                            movement.bindLong(2, delta);
+                            movement.bindLong(3, now);
+                            movement.executeInsert();
+                            changed = true;
+                        }
+                    }
+                    if (changed) {
+                        applied++;
+                    }
+                }
+            } finally {
+                replaceRow.close();
+                replaceCounter.close();
+                addQuantity.close();
+                movement.close();
+            }
+            mDb.execSQL("UPDATE " + SyncEntry.STATE_TABLE_NAME + " SET " + SyncEntry.COLUMN_SERVER_TOKEN
+                    + " = ?", new Object[]{batch.token});
+            setApplying(0);
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+        return applied;
+    }
+
+    private void setApplying(int applying) {
+        mDb.execSQL("UPDATE " + SyncEntry.STATE_TABLE_NAME + " SET " + SyncEntry.COLUMN_APPLYING + " = " + applying);
+    }
+
+    // Returns whether the change wins over the version of its item this database has, if any
+    private boolean winsOverLocal(SyncBatch.Change change) {
+        Cursor cursor = mDb.rawQuery(SQL_SELECT_ROW_VERSION, new String[]{change.syncId});
+        try {
+            return !cursor.moveToFirst() || change.winsOver(cursor.getLong(0), cursor.getString(1));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Returns the _id of the item with the given sync ID, or -1 if there is none
+    private long findItem(String syncId) {
+        Cursor cursor = mDb.rawQuery(SQL_SELECT_ITEM, new String[]{syncId});
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Returns the quantity counter of the item with the given _id
+    private QuantityCounter readCounter(long itemId) {
+        QuantityCounter counter = QuantityCounter.EMPTY;
+        Cursor cursor = mDb.rawQuery(SQL_SELECT_COUNTER, new String[]{String.valueOf(itemId)});
+        try {
+            while (cursor.moveToNext()) {
+                counter = counter.with(cursor.getString(0), cursor.getLong(1), cursor.getLong(2));
+            }
+        } finally {
+            cursor.close();
+        }
+        return counter;
+    }
+
+    // Merge the pulled counter into the local counter of the item with the given _id, writing
+    // the devices whose totals grew. Returns the merged counter.
+    private QuantityCounter mergeCounter(long itemId, QuantityCounter local, QuantityCounter pulled,
+                                         SQLiteStatement replaceCounter) {
+        QuantityCounter merged = local.merge(pulled);
+        if (merged.equals(local)) {
+            return merged;
+        }
+        for (String device : merged.getDevices()) {
+            long increments = merged.getIncrements(device);
+            long decrements = merged.getDecrements(device);
+            if (increments != local.getIncrements(device) || decrements != local.getDecrements(device)
+                    || !local.getDevices().contains(device)) {
+                replaceCounter.bindLong(1, itemId);
+                replaceCounter.bindString(2, device);
+                replaceCounter.bindLong(3, increments);
+                replaceCounter.bindLong(4, decrements);
+                replaceCounter.executeInsert();
+            }
+        }
+        return merged;
+    }
+
+    // Write the fields of the change other than the quantity to the items table, inserting the
+    // item with no units if it isn't here yet. Returns the _id of the item, or -1 if the change
+    // deleted it.
+    private long applyToItem(SyncBatch.Change change, long itemId) {
+        if (change.deleted) {
+            if (itemId != -1) {
+                mDb.delete(ItemEntry.TABLE_NAME, ItemEntry._ID + "=?", new String[]{String.valueOf(itemId)});
+            }
+            return -1;
+        }
+
+        ContentValues row = new ContentValues();
+        row.put(ItemEntry.COLUMN_ITEM_NAME, change.name);
+        row.put(ItemEntry.COLUMN_ITEM_PRICE, change.price);
+        row.put(ItemEntry.COLUMN_ITEM_IMAGE, change.image);
+        row.put(ItemEntry.COLUMN_ITEM_SUPPLIER_ID,
+                ItemProvider.getOrInsertSupplier(mDb, change.supplier, change.email));
+        row.put(ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD, change.reorderThreshold);
+        row.put(ItemEntry.COLUMN_ITEM_SKU, change.sku);
+        try {
+            return writeItem(itemId, change.syncId, row);
+        } catch (SQLiteConstraintException e) {
+            // Another item here already has the SKU. Keep the change without it rather than
+            // stopping the sync; the SKU can be sorted out by hand and synced again.
+            Log.w(LOG_TAG, "SKU " + change.sku + " of " + change.syncId + " already in use", e);
+            row.putNull(ItemEntry.COLUMN_ITEM_SKU);
+            return writeItem(itemId, change.syncId, row);
+        }
+    }
+
+    // Update the item with the given _id, or insert it with the given sync ID and no units if the
+    // _id is -1.
+    // Returns the _id of the item.
+    private long writeItem(long itemId, String syncId, ContentValues row) {
+        if (itemId == -1) {
+            ContentValues newRow = new ContentValues(row);
+            newRow.put(ItemEntry.COLUMN_ITEM_QUANTITY, 0);
+            newRow.put(ItemEntry.COLUMN_ITEM_SYNC_ID, syncId);
+            return mDb.insertOrThrow(ItemEntry.TABLE_NAME, null, newRow);
+        }
+        mDb.update(ItemEntry.TABLE_NAME, row, ItemEntry._ID + "=?", new String[]{String.valueOf(itemId)});
+        return itemId;
+    }
+}
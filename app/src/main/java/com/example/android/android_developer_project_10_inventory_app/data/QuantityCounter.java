@@ -0,0 +1,133 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Quantity of an item as a counter of the units every device added and removed (a PN-counter).
+ * <p>
+ * A device only ever raises its own totals, so two copies of the counter merge by taking the
+ * greater totals of every device. The merge is commutative, associative and idempotent: devices
+ * that exchange their counters in any order, any number of times, end up with the same counter,
+ * and a sale made on one device is never lost to a concurrent sale made on another. The quantity
+ * is the sum of what all devices added minus what they removed.
+ */
+public final class QuantityCounter {
+
+    // The counter no device has written to
+    public static final QuantityCounter EMPTY = new QuantityCounter(new TreeMap<String, long[]>());
+
+    // Units added and removed by every device, by device ID. Never modified once constructed.
+    private final TreeMap<String, long[]> mTotals;
+
+    private QuantityCounter(TreeMap<String, long[]> totals) {
+        mTotals = totals;
+    }
+
+    // Returns the counter with the given totals of the device in place of the ones it has
+    public QuantityCounter with(String device, long increments, long decrements) {
+        if (device == null) {
+            throw new IllegalArgumentException("Device required");
+        }
+        if (increments < 0 || decrements < 0) {
+            throw new IllegalArgumentException("Totals can't be negative");
+        }
+        TreeMap<String, long[]> totals = new TreeMap<>(mTotals);
+        totals.put(device, new long[]{increments, decrements});
+        return new QuantityCounter(totals);
+    }
+
+    // Returns the counter after the device changed the quantity by the given delta
+    public QuantityCounter add(String device, long delta) {
+        long increments = getIncrements(device);
+        long decrements = getDecrements(device);
+        if (delta > 0) {
+            increments += delta;
+        } else {
+            decrements -= delta;
+        }
+        return with(device, increments, decrements);
+    }
+
+    // Returns the counter with the greater totals of every device of this counter and the other
+    public QuantityCounter merge(QuantityCounter other) {
+        TreeMap<String, long[]> totals = new TreeMap<>(mTotals);
+        for (Map.Entry<String, long[]> entry : other.mTotals.entrySet()) {
+            long[] mine = totals.get(entry.getKey());
+            long[] theirs = entry.getValue();
+            if (mine == null) {
+                totals.put(entry.getKey(), theirs);
+            } else if (theirs[0] > mine[0] || theirs[1] > mine[1]) {
+                totals.put(entry.getKey(), new long[]{Math.max(mine[0], theirs[0]), Math.max(mine[1], theirs[1])});
+            }
+        }
+        return new QuantityCounter(totals);
+    }
+
+    // Returns the quantity: all units added minus all units removed
+    public long value() {
+        long value = 0;
+        for (long[] total : mTotals.values()) {
+            value += total[0] - total[1];
+        }
+        return value;
+    }
+
+    // Returns the IDs of the devices that changed the quantity, in order
+    public Set<String> getDevices() {
+        return Collections.unmodifiableSet(mTotals.keySet());
+    }
+
+    public long getIncrements(String device) {
+        long[] total = mTotals.get(device);
+        return total == null ? 0 : total[0];
+    }
+
+    public long getDecrements(String device) {
+        long[] total = mTotals.get(device);
+        return total == null ? 0 : total[1];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof QuantityCounter)) {
+            return false;
+        }
+        QuantityCounter other = (QuantityCounter) o;
+        if (!mTotals.keySet().equals(other.mTotals.keySet())) {
+            return false;
+        }
+        for (Map.Entry<String, long[]> entry : mTotals.entrySet()) {
+            long[] theirs = other.mTotals.get(entry.getKey());
+            if (entry.getValue()[0] != theirs[0] || entry.getValue()[1] != theirs[1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (Map.Entry<String, long[]> entry : mTotals.entrySet()) {
+            long[] total = entry.getValue();
+            hash += entry.getKey().hashCode() ^ (int) (31 * total[0] + total[1]);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (Map.Entry<String, long[]> entry : mTotals.entrySet()) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(entry.getKey()).append(": +").append(entry.getValue()[0])
+                    .append(" -").append(entry.getValue()[1]);
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.SupplierEntry;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes one reorder document per supplier for all items that are at or below their reorder
+ * threshold: a CSV file with the order lines and a plain text file to use as the email body.
+ * <p>
+ * A single query lists the order lines sorted by supplier, with each supplier's totals
+ * aggregated alongside, and the documents are written while the cursor is read, so only the
+ * supplier being written is ever held in memory.
+ */
+public class ReorderBatchGenerator {
+
+    // Columns of the CSV documents
+    private static final String[] CSV_HEADER = {"item_id", "name", "quantity",
+            ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD, "order_quantity"};
+
+    // Start of the name of every document, followed by the supplier ID
+    private static final String FILE_PREFIX = "supplier_";
+
+    // Units to order of an item: enough to bring its quantity back above the threshold
+    private static final String SQL_ORDER_QUANTITY = "%1$s." + ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD
+            + " - %1$s." + ItemEntry.COLUMN_ITEM_QUANTITY + " + 1";
+
+    // The order lines of every supplier, together with the number of lines and units ordered
+    // from the supplier
+    private static final String SQL_SELECT_ORDER_LINES = "SELECT "
+            + "s." + SupplierEntry._ID + ", "
+            + "s." + SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+            + "s." + SupplierEntry.COLUMN_SUPPLIER_EMAIL + ", "
+            + "t.line_count, t.unit_count, "
+            + "i." + ItemEntry._ID + ", "
+            + "i." + ItemEntry.COLUMN_ITEM_NAME + ", "
+            + "i." + ItemEntry.COLUMN_ITEM_QUANTITY + ", "
+            + "i." + ItemEntry.COLUMN_ITEM_REORDER_THRESHOLD + ", "
+            + String.format(SQL_ORDER_QUANTITY, "i")
+            + " FROM " + ItemEntry.LOW_STOCK_TABLE_NAME + " l"
+            + " JOIN " + ItemEntry.TABLE_NAME + " i ON i." + ItemEntry._ID + " = l." + ItemEntry.COLUMN_LOW_STOCK_ITEM_ID
+            + " JOIN " + SupplierEntry.TABLE_NAME + " s ON s." + SupplierEntry._ID + " = i." + ItemEntry.COLUMN_ITEM_SUPPLIER_ID
+            + " JOIN (SELECT o." + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + " AS supplier_id, COUNT(*) AS line_count, "
+            + "SUM(" + String.format(SQL_ORDER_QUANTITY, "o") + ") AS unit_count"
+            + " FROM " + ItemEntry.LOW_STOCK_TABLE_NAME + " lo"
+            + " JOIN " + ItemEntry.TABLE_NAME + " o ON o." + ItemEntry._ID + " = lo." + ItemEntry.COLUMN_LOW_STOCK_ITEM_ID
+            + " GROUP BY o." + ItemEntry.COLUMN_ITEM_SUPPLIER_ID + ") t ON t.supplier_id = s." + SupplierEntry._ID
+            + " ORDER BY s." + SupplierEntry.COLUMN_SUPPLIER_NAME + ", s." + SupplierEntry._ID
+            + ", i." + ItemEntry.COLUMN_ITEM_NAME + ", i." + ItemEntry._ID;
+
+    // The documents written for one supplier
+    public static class SupplierOrder {
+        public final long supplierId;
+        public final String supplierName;
+        public final String supplierEmail;
+        public final int lineCount;
+        public final long unitCount;
+        public final File csvFile;
+        public final File textFile;
+
+        SupplierOrder(long supplierId, String supplierName, String supplierEmail, int lineCount,
+                      long unitCount, File csvFile, File textFile) {
+            this.supplierId = supplierId;
+            this.supplierName = supplierName;
+            this.supplierEmail = supplierEmail;
+            this.lineCount = lineCount;
+            this.unitCount = unitCount;
+            this.csvFile = csvFile;
+            this.textFile = textFile;
+        }
+    }
+
+    private final SQLiteDatabase mDb;
+
+    public ReorderBatchGenerator(SQLiteDatabase db) {
+        mDb = db;
+    }
+
+    /**
+     * Writes the documents of every supplier with items to reorder into the given directory,
+     * replacing all documents of an earlier batch, including those of suppliers with nothing
+     * left to reorder.
+     *
+     * @return the orders written, sorted by supplier name
+     */
+    public List<SupplierOrder> write(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        deleteDocuments(directory);
+        List<SupplierOrder> orders = new ArrayList<>();
+        Cursor cursor = mDb.rawQuery(SQL_SELECT_ORDER_LINES, null);
+        Writer csv = null;
+        Writer text = null;
+        try {
+            long supplierId = -1;
+            while (cursor.moveToNext()) {
+                if (orders.isEmpty() || cursor.getLong(0) != supplierId) {
+                    // First line of the next supplier: finish the previous documents, start new ones
+                    if (text != null) {
+                        finishText(text);
+                    }
+                    closeQuietly(csv);
+                    closeQuietly(text);
+                    csv = null;
+                    text = null;
+
+                    supplierId = cursor.getLong(0);
+                    SupplierOrder order = new SupplierOrder(supplierId, cursor.getString(1),
+                            cursor.getString(2), cursor.getInt(3), cursor.getLong(4),
+                            new File(directory, FILE_PREFIX + supplierId + ".csv"),
+                            new File(directory, FILE_PREFIX + supplierId + ".txt"));
+                    orders.add(order);
+                    csv = open(order.csvFile);
+                    text = open(order.textFile);
+                    Csv.writeRecord(csv, CSV_HEADER);
+                    startText(text, order);
+                }
+
+                String name = cursor.getString(6);
+                long orderQuantity = cursor.getLong(9);
+                Csv.writeRecord(csv, cursor.getString(5), name, cursor.getString(7),
+                        cursor.getString(8), String.valueOf(orderQuantity));
+                text.write("- " + orderQuantity + " x " + name + "\n");
+            }
+            if (text != null) {
+                finishText(text);
+            }
+            // Close explicitly so that a failed flush is reported
+            if (csv != null) {
+                csv.close();
+                csv = null;
+            }
+            if (text != null) {
+                text.close();
+                text = null;
+            }
+        } finally {
+            cursor.close();
+            closeQuietly(csv);
+            closeQuietly(text);
+        }
+        return orders;
+    }
+
+    // Delete the documents of an earlier batch, leaving any other files in the directory alone
+    private static void deleteDocuments(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list " + directory);
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(FILE_PREFIX) && (name.endsWith(".csv") || name.endsWith(".txt"))
+                    && !file.delete()) {
+                throw new IOException("Cannot delete " + file);
+            }
+        }
+    }
+
+    private static Writer open(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    }
+
+    private static void startText(Writer text, SupplierOrder order) throws IOException {
+        text.write("Hello " + order.supplierName + ",\n\n");
+        text.write("Please send us the following " + order.lineCount + " items ("
+                + order.unitCount + " units in total):\n\n");
+    }
+
+    private static void finishText(Writer text) throws IOException {
+        text.write("\nThank you\n");
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
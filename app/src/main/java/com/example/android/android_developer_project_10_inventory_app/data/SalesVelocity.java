@@ -0,0 +1,60 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+/**
+ * Exponentially weighted sales velocity of an item, in units sold per day.
+ * <p>
+ * The velocity decays continuously with a time constant of {@link #TIME_CONSTANT_DAYS} days and
+ * every sale adds its units divided by the time constant, so an item that sells r units a day
+ * settles at a velocity of r. Only the velocity as of the last sale and the time of that sale are
+ * stored; updating them for a sale and projecting them to another time are both O(1).
+ * <p>
+ * Every velocity decays by the same factor between two times, so velocities as of different times
+ * can be compared once they are all projected to one fixed time, {@link #REBASE_EPOCH_MILLIS}. The
+ * items are sorted by days of cover that way, as SQLite has no exp() to project them to now.
+ */
+public final class SalesVelocity {
+
+    // Sales lose 1/e of their weight in the velocity over this many days
+    public static final int TIME_CONSTANT_DAYS = 7;
+    public static final double TIME_CONSTANT_MILLIS = TIME_CONSTANT_DAYS * 24 * 60 * 60 * 1000.0;
+
+    // Time the rebased velocities are projected to, 2026-01-01T00:00:00Z. A velocity rebased from
+    // later grows by a factor of e per time constant, so a double holds it for about 13 years,
+    // until 2039. Moving the epoch then scales every stored rebased velocity by the same factor.
+    public static final long REBASE_EPOCH_MILLIS = 1767225600000L;
+
+    private SalesVelocity() {}
+
+    // Returns the velocity after selling the given units at time now, given the velocity as of
+    // velocityTime. Times are in milliseconds since the epoch.
+    public static double afterSale(double velocity, long velocityTime, long units, long now) {
+        return at(velocity, velocityTime, now) + units / (double) TIME_CONSTANT_DAYS;
+    }
+
+    // Returns the velocity as of now, decayed from the velocity as of velocityTime. A clock that
+    // went backwards doesn't make the velocity grow.
+    public static double at(double velocity, long velocityTime, long now) {
+        if (velocity == 0) {
+            return 0;
+        }
+        long elapsed = Math.max(now - velocityTime, 0);
+        return velocity * Math.exp(-elapsed / TIME_CONSTANT_MILLIS);
+    }
+
+    // Returns the velocity as of velocityTime projected to REBASE_EPOCH_MILLIS, even if that is
+    // earlier. The velocity as of any time is the rebased one times the same factor for every
+    // item, so quantity / rebased velocity orders items exactly as their days of cover do.
+    public static double rebased(double velocity, long velocityTime) {
+        if (velocity == 0) {
+            return 0;
+        }
+        return velocity * Math.exp((velocityTime - REBASE_EPOCH_MILLIS) / TIME_CONSTANT_MILLIS);
+    }
+
+    // Returns the number of days the quantity lasts at the velocity as of now, or
+    // Double.POSITIVE_INFINITY if the item doesn't sell
+    public static double daysOfCover(long quantity, double velocity, long velocityTime, long now) {
+        double current = at(velocity, velocityTime, now);
+        return current > 0 ? Math.max(quantity, 0) / current : Double.POSITIVE_INFINITY;
+    }
+}
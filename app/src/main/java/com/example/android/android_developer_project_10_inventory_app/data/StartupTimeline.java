@@ -0,0 +1,116 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Timeline of a cold start of the app, from the creation of {@link ItemProvider} to the first
+ * frame of the item list. Only the first occurrence of every event in the process is kept, so the
+ * timeline shows the cold start even after the list has reloaded many times.
+ * <p>
+ * Times are measured from the start of the first event recorded, which on a cold start is the
+ * creation of the provider: the first app code the process runs. Forking the process and binding
+ * the application before it aren't covered. The same events show up as trace sections in a
+ * system trace.
+ */
+public final class StartupTimeline {
+
+    // Tag for log messages
+    private static final String LOG_TAG = StartupTimeline.class.getSimpleName();
+
+    // The events of a cold start, in the order they usually happen in
+    public static final String PROVIDER_CREATED = "Provider created";
+    public static final String ACTIVITY_CREATED = "Activity created";
+    public static final String DATABASE_OPENED = "Database opened";
+    public static final String FIRST_CURSOR_FILLED = "First cursor filled";
+    public static final String FIRST_FRAME = "First frame";
+
+    // One event of the timeline
+    public static final class Event {
+        public final String name;
+        // Start and end of the event, in milliseconds after the start of the timeline
+        public final long startMillis;
+        public final long endMillis;
+
+        Event(String name, long startMillis, long endMillis) {
+            this.name = name;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "+%5d ms  %s (%d ms)", endMillis, name, endMillis - startMillis);
+        }
+    }
+
+    private static final StartupTimeline sInstance = new StartupTimeline();
+
+    // Start of the timeline in System.nanoTime(), once the first event is recorded
+    private long mOriginNanos;
+    private final List<Event> mEvents = new ArrayList<>();
+
+    // Constructs an empty timeline; the app records to the one of {@link #getInstance()}
+    StartupTimeline() {
+    }
+
+    // Returns the timeline of this process
+    public static StartupTimeline getInstance() {
+        return sInstance;
+    }
+
+    // Record the event that ran from startNanos to now, in System.nanoTime(), and log it if it is
+    // the first of its name
+    public void mark(String name, long startNanos) {
+        Event event = record(name, startNanos, System.nanoTime());
+        if (event != null) {
+            Log.i(LOG_TAG, event.toString());
+        }
+    }
+
+    // Record the event that ran between the given times, in System.nanoTime(). Returns the event,
+    // or null if an event of that name was recorded before.
+    public synchronized Event record(String name, long startNanos, long endNanos) {
+        for (Event event : mEvents) {
+            if (event.name.equals(name)) {
+                return null;
+            }
+        }
+        if (mEvents.isEmpty()) {
+            mOriginNanos = startNanos;
+        }
+        Event event = new Event(name, toMillis(startNanos), toMillis(endNanos));
+        mEvents.add(event);
+        return event;
+    }
+
+    private long toMillis(long nanos) {
+        return (nanos - mOriginNanos) / 1000000;
+    }
+
+    // Returns the events recorded so far, in the order they ended in
+    public synchronized List<Event> getEvents() {
+        List<Event> events = new ArrayList<>(mEvents);
+        Collections.sort(events, new Comparator<Event>() {
+            @Override
+            public int compare(Event a, Event b) {
+                return a.endMillis < b.endMillis ? -1 : (a.endMillis == b.endMillis ? 0 : 1);
+            }
+        });
+        return events;
+    }
+
+    // Returns the events recorded so far one per line, in the order they ended in
+    public String format() {
+        StringBuilder lines = new StringBuilder();
+        for (Event event : getEvents()) {
+            lines.append(event).append('\n');
+        }
+        return lines.toString();
+    }
+}
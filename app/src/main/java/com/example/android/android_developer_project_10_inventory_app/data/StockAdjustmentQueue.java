@@ -0,0 +1,352 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.AdjustmentBatchEntry;
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.ItemEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Write-behind queue for stock adjustments made from the list screen.
+ * <p>
+ * Quantity changes are accumulated per item and flushed to {@link ItemProvider} as one batch
+ * after a short coalescing window, so a burst of taps on the same item becomes a single delta
+ * written in a single transaction. Until a flush commits, {@link #getPendingDelta(long)} lets the
+ * list show the optimistic quantity. Every delta is saved to disk on the worker thread as soon as
+ * it is queued, so it is flushed on the next start if the process dies before the write reaches
+ * the database. A flush records its batch ID in the same transaction as its deltas, and saves
+ * which deltas went out with which batch before writing it, so the next start can tell whether a
+ * batch the process died with was committed and doesn't write it twice.
+ * <p>
+ * The provider rejects a delta that would take the quantity below zero. A rejected delta is
+ * dropped, as it would fail the same way again, and the listeners are told about it.
+ */
+public class StockAdjustmentQueue {
+
+    // Tag for log messages
+    private static final String LOG_TAG = StockAdjustmentQueue.class.getSimpleName();
+
+    // Default time to wait for more adjustments before writing them out
+    public static final long DEFAULT_FLUSH_WINDOW_MILLIS = 250;
+
+    // Name of the preferences file that holds the deltas not yet written to the database. Every
+    // item with such a delta has its total under its ID, the deltas of the batch in flight are
+    // also kept under KEY_PREFIX_IN_FLIGHT and the ID of that batch under KEY_BATCH_ID.
+    private static final String PREFS_NAME = "pending_stock_adjustments";
+    private static final String KEY_PREFIX_IN_FLIGHT = "in_flight.";
+    private static final String KEY_BATCH_ID = "batch_id";
+
+    // Notified on the main thread whenever the optimistic quantity of an item changes. Once a
+    // flush commits, the change notification of ItemProvider takes over.
+    public interface Listener {
+        void onPendingAdjustmentsChanged(long itemId);
+
+        // The provider rejected the given delta of the item, which was dropped
+        void onAdjustmentRejected(long itemId, int delta);
+    }
+
+    private static StockAdjustmentQueue sInstance;
+
+    private final Context mContext;
+    private final SharedPreferences mPrefs;
+    private final Handler mWorkerHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    // Deltas waiting for the next flush, keyed by item ID. Guarded by "this".
+    private final Map<Long, Integer> mPending = new HashMap<>();
+
+    // Deltas taken by the running flush but not committed yet. Guarded by "this".
+    private final Map<Long, Integer> mInFlight = new HashMap<>();
+
+    // Whether a flush is already scheduled for the current window. Guarded by "this".
+    private boolean mFlushScheduled;
+
+    private volatile long mFlushWindowMillis = DEFAULT_FLUSH_WINDOW_MILLIS;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    // Returns the queue shared by the whole process
+    public static synchronized StockAdjustmentQueue getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new StockAdjustmentQueue(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private StockAdjustmentQueue(Context context) {
+        mContext = context;
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+
+        HandlerThread thread = new HandlerThread(LOG_TAG);
+        thread.start();
+        mWorkerHandler = new Handler(thread.getLooper());
+
+        // Pick up the deltas a previous process didn't get to write. Until the batch it had in
+        // flight is looked up, its deltas count as not committed.
+        for (Map.Entry<String, ?> entry : mPrefs.getAll().entrySet()) {
+            if (!(entry.getValue() instanceof Integer)) {
+                continue;
+            }
+            if (entry.getKey().startsWith(KEY_PREFIX_IN_FLIGHT)) {
+                long itemId = Long.parseLong(entry.getKey().substring(KEY_PREFIX_IN_FLIGHT.length()));
+                mInFlight.put(itemId, (Integer) entry.getValue());
+            } else {
+                mPending.put(Long.parseLong(entry.getKey()), (Integer) entry.getValue());
+            }
+        }
+        for (Map.Entry<Long, Integer> entry : mInFlight.entrySet()) {
+            Integer total = mPending.get(entry.getKey());
+            mPending.put(entry.getKey(), (total == null ? 0 : total) - entry.getValue());
+        }
+        final String batchId = mPrefs.getString(KEY_BATCH_ID, null);
+        if (!mInFlight.isEmpty()) {
+            // Runs before any flush, and flushes once the batch is ended
+            mWorkerHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    recover(batchId);
+                }
+            });
+        } else if (!mPending.isEmpty()) {
+            mFlushScheduled = true;
+            mWorkerHandler.post(mFlushRunnable);
+        }
+    }
+
+    // Change how long adjustments are coalesced before they are written out
+    public void setFlushWindow(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Flush window must not be negative");
+        }
+        mFlushWindowMillis = millis;
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    // Queue a change of the given item's quantity. The change is written out by the next flush.
+    public void adjust(final long itemId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        boolean scheduleFlush;
+        synchronized (this) {
+            Integer current = mPending.get(itemId);
+            mPending.put(itemId, current == null ? delta : current + delta);
+            // Only the first adjustment of a window schedules the flush
+            scheduleFlush = !mFlushScheduled;
+            mFlushScheduled = true;
+        }
+        // Saved right away rather than with the flush, so the tap isn't lost if the process dies
+        // before the window ends. The worker thread does all the saving, in order, so it can wait
+        // for commit() to reach the disk without holding up the taps.
+        mWorkerHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                saveTotal(itemId);
+            }
+        });
+        if (scheduleFlush) {
+            mWorkerHandler.postDelayed(mFlushRunnable, mFlushWindowMillis);
+        }
+        notifyListeners(itemId);
+    }
+
+    // Returns the change not yet visible in the database for the given item
+    public synchronized int getPendingDelta(long itemId) {
+        Integer pending = mPending.get(itemId);
+        Integer inFlight = mInFlight.get(itemId);
+        return (pending == null ? 0 : pending) + (inFlight == null ? 0 : inFlight);
+    }
+
+    // Write out everything that is queued without waiting for the coalescing window to end
+    public void flushNow() {
+        mWorkerHandler.removeCallbacks(mFlushRunnable);
+        synchronized (this) {
+            mFlushScheduled = true;
+        }
+        mWorkerHandler.post(mFlushRunnable);
+    }
+
+    // Runs on the worker thread. Writes all queued deltas through ItemProvider in one batch, which
+    // the provider applies in a single transaction with a single change notification.
+    private void flush() {
+        String batchId = UUID.randomUUID().toString();
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        List<Long> itemIds = new ArrayList<>();
+        List<Integer> deltas = new ArrayList<>();
+        SharedPreferences.Editor editor = mPrefs.edit().putString(KEY_BATCH_ID, batchId);
+        synchronized (this) {
+            mFlushScheduled = false;
+            if (mPending.isEmpty()) {
+                return;
+            }
+            operations.add(ContentProviderOperation.newInsert(AdjustmentBatchEntry.CONTENT_URI)
+                    .withValue(AdjustmentBatchEntry.COLUMN_BATCH_ID, batchId)
+                    .build());
+            for (Map.Entry<Long, Integer> entry : mPending.entrySet()) {
+                editor.putInt(KEY_PREFIX_IN_FLIGHT + entry.getKey(), entry.getValue());
+                if (entry.getValue() != 0) {
+                    operations.add(ContentProviderOperation
+                            .newUpdate(ItemEntry.buildQuantityDeltaUri(entry.getKey()))
+                            .withValue(ItemEntry.COLUMN_QUANTITY_DELTA, entry.getValue())
+                            .build());
+                    itemIds.add(entry.getKey());
+                    deltas.add(entry.getValue());
+                }
+            }
+            mInFlight.putAll(mPending);
+            mPending.clear();
+        }
+        // The deltas of the batch must be on disk before the batch can commit. The totals stay
+        // as they are, as the batch may not go through.
+        editor.commit();
+
+        ContentProviderResult[] results;
+        try {
+            results = mContext.getContentResolver().applyBatch(ItemContract.CONTENT_AUTHORITY, operations);
+        } catch (RemoteException | OperationApplicationException | SQLiteException e) {
+            // Put the deltas back so they go out with the next flush. A SQLiteException, for
+            // instance from a full disk or a locked database, rolled the whole batch back too.
+            Log.e(LOG_TAG, "Failed to write stock adjustments", e);
+            endBatch(false);
+            synchronized (this) {
+                mFlushScheduled = true;
+            }
+            mWorkerHandler.postDelayed(mFlushRunnable, mFlushWindowMillis);
+            return;
+        }
+        endBatch(true);
+
+        // A delta that updated no row was rejected, because it would take the quantity below
+        // zero or the item is gone. It is dropped rather than retried, as it would fail again.
+        for (int i = 0; i < itemIds.size(); i++) {
+            Integer count = results[i + 1].count;
+            if (count != null && count == 0) {
+                Log.w(LOG_TAG, "Rejected stock adjustment of " + deltas.get(i) + " for item " + itemIds.get(i));
+                notifyRejected(itemIds.get(i), deltas.get(i));
+            }
+        }
+    }
+
+    // Runs on the worker thread. Looks up whether the batch a previous process had in flight was
+    // committed before it died, ends the batch accordingly and flushes what is still pending.
+    private void recover(String batchId) {
+        boolean committed = false;
+        if (batchId != null) {
+            Cursor cursor = mContext.getContentResolver().query(AdjustmentBatchEntry.CONTENT_URI,
+                    new String[]{AdjustmentBatchEntry.COLUMN_BATCH_ID},
+                    AdjustmentBatchEntry.COLUMN_BATCH_ID + "=?", new String[]{batchId}, null);
+            if (cursor != null) {
+                try {
+                    committed = cursor.getCount() != 0;
+                } finally {
+                    cursor.close();
+                }
+            }
+        }
+        List<Long> itemIds;
+        synchronized (this) {
+            itemIds = new ArrayList<>(mInFlight.keySet());
+        }
+        endBatch(committed);
+        for (long itemId : itemIds) {
+            notifyListeners(itemId);
+        }
+        flushNow();
+    }
+
+    // Runs on the worker thread. Ends the batch in flight: its deltas are gone from the queue if
+    // it was committed, and pending again otherwise. Saves the new totals, without the batch.
+    private void endBatch(boolean committed) {
+        SharedPreferences.Editor editor = mPrefs.edit().remove(KEY_BATCH_ID);
+        synchronized (this) {
+            for (Map.Entry<Long, Integer> entry : mInFlight.entrySet()) {
+                long itemId = entry.getKey();
+                if (!committed) {
+                    Integer pending = mPending.get(itemId);
+                    mPending.put(itemId, pending == null ? entry.getValue() : pending + entry.getValue());
+                }
+                editor.remove(KEY_PREFIX_IN_FLIGHT + itemId);
+            }
+            List<Long> itemIds = new ArrayList<>(mInFlight.keySet());
+            mInFlight.clear();
+            for (long itemId : itemIds) {
+                putTotal(editor, itemId);
+            }
+        }
+        // If the process dies before this reaches the disk, the next start finds the batch and
+        // looks it up again
+        editor.commit();
+    }
+
+    // Runs on the worker thread. Saves the delta of the item not committed yet.
+    private void saveTotal(long itemId) {
+        SharedPreferences.Editor editor = mPrefs.edit();
+        synchronized (this) {
+            putTotal(editor, itemId);
+        }
+        editor.commit();
+    }
+
+    // Puts the delta of the item not committed yet, pending and in flight, into the editor.
+    // Must be called holding the lock of "this".
+    private void putTotal(SharedPreferences.Editor editor, long itemId) {
+        int total = getPendingDelta(itemId);
+        if (total == 0) {
+            editor.remove(String.valueOf(itemId));
+        } else {
+            editor.putInt(String.valueOf(itemId), total);
+        }
+    }
+
+    private void notifyRejected(final long itemId, final int delta) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Listener listener : mListeners) {
+                    listener.onAdjustmentRejected(itemId, delta);
+                }
+            }
+        });
+    }
+
+    private void notifyListeners(final long itemId) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Listener listener : mListeners) {
+                    listener.onPendingAdjustmentsChanged(itemId);
+                }
+            }
+        });
+    }
+}
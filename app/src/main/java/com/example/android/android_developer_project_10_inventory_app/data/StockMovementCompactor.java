@@ -0,0 +1,82 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.android_developer_project_10_inventory_app.data.ItemContract.MovementEntry;
+
+/**
+ * Compacts the stock movement ledger. Movements older than a cutoff are added up into one row per
+ * item and day of the daily totals table and then deleted, so the ledger keeps recent movements
+ * one by one while the daily totals keep the whole history at a fixed cost per item and day.
+ */
+public class StockMovementCompactor {
+
+    // Number of days of movements the ledger keeps one by one by default
+    public static final int DEFAULT_RETENTION_DAYS = 30;
+
+    // Adds the movements before the cutoff (?1, the start of day ?2) to the daily totals. Totals
+    // that already exist for the same item and day, which only happens if movements were written
+    // with a time in the past, are read back in and added to.
+    private static final String SQL_MERGE_DAYS = "INSERT OR REPLACE INTO " + MovementEntry.DAILY_TABLE_NAME
+            + " (" + MovementEntry.COLUMN_ITEM_ID + ", " + MovementEntry.COLUMN_DAY + ", "
+            + MovementEntry.COLUMN_QUANTITY_IN + ", " + MovementEntry.COLUMN_QUANTITY_OUT + ", "
+            + MovementEntry.COLUMN_MOVEMENT_COUNT + ")"
+            + " SELECT " + MovementEntry.COLUMN_ITEM_ID + ", " + MovementEntry.COLUMN_DAY + ", "
+            + "SUM(" + MovementEntry.COLUMN_QUANTITY_IN + "), SUM(" + MovementEntry.COLUMN_QUANTITY_OUT + "), "
+            + "SUM(" + MovementEntry.COLUMN_MOVEMENT_COUNT + ") FROM ("
+            + "SELECT " + MovementEntry.COLUMN_ITEM_ID + ", "
+            + MovementEntry.COLUMN_TIMESTAMP + " / " + MovementEntry.DAY_MILLIS + " AS " + MovementEntry.COLUMN_DAY + ", "
+            + "MAX(" + MovementEntry.COLUMN_DELTA + ", 0) AS " + MovementEntry.COLUMN_QUANTITY_IN + ", "
+            + "MAX(-" + MovementEntry.COLUMN_DELTA + ", 0) AS " + MovementEntry.COLUMN_QUANTITY_OUT + ", "
+            + "1 AS " + MovementEntry.COLUMN_MOVEMENT_COUNT
+            + " FROM " + MovementEntry.TABLE_NAME + " WHERE " + MovementEntry.COLUMN_TIMESTAMP + " < ?1"
+            + " UNION ALL SELECT d." + MovementEntry.COLUMN_ITEM_ID + ", d." + MovementEntry.COLUMN_DAY + ", "
+            + "d." + MovementEntry.COLUMN_QUANTITY_IN + ", d." + MovementEntry.COLUMN_QUANTITY_OUT + ", "
+            + "d." + MovementEntry.COLUMN_MOVEMENT_COUNT
+            + " FROM " + MovementEntry.DAILY_TABLE_NAME + " d WHERE d." + MovementEntry.COLUMN_DAY + " < ?2"
+            + " AND EXISTS (SELECT 1 FROM " + MovementEntry.TABLE_NAME + " m"
+            + " WHERE m." + MovementEntry.COLUMN_ITEM_ID + " = d." + MovementEntry.COLUMN_ITEM_ID
+            + " AND m." + MovementEntry.COLUMN_TIMESTAMP + " >= d." + MovementEntry.COLUMN_DAY + " * " + MovementEntry.DAY_MILLIS
+            + " AND m." + MovementEntry.COLUMN_TIMESTAMP + " < (d." + MovementEntry.COLUMN_DAY + " + 1) * " + MovementEntry.DAY_MILLIS
+            + ")) GROUP BY " + MovementEntry.COLUMN_ITEM_ID + ", " + MovementEntry.COLUMN_DAY;
+
+    private static final String SQL_DELETE_COMPACTED = "DELETE FROM " + MovementEntry.TABLE_NAME
+            + " WHERE " + MovementEntry.COLUMN_TIMESTAMP + " < ?";
+
+    private final SQLiteDatabase mDb;
+
+    public StockMovementCompactor(SQLiteDatabase db) {
+        mDb = db;
+    }
+
+    // Returns the default cutoff for the given time: the start of the day DEFAULT_RETENTION_DAYS
+    // days before it
+    public static long defaultCutoff(long now) {
+        return now - DEFAULT_RETENTION_DAYS * MovementEntry.DAY_MILLIS;
+    }
+
+    // Compacts the movements before the start of the day of the given cutoff, in milliseconds
+    // since the epoch, in one transaction. Returns the number of movements compacted.
+    public int compact(long cutoffMillis) {
+        long cutoffDay = Math.max(cutoffMillis, 0) / MovementEntry.DAY_MILLIS;
+        long cutoff = cutoffDay * MovementEntry.DAY_MILLIS;
+
+        int compacted;
+        mDb.beginTransaction();
+        try {
+            mDb.execSQL(SQL_MERGE_DAYS, new Object[]{cutoff, cutoffDay});
+            SQLiteStatement delete = mDb.compileStatement(SQL_DELETE_COMPACTED);
+            try {
+                delete.bindLong(1, cutoff);
+                compacted = delete.executeUpdateDelete();
+            } finally {
+                delete.close();
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+        return compacted;
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A batch of item changes exchanged by {@link ItemSyncEngine} and a {@link SyncTransport}, and
+ * its compressed wire format.
+ * <p>
+ * Every change carries the whole item, or a tombstone for a deleted one, identified by the sync
+ * ID the item has on every device. Conflicting changes of the same item are resolved the same
+ * way everywhere: the higher row version wins, and equal versions go to the greater device ID,
+ * so all devices and the server end up with the same winner whatever order they see them in.
+ * The quantity is the exception: it travels as a {@link QuantityCounter}, which is merged with
+ * the counter of the other side whichever change wins, so concurrent sales all count.
+ */
+public final class SyncBatch {
+
+    // Version of the wire format, written first so that a format change can be detected
+    private static final int FORMAT_VERSION = 2;
+
+    // One change of an item
+    public static final class Change {
+        public final String syncId;
+        // Version of the row, one more than the version the change was made on
+        public final long version;
+        // ID of the device that made the change
+        public final String device;
+        public final boolean deleted;
+
+        // The item as of the change. Null and 0 for tombstones.
+        public final String name;
+        public final long price;
+        public final QuantityCounter quantity;
+        public final String image;
+        public final String supplier;
+        public final String email;
+        public final int reorderThreshold;
+        public final String sku;
+
+        public Change(String syncId, long version, String device, boolean deleted, String name,
+                      long price, QuantityCounter quantity, String image, String supplier, String email,
+                      int reorderThreshold, String sku) {
+            if (syncId == null || device == null) {
+                throw new IllegalArgumentException("Sync ID and device required");
+            }
+            this.syncId = syncId;
+            this.version = version;
+            this.device = device;
+            this.deleted = deleted;
+            this.name = name;
+            this.price = price;
+            this.quantity = quantity;
+            this.image = image;
+            this.supplier = supplier;
+            this.email = email;
+            this.reorderThreshold = reorderThreshold;
+            this.sku = sku;
+        }
+
+        // Returns a tombstone for the item with the given sync ID
+        public static Change tombstone(String syncId, long version, String device) {
+            return new Change(syncId, version, device, true, null, 0, null, null, null, null, 0, null);
+        }
+
+        // Returns this change with the given quantity counter
+        public Change withQuantity(QuantityCounter quantity) {
+            return new Change(syncId, version, device, deleted, name, price, quantity, image,
+                    supplier, email, reorderThreshold, sku);
+        }
+
+        // Returns whether this change wins over a change of the same item with the given
+        // version and device. A change doesn't win over itself.
+        public boolean winsOver(long otherVersion, String otherDevice) {
+            return version > otherVersion
+                    || (version == otherVersion && device.compareTo(otherDevice) > 0);
+        }
+    }
+
+    // Sync token after the changes: for a pulled batch, the server version to pull after next time
+    public final long token;
+    // Whether the server has more changes after the token
+    public final boolean more;
+    public final List<Change> changes;
+
+    public SyncBatch(long token, boolean more, List<Change> changes) {
+        this.token = token;
+        this.more = more;
+        this.changes = Collections.unmodifiableList(new ArrayList<>(changes));
+    }
+
+    // Returns the batch in the compressed wire format
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            DataOutputStream output = new DataOutputStream(new DeflaterOutputStream(bytes));
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(token);
+            output.writeBoolean(more);
+            output.writeInt(changes.size());
+            for (Change change : changes) {
+                output.writeUTF(change.syncId);
+                output.writeLong(change.version);
+                output.writeUTF(change.device);
+                output.writeBoolean(change.deleted);
+                if (!change.deleted) {
+                    writeString(output, change.name);
+                    output.writeLong(change.price);
+                    writeCounter(output, change.quantity);
+                    writeString(output, change.image);
+                    writeString(output, change.supplier);
+                    writeString(output, change.email);
+                    output.writeInt(change.reorderThreshold);
+                    writeString(output, change.sku);
+                }
+            }
+            output.close();
+        } catch (IOException e) {
+            // Writing to memory doesn't fail
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Returns the batch in the given wire format bytes
+    public static SyncBatch decode(byte[] bytes) throws IOException {
+        DataInputStream input = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)));
+        try {
+            int formatVersion = input.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported sync batch format " + formatVersion);
+            }
+            long token = input.readLong();
+            boolean more = input.readBoolean();
+            int count = input.readInt();
+            List<Change> changes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String syncId = input.readUTF();
+                long version = input.readLong();
+                String device = input.readUTF();
+                if (input.readBoolean()) {
+                    changes.add(Change.tombstone(syncId, version, device));
+                } else {
+                    changes.add(new Change(syncId, version, device, false, readString(input),
+                            input.readLong(), readCounter(input), readString(input), readString(input),
+                            readString(input), input.readInt(), readString(input)));
+                }
+            }
+            return new SyncBatch(token, more, changes);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static void writeCounter(DataOutputStream output, QuantityCounter counter) throws IOException {
+        output.writeInt(counter.getDevices().size());
+        for (String device : counter.getDevices()) {
+            output.writeUTF(device);
+            output.writeLong(counter.getIncrements(device));
+            output.writeLong(counter.getDecrements(device));
+        }
+    }
+
+    private static QuantityCounter readCounter(DataInputStream input) throws IOException {
+        QuantityCounter counter = QuantityCounter.EMPTY;
+        int devices = input.readInt();
+        for (int i = 0; i < devices; i++) {
+            counter = counter.with(input.readUTF(), input.readLong(), input.readLong());
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import java.io.IOException;
+
+/**
+ * Connection of {@link ItemSyncEngine} to the server that other devices sync with. Batches are
+ * exchanged in the compressed wire format of {@link SyncBatch}. {@link InMemorySyncServer} is an
+ * in-process implementation.
+ */
+public interface SyncTransport {
+
+    /**
+     * Sends a batch of local changes. The server keeps every change that wins over the change it
+     * has for the same item. Sending the same batch again has no further effect.
+     */
+    void push(byte[] batch) throws IOException;
+
+    /**
+     * Returns a batch of at most limit changes the server kept after the given sync token, with
+     * the token to pull after next time. Token 0 pulls from the start.
+     */
+    byte[] pull(long token, int limit) throws IOException;
+}
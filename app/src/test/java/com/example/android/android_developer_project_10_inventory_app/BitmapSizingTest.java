@@ -0,0 +1,43 @@
+package com.example.android.android_developer_project_10_inventory_app;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link BitmapSizing}.
+ */
+public class BitmapSizingTest {
+    @Test
+    public void calculateInSampleSize_keepsImageAtLeastAsLargeAsTarget() throws Exception {
+        assertEquals(1, BitmapSizing.calculateInSampleSize(100, 100, 88, 88));
+        assertEquals(2, BitmapSizing.calculateInSampleSize(176, 176, 88, 88));
+        assertEquals(8, BitmapSizing.calculateInSampleSize(4000, 3000, 264, 264));
+        // The smaller dimension decides
+        assertEquals(4, BitmapSizing.calculateInSampleSize(4000, 1000, 200, 200));
+    }
+
+    @Test
+    public void calculateInSampleSize_neverUpsamples() throws Exception {
+        assertEquals(1, BitmapSizing.calculateInSampleSize(10, 10, 88, 88));
+    }
+
+    @Test
+    public void calculateInSampleSize_viewNotLaidOut() throws Exception {
+        // A view that isn't laid out yet reports a size of 0, which must not divide by zero
+        assertEquals(1, BitmapSizing.calculateInSampleSize(4000, 3000, 0, 0));
+        assertEquals(1, BitmapSizing.calculateInSampleSize(4000, 3000, 264, 0));
+    }
+
+    @Test
+    public void calculateInSampleSize_unknownImageSize() throws Exception {
+        assertEquals(1, BitmapSizing.calculateInSampleSize(-1, -1, 88, 88));
+    }
+
+    @Test
+    public void sampledByteCount_roundsSampledSizeUp() throws Exception {
+        assertEquals(100 * 100 * 4, BitmapSizing.sampledByteCount(100, 100, 1, 4));
+        assertEquals(51 * 51 * 4, BitmapSizing.sampledByteCount(101, 101, 2, 4));
+        assertEquals(0, BitmapSizing.sampledByteCount(0, 100, 2, 4));
+    }
+}
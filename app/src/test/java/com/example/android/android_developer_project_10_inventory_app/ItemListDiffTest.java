@@ -0,0 +1,49 @@
+package com.example.android.android_developer_project_10_inventory_app;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link ItemListDiff}.
+ */
+public class ItemListDiffTest {
+
+    private static ItemListDiff.Window window(int firstPosition, long[] ids, int... quantities) {
+        Object[][] contents = new Object[ids.length][];
+        for (int row = 0; row < ids.length; row++) {
+            contents[row] = new Object[]{"Item " + ids[row], 1000L, quantities[row]};
+        }
+        return new ItemListDiff.Window(firstPosition, ids, contents);
+    }
+
+    @Test
+    public void changedPositions_onlyTheSoldItemIsRebound() throws Exception {
+        long[] ids = {4, 7, 9, 12};
+        int[] changed = ItemListDiff.changedPositions(
+                window(20, ids, 5, 3, 8, 1),
+                window(20, ids, 5, 2, 8, 1));
+        assertArrayEquals(new int[]{21}, changed);
+    }
+
+    @Test
+    public void changedPositions_nothingChanged() throws Exception {
+        long[] ids = {4, 7};
+        assertArrayEquals(new int[0], ItemListDiff.changedPositions(
+                window(0, ids, 5, 3), window(0, ids, 5, 3)));
+    }
+
+    @Test
+    public void changedPositions_insertedItemNeedsFullRefresh() throws Exception {
+        assertNull(ItemListDiff.changedPositions(
+                window(0, new long[]{4, 7, 9}, 5, 3, 8),
+                window(0, new long[]{4, 5, 7}, 5, 1, 3)));
+    }
+
+    @Test
+    public void changedPositions_differentWindowsNeedFullRefresh() throws Exception {
+        long[] ids = {4, 7};
+        assertNull(ItemListDiff.changedPositions(window(0, ids, 5, 3), window(1, ids, 5, 3)));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.android.android_developer_project_10_inventory_app;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link PriceFormat}.
+ */
+public class PriceFormatTest {
+    @Test
+    public void toCents_parsesWholeAndDecimalPrices() throws Exception {
+        assertEquals(1000, PriceFormat.toCents("10"));
+        assertEquals(1050, PriceFormat.toCents("10.5"));
+        assertEquals(1050, PriceFormat.toCents(" 10.50 "));
+        assertEquals(0, PriceFormat.toCents("0"));
+    }
+
+    @Test
+    public void toCents_rejectsInvalidPrices() throws Exception {
+        assertEquals(-1, PriceFormat.toCents(null));
+        assertEquals(-1, PriceFormat.toCents(""));
+        assertEquals(-1, PriceFormat.toCents("ten"));
+        assertEquals(-1, PriceFormat.toCents("-1"));
+        assertEquals(-1, PriceFormat.toCents("1.005"));
+    }
+
+    @Test
+    public void format_showsTwoDecimals() throws Exception {
+        assertEquals("10.50", PriceFormat.format(1050));
+        assertEquals("0.05", PriceFormat.format(5));
+        assertEquals("0.00", PriceFormat.format(0));
+    }
+
+    @Test
+    public void formatIntoBuffer_matchesFormat() throws Exception {
+        char[] buffer = new char[32];
+        for (long cents : new long[]{0, 5, 99, 100, 1050, 123456789}) {
+            int end = PriceFormat.format(cents, buffer, 3);
+            assertEquals(PriceFormat.format(cents), new String(buffer, 3, end - 3));
+        }
+    }
+
+    @Test
+    public void writeDigits_writesDecimalNumber() throws Exception {
+        char[] buffer = new char[8];
+        int end = PriceFormat.writeDigits(407, buffer, 1);
+        assertEquals(4, end);
+        assertEquals("407", new String(buffer, 1, 3));
+        assertEquals(1, PriceFormat.writeDigits(0, buffer, 0));
+        assertEquals('0', buffer[0]);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link CsvReader}.
+ */
+public class CsvReaderTest {
+
+    @Test
+    public void readRecord_splitsFieldsAndLines() throws Exception {
+        CsvReader reader = new CsvReader(new StringReader("name,quantity\r\nPen,10\nPaper,-3"));
+        assertTrue(reader.readRecord());
+        assertEquals(2, reader.getFieldCount());
+        assertEquals("quantity", reader.getString(1));
+        assertTrue(reader.readRecord());
+        assertEquals("Pen", reader.getString(0));
+        assertEquals(10, reader.getLong(1));
+        assertTrue(reader.readRecord());
+        assertEquals(-3, reader.getLong(1));
+        assertFalse(reader.readRecord());
+    }
+
+    @Test
+    public void readRecord_unescapesQuotedFields() throws Exception {
+        CsvReader reader = new CsvReader(new StringReader(
+                "\"Pens, blue\",\"12\"\" ruler\",\"two\r\nlines\",\n"));
+        assertTrue(reader.readRecord());
+        assertEquals(4, reader.getFieldCount());
+        assertEquals("Pens, blue", reader.getString(0));
+        assertEquals("12\" ruler", reader.getString(1));
+        assertEquals("two\r\nlines", reader.getString(2));
+        assertTrue(reader.isEmpty(3));
+        assertFalse(reader.readRecord());
+    }
+
+    @Test
+    public void readRecord_readsWhatCsvWrites() throws Exception {
+        StringWriter writer = new StringWriter();
+        StringBuilder longField = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            longField.append(i % 7 == 0 ? "\"," : "x");
+        }
+        Csv.writeRecord(writer, "a", longField.toString(), "");
+        CsvReader reader = new CsvReader(new StringReader(writer.toString()));
+        assertTrue(reader.readRecord());
+        assertEquals(longField.toString(), reader.getString(1));
+        assertEquals("", reader.getString(2));
+        assertFalse(reader.readRecord());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void getLong_rejectsText() throws Exception {
+        CsvReader reader = new CsvReader(new StringReader("12a\n"));
+        reader.readRecord();
+        reader.getLong(0);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link Csv}.
+ */
+public class CsvTest {
+    @Test
+    public void escape_quotesOnlyWhenNeeded() throws Exception {
+        assertEquals("Pen", Csv.escape("Pen"));
+        assertEquals("", Csv.escape(null));
+        assertEquals("\"Pens, blue\"", Csv.escape("Pens, blue"));
+        assertEquals("\"12\"\" ruler\"", Csv.escape("12\" ruler"));
+        assertEquals("\"two\nlines\"", Csv.escape("two\nlines"));
+    }
+
+    @Test
+    public void writeRecord_separatesFieldsAndEndsWithCrLf() throws Exception {
+        StringWriter writer = new StringWriter();
+        Csv.writeRecord(writer, "1", "Pens, blue", "3");
+        Csv.writeRecord(writer, "2", "Paper", "");
+        assertEquals("1,\"Pens, blue\",3\r\n2,Paper,\r\n", writer.toString());
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link InMemorySyncServer}.
+ */
+public class InMemorySyncServerTest {
+
+    private static SyncBatch.Change item(String syncId, long version, String device, int quantity) {
+        return new SyncBatch.Change(syncId, version, device, false, "Widget", 250,
+                QuantityCounter.EMPTY.add(device, quantity), "content://widget", "Acme",
+                "orders@acme.test", 0, null);
+    }
+
+    private static byte[] batch(SyncBatch.Change... changes) {
+        return new SyncBatch(0, false, Arrays.asList(changes)).encode();
+    }
+
+    // A device in the property test with its copy of one item, pushing and pulling the way
+    // ItemSyncStore does
+    private static class Replica {
+        final String device;
+        SyncBatch.Change item;
+        boolean changed;
+        long token;
+
+        Replica(String device, SyncBatch.Change item) {
+            this.device = device;
+            this.item = item;
+        }
+
+        void sell(int units) {
+            item = new SyncBatch.Change(item.syncId, item.version + 1, device, false, item.name,
+                    item.price, item.quantity.add(device, -units), item.image, item.supplier,
+                    item.email, item.reorderThreshold, item.sku);
+            changed = true;
+        }
+
+        void push(InMemorySyncServer server) throws Exception {
+            if (changed) {
+                server.push(batch(item));
+                changed = false;
+            }
+        }
+
+        void pull(InMemorySyncServer server) throws Exception {
+            SyncBatch pulled;
+            do {
+                pulled = SyncBatch.decode(server.pull(token, 1));
+                for (SyncBatch.Change change : pulled.changes) {
+                    QuantityCounter merged = item.quantity.merge(change.quantity);
+                    if (change.winsOver(item.version, item.device)) {
+                        item = change;
+                    }
+                    item = item.withQuantity(merged);
+                }
+                token = pulled.token;
+            } while (pulled.more);
+        }
+    }
+
+    @Test
+    public void pull_returnsOnlyChangesAfterTheToken() throws Exception {
+        InMemorySyncServer server = new InMemorySyncServer();
+        server.push(batch(item("a", 1, "phone", 1), item("b", 1, "phone", 1)));
+        SyncBatch first = SyncBatch.decode(server.pull(0, 10));
+        assertEquals(2, first.changes.size());
+
+        server.push(batch(item("b", 2, "phone", 2)));
+        SyncBatch second = SyncBatch.decode(server.pull(first.token, 10));
+
+        assertEquals(1, second.changes.size());
+        assertEquals("b", second.changes.get(0).syncId);
+        assertEquals(2, second.changes.get(0).quantity.value());
+        assertEquals(0, SyncBatch.decode(server.pull(second.token, 10)).changes.size());
+    }
+
+    @Test
+    public void push_keepsTheSameWinnerInAnyOrder() throws Exception {
+        SyncBatch.Change phone = item("a", 2, "phone", 1);
+        SyncBatch.Change tablet = item("a", 2, "tablet", 2);
+        InMemorySyncServer server = new InMemorySyncServer();
+        InMemorySyncServer reversed = new InMemorySyncServer();
+
+        server.push(batch(phone));
+        server.push(batch(tablet));
+        reversed.push(batch(tablet));
+        reversed.push(batch(phone));
+
+        assertEquals("tablet", server.getChange("a").device);
+        assertEquals("tablet", reversed.getChange("a").device);
+    }
+
+    @Test
+    public void push_keepsTheCountsOfOlderVersions() throws Exception {
+        InMemorySyncServer server = new InMemorySyncServer();
+        server.push(batch(item("a", 3, "phone", 3)));
+        SyncBatch pulled = SyncBatch.decode(server.pull(0, 10));
+
+        server.push(batch(item("a", 2, "tablet", 2)));
+
+        SyncBatch.Change kept = server.getChange("a");
+        assertEquals(3, kept.version);
+        assertEquals("phone", kept.device);
+        assertEquals(5, kept.quantity.value());
+        assertEquals(1, SyncBatch.decode(server.pull(pulled.token, 10)).changes.size());
+    }
+
+    @Test
+    public void push_ignoresRepeats() throws Exception {
+        InMemorySyncServer server = new InMemorySyncServer();
+        server.push(batch(item("a", 3, "phone", 3)));
+        SyncBatch pulled = SyncBatch.decode(server.pull(0, 10));
+
+        server.push(batch(item("a", 3, "phone", 3)));
+        server.push(batch(item("a", 1, "phone", 1)));
+
+        assertEquals(3, server.getChange("a").quantity.value());
+        assertEquals(0, SyncBatch.decode(server.pull(pulled.token, 10)).changes.size());
+    }
+
+    @Test
+    public void pull_pagesThroughLimit() throws Exception {
+        InMemorySyncServer server = new InMemorySyncServer();
+        for (int i = 0; i < 5; i++) {
+            server.push(batch(item("item" + i, 1, "phone", i)));
+        }
+
+        SyncBatch first = SyncBatch.decode(server.pull(0, 3));
+        SyncBatch second = SyncBatch.decode(server.pull(first.token, 3));
+
+        assertEquals(3, first.changes.size());
+        assertTrue(first.more);
+        assertEquals(2, second.changes.size());
+        assertFalse(second.more);
+        assertEquals(5, server.getRowsPulled());
+    }
+
+    @Test
+    public void pull_ofNothingIsEmpty() throws Exception {
+        InMemorySyncServer server = new InMemorySyncServer();
+        server.push(new SyncBatch(0, false, Collections.<SyncBatch.Change>emptyList()).encode());
+
+        SyncBatch pulled = SyncBatch.decode(server.pull(0, 10));
+
+        assertEquals(0, pulled.changes.size());
+        assertEquals(0, pulled.token);
+        assertEquals(0, server.size());
+    }
+
+    @Test
+    public void sync_randomInterleavingsOfSalesConverge() throws Exception {
+        for (long seed = 0; seed < 500; seed++) {
+            Random random = new Random(seed);
+            InMemorySyncServer server = new InMemorySyncServer();
+            SyncBatch.Change created = item("a", 1, "phone", 100);
+            server.push(batch(created));
+            Replica[] replicas = new Replica[2 + random.nextInt(3)];
+            for (int i = 0; i < replicas.length; i++) {
+                replicas[i] = new Replica("device" + i, created);
+                replicas[i].pull(server);
+            }
+            int sold = 0;
+
+            for (int step = 0; step < 100; step++) {
+                Replica replica = replicas[random.nextInt(replicas.length)];
+                switch (random.nextInt(3)) {
+                    case 0:
+                        int units = 1 + random.nextInt(3);
+                        replica.sell(units);
+                        sold += units;
+                        break;
+                    case 1:
+                        replica.push(server);
+                        break;
+                    default:
+                        replica.pull(server);
+                }
+            }
+            for (Replica replica : replicas) {
+                replica.push(server);
+            }
+            for (Replica replica : replicas) {
+                replica.pull(server);
+            }
+
+            for (Replica replica : replicas) {
+                assertEquals("seed " + seed, 100 - sold, replica.item.quantity.value());
+                assertEquals("seed " + seed, replicas[0].item.quantity, replica.item.quantity);
+                assertEquals("seed " + seed, replicas[0].item.version, replica.item.version);
+                assertEquals("seed " + seed, replicas[0].item.device, replica.item.device);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link ItemCache}.
+ */
+public class ItemCacheTest {
+
+    private static Object[] row(long id, int quantity) {
+        return new Object[]{id, "Item " + id, 1000L, (long) quantity};
+    }
+
+    @Test
+    public void get_countsHitsAndMisses() throws Exception {
+        ItemCache cache = new ItemCache(10);
+        assertNull(cache.get(1));
+        cache.put(1, row(1, 5), cache.getGeneration());
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(1));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() throws Exception {
+        ItemCache cache = new ItemCache(2);
+        cache.put(1, row(1, 5), cache.getGeneration());
+        cache.put(2, row(2, 5), cache.getGeneration());
+        cache.get(1);
+        cache.put(3, row(3, 5), cache.getGeneration());
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(3));
+    }
+
+    @Test
+    public void invalidate_dropsOnlyThatItem() throws Exception {
+        ItemCache cache = new ItemCache(10);
+        cache.put(1, row(1, 5), cache.getGeneration());
+        cache.put(2, row(2, 5), cache.getGeneration());
+        cache.invalidate(1);
+        assertNull(cache.get(1));
+        assertNotNull(cache.get(2));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void put_ignoresRowReadBeforeAnInvalidation() throws Exception {
+        ItemCache cache = new ItemCache(10);
+        // A reader starts, a writer commits and invalidates, then the reader's stale row arrives
+        long generation = cache.getGeneration();
+        cache.invalidate(1);
+        cache.put(1, row(1, 5), generation);
+        assertNull(cache.get(1));
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link QuantityCounter}. The property tests check their property on many
+ * random cases from fixed seeds, so a failure can be replayed from the seed in its message.
+ */
+public class QuantityCounterTest {
+
+    private static final String[] DEVICES = {"phone", "tablet", "till", "laptop"};
+
+    // Returns a random counter of some of the devices
+    private static QuantityCounter randomCounter(Random random) {
+        QuantityCounter counter = QuantityCounter.EMPTY;
+        for (String device : DEVICES) {
+            if (random.nextBoolean()) {
+                counter = counter.with(device, random.nextInt(20), random.nextInt(20));
+            }
+        }
+        return counter;
+    }
+
+    @Test
+    public void add_countsIncrementsAndDecrementsOfTheDevice() throws Exception {
+        QuantityCounter counter = QuantityCounter.EMPTY.add("phone", 10).add("phone", -3).add("tablet", -2);
+
+        assertEquals(10, counter.getIncrements("phone"));
+        assertEquals(3, counter.getDecrements("phone"));
+        assertEquals(2, counter.getDecrements("tablet"));
+        assertEquals(5, counter.value());
+    }
+
+    @Test
+    public void merge_keepsConcurrentSalesOfBothDevices() throws Exception {
+        QuantityCounter base = QuantityCounter.EMPTY.add("phone", 10);
+        QuantityCounter phone = base.add("phone", -1);
+        QuantityCounter tablet = base.add("tablet", -1);
+
+        assertEquals(8, phone.merge(tablet).value());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void with_rejectsNegativeTotals() throws Exception {
+        QuantityCounter.EMPTY.with("phone", -1, 0);
+    }
+
+    @Test
+    public void merge_isCommutativeAssociativeAndIdempotent() throws Exception {
+        for (long seed = 0; seed < 1000; seed++) {
+            Random random = new Random(seed);
+            QuantityCounter a = randomCounter(random);
+            QuantityCounter b = randomCounter(random);
+            QuantityCounter c = randomCounter(random);
+
+            assertEquals("seed " + seed, a.merge(b), b.merge(a));
+            assertEquals("seed " + seed, a.merge(b).merge(c), a.merge(b.merge(c)));
+            assertEquals("seed " + seed, a, a.merge(a));
+            assertEquals("seed " + seed, a.merge(b), a.merge(b).merge(b));
+        }
+    }
+
+    @Test
+    public void replicas_convergeOnAllSalesUnderRandomInterleavings() throws Exception {
+        for (long seed = 0; seed < 500; seed++) {
+            Random random = new Random(seed);
+            QuantityCounter[] replicas = new QuantityCounter[2 + random.nextInt(DEVICES.length - 1)];
+            // Every replica starts from the same stock, counted for no device in particular
+            QuantityCounter base = QuantityCounter.EMPTY.with("", 50, 0);
+            for (int i = 0; i < replicas.length; i++) {
+                replicas[i] = base;
+            }
+            long expected = 50;
+
+            // Sales, restocks and exchanges of counters between random replicas, in random order
+            for (int step = 0; step < 200; step++) {
+                int replica = random.nextInt(replicas.length);
+                int action = random.nextInt(3);
+                if (action == 0) {
+                    int sold = 1 + random.nextInt(3);
+                    replicas[replica] = replicas[replica].add(DEVICES[replica], -sold);
+                    expected -= sold;
+                } else if (action == 1 && random.nextInt(4) == 0) {
+                    int received = 1 + random.nextInt(10);
+                    replicas[replica] = replicas[replica].add(DEVICES[replica], received);
+                    expected += received;
+                } else {
+                    int other = random.nextInt(replicas.length);
+                    replicas[replica] = replicas[replica].merge(replicas[other]);
+                }
+            }
+
+            // Once every replica has heard from every other, directly or not, they all agree
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < replicas.length; i++) {
+                    for (int j = 0; j < replicas.length; j++) {
+                        replicas[i] = replicas[i].merge(replicas[j]);
+                    }
+                }
+            }
+            for (QuantityCounter replica : replicas) {
+                assertEquals("seed " + seed, replicas[0], replica);
+                assertEquals("seed " + seed, expected, replica.value());
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link SalesVelocity}.
+ */
+public class SalesVelocityTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void afterSale_firstSaleWeighsByTheTimeConstant() throws Exception {
+        assertEquals(7.0 / SalesVelocity.TIME_CONSTANT_DAYS,
+                SalesVelocity.afterSale(0, 0, 7, 100 * DAY), 1e-9);
+    }
+
+    @Test
+    public void afterSale_steadySalesSettleAtTheirRate() throws Exception {
+        // Three units every day for a long time average out at three units a day
+        double velocity = 0;
+        long time = 0;
+        for (int day = 1; day <= 200; day++) {
+            velocity = SalesVelocity.afterSale(velocity, time, 3, day * DAY);
+            time = day * DAY;
+        }
+        // Right after a sale the velocity is at the top of its daily sawtooth, half a day's
+        // sales above the average
+        double halfDayLater = SalesVelocity.at(velocity, time, time + DAY / 2);
+        assertEquals(3.0, halfDayLater, 0.01);
+    }
+
+    @Test
+    public void at_decaysByOneOverEPerTimeConstant() throws Exception {
+        long later = (long) SalesVelocity.TIME_CONSTANT_MILLIS;
+        assertEquals(2 / Math.E, SalesVelocity.at(2, 0, later), 1e-9);
+    }
+
+    @Test
+    public void at_ignoresClockGoingBackwards() throws Exception {
+        assertEquals(2, SalesVelocity.at(2, 10 * DAY, 9 * DAY), 0);
+    }
+
+    @Test
+    public void daysOfCover_dividesQuantityByCurrentVelocity() throws Exception {
+        assertEquals(5, SalesVelocity.daysOfCover(10, 2, DAY, DAY), 1e-9);
+        assertTrue(Double.isInfinite(SalesVelocity.daysOfCover(10, 0, 0, DAY)));
+    }
+
+    @Test
+    public void rebased_ordersLikeDaysOfCoverForSalesWeeksApart() throws Exception {
+        long now = SalesVelocity.REBASE_EPOCH_MILLIS + 400 * DAY;
+        long tenTimeConstantsAgo = now - 10 * (long) SalesVelocity.TIME_CONSTANT_MILLIS;
+        // 100 units of an item that sold fast ten time constants ago last about 220000 days, one
+        // unit of an item that sells one every 5000 days lasts 5000
+        double oldCover = SalesVelocity.daysOfCover(100, 10, tenTimeConstantsAgo, now);
+        double newCover = SalesVelocity.daysOfCover(1, 1.0 / 5000, now, now);
+        assertTrue(oldCover > newCover);
+
+        double oldKey = 100 / SalesVelocity.rebased(10, tenTimeConstantsAgo);
+        double newKey = 1 / SalesVelocity.rebased(1.0 / 5000, now);
+        assertTrue(oldKey > newKey);
+        // The keys are the days of cover up to the same factor
+        assertEquals(oldCover / newCover, oldKey / newKey, 1e-6 * oldCover / newCover);
+    }
+
+    @Test
+    public void rebased_isTheVelocityAtTheEpoch() throws Exception {
+        assertEquals(2, SalesVelocity.rebased(2, SalesVelocity.REBASE_EPOCH_MILLIS), 0);
+        assertEquals(2 * Math.E, SalesVelocity.rebased(2,
+                SalesVelocity.REBASE_EPOCH_MILLIS + (long) SalesVelocity.TIME_CONSTANT_MILLIS), 1e-9);
+        assertEquals(0, SalesVelocity.rebased(0, SalesVelocity.REBASE_EPOCH_MILLIS + 400 * DAY), 0);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link StartupTimeline}, recording events at given times.
+ */
+public class StartupTimelineTest {
+
+    private static final long MILLIS = 1000000;
+
+    @Test
+    public void record_measuresFromTheStartOfTheFirstEvent() throws Exception {
+        StartupTimeline timeline = new StartupTimeline();
+        timeline.record(StartupTimeline.PROVIDER_CREATED, 500 * MILLIS, 520 * MILLIS);
+        StartupTimeline.Event event = timeline.record(StartupTimeline.ACTIVITY_CREATED, 530 * MILLIS, 600 * MILLIS);
+
+        assertEquals(30, event.startMillis);
+        assertEquals(100, event.endMillis);
+    }
+
+    @Test
+    public void record_keepsOnlyTheFirstEventOfAName() throws Exception {
+        StartupTimeline timeline = new StartupTimeline();
+        timeline.record(StartupTimeline.FIRST_CURSOR_FILLED, 0, 40 * MILLIS);
+
+        assertNull(timeline.record(StartupTimeline.FIRST_CURSOR_FILLED, 100 * MILLIS, 110 * MILLIS));
+        assertEquals(1, timeline.getEvents().size());
+        assertEquals(40, timeline.getEvents().get(0).endMillis);
+    }
+
+    @Test
+    public void getEvents_areInTheOrderTheyEnded() throws Exception {
+        StartupTimeline timeline = new StartupTimeline();
+        timeline.record(StartupTimeline.PROVIDER_CREATED, 0, 10 * MILLIS);
+        // The database opens in the background while the activity is created
+        timeline.record(StartupTimeline.ACTIVITY_CREATED, 12 * MILLIS, 90 * MILLIS);
+        timeline.record(StartupTimeline.DATABASE_OPENED, 10 * MILLIS, 60 * MILLIS);
+
+        List<StartupTimeline.Event> events = timeline.getEvents();
+        assertEquals(StartupTimeline.PROVIDER_CREATED, events.get(0).name);
+        assertEquals(StartupTimeline.DATABASE_OPENED, events.get(1).name);
+        assertEquals(StartupTimeline.ACTIVITY_CREATED, events.get(2).name);
+    }
+
+    @Test
+    public void format_writesOneLinePerEvent() throws Exception {
+        StartupTimeline timeline = new StartupTimeline();
+        timeline.record(StartupTimeline.PROVIDER_CREATED, 0, 8 * MILLIS);
+        timeline.record(StartupTimeline.FIRST_FRAME, 150 * MILLIS, 180 * MILLIS);
+
+        assertEquals("+    8 ms  Provider created (8 ms)\n+  180 ms  First frame (30 ms)\n", timeline.format());
+    }
+
+    @Test
+    public void format_isEmptyWithoutEvents() throws Exception {
+        assertEquals("", new StartupTimeline().format());
+    }
+}
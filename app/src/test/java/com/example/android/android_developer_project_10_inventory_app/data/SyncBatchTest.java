@@ -0,0 +1,78 @@
+package com.example.android.android_developer_project_10_inventory_app.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link SyncBatch}.
+ */
+public class SyncBatchTest {
+
+    private static SyncBatch.Change item(String syncId, long version, String device, int quantity) {
+        return new SyncBatch.Change(syncId, version, device, false, "Widget " + syncId, 250,
+                QuantityCounter.EMPTY.add(device, quantity), "content://widget", "Acme",
+                "orders@acme.test", 5, null);
+    }
+
+    @Test
+    public void encode_roundTripsItemsAndTombstones() throws Exception {
+        SyncBatch batch = new SyncBatch(42, true, Arrays.asList(item("a", 3, "phone", 7),
+                SyncBatch.Change.tombstone("b", 2, "tablet")));
+
+        SyncBatch decoded = SyncBatch.decode(batch.encode());
+
+        assertEquals(42, decoded.token);
+        assertTrue(decoded.more);
+        assertEquals(2, decoded.changes.size());
+        SyncBatch.Change item = decoded.changes.get(0);
+        assertEquals("a", item.syncId);
+        assertEquals(3, item.version);
+        assertEquals("phone", item.device);
+        assertFalse(item.deleted);
+        assertEquals("Widget a", item.name);
+        assertEquals(250, item.price);
+        assertEquals(QuantityCounter.EMPTY.add("phone", 7), item.quantity);
+        assertEquals("Acme", item.supplier);
+        assertEquals("orders@acme.test", item.email);
+        assertEquals(5, item.reorderThreshold);
+        assertNull(item.sku);
+        SyncBatch.Change tombstone = decoded.changes.get(1);
+        assertEquals("b", tombstone.syncId);
+        assertTrue(tombstone.deleted);
+        assertNull(tombstone.name);
+        assertNull(tombstone.quantity);
+    }
+
+    @Test
+    public void encode_compressesRepetitiveItems() throws Exception {
+        List<SyncBatch.Change> changes = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            changes.add(item(String.format("%032x", i), 1, "0123456789abcdef", i));
+        }
+        // Sync IDs alone take 500 * 34 bytes uncompressed
+        assertTrue(new SyncBatch(0, false, changes).encode().length < 500 * 34);
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsGarbage() throws Exception {
+        SyncBatch.decode(new byte[]{1, 2, 3, 4});
+    }
+
+    @Test
+    public void winsOver_higherVersionThenGreaterDevice() throws Exception {
+        assertTrue(item("a", 3, "a", 0).winsOver(2, "z"));
+        assertFalse(item("a", 2, "z", 0).winsOver(3, "a"));
+        assertTrue(item("a", 2, "b", 0).winsOver(2, "a"));
+        assertFalse(item("a", 2, "a", 0).winsOver(2, "b"));
+        assertFalse(item("a", 2, "a", 0).winsOver(2, "a"));
+    }
+}